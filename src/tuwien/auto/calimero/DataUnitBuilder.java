@@ -54,6 +54,8 @@ public final class DataUnitBuilder
 
 	private static final Logger logger = LogService.getLogger(LOG_SERVICE);
 
+	private static final char[] HexDigits = "0123456789abcdef".toCharArray();
+
 	private static final int T_DATA_CONNECTED = 0x40;
 	private static final int T_CONNECT = 0x80;
 	private static final int T_DISCONNECT = 0x81;
@@ -477,16 +479,76 @@ public final class DataUnitBuilder
 	 */
 	public static String toHex(final byte[] data, final String sep)
 	{
-		final StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < data.length; ++i) {
-			final int no = data[i] & 0xff;
-			if (no < 0x10)
-				sb.append('0');
-			sb.append(Integer.toHexString(no));
-			if (sep != null && i < data.length - 1)
+		final int gap = sep == null || data.length == 0 ? 0 : (data.length - 1) * sep.length();
+		return toHex(new StringBuilder(2 * data.length + gap), data, 0, data.length, sep).toString();
+	}
+
+	/**
+	 * Appends the content of <code>data</code> in the range <code>[offset, offset + length)</code> as unsigned bytes in
+	 * hexadecimal representation to <code>sb</code>, without creating intermediate objects.
+	 * <p>
+	 * A string builder with sufficient capacity can be reused for formatting without further allocations. This method
+	 * does not add hexadecimal prefixes (like 0x).
+	 *
+	 * @param sb string builder to append to
+	 * @param data data array to format
+	 * @param offset offset of the first byte to format
+	 * @param length number of bytes to format
+	 * @param sep separator to insert between 2 formatted data bytes, <code>null</code> or "" for no gap between byte
+	 *        tokens
+	 * @return <code>sb</code>
+	 */
+	public static StringBuilder toHex(final StringBuilder sb, final byte[] data, final int offset, final int length,
+		final String sep)
+	{
+		final boolean gap = sep != null && !sep.isEmpty();
+		for (int i = offset; i < offset + length; ++i) {
+			if (gap && i > offset)
 				sb.append(sep);
+			final int no = data[i] & 0xff;
+			sb.append(HexDigits[no >>> 4]).append(HexDigits[no & 0xf]);
 		}
-		return sb.toString();
+		return sb;
+	}
+
+	/**
+	 * Returns a lazily formatted hexadecimal representation of <code>data</code>, intended as argument for log
+	 * statements. The bytes are only formatted (as by {@link #toHex(byte[], String)}) when calling
+	 * {@link Object#toString()} on the returned object; <code>data</code> is not copied and must not be modified before
+	 * the representation is formatted.
+	 *
+	 * @param data data array to format
+	 * @param sep separator to insert between 2 formatted data bytes, <code>null</code> or "" for no gap between byte
+	 *        tokens
+	 * @return object with a hexadecimal string representation of data
+	 */
+	public static Object hex(final byte[] data, final String sep)
+	{
+		return hex(data, 0, data.length, sep);
+	}
+
+	/**
+	 * Returns a lazily formatted hexadecimal representation of <code>data</code> in the range
+	 * <code>[offset, offset + length)</code>, intended as argument for log statements.
+	 *
+	 * @param data data array to format
+	 * @param offset offset of the first byte to format
+	 * @param length number of bytes to format
+	 * @param sep separator to insert between 2 formatted data bytes, <code>null</code> or "" for no gap between byte
+	 *        tokens
+	 * @return object with a hexadecimal string representation of the data range
+	 * @see #hex(byte[], String)
+	 */
+	public static Object hex(final byte[] data, final int offset, final int length, final String sep)
+	{
+		return new Object() {
+			@Override
+			public String toString()
+			{
+				final int gap = sep == null || length == 0 ? 0 : (length - 1) * sep.length();
+				return toHex(new StringBuilder(2 * length + gap), data, offset, length, sep).toString();
+			}
+		};
 	}
 
 	/**
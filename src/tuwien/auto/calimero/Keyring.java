@@ -58,6 +58,7 @@ import java.util.Set;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import javax.crypto.Cipher;
@@ -193,14 +194,18 @@ public final class Keyring {
 	private static final byte[] zeroKey = new byte[16];
 	private static final byte[] emptyPwd = new byte[0];
 
+	private static final Pattern senderPattern = Pattern.compile("[^\\s]+");
+
 	private static final Logger logger = LoggerFactory.getLogger("calimero.keyring");
 
 	private final String keyringUri;
 	private final char[] keyringPassword;
 
-	private byte[] passwordHash = {};
 	private byte[] createdHash = {};
 
+	// keyring password hash of this keyring's own password, derived on first use
+	private volatile byte[] passwordKey;
+
 	private byte[] signature;
 
 	// mappings:
@@ -258,13 +263,12 @@ public final class Keyring {
 			final var created = reader.getAttributeValue(null, "Created");
 			logger.debug("read keyring for project '{}', created by {} on {}", project, createdBy, created);
 
-			passwordHash = hashKeyringPwd(keyringPassword);
 			createdHash = sha256(utf8Bytes(created));
 
 			signature = decode(reader.getAttributeValue(null, "Signature"));
 
 			if (keyringPassword.length > 0) {
-				if (!verifySignature(passwordHash)) {
+				if (!verifySignature(passwordKey())) {
 					final String msg = "signature verification failed for keyring '" + keyringUri + "'";
 					final boolean strictVerification = true;
 					if (strictVerification)
@@ -328,7 +332,7 @@ public final class Keyring {
 					final var senders = reader.getAttributeValue(null, "Senders"); // (empty) list of addresses
 
 					final var list = new ArrayList<IndividualAddress>();
-					final Matcher matcher = Pattern.compile("[^\\s]+").matcher(senders);
+					final Matcher matcher = senderPattern.matcher(senders);
 					while (matcher.find())
 						list.add(new IndividualAddress(matcher.group()));
 
@@ -378,9 +382,6 @@ public final class Keyring {
 			// NoSuchAlgorithmException, InvalidKeySpecException etc. imply a setup/programming error
 			throw new KnxSecureException("crypto error", e);
 		}
-		finally {
-			Arrays.fill(passwordHash, (byte) 0);
-		}
 	}
 
 	/**
@@ -392,12 +393,16 @@ public final class Keyring {
 	 * @throws KnxSecureException if generating the secret key for the password hash fails
 	 */
 	public boolean verifySignature(final char[] keyringPassword) {
+		final var pwdHash = passwordKey(keyringPassword);
 		try {
-			return verifySignature(hashKeyringPwd(keyringPassword));
+			return verifySignature(pwdHash);
 		}
 		catch (final GeneralSecurityException e) {
 			return false;
 		}
+		finally {
+			release(pwdHash);
+		}
 	}
 
 	// ??? interim accessor
@@ -427,7 +432,9 @@ public final class Keyring {
 	}
 
 	/**
-	 * Decrypts a backbone key, tool key, or group address key using the keyring password.
+	 * Decrypts a backbone key, tool key, or group address key using the keyring password. If the keyring was loaded
+	 * with its password, the (expensive) key derivation from that password is done once and reused for subsequent
+	 * decryptions.
 	 *
 	 * @param input encrypted key
 	 * @param keyringPassword the password of this keyring
@@ -435,16 +442,60 @@ public final class Keyring {
 	 * @throws KnxSecureException for cryptographic setup/algorithm problems
 	 */
 	public byte[] decryptKey(final byte[] input, final char[] keyringPassword) {
-		final var pwdHash = hashKeyringPwd(keyringPassword);
+		final var pwdHash = passwordKey(keyringPassword);
+		try {
+			return decryptKey(input, pwdHash);
+		}
+		finally {
+			release(pwdHash);
+		}
+	}
+
+	/**
+	 * Decrypts the keys of all group addresses of this keyring, see {@link #decryptKey(byte[], char[])}. Keys are
+	 * decrypted in parallel.
+	 *
+	 * @param keyringPassword the password of this keyring
+	 * @return unmodifiable map of group address to decrypted group key
+	 * @throws KnxSecureException for cryptographic setup/algorithm problems
+	 */
+	public Map<GroupAddress, byte[]> decryptGroupKeys(final char[] keyringPassword) {
+		final var pwdHash = passwordKey(keyringPassword);
+		try {
+			return Map.copyOf(groups.entrySet().parallelStream()
+					.collect(Collectors.toConcurrentMap(Map.Entry::getKey, e -> decryptKey(e.getValue(), pwdHash))));
+		}
+		finally {
+			release(pwdHash);
+		}
+	}
+
+	/**
+	 * Decrypts the tool keys of all devices of this keyring, see {@link #decryptKey(byte[], char[])}. Keys are
+	 * decrypted in parallel.
+	 *
+	 * @param keyringPassword the password of this keyring
+	 * @return unmodifiable map of device address to decrypted tool key
+	 * @throws KnxSecureException for cryptographic setup/algorithm problems
+	 */
+	public Map<IndividualAddress, byte[]> decryptToolKeys(final char[] keyringPassword) {
+		final var pwdHash = passwordKey(keyringPassword);
+		try {
+			return Map.copyOf(devices.entrySet().parallelStream().collect(
+					Collectors.toConcurrentMap(Map.Entry::getKey, e -> decryptKey(e.getValue().toolKey(), pwdHash))));
+		}
+		finally {
+			release(pwdHash);
+		}
+	}
+
+	private byte[] decryptKey(final byte[] input, final byte[] pwdHash) {
 		try {
 			return aes128Cbc(input, pwdHash, createdHash);
 		}
 		catch (GeneralSecurityException | RuntimeException e) {
 			throw new KnxSecureException("decrypting key data", e);
 		}
-		finally {
-			Arrays.fill(pwdHash, (byte) 0);
-		}
 	}
 
 	/**
@@ -457,9 +508,9 @@ public final class Keyring {
 	 * @throws KnxSecureException for cryptographic setup/algorithm problems
 	 */
 	public char[] decryptPassword(final byte[] input, final char[] keyringPassword) {
-		final var keyringPwdHash = hashKeyringPwd(keyringPassword);
+		final var pwdHash = passwordKey(keyringPassword);
 		try {
-			final byte[] pwdData = extractPassword(aes128Cbc(input, keyringPwdHash, createdHash));
+			final byte[] pwdData = extractPassword(aes128Cbc(input, pwdHash, createdHash));
 			final var chars = new char[pwdData.length];
 			for (int i = 0; i < pwdData.length; i++)
 				chars[i] = (char) (pwdData[i] & 0xff);
@@ -470,10 +521,35 @@ public final class Keyring {
 			throw new KnxSecureException("decrypting password data", e);
 		}
 		finally {
-			Arrays.fill(keyringPwdHash, (byte) 0);
+			release(pwdHash);
 		}
 	}
 
+	// returns the keyring password hash; a password other than this keyring's own password is derived afresh, and
+	// that hash is zeroed by release
+	private byte[] passwordKey(final char[] keyringPassword) {
+		if (this.keyringPassword.length > 0 && Arrays.equals(this.keyringPassword, keyringPassword))
+			return passwordKey();
+		return hashKeyringPwd(keyringPassword);
+	}
+
+	private byte[] passwordKey() {
+		var key = passwordKey;
+		if (key == null) {
+			synchronized (this) {
+				key = passwordKey;
+				if (key == null)
+					passwordKey = key = hashKeyringPwd(keyringPassword);
+			}
+		}
+		return key;
+	}
+
+	private void release(final byte[] pwdHash) {
+		if (pwdHash != passwordKey)
+			Arrays.fill(pwdHash, (byte) 0);
+	}
+
 	private static <R> R readAttribute(final XmlReader reader, final String attribute, final Function<String, R> parser,
 			final R defaultValue) {
 		final var attr = reader.getAttributeValue(null, attribute);
@@ -1,6 +1,6 @@
 /*
     Calimero 2 - A library for KNX network access
-    Copyright (c) 2006, 2019 B. Malinowsky
+    Copyright (c) 2006, 2020 B. Malinowsky
 
     This program is free software; you can redistribute it and/or modify
     it under the terms of the GNU General Public License as published by
@@ -36,6 +36,9 @@
 
 package tuwien.auto.calimero.buffer;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -89,6 +92,10 @@ import tuwien.auto.calimero.log.LogService;
  */
 public class StateFilter implements NetworkFilter, RequestFilter
 {
+	// binary state snapshot format identifier ('KSTV') and version
+	private static final int SnapshotMagic = 0x4b535456;
+	private static final int SnapshotVersion = 1;
+
 	// contains cross references of datapoints: which datapoint (key, of
 	// type KNXAddress) invalidates/updates which datapoints (value,
 	// of type List with GroupAddress entries)
@@ -273,6 +280,96 @@ public class StateFilter implements NetworkFilter, RequestFilter
 		return o.getFrame();
 	}
 
+	/**
+	 * Saves the buffered state values of all state-based datapoints of the configuration datapoint model in a binary
+	 * snapshot format, which can be restored using {@link #load(Configuration, DataInput)}. Together with a datapoint
+	 * snapshot (see {@link DatapointMap#save(DataOutput)}), this allows a warm restart without requesting all state
+	 * values from the KNX network again.
+	 * <p>
+	 * State values are only saved if the configuration contains a cache and a {@link DatapointMap}.
+	 *
+	 * @param c the network buffer configuration holding the state values
+	 * @param out data output
+	 * @throws IOException on I/O error writing the snapshot
+	 */
+	public void save(final Configuration c, final DataOutput out) throws IOException
+	{
+		final List<LDataObject> states = new ArrayList<>();
+		final Cache cache = c.getCache();
+		final DatapointModel<?> m = c.getDatapointModel();
+		if (cache != null && m instanceof DatapointMap) {
+			for (final Datapoint dp : ((DatapointMap<?>) m).copyDatapoints()) {
+				final CacheObject co = dp.isStateBased() ? cache.get(dp.getMainAddress()) : null;
+				if (co instanceof LDataObject)
+					states.add((LDataObject) co);
+			}
+		}
+		out.writeInt(SnapshotMagic);
+		out.writeShort(SnapshotVersion);
+		out.writeInt(states.size());
+		for (final LDataObject o : states) {
+			final byte[] frame;
+			final long timestamp;
+			synchronized (o) {
+				frame = o.getFrame().toByteArray();
+				timestamp = o.getTimestamp();
+			}
+			out.writeLong(timestamp);
+			out.writeShort(frame.length);
+			out.write(frame);
+		}
+	}
+
+	/**
+	 * Restores buffered state values from a binary snapshot created by {@link #save(Configuration, DataOutput)} into
+	 * the cache of the supplied configuration.
+	 * <p>
+	 * If the configuration contains a datapoint model, only state values of state-based datapoints in that model are
+	 * restored, and state values whose datapoint expiration timeout already elapsed are skipped. The timestamps of
+	 * restored state values are reset by the cache.
+	 *
+	 * @param c the network buffer configuration to restore the state values into
+	 * @param in data input positioned at the start of the snapshot
+	 * @throws IOException on I/O error reading the snapshot
+	 * @throws KNXFormatException on unknown snapshot format or version, or malformed buffered frame
+	 */
+	public void load(final Configuration c, final DataInput in) throws IOException, KNXFormatException
+	{
+		final int magic = in.readInt();
+		if (magic != SnapshotMagic)
+			throw new KNXFormatException("no state value snapshot", magic);
+		final int version = in.readUnsignedShort();
+		if (version != SnapshotVersion)
+			throw new KNXFormatException("unsupported state value snapshot version", version);
+
+		final Cache cache = c.getCache();
+		final DatapointModel<?> m = c.getDatapointModel();
+		final long now = System.currentTimeMillis();
+		for (int i = in.readInt(); i > 0; i--) {
+			final long timestamp = in.readLong();
+			final byte[] data = new byte[in.readUnsignedShort()];
+			in.readFully(data);
+			if (cache == null)
+				continue;
+			final CEMI frame = CEMIFactory.create(data, 0, data.length);
+			if (!(frame instanceof CEMILData) || !(((CEMILData) frame).getDestination() instanceof GroupAddress))
+				throw new KNXFormatException("buffered frame is no L-Data group message", frame.toString());
+			final CEMILData ldata = (CEMILData) frame;
+			if (m != null) {
+				final Datapoint dp = m.get((GroupAddress) ldata.getDestination());
+				if (dp == null || !dp.isStateBased())
+					continue;
+				final long t = ((StateDP) dp).getExpirationTimeout() * 1000L;
+				if (t != 0 && now > timestamp + t)
+					continue;
+			}
+			final CacheObject co = cache.get(ldata.getDestination());
+			if (co != null)
+				((LDataObject) co).setFrame(ldata);
+			cache.put(co != null ? co : new LDataObject(ldata));
+		}
+	}
+
 	private void update(final CEMILData f, final Cache c)
 	{
 		if (update != null) {
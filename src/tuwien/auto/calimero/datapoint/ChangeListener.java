@@ -1,6 +1,6 @@
 /*
     Calimero 2 - A library for KNX network access
-    Copyright (c) 2011, 2015 B. Malinowsky
+    Copyright (c) 2011, 2020 B. Malinowsky
 
     This program is free software; you can redistribute it and/or modify
     it under the terms of the GNU General Public License as published by
@@ -36,6 +36,7 @@
 
 package tuwien.auto.calimero.datapoint;
 
+import java.util.Collection;
 import java.util.EventListener;
 
 /**
@@ -68,4 +69,17 @@ public interface ChangeListener extends EventListener
 	 * @param dp the datapoint removed
 	 */
 	void onDatapointRemoved(DatapointModel<? extends Datapoint> m, Datapoint dp);
+
+	/**
+	 * A number of datapoints were added to the datapoint model at once, e.g., during a bulk import.
+	 * <p>
+	 * The default implementation calls {@link #onDatapointAdded(DatapointModel, Datapoint)} for every datapoint.
+	 *
+	 * @param m the datapoint model emitting the notification
+	 * @param datapoints the datapoints added
+	 */
+	default void onDatapointsAdded(final DatapointModel<? extends Datapoint> m,
+		final Collection<? extends Datapoint> datapoints) {
+		datapoints.forEach(dp -> onDatapointAdded(m, dp));
+	}
 }
@@ -1,6 +1,6 @@
 /*
     Calimero 2 - A library for KNX network access
-    Copyright (c) 2006, 2015 B. Malinowsky
+    Copyright (c) 2006, 2020 B. Malinowsky
 
     This program is free software; you can redistribute it and/or modify
     it under the terms of the GNU General Public License as published by
@@ -36,6 +36,9 @@
 
 package tuwien.auto.calimero.datapoint;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+
 import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.xml.KNXMLException;
 import tuwien.auto.calimero.xml.XmlWriter;
@@ -116,4 +119,12 @@ public class CommandDP extends Datapoint
 	@Override
 	void doSave(final XmlWriter w)
 	{}
+
+	@Override
+	void doLoad(final DataInput in)
+	{}
+
+	@Override
+	void doSave(final DataOutput out)
+	{}
 }
@@ -36,6 +36,10 @@
 
 package tuwien.auto.calimero.datapoint;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.Priority;
 import tuwien.auto.calimero.xml.KNXMLException;
@@ -158,6 +162,28 @@ public abstract class Datapoint
 		throw new KNXMLException("no KNX datapoint", r);
 	}
 
+	/**
+	 * Creates a new datapoint from its binary snapshot representation, see {@link DatapointMap#save(DataOutput)}.
+	 *
+	 * @param in data input
+	 * @return the created datapoint, either of type {@link StateDP} or {@link CommandDP}
+	 * @throws IOException on I/O error reading the datapoint
+	 */
+	static Datapoint create(final DataInput in) throws IOException
+	{
+		final GroupAddress main = new GroupAddress(in.readUnsignedShort());
+		final int flags = in.readUnsignedByte();
+		final int mainNumber = in.readUnsignedShort();
+		final String name = in.readUTF();
+		final String dpt = in.readUTF();
+
+		final Datapoint dp = (flags & 0x80) != 0 ? new StateDP(main, name) : new CommandDP(main, name);
+		dp.setDPT(mainNumber, dpt.isEmpty() ? null : dpt);
+		dp.setPriority(Priority.get(flags & 0x03));
+		dp.doLoad(in);
+		return dp;
+	}
+
 	/**
 	 * Returns the datapoint main address, a KNX group address identifying this datapoint.
 	 * <p>
@@ -294,6 +320,24 @@ public abstract class Datapoint
 		w.writeEndElement();
 	}
 
+	/**
+	 * Saves this datapoint in its binary snapshot representation.
+	 *
+	 * @param out data output
+	 * @throws IOException on I/O error
+	 */
+	void save(final DataOutput out) throws IOException
+	{
+		/* layout: main address (2 bytes), flags (1 byte: bit 7 state based, bits 0-1 priority),
+		   main number (2 bytes), name (UTF), dptID (UTF), subtype-specific part */
+		out.writeShort(main.getRawAddress());
+		out.writeByte((stateBased ? 0x80 : 0) | priority.value);
+		out.writeShort(mainNo);
+		out.writeUTF(name == null ? "" : name);
+		out.writeUTF(dptId == null ? "" : dptId);
+		doSave(out);
+	}
+
 	@Override
 	public String toString()
 	{
@@ -312,6 +356,10 @@ public abstract class Datapoint
 
 	abstract void doSave(XmlWriter w) throws KNXMLException;
 
+	abstract void doLoad(DataInput in) throws IOException;
+
+	abstract void doSave(DataOutput out) throws IOException;
+
 	/* returns true for state based DP, false for command based DP */
 	private static boolean readDPType(final XmlReader r) throws KNXMLException
 	{
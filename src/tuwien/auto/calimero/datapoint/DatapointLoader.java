@@ -0,0 +1,449 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.datapoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import tuwien.auto.calimero.xml.KNXMLException;
+import tuwien.auto.calimero.xml.StreamLocation;
+import tuwien.auto.calimero.xml.XmlReader;
+
+/**
+ * Streaming datapoint import for large datapoint files. Datapoint elements are recorded in chunks; while the reader
+ * continues with the next chunk, the datapoints of completed chunks are created in parallel using a fork-join pool.
+ * Each recorded element is replayed to {@link Datapoint#create(XmlReader)}, hence the XML content is validated the
+ * same way as by {@link DatapointMap#load(XmlReader)}.
+ */
+final class DatapointLoader
+{
+	// number of datapoint elements read before the chunk is handed over to the pool
+	static final int ChunkSize = 512;
+	// chunks are split until a task creates at most this number of datapoints
+	private static final int Threshold = 64;
+
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	DatapointLoader(final ForkJoinPool pool, final int chunkSize)
+	{
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Reads all datapoint elements up to the end tag of the current (enclosing) element.
+	 *
+	 * @param r XML reader positioned at the start tag of the element containing the datapoints
+	 * @return list of created datapoints, in document order
+	 * @throws KNXMLException on malformed datapoint element
+	 */
+	List<Datapoint> load(final XmlReader r) throws KNXMLException
+	{
+		final List<Datapoint[]> results = new ArrayList<>();
+		final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		try {
+			List<RecordedElement> chunk = new ArrayList<>(chunkSize);
+			while (r.nextTag() == XmlReader.START_ELEMENT) {
+				chunk.add(read(r));
+				if (chunk.size() == chunkSize) {
+					submit(chunk, results, tasks);
+					chunk = new ArrayList<>(chunkSize);
+				}
+			}
+			if (!chunk.isEmpty())
+				submit(chunk, results, tasks);
+		}
+		catch (final RuntimeException e) {
+			tasks.forEach(t -> t.cancel(false));
+			throw e;
+		}
+
+		for (final ForkJoinTask<?> task : tasks)
+			task.join();
+		final List<Datapoint> l = new ArrayList<>(results.size() * chunkSize);
+		for (final Datapoint[] dps : results)
+			l.addAll(Arrays.asList(dps));
+		return l;
+	}
+
+	private void submit(final List<RecordedElement> chunk, final List<Datapoint[]> results,
+		final List<ForkJoinTask<?>> tasks)
+	{
+		final Datapoint[] dps = new Datapoint[chunk.size()];
+		results.add(dps);
+		tasks.add(pool.submit(new Create(chunk, dps, 0, dps.length)));
+	}
+
+	// records one datapoint element, without doing any conversion; r is left at the datapoint end tag
+	private static RecordedElement read(final XmlReader r) throws KNXMLException
+	{
+		if (!Datapoint.TAG_DATAPOINT.equals(r.getLocalName()))
+			throw new KNXMLException("no KNX datapoint element", r);
+		final RecordedElement e = new RecordedElement();
+		record(r, e);
+		return e;
+	}
+
+	private static void record(final XmlReader r, final RecordedElement e) throws KNXMLException
+	{
+		final String tag = r.getLocalName();
+		final String[] attributes = new String[2 * r.getAttributeCount()];
+		for (int i = 0; i < attributes.length / 2; i++) {
+			attributes[2 * i] = r.getAttributeLocalName(i);
+			attributes[2 * i + 1] = r.getAttributeValue(i);
+		}
+		e.add(XmlReader.START_ELEMENT, tag, attributes, r);
+		if (tag.equals(Datapoint.TAG_DATAPOINT) || tag.equals(StateDP.TAG_UPDATING)
+				|| tag.equals(StateDP.TAG_INVALIDATING)) {
+			while (r.nextTag() == XmlReader.START_ELEMENT)
+				record(r, e);
+		}
+		else {
+			final String text = r.getElementText();
+			if (text != null && !text.isEmpty())
+				e.add(XmlReader.CHARACTERS, text, null, r);
+		}
+		e.add(XmlReader.END_ELEMENT, tag, null, r);
+	}
+
+	// recorded start tags, end tags, and element text of one datapoint element, replayed as XML reader
+	private static final class RecordedElement implements XmlReader
+	{
+		private final List<Integer> events = new ArrayList<>();
+		// local name for start and end tags, element text for characters
+		private final List<String> values = new ArrayList<>();
+		// attribute local name and value pairs of start tags
+		private final List<String[]> attributes = new ArrayList<>();
+		private final List<Integer> lines = new ArrayList<>();
+
+		private int cursor;
+
+		void add(final int event, final String value, final String[] attributes, final XmlReader r)
+		{
+			events.add(event);
+			values.add(value);
+			this.attributes.add(attributes);
+			lines.add(r.getLocation().getLineNumber());
+		}
+
+		Datapoint create() throws KNXMLException
+		{
+			final Datapoint dp = Datapoint.create(this);
+			// any content left before the datapoint end tag is not valid for the created datapoint type
+			if (cursor != events.size() - 1)
+				throw new KNXMLException("invalid element", this);
+			return dp;
+		}
+
+		@Override
+		public Object getProperty(final String name)
+		{
+			return null;
+		}
+
+		@Override
+		public int next() throws KNXMLException
+		{
+			if (!hasNext())
+				throw new KNXMLException("no more datapoint content");
+			cursor++;
+			return getEventType();
+		}
+
+		@Override
+		public void require(final int type, final String namespaceURI, final String localName)
+		{}
+
+		@Override
+		public String getElementText() throws KNXMLException
+		{
+			if (getEventType() != START_ELEMENT)
+				throw new KNXMLException("no start element for reading element text");
+			final StringBuilder text = new StringBuilder();
+			while (next() == CHARACTERS)
+				text.append(getText());
+			if (getEventType() != END_ELEMENT)
+				throw new KNXMLException("element text expected", this);
+			return text.toString();
+		}
+
+		@Override
+		public int nextTag() throws KNXMLException
+		{
+			int event = next();
+			while (event == CHARACTERS && isWhiteSpace())
+				event = next();
+			if (event != START_ELEMENT && event != END_ELEMENT)
+				throw new KNXMLException("start or end tag expected", this);
+			return event;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return cursor < events.size();
+		}
+
+		@Override
+		public String getNamespaceURI(final String prefix)
+		{
+			return null;
+		}
+
+		@Override
+		public boolean isWhiteSpace()
+		{
+			return getEventType() == CHARACTERS && getText().isBlank();
+		}
+
+		@Override
+		public String getAttributeValue(final String namespaceURI, final String localName)
+		{
+			final String[] a = attributes();
+			for (int i = 0; i < a.length; i += 2)
+				if (a[i].equals(localName))
+					return a[i + 1];
+			return null;
+		}
+
+		@Override
+		public int getAttributeCount()
+		{
+			return attributes().length / 2;
+		}
+
+		@Override
+		public String getAttributeNamespace(final int index)
+		{
+			return null;
+		}
+
+		@Override
+		public String getAttributeLocalName(final int index)
+		{
+			return attributes()[2 * index];
+		}
+
+		@Override
+		public String getAttributePrefix(final int index)
+		{
+			return null;
+		}
+
+		@Override
+		public String getAttributeType(final int index)
+		{
+			return "CDATA";
+		}
+
+		@Override
+		public String getAttributeValue(final int index)
+		{
+			return attributes()[2 * index + 1];
+		}
+
+		@Override
+		public boolean isAttributeSpecified(final int index)
+		{
+			return true;
+		}
+
+		@Override
+		public int getNamespaceCount()
+		{
+			return 0;
+		}
+
+		@Override
+		public String getNamespacePrefix(final int index)
+		{
+			return null;
+		}
+
+		@Override
+		public String getNamespaceURI(final int index)
+		{
+			return null;
+		}
+
+		@Override
+		public int getEventType()
+		{
+			return hasNext() ? events.get(cursor) : END_DOCUMENT;
+		}
+
+		@Override
+		public String getText()
+		{
+			if (getEventType() != CHARACTERS)
+				throw new IllegalStateException("no XML element text");
+			return values.get(cursor);
+		}
+
+		@Override
+		public char[] getTextCharacters()
+		{
+			return getText().toCharArray();
+		}
+
+		@Override
+		public int getTextStart()
+		{
+			return 0;
+		}
+
+		@Override
+		public int getTextLength()
+		{
+			return getText().length();
+		}
+
+		@Override
+		public String getEncoding()
+		{
+			return null;
+		}
+
+		@Override
+		public StreamLocation getLocation()
+		{
+			return new StreamLocation(lines.get(Math.min(cursor, lines.size() - 1)));
+		}
+
+		@Override
+		public String getLocalName()
+		{
+			final int event = getEventType();
+			return event == START_ELEMENT || event == END_ELEMENT ? values.get(cursor) : null;
+		}
+
+		@Override
+		public String getNamespaceURI()
+		{
+			return null;
+		}
+
+		@Override
+		public String getPrefix()
+		{
+			return null;
+		}
+
+		@Override
+		public String getVersion()
+		{
+			return null;
+		}
+
+		@Override
+		public boolean isStandalone()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean standaloneSet()
+		{
+			return false;
+		}
+
+		@Override
+		public String getCharacterEncodingScheme()
+		{
+			return null;
+		}
+
+		@Override
+		public String getPITarget()
+		{
+			return null;
+		}
+
+		@Override
+		public String getPIData()
+		{
+			return null;
+		}
+
+		@Override
+		public void close()
+		{}
+
+		private String[] attributes()
+		{
+			final String[] a = getEventType() == START_ELEMENT ? attributes.get(cursor) : null;
+			if (a == null)
+				throw new IllegalStateException("no XML start element");
+			return a;
+		}
+	}
+
+	private static final class Create extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final transient List<RecordedElement> elements;
+		private final transient Datapoint[] dps;
+		private final int from;
+		private final int to;
+
+		Create(final List<RecordedElement> elements, final Datapoint[] dps, final int from, final int to)
+		{
+			this.elements = elements;
+			this.dps = dps;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= Threshold) {
+				for (int i = from; i < to; i++)
+					dps[i] = elements.get(i).create();
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			invokeAll(new Create(elements, dps, from, mid), new Create(elements, dps, mid, to));
+		}
+	}
+}
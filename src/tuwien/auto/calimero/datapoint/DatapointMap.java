@@ -1,6 +1,6 @@
 /*
     Calimero 2 - A library for KNX network access
-    Copyright (c) 2006, 2018 B. Malinowsky
+    Copyright (c) 2006, 2020 B. Malinowsky
 
     This program is free software; you can redistribute it and/or modify
     it under the terms of the GNU General Public License as published by
@@ -36,13 +36,20 @@
 
 package tuwien.auto.calimero.datapoint;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.KNXFormatException;
 import tuwien.auto.calimero.KNXIllegalArgumentException;
 import tuwien.auto.calimero.internal.EventListeners;
 import tuwien.auto.calimero.xml.KNXMLException;
@@ -58,6 +65,10 @@ public class DatapointMap<T extends Datapoint> implements DatapointModel<T>, Cha
 {
 	private static final String TAG_DATAPOINTS = "datapoints";
 
+	// binary snapshot format identifier ('KDPM') and version
+	private static final int SnapshotMagic = 0x4b44504d;
+	private static final int SnapshotVersion = 1;
+
 	private final Map<GroupAddress, T> points;
 	private final EventListeners<ChangeListener> listeners = new EventListeners<>();
 
@@ -144,6 +155,18 @@ public class DatapointMap<T extends Datapoint> implements DatapointModel<T>, Cha
 		return Collections.unmodifiableCollection(points.values());
 	}
 
+	/**
+	 * Returns a copy of all datapoints in this map, consistent with respect to concurrent modifications of the map.
+	 *
+	 * @return new list containing the datapoints of this map
+	 */
+	public List<T> copyDatapoints()
+	{
+		synchronized (points) {
+			return new ArrayList<>(points.values());
+		}
+	}
+
 	@Override
 	public boolean contains(final GroupAddress main)
 	{
@@ -178,6 +201,53 @@ public class DatapointMap<T extends Datapoint> implements DatapointModel<T>, Cha
 		}
 	}
 
+	/**
+	 * Loads a datapoint model from XML input into this map, creating the datapoints in parallel using the supplied
+	 * fork-join pool. This method is intended for importing large datapoint models.
+	 * <p>
+	 * Datapoint elements are read in chunks; while the reader proceeds with the next chunk, the datapoints of the
+	 * preceding chunks are created by the pool. This map is not locked during reading. After the input was read
+	 * completely, all loaded datapoints are added at once, and registered change listeners receive a single
+	 * {@link ChangeListener#onDatapointsAdded(DatapointModel, Collection)} notification. If loading fails, this map is
+	 * not modified.
+	 *
+	 * @param r a XML reader
+	 * @param pool the fork-join pool used for creating the datapoints
+	 * @throws KNXMLException on error loading the datapoint model, or on duplicate loaded datapoint
+	 * @see #load(XmlReader)
+	 */
+	public void load(final XmlReader r, final ForkJoinPool pool) throws KNXMLException
+	{
+		if (r.getEventType() != XmlReader.START_ELEMENT)
+			r.nextTag();
+		if (r.getEventType() != XmlReader.START_ELEMENT || !r.getLocalName().equals(TAG_DATAPOINTS))
+			throw new KNXMLException(TAG_DATAPOINTS + " element not found", r);
+
+		final List<Datapoint> loaded = new DatapointLoader(pool, DatapointLoader.ChunkSize).load(r);
+		final Map<GroupAddress, T> m = new HashMap<>(Math.max(2 * loaded.size(), 11));
+		for (final Datapoint dp : loaded) {
+			if (!dpTypeRef.isAssignableFrom(dp.getClass()))
+				throw new KNXMLException("datapoint " + dp.getMainAddress() + " not of type "
+						+ dpTypeRef.getTypeName());
+			@SuppressWarnings("unchecked")
+			final T castDp = (T) dp;
+			if (m.put(dp.getMainAddress(), castDp) != null)
+				throw new KNXMLException("KNX address " + dp.getMainAddress() + " in datapoint \"" + dp.getName()
+						+ "\" already used");
+		}
+		synchronized (points) {
+			for (final T dp : m.values())
+				if (points.containsKey(dp.getMainAddress()))
+					throw new KNXMLException("KNX address " + dp.getMainAddress() + " in datapoint \""
+							+ dp.getName() + "\" already used");
+			points.putAll(m);
+		}
+		if (!m.isEmpty()) {
+			final Collection<T> added = Collections.unmodifiableCollection(m.values());
+			listeners.fire(l -> l.onDatapointsAdded(this, added));
+		}
+	}
+
 	@Override
 	public void save(final XmlWriter w) throws KNXMLException
 	{
@@ -189,6 +259,69 @@ public class DatapointMap<T extends Datapoint> implements DatapointModel<T>, Cha
 		w.writeEndElement();
 	}
 
+	/**
+	 * Loads datapoints from a binary snapshot into this map, the snapshot is expected to be created by
+	 * {@link #save(DataOutput)}. Compared to loading from XML, no parsing or string conversions of addresses and
+	 * numbers are necessary; this allows a fast warm restart of large datapoint models.
+	 * <p>
+	 * Like with {@link #load(XmlReader, ForkJoinPool)}, all loaded datapoints are added at once, and registered change
+	 * listeners receive a single {@link ChangeListener#onDatapointsAdded(DatapointModel, Collection)} notification. If
+	 * loading fails, this map is not modified.
+	 *
+	 * @param in data input positioned at the start of the snapshot
+	 * @throws IOException on I/O error reading the snapshot
+	 * @throws KNXFormatException on unknown snapshot format or version, on duplicate datapoint, or if a datapoint is
+	 *         not of the type supported by this map
+	 */
+	public void load(final DataInput in) throws IOException, KNXFormatException
+	{
+		final int magic = in.readInt();
+		if (magic != SnapshotMagic)
+			throw new KNXFormatException("no datapoint snapshot", magic);
+		final int version = in.readUnsignedShort();
+		if (version != SnapshotVersion)
+			throw new KNXFormatException("unsupported datapoint snapshot version", version);
+
+		final int size = in.readInt();
+		final Map<GroupAddress, T> m = new HashMap<>(Math.max(2 * size, 11));
+		for (int i = 0; i < size; i++) {
+			final Datapoint dp = Datapoint.create(in);
+			if (!dpTypeRef.isAssignableFrom(dp.getClass()))
+				throw new KNXFormatException("datapoint not of type " + dpTypeRef.getTypeName(), dp.toString());
+			@SuppressWarnings("unchecked")
+			final T castDp = (T) dp;
+			if (m.put(dp.getMainAddress(), castDp) != null)
+				throw new KNXFormatException("duplicate datapoint", dp.getMainAddress().toString());
+		}
+		synchronized (points) {
+			for (final GroupAddress main : m.keySet())
+				if (points.containsKey(main))
+					throw new KNXFormatException("duplicate datapoint", main.toString());
+			points.putAll(m);
+		}
+		if (!m.isEmpty()) {
+			final Collection<T> added = Collections.unmodifiableCollection(m.values());
+			listeners.fire(l -> l.onDatapointsAdded(this, added));
+		}
+	}
+
+	/**
+	 * Saves all datapoints of this map in a compact binary snapshot format, which can be loaded using
+	 * {@link #load(DataInput)}. The snapshot contains every information also saved in XML format.
+	 *
+	 * @param out data output
+	 * @throws IOException on I/O error writing the snapshot
+	 */
+	public void save(final DataOutput out) throws IOException
+	{
+		final List<T> l = copyDatapoints();
+		out.writeInt(SnapshotMagic);
+		out.writeShort(SnapshotVersion);
+		out.writeInt(l.size());
+		for (final T dp : l)
+			dp.save(out);
+	}
+
 	@Override
 	public void addChangeListener(final ChangeListener l)
 	{
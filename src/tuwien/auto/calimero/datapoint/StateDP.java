@@ -1,6 +1,6 @@
 /*
     Calimero 2 - A library for KNX network access
-    Copyright (c) 2006, 2019 B. Malinowsky
+    Copyright (c) 2006, 2020 B. Malinowsky
 
     This program is free software; you can redistribute it and/or modify
     it under the terms of the GNU General Public License as published by
@@ -36,6 +36,9 @@
 
 package tuwien.auto.calimero.datapoint;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -68,8 +71,8 @@ public class StateDP extends Datapoint
 {
 	private static final String TAG_EXPIRATION = "expiration";
 	private static final String ATTR_TIMEOUT = "timeout";
-	private static final String TAG_UPDATING = "updatingAddresses";
-	private static final String TAG_INVALIDATING = "invalidatingAddresses";
+	static final String TAG_UPDATING = "updatingAddresses";
+	static final String TAG_INVALIDATING = "invalidatingAddresses";
 
 	// list of group addresses, whose .ind messages invalidate the data point
 	private final List<GroupAddress> invalidating;
@@ -318,6 +321,44 @@ public class StateDP extends Datapoint
 		writeList(w, false);
 	}
 
+	@Override
+	void doLoad(final DataInput in) throws IOException
+	{
+		timeout = in.readInt();
+		readList(in, updating);
+		readList(in, invalidating);
+		for (int i = in.readUnsignedShort(); i > 0; i--)
+			locations.add(in.readUTF());
+	}
+
+	@Override
+	void doSave(final DataOutput out) throws IOException
+	{
+		out.writeInt(timeout);
+		writeList(out, updating);
+		writeList(out, invalidating);
+		synchronized (locations) {
+			out.writeShort(locations.size());
+			for (final String location : locations)
+				out.writeUTF(location);
+		}
+	}
+
+	private static void readList(final DataInput in, final List<GroupAddress> list) throws IOException
+	{
+		for (int i = in.readUnsignedShort(); i > 0; i--)
+			list.add(new GroupAddress(in.readUnsignedShort()));
+	}
+
+	private static void writeList(final DataOutput out, final List<GroupAddress> list) throws IOException
+	{
+		synchronized (list) {
+			out.writeShort(list.size());
+			for (final GroupAddress address : list)
+				out.writeShort(address.getRawAddress());
+		}
+	}
+
 	private void writeList(final XmlWriter w, final boolean updatingList) {
 		final var list = updatingList ? updating : invalidating;
 		synchronized (list) {
@@ -256,7 +256,7 @@ public class SecureApplicationLayer implements AutoCloseable {
 		final var surrogate = surrogate(group);
 		final var secCtrl = SecurityControl.of(DataSecurity.AuthConf, true);
 		final var secureApdu = secureData(address(), surrogate, apdu, secCtrl).get();
-		logger.trace("{}->{} GO diagnostics {} {}", address(), surrogate, service, DataUnitBuilder.toHex(value, " "));
+		logger.trace("{}->{} GO diagnostics {} {}", address(), surrogate, service, DataUnitBuilder.hex(value, " "));
 		send(surrogate, secureApdu);
 
 		final var future = new CompletableFuture<ReturnCode>().orTimeout(3, TimeUnit.SECONDS);
@@ -54,10 +54,8 @@ public final class Security {
 	private Security() {}
 
 	public static void useKeyring(final Keyring keyring, final char[] password) {
-		final var devices = keyring.devices();
-		devices.forEach((addr, device) -> deviceToolKeys.put(addr, keyring.decryptKey(device.toolKey(), password)));
-
-		keyring.groups().forEach((addr, key) -> groupKeys.put(addr, keyring.decryptKey(key, password)));
+		deviceToolKeys.putAll(keyring.decryptToolKeys(password));
+		groupKeys.putAll(keyring.decryptGroupKeys(password));
 
 		final var interfaces = keyring.interfaces().values();
 		final var sendersByGroupStream = interfaces.stream().flatMap(List::stream).map(Keyring.Interface::groups)
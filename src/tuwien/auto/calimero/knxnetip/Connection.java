@@ -36,12 +36,12 @@
 
 package tuwien.auto.calimero.knxnetip;
 
+import static tuwien.auto.calimero.DataUnitBuilder.hex;
 import static tuwien.auto.calimero.DataUnitBuilder.toHex;
 import static tuwien.auto.calimero.knxnetip.SecureConnection.secureSymbol;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InterruptedIOException;
 import java.math.BigInteger;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -51,6 +51,9 @@ import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyPair;
@@ -105,6 +108,7 @@ public final class Connection implements Closeable {
 	private volatile InetSocketAddress localEndpoint;
 	// ??? we currently cannot reuse a connection once it got closed
 	private final InetSocketAddress server;
+	private final SocketChannel channel;
 	private final Socket socket;
 
 	private final Logger logger;
@@ -180,6 +184,7 @@ public final class Connection implements Closeable {
 		private volatile SessionState sessionState = SessionState.Idle;
 		private volatile int sessionStatus = Setup;
 		Key secretKey;
+		private SecureWrapperCodec codec;
 
 		private final AtomicLong sendSeq = new AtomicLong();
 		private final AtomicLong rcvSeq = new AtomicLong();
@@ -377,14 +382,15 @@ public final class Connection implements Closeable {
 				}
 			}
 			else if (svc == SecureWrapper) {
-				final Object[] fields = unwrap(h, data, offset);
+				final var wrapper = unwrap(h, data, offset);
 
-				final byte[] packet = (byte[]) fields[1];
-				final var plainHeader = new KNXnetIPHeader(packet, 0);
+				final byte[] packet = wrapper.buffer();
+				final var plainHeader = new KNXnetIPHeader(packet, wrapper.offset());
 				final var hdrLen = plainHeader.getStructLength();
+				final var bodyOffset = wrapper.offset() + hdrLen;
 
 				if (plainHeader.getServiceType() == SecureSessionStatus) {
-					sessionStatus = SecureConnection.newChannelStatus(plainHeader, packet, hdrLen);
+					sessionStatus = SecureConnection.newChannelStatus(plainHeader, packet, bodyOffset);
 
 					if (sessionState == SessionState.Unauthenticated) {
 						if (sessionStatus == AuthSuccess)
@@ -402,7 +408,7 @@ public final class Connection implements Closeable {
 					}
 				}
 				else
-					dispatchToConnection(plainHeader, packet, hdrLen, plainHeader.getTotalLength() - hdrLen);
+					dispatchToConnection(plainHeader, packet, bodyOffset, plainHeader.getTotalLength() - hdrLen);
 			}
 			else
 				logger.warn("received unsupported secure service type 0x{} - ignore", Integer.toHexString(svc));
@@ -452,30 +458,31 @@ public final class Connection implements Closeable {
 			}
 		}
 
-		private byte[] wrap(final byte[] plainPacket) {
-			return SecureConnection.newSecurePacket(sessionId, nextSendSeq(), sno, 0, plainPacket, secretKey);
+		byte[] wrap(final byte[] plainPacket) {
+			return codec.wrap(sessionId, nextSendSeq(), sno, 0, plainPacket);
 		}
 
-		private Object[] unwrap(final KNXnetIPHeader h, final byte[] data, final int offset) throws KNXFormatException {
-			final Object[] fields = SecureConnection.unwrap(h, data, offset, secretKey);
+		// decrypts the contained packet in place
+		private SecureWrapperCodec.Wrapper unwrap(final KNXnetIPHeader h, final byte[] data, final int offset)
+			throws KNXFormatException {
+			final var wrapper = codec.unwrap(h, data, offset);
 
-			final int sid = (int) fields[0];
+			final int sid = wrapper.sessionId();
 			if (sid != sessionId)
 				throw new KnxSecureException("secure session mismatch: received ID " + sid + ", expected " + sessionId);
 
-			final long seq = (long) fields[1];
+			final long seq = wrapper.sequence();
 			if (seq < rcvSeq.get())
 				throw new KnxSecureException("received secure packet with sequence " + seq + " < expected " + rcvSeq);
 			rcvSeq.incrementAndGet();
 
-			final long snLong = (long) fields[2];
-			final byte[] sn = ByteBuffer.allocate(6).putShort((short) (snLong >> 32)).putInt((int) snLong).array();
-			final int tag = (int) fields[3];
+			final int tag = wrapper.tag();
 			if (tag != 0)
 				throw new KnxSecureException("expected message tag 0, received " + tag);
-			final byte[] knxipPacket = (byte[]) fields[4];
-			logger.trace("received (seq {} S/N {}) {}", seq, toHex(sn, ""), toHex(knxipPacket, " "));
-			return new Object[] { sn, fields[4] };
+			if (logger.isTraceEnabled())
+				logger.trace("received (seq {} S/N {}) {}", seq, toHex(wrapper.serialNumberBytes(), ""),
+						toHex(wrapper.packet(), " "));
+			return wrapper;
 		}
 
 		private byte[] parseSessionResponse(final KNXnetIPHeader h, final byte[] data, final int offset,
@@ -499,6 +506,7 @@ public final class Connection implements Closeable {
 			final byte[] sessionKey = SecureConnection.sessionKey(sharedSecret);
 			synchronized (this) {
 				secretKey = SecureConnection.createSecretKey(sessionKey);
+				codec = new SecureWrapperCodec(secretKey);
 			}
 
 			conn.sessions.put(sessionId, this);
@@ -558,12 +566,12 @@ public final class Connection implements Closeable {
 			packet.put(new KNXnetIPHeader(SecureSessionStatus, 2).toByteArray());
 			packet.put((byte) status);
 			final int msgTag = 0;
-			return SecureConnection.newSecurePacket(sessionId, seq, sno, msgTag, packet.array(), secretKey);
+			return codec.wrap(sessionId, seq, sno, msgTag, packet.array());
 		}
 
 		private byte[] cbcMacSimple(final Key secretKey, final byte[] data, final int offset, final int length) {
 			final byte[] log = Arrays.copyOfRange(data, offset, offset + length);
-			logger.trace("authenticating (length {}): {}", length, toHex(log, " "));
+			logger.trace("authenticating (length {}): {}", length, hex(log, " "));
 
 			try {
 				final var cipher = Cipher.getInstance("AES/CBC/NoPadding");
@@ -613,7 +621,13 @@ public final class Connection implements Closeable {
 
 	private Connection(final InetSocketAddress server) {
 		this.server = server;
-		socket = new Socket();
+		try {
+			channel = SocketChannel.open();
+		}
+		catch (final IOException e) {
+			throw new KnxRuntimeException("opening TCP socket channel", e);
+		}
+		socket = channel.socket();
 		logger = LoggerFactory.getLogger("calimero.knxnetip.tcp " + addressPort(server));
 	}
 
@@ -682,9 +696,11 @@ public final class Connection implements Closeable {
 	Socket socket() { return socket; }
 
 	void send(final byte[] data) throws IOException {
-		final var os = socket.getOutputStream();
-		os.write(data);
-		os.flush();
+		final var buffer = ByteBuffer.wrap(data);
+		synchronized (channel) {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
 	}
 
 	void registerConnectRequest(final ClientConnection c) { ongoingConnectRequests.add(c); }
@@ -714,53 +730,29 @@ public final class Connection implements Closeable {
 	}
 
 	private void runReceiveLoop() {
-		final int rcvBufferSize = 512;
-		final byte[] data = new byte[rcvBufferSize];
-		int offset = 0;
+		final var reader = new TcpFrameReader(512);
+		final TcpFrameReader.Handler handler = (header, data, offset, length) -> {
+			if (header.isSecure())
+				dispatchToSession(header, data, offset, length);
+			else
+				dispatchToConnection(header, data, offset);
+		};
 
 		try {
-			final var in = socket.getInputStream();
-			while (!socket.isClosed()) {
-				if (offset >= 6) {
-					try {
-						final var header = new KNXnetIPHeader(data, 0);
-						if (header.getTotalLength() <= offset) {
-							final int length = header.getTotalLength() - header.getStructLength();
-							final int leftover = offset - header.getTotalLength();
-							offset = leftover;
-
-							if (header.isSecure())
-								dispatchToSession(header, data, header.getStructLength(), length);
-							else
-								dispatchToConnection(header, data, header.getStructLength());
-
-							if (leftover > 0) {
-								System.arraycopy(data, header.getTotalLength(), data, 0, leftover);
-								continue;
-							}
-						}
-						// skip bodies which do not fit into rcv buffer
-						else if (header.getTotalLength() > rcvBufferSize) {
-							int skip = header.getTotalLength() - offset;
-							while (skip-- > 0 && in.read() != -1);
-							offset = 0;
-						}
-					}
-					catch (KNXFormatException | KnxSecureException e) {
-						logger.warn("received invalid frame", e);
-						offset = 0;
-					}
+			boolean open = true;
+			while (open && channel.isOpen()) {
+				try {
+					open = reader.read(channel, handler);
+				}
+				catch (KNXFormatException | KnxSecureException e) {
+					logger.warn("received invalid frame", e);
 				}
-
-				final int read = in.read(data, offset, data.length - offset);
-				if (read == -1)
-					return;
-				offset += read;
 			}
 		}
-		catch (final InterruptedIOException e) {
+		catch (final ClosedByInterruptException e) {
 			Thread.currentThread().interrupt();
 		}
+		catch (final ClosedChannelException ignore) {}
 		catch (IOException | RuntimeException e) {
 			logger.error("receiver communication failure", e);
 		}
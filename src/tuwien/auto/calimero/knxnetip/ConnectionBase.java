@@ -45,7 +45,6 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.util.Arrays;
 
 import org.slf4j.Logger;
 
@@ -226,7 +225,7 @@ public abstract class ConnectionBase implements KNXnetIPConnection
 				for (; attempt < maxSendAttempts; ++attempt) {
 					if (logger.isTraceEnabled())
 						logger.trace("sending cEMI frame seq {}, {}, attempt {} (channel {}) {}", getSeqSend(), mode,
-								(attempt + 1), channelId, DataUnitBuilder.toHex(buf, " "));
+								(attempt + 1), channelId, DataUnitBuilder.hex(buf, " "));
 
 					send(buf, dataEndpt);
 					// shortcut for routing, don't switch into 'ack-pending'
@@ -525,9 +524,8 @@ public abstract class ConnectionBase implements KNXnetIPConnection
 			// check if at least the connection header of the service request
 			// is correct and try to get its values
 			final ServiceRequest req = PacketHelper.getEmptyServiceRequest(h, data, offset);
-			logger.warn("received request with unknown cEMI data " + DataUnitBuilder.toHex(
-					Arrays.copyOfRange(data, offset + 4, offset + h.getTotalLength() - h.getStructLength()),
-					" "), e);
+			logger.warn("received request with unknown cEMI data {}", DataUnitBuilder.hex(data, offset + 4,
+					h.getTotalLength() - h.getStructLength() - 4, " "), e);
 			return req;
 		}
 	}
@@ -0,0 +1,229 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+package tuwien.auto.calimero.knxnetip;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.knxnetip.Discoverer.Result;
+import tuwien.auto.calimero.knxnetip.servicetype.DescriptionResponse;
+
+/**
+ * Cache of KNXnet/IP device descriptions, keyed by server control endpoint.
+ * <p>
+ * A cached description is returned as long as its age is within the time-to-live; otherwise, the description is
+ * requested again from the server. The DIBs of a refreshed description are only parsed if they differ from the cached
+ * description, an unchanged description keeps its already parsed response. Concurrent requests for the same server
+ * share a single description request, and descriptions of multiple servers are fetched in parallel, with at most
+ * <code>maxConcurrent</code> outstanding description requests.
+ */
+public final class DescriptionCache implements AutoCloseable {
+
+	private static final class Entry {
+		final Result<DescriptionResponse> result;
+		final byte[] dibs;
+		final long fetched;
+
+		Entry(final Result<DescriptionResponse> result, final byte[] dibs, final long fetched) {
+			this.result = result;
+			this.dibs = dibs;
+			this.fetched = fetched;
+		}
+	}
+
+	private final Discoverer discoverer;
+	private final long ttl;
+	private final ExecutorService executor;
+
+	private final Map<InetSocketAddress, Entry> cache = new ConcurrentHashMap<>();
+	private final Map<InetSocketAddress, CompletableFuture<Result<DescriptionResponse>>> pending =
+			new ConcurrentHashMap<>();
+	private volatile boolean closed;
+
+	/**
+	 * Creates a new description cache.
+	 *
+	 * @param discoverer discoverer used for description requests
+	 * @param timeToLive maximum age of a cached description before it gets refreshed
+	 * @param maxConcurrent maximum number of concurrent description requests, <code>maxConcurrent &gt; 0</code>
+	 */
+	public DescriptionCache(final Discoverer discoverer, final Duration timeToLive, final int maxConcurrent) {
+		if (timeToLive.isNegative())
+			throw new KNXIllegalArgumentException("time-to-live " + timeToLive + " has to be >= 0");
+		if (maxConcurrent < 1)
+			throw new KNXIllegalArgumentException("maximum concurrent requests " + maxConcurrent + " < 1");
+		this.discoverer = discoverer;
+		ttl = timeToLive.toNanos();
+		executor = Executors.newFixedThreadPool(maxConcurrent, runnable -> {
+			final Thread t = new Thread(runnable, "Description cache");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Returns the description of <code>server</code>, either from the cache if it is within its time-to-live, or by
+	 * sending a description request and waiting at most <code>timeout</code> seconds for the response.
+	 *
+	 * @param server server control endpoint
+	 * @param timeout time window in seconds to wait for the description response, see
+	 *        {@link Discoverer#getDescription(InetSocketAddress, int)}
+	 * @return the result containing the description response
+	 * @throws KNXConnectionClosedException if this cache got closed before the description was available
+	 * @throws KNXException on failure requesting the description, see
+	 *         {@link Discoverer#getDescription(InetSocketAddress, int)}
+	 * @throws InterruptedException on interrupted thread
+	 */
+	public Result<DescriptionResponse> get(final InetSocketAddress server, final int timeout)
+			throws KNXException, InterruptedException {
+		try {
+			return getAsync(server, timeout).get();
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof KNXException)
+				throw (KNXException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new KNXException("description of " + Connection.addressPort(server), cause);
+		}
+	}
+
+	/**
+	 * Returns the descriptions of a set of servers, see {@link #get(InetSocketAddress, int)}. Descriptions which are
+	 * not cached or have expired are requested in parallel.
+	 *
+	 * @param servers server control endpoints
+	 * @param timeout time window in seconds to wait for each description response
+	 * @return map of server control endpoint to the future of its description, in iteration order of
+	 *         <code>servers</code>; a future completes exceptionally with the {@link KNXException} of a failed
+	 *         description request, or with a {@link KNXConnectionClosedException} if this cache got closed before the
+	 *         description was available
+	 */
+	public Map<InetSocketAddress, CompletableFuture<Result<DescriptionResponse>>> getAll(
+			final Collection<InetSocketAddress> servers, final int timeout) {
+		final Map<InetSocketAddress, CompletableFuture<Result<DescriptionResponse>>> descriptions =
+				new LinkedHashMap<>();
+		for (final InetSocketAddress server : servers)
+			descriptions.put(server, getAsync(server, timeout));
+		return descriptions;
+	}
+
+	/**
+	 * Removes the cached description of <code>server</code>, the next access will request its description.
+	 *
+	 * @param server server control endpoint
+	 */
+	public void invalidate(final InetSocketAddress server) { cache.remove(server); }
+
+	/**
+	 * Removes all cached descriptions.
+	 */
+	public void clear() { cache.clear(); }
+
+	/**
+	 * Stops all description requests; pending requests complete exceptionally with a
+	 * {@link KNXConnectionClosedException}. Cached descriptions are still available, any other description is not
+	 * requested anymore.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		executor.shutdownNow();
+		pending.values().forEach(cf -> cf.completeExceptionally(closedException()));
+	}
+
+	private CompletableFuture<Result<DescriptionResponse>> getAsync(final InetSocketAddress server,
+			final int timeout) {
+		final Entry entry = cache.get(server);
+		if (entry != null && System.nanoTime() - entry.fetched <= ttl)
+			return CompletableFuture.completedFuture(entry.result);
+
+		if (closed)
+			return CompletableFuture.failedFuture(closedException());
+		final var cf = pending.computeIfAbsent(server, __ -> fetchAsync(server, timeout));
+		cf.whenComplete((result, t) -> pending.remove(server, cf));
+		// close might have missed a request added concurrently
+		if (closed)
+			cf.completeExceptionally(closedException());
+		return cf;
+	}
+
+	private CompletableFuture<Result<DescriptionResponse>> fetchAsync(final InetSocketAddress server,
+			final int timeout) {
+		try {
+			return CompletableFuture.supplyAsync(() -> fetch(server, timeout), executor);
+		}
+		catch (final RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(closedException());
+		}
+	}
+
+	private static KNXConnectionClosedException closedException() {
+		return new KNXConnectionClosedException("description cache closed");
+	}
+
+	private Result<DescriptionResponse> fetch(final InetSocketAddress server, final int timeout) {
+		try {
+			final long now = System.nanoTime();
+			final Result<byte[]> raw = discoverer.fetchDescription(server, timeout);
+			final Entry cached = cache.get(server);
+			final byte[] dibs = raw.getResponse();
+			// only parse DIBs if the description changed
+			final DescriptionResponse response = cached != null && Arrays.equals(cached.dibs, dibs)
+					? cached.result.getResponse() : Discoverer.parseDescription(server, dibs);
+			final var result = new Result<>(response, raw.getNetworkInterface(), raw.localEndpoint(), server);
+			cache.put(server, new Entry(result, dibs, now));
+			return result;
+		}
+		catch (final KNXException e) {
+			throw new CompletionException(e);
+		}
+	}
+}
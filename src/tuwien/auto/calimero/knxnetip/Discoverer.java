@@ -609,6 +609,14 @@ public class Discoverer
 	 */
 	public Result<DescriptionResponse> getDescription(final InetSocketAddress server,
 		final int timeout) throws KNXException
+	{
+		final Result<byte[]> raw = fetchDescription(server, timeout);
+		return new Result<>(parseDescription(server, raw.getResponse()), raw.getNetworkInterface(),
+				raw.localEndpoint(), server);
+	}
+
+	// returns the DIBs of the description response received from server, without parsing them
+	Result<byte[]> fetchDescription(final InetSocketAddress server, final int timeout) throws KNXException
 	{
 		if (timeout <= 0 || timeout >= Integer.MAX_VALUE / 1000)
 			throw new KNXIllegalArgumentException("timeout out of range");
@@ -620,11 +628,9 @@ public class Discoverer
 			s.send(new DatagramPacket(buf, buf.length, server));
 			final ReceiverLoop looper = new ReceiverLoop(s, 512, timeout * 1000, server);
 			looper.loop();
-			if (looper.thrown != null)
-				throw looper.thrown;
-			if (looper.res != null)
-				return new Result<>(looper.res, NetworkInterface.getByInetAddress(host(server.getAddress())),
-						local, server);
+			if (looper.description != null)
+				return new Result<>(looper.description,
+						NetworkInterface.getByInetAddress(host(server.getAddress())), local, server);
 		}
 		catch (final IOException e) {
 			final String msg = "network failure on getting description from " + server;
@@ -639,6 +645,18 @@ public class Discoverer
 		throw new KNXTimeoutException(msg);
 	}
 
+	static DescriptionResponse parseDescription(final InetSocketAddress server, final byte[] dibs)
+		throws KNXInvalidResponseException
+	{
+		try {
+			return new DescriptionResponse(dibs, 0, dibs.length);
+		}
+		catch (final KNXFormatException e) {
+			logger.error("invalid description response", e);
+			throw new KNXInvalidResponseException("description response from " + server, e);
+		}
+	}
+
 	/**
 	 * Starts a search sending a search request message.
 	 *
@@ -815,9 +833,8 @@ public class Discoverer
 		private final InetAddress addrOnNetif;
 
 		// used for description looper
-		private DescriptionResponse res;
+		private byte[] description;
 		private SearchResponse sr;
-		private KNXInvalidResponseException thrown;
 		private final String id;
 
 		// use for search looper
@@ -914,16 +931,9 @@ public class Discoverer
 				}
 				else if (!multicast && svc == KNXnetIPHeader.DESCRIPTION_RES) {
 					if (source.equals(server)) {
-						try {
-							res = new DescriptionResponse(data, offset + h.getStructLength(), bodyLen);
-						}
-						catch (final KNXFormatException e) {
-							logger.error("invalid description response", e);
-							thrown = new KNXInvalidResponseException("description response from " + source, e);
-						}
-						finally {
-							quit();
-						}
+						final int body = offset + h.getStructLength();
+						description = Arrays.copyOfRange(data, body, body + bodyLen);
+						quit();
 					}
 				}
 				else if (!multicast && svc == KNXnetIPHeader.SearchResponse) {
@@ -932,7 +942,7 @@ public class Discoverer
 							sr = SearchResponse.from(h, data, offset + h.getStructLength());
 						}
 						catch (final KNXFormatException e) {
-							thrown = new KNXInvalidResponseException("search response from " + source, e);
+							logger.error("invalid search response from {}", source, e);
 						}
 						finally {
 							quit();
@@ -0,0 +1,449 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+package tuwien.auto.calimero.knxnetip;
+
+import static tuwien.auto.calimero.knxnetip.util.Srp.withDeviceDescription;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.knxnetip.Discoverer.Result;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchResponse;
+import tuwien.auto.calimero.knxnetip.util.DIB;
+import tuwien.auto.calimero.log.LogService;
+
+/**
+ * Long-lived KNXnet/IP discovery, periodically searching for servers on a set of network interfaces and notifying
+ * listeners about added, removed, and changed servers.
+ * <p>
+ * The discovery service uses one datagram channel per network interface, which is kept open and reused for all
+ * searches; a single thread sends the search requests and receives the search responses of all channels using a
+ * selector. Servers answer with unicast responses to the local endpoint of the channel.<br>
+ * Each search round collects the responses received within the response window, with one result per server and
+ * network interface (an extended search response takes precedence over a standard search response). At the end of
+ * the response window, the collected results are compared with the known servers. A known server is removed if it
+ * did not respond in two consecutive search rounds.
+ * <p>
+ * Listeners are notified by the discovery thread, and should not block.
+ */
+public final class DiscoveryService implements AutoCloseable {
+
+	/**
+	 * Listener for changes of the servers found by a discovery service. All methods have an empty default
+	 * implementation.
+	 */
+	public interface Listener {
+		/**
+		 * A new server was found.
+		 *
+		 * @param server search result of the server
+		 */
+		default void added(final Result<SearchResponse> server) {}
+
+		/**
+		 * A known server did not respond anymore.
+		 *
+		 * @param server last search result of the server
+		 */
+		default void removed(final Result<SearchResponse> server) {}
+
+		/**
+		 * A known server responded with a changed search response.
+		 *
+		 * @param previous previous search result of the server
+		 * @param current current search result of the server
+		 */
+		default void changed(final Result<SearchResponse> previous, final Result<SearchResponse> current) {}
+	}
+
+	private static final Logger logger = LogService.getLogger("calimero.knxnetip.DiscoveryService");
+
+	private static final Duration DefaultResponseWindow = Duration.ofSeconds(3);
+	private static final int MissedRounds = 2;
+	private static final int ReceiveBufferSize = 2048;
+
+	// channel for one network interface
+	private static final class Interface {
+		final NetworkInterface nif;
+		final DatagramChannel channel;
+		final InetSocketAddress local;
+		final byte[] extendedSearch;
+		final byte[] search;
+
+		Interface(final NetworkInterface nif, final DatagramChannel channel, final InetSocketAddress local) {
+			this.nif = nif;
+			this.channel = channel;
+			this.local = local;
+			extendedSearch = PacketHelper.toPacket(new SearchRequest(local, withDeviceDescription(DIB.DEVICE_INFO,
+					DIB.SUPP_SVC_FAMILIES, DIB.AdditionalDeviceInfo, DIB.SecureServiceFamilies, DIB.TunnelingInfo)));
+			search = PacketHelper.toPacket(new SearchRequest(local));
+		}
+	}
+
+	// identifies a server by the network interface and the address it responded from
+	private static final class Key {
+		final NetworkInterface nif;
+		final InetSocketAddress remote;
+
+		Key(final NetworkInterface nif, final InetSocketAddress remote) {
+			this.nif = nif;
+			this.remote = remote;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return nif.equals(other.nif) && remote.equals(other.remote);
+		}
+
+		@Override
+		public int hashCode() { return Objects.hash(nif, remote); }
+	}
+
+	private static final class Received {
+		final Result<SearchResponse> result;
+		final boolean extended;
+
+		Received(final Result<SearchResponse> result, final boolean extended) {
+			this.result = result;
+			this.extended = extended;
+		}
+	}
+
+	private static final class Known {
+		final Result<SearchResponse> result;
+		final int missed;
+
+		Known(final Result<SearchResponse> result, final int missed) {
+			this.result = result;
+			this.missed = missed;
+		}
+	}
+
+	private final Duration interval;
+	private final Duration responseWindow;
+	private final InetSocketAddress searchDestination;
+
+	private final Selector selector;
+	private final List<Interface> interfaces = new ArrayList<>();
+	private final Thread thread;
+	private volatile boolean closed;
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+	private final Map<Key, Known> known = new ConcurrentHashMap<>();
+	// accessed by discovery thread only
+	private final Map<Key, Received> round = new HashMap<>();
+	private final ByteBuffer buffer = ByteBuffer.allocate(ReceiveBufferSize);
+
+	/**
+	 * Creates a new discovery service searching on the supplied network interfaces, using a response window of
+	 * 3 seconds (or the search interval, if shorter). Searching starts with {@link #start()}.
+	 *
+	 * @param interval interval between the start of two search rounds
+	 * @param netifs network interfaces to search on, or an empty array to search on all network interfaces which
+	 *        are up and have an IPv4 address assigned
+	 * @throws KNXException on error opening a datagram channel for a network interface
+	 */
+	public DiscoveryService(final Duration interval, final NetworkInterface... netifs) throws KNXException {
+		this(interval, min(DefaultResponseWindow, interval),
+				new InetSocketAddress(Discoverer.SYSTEM_SETUP_MULTICAST, Discoverer.SEARCH_PORT), netifs);
+	}
+
+	DiscoveryService(final Duration interval, final Duration responseWindow, final InetSocketAddress searchDestination,
+			final NetworkInterface... netifs) throws KNXException {
+		if (interval.isNegative() || interval.isZero())
+			throw new KNXIllegalArgumentException("search interval " + interval + " has to be > 0");
+		if (responseWindow.isNegative() || responseWindow.isZero() || responseWindow.compareTo(interval) > 0)
+			throw new KNXIllegalArgumentException("response window " + responseWindow + " not in range (0, interval]");
+		this.interval = interval;
+		this.responseWindow = responseWindow;
+		this.searchDestination = searchDestination;
+
+		try {
+			selector = Selector.open();
+			final List<NetworkInterface> nifs = netifs.length > 0 ? List.of(netifs)
+					: NetworkInterface.networkInterfaces().collect(Collectors.toList());
+			for (final NetworkInterface nif : nifs) {
+				final var addr = nif.inetAddresses().filter(Inet4Address.class::isInstance).findFirst();
+				if (addr.isPresent() && nif.isUp())
+					interfaces.add(open(nif, addr.get()));
+				else if (netifs.length > 0)
+					throw new KNXException("network interface " + nif.getName() + " is down or has no IPv4 address");
+			}
+		}
+		catch (final IOException e) {
+			closeChannels();
+			throw new KNXException("opening discovery channels", e);
+		}
+		catch (final KNXException e) {
+			closeChannels();
+			throw e;
+		}
+		if (interfaces.isEmpty())
+			throw new KNXException("no network interface available for discovery");
+
+		thread = new Thread(this::run, "KNXnet/IP discovery service");
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts searching, with the first search round started immediately.
+	 */
+	public void start() {
+		if (closed)
+			throw new IllegalStateException("discovery service is closed");
+		thread.start();
+	}
+
+	public void addListener(final Listener l) { listeners.add(l); }
+
+	public void removeListener(final Listener l) { listeners.remove(l); }
+
+	/**
+	 * Returns the servers currently known to this discovery service.
+	 *
+	 * @return list of search results, one for each server and network interface
+	 */
+	public List<Result<SearchResponse>> servers() {
+		return known.values().stream().map(k -> k.result).collect(Collectors.toList());
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		selector.wakeup();
+		if (!thread.isAlive())
+			closeChannels();
+	}
+
+	@Override
+	public String toString() {
+		return interfaces.stream().map(i -> i.nif.getName() + " " + i.local).collect(
+				Collectors.joining(", ", "discovery on ", closed ? " (closed)" : ""));
+	}
+
+	private Interface open(final NetworkInterface nif, final InetAddress addr) throws IOException {
+		final var channel = DatagramChannel.open(StandardProtocolFamily.INET);
+		try {
+			channel.bind(new InetSocketAddress(addr, 0));
+			try {
+				channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nif);
+				// send out beyond local network
+				channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, 64);
+			}
+			catch (final SocketException e) {
+				logger.warn("setting multicast options on {} failed, using system default ({})", nif.getName(),
+						e.getMessage());
+			}
+			channel.configureBlocking(false);
+			final var local = new InetSocketAddress(addr, ((InetSocketAddress) channel.getLocalAddress()).getPort());
+			final var i = new Interface(nif, channel, local);
+			channel.register(selector, SelectionKey.OP_READ, i);
+			logger.debug("discovery on {} {}", nif.getName(), local);
+			return i;
+		}
+		catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void run() {
+		final long intervalNanos = interval.toNanos();
+		long nextSearch = System.nanoTime();
+		long endOfWindow = 0;
+		boolean inWindow = false;
+		try {
+			while (!closed) {
+				final long now = System.nanoTime();
+				if (inWindow && now - endOfWindow >= 0) {
+					inWindow = false;
+					endOfRound();
+				}
+				if (now - nextSearch >= 0) {
+					search();
+					endOfWindow = now + responseWindow.toNanos();
+					inWindow = true;
+					nextSearch += intervalNanos;
+					// skip missed searches, e.g., after system suspend
+					if (now - nextSearch >= 0)
+						nextSearch = now + intervalNanos;
+				}
+
+				final long next = inWindow && endOfWindow - nextSearch < 0 ? endOfWindow : nextSearch;
+				final long timeout = TimeUnit.NANOSECONDS.toMillis(next - System.nanoTime());
+				selector.select(key -> receive((Interface) key.attachment()), Math.max(1, timeout));
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			logger.error("discovery service stopped", e);
+		}
+		finally {
+			closed = true;
+			closeChannels();
+		}
+	}
+
+	private void search() {
+		round.clear();
+		for (final Interface i : interfaces) {
+			try {
+				i.channel.send(ByteBuffer.wrap(i.extendedSearch), searchDestination);
+				i.channel.send(ByteBuffer.wrap(i.search), searchDestination);
+			}
+			catch (final IOException e) {
+				logger.warn("search on {} {}: {}", i.nif.getName(), i.local, e.getMessage());
+			}
+		}
+	}
+
+	private void receive(final Interface i) {
+		try {
+			SocketAddress source;
+			while ((source = i.channel.receive(buffer.clear())) != null)
+				onReceive(i, (InetSocketAddress) source, buffer.array(), buffer.position());
+		}
+		catch (final IOException e) {
+			logger.warn("receiving on {} {}: {}", i.nif.getName(), i.local, e.getMessage());
+		}
+	}
+
+	private void onReceive(final Interface i, final InetSocketAddress source, final byte[] data, final int length) {
+		try {
+			final var h = new KNXnetIPHeader(data, 0);
+			final int svc = h.getServiceType();
+			if (h.getTotalLength() > length)
+				logger.warn("ignore received packet from {}, packet size {} > received size {}", source,
+						h.getTotalLength(), length);
+			else if (svc == KNXnetIPHeader.SEARCH_RES || svc == KNXnetIPHeader.SearchResponse) {
+				final boolean extended = svc == KNXnetIPHeader.SearchResponse;
+				final var key = new Key(i.nif, source);
+				final var previous = round.get(key);
+				if (previous == null || extended || !previous.extended) {
+					final var response = SearchResponse.from(h, data, h.getStructLength());
+					round.put(key, new Received(new Result<>(response, i.nif, i.local, source), extended));
+				}
+			}
+		}
+		catch (KNXFormatException | RuntimeException e) {
+			logger.info("ignore received packet from {}, {}", source, e.getMessage());
+		}
+	}
+
+	private void endOfRound() {
+		for (final var entry : round.entrySet()) {
+			final var current = entry.getValue().result;
+			final var previous = known.put(entry.getKey(), new Known(current, 0));
+			if (previous == null)
+				notify(l -> l.added(current));
+			else if (!previous.result.getResponse().equals(current.getResponse()))
+				notify(l -> l.changed(previous.result, current));
+		}
+		for (final Iterator<Map.Entry<Key, Known>> it = known.entrySet().iterator(); it.hasNext();) {
+			final var entry = it.next();
+			if (round.containsKey(entry.getKey()))
+				continue;
+			final var server = entry.getValue();
+			if (server.missed + 1 < MissedRounds)
+				entry.setValue(new Known(server.result, server.missed + 1));
+			else {
+				it.remove();
+				notify(l -> l.removed(server.result));
+			}
+		}
+		round.clear();
+	}
+
+	private void notify(final Consumer<Listener> notification) {
+		for (final Listener l : listeners) {
+			try {
+				notification.accept(l);
+			}
+			catch (final RuntimeException e) {
+				logger.error("discovery listener {}", l, e);
+			}
+		}
+	}
+
+	private void closeChannels() {
+		for (final Interface i : interfaces) {
+			try {
+				i.channel.close();
+			}
+			catch (final IOException ignore) {}
+		}
+		try {
+			if (selector != null)
+				selector.close();
+		}
+		catch (final IOException ignore) {}
+	}
+
+	private static Duration min(final Duration a, final Duration b) { return a.compareTo(b) <= 0 ? a : b; }
+}
@@ -432,7 +432,7 @@ public class KNXnetIPRouting extends ConnectionBase
 		else if (svc == GiraUnsupportedSvcType) {
 			if (!loggedGiraUnsupportedSvcType)
 				logger.warn("received unsupported Gira-specific service type 0x538, will be silently ignored: {}",
-						DataUnitBuilder.toHex(data, " "));
+						DataUnitBuilder.hex(data, " "));
 			loggedGiraUnsupportedSvcType = true;
 		}
 		// skip multicast packets from searches & secure services, to avoid logged warnings about unknown frames
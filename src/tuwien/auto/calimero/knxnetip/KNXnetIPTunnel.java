@@ -365,8 +365,9 @@ public class KNXnetIPTunnel extends ClientConnection
 
 		final int mc = cemi.getMessageCode();
 		if (mc == CEMILData.MC_LDATA_IND || mc == CEMIBusMon.MC_BUSMON_IND) {
-			logger.trace("received request seq {} (channel {}) cEMI {}", req.getSequenceNumber(), channelId,
-					DataUnitBuilder.toHex(cemi.toByteArray(), " "));
+			if (logger.isTraceEnabled())
+				logger.trace("received request seq {} (channel {}) cEMI {}", req.getSequenceNumber(), channelId,
+						DataUnitBuilder.hex(cemi.toByteArray(), " "));
 			fireFrameReceived(cemi);
 		}
 		else if (mc == CEMILData.MC_LDATA_CON) {
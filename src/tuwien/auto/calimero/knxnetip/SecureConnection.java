@@ -36,6 +36,7 @@
 
 package tuwien.auto.calimero.knxnetip;
 
+import static tuwien.auto.calimero.DataUnitBuilder.hex;
 import static tuwien.auto.calimero.DataUnitBuilder.toHex;
 
 import java.io.ByteArrayOutputStream;
@@ -123,6 +124,7 @@ public final class SecureConnection extends KNXnetIPRouting {
 
 	private final byte[] sno;
 	private Key secretKey;
+	private SecureWrapperCodec codec;
 	private int sessionId;
 
 	// tunneling connection setup
@@ -222,8 +224,7 @@ public final class SecureConnection extends KNXnetIPRouting {
 
 			@Override
 			protected void send(final byte[] packet, final InetSocketAddress dst) throws IOException {
-				final byte[] wrapped = newSecurePacket(session.id(), session.nextSendSeq(), session.serialNumber(), 0,
-						packet, session.secretKey);
+				final byte[] wrapped = session.wrap(packet);
 				super.send(wrapped, dst);
 			}
 		};
@@ -277,8 +278,7 @@ public final class SecureConnection extends KNXnetIPRouting {
 
 			@Override
 			protected void send(final byte[] packet, final InetSocketAddress dst) throws IOException {
-				final byte[] wrapped = newSecurePacket(session.id(), session.nextSendSeq(), session.serialNumber(), 0,
-						packet, session.secretKey);
+				final byte[] wrapped = session.wrap(packet);
 				super.send(wrapped, dst);
 			}
 		};
@@ -349,6 +349,7 @@ public final class SecureConnection extends KNXnetIPRouting {
 
 		sno = deriveSerialNumber(netif);
 		secretKey = createSecretKey(groupKey);
+		codec = new SecureWrapperCodec(secretKey);
 		mcastLatencyTolerance = (int) latencyTolerance.toMillis();
 		syncLatencyTolerance = mcastLatencyTolerance / 10;
 
@@ -406,12 +407,13 @@ public final class SecureConnection extends KNXnetIPRouting {
 					return true;
 				}
 				if (svc == SecureSvc) {
-					final Object[] fields = unwrap(h, data, offset);
-					final byte[] packet = (byte[]) fields[4];
-					final KNXnetIPHeader containedHeader = new KNXnetIPHeader(packet, 0);
+					final var wrapper = unwrap(h, data, offset);
+					final byte[] packet = wrapper.buffer();
+					final KNXnetIPHeader containedHeader = new KNXnetIPHeader(packet, wrapper.offset());
+					final int containedOffset = wrapper.offset() + containedHeader.getStructLength();
 
 					if (containedHeader.getServiceType() == SecureSessionStatus) {
-						final int status = newChannelStatus(containedHeader, packet, containedHeader.getStructLength());
+						final int status = newChannelStatus(containedHeader, packet, containedOffset);
 						LogService.log(logger, status == 0 ? LogLevel.TRACE : LogLevel.ERROR, "{}", session);
 						setupLoop.quit();
 						sessionStatus = status;
@@ -420,7 +422,7 @@ public final class SecureConnection extends KNXnetIPRouting {
 					}
 					else {
 						// let base class handle decrypted knxip packet
-						return super.handleServiceType(containedHeader, packet, containedHeader.getStructLength(), src, port);
+						return super.handleServiceType(containedHeader, packet, containedOffset, src, port);
 					}
 				}
 				else
@@ -484,12 +486,13 @@ public final class SecureConnection extends KNXnetIPRouting {
 					return true;
 				}
 				if (svc == SecureSvc) {
-					final Object[] fields = unwrap(h, data, offset);
-					final byte[] packet = (byte[]) fields[4];
-					final KNXnetIPHeader containedHeader = new KNXnetIPHeader(packet, 0);
+					final var wrapper = unwrap(h, data, offset);
+					final byte[] packet = wrapper.buffer();
+					final KNXnetIPHeader containedHeader = new KNXnetIPHeader(packet, wrapper.offset());
+					final int containedOffset = wrapper.offset() + containedHeader.getStructLength();
 
 					if (containedHeader.getServiceType() == SecureSessionStatus) {
-						final int status = newChannelStatus(containedHeader, packet, containedHeader.getStructLength());
+						final int status = newChannelStatus(containedHeader, packet, containedOffset);
 						LogService.log(logger, status == 0 ? LogLevel.TRACE : LogLevel.ERROR, "{}", session);
 						setupLoop.quit();
 						sessionStatus = status;
@@ -498,7 +501,7 @@ public final class SecureConnection extends KNXnetIPRouting {
 					}
 					else {
 						// let base class handle decrypted knxip packet
-						return super.handleServiceType(containedHeader, packet, containedHeader.getStructLength(), src, port);
+						return super.handleServiceType(containedHeader, packet, containedOffset, src, port);
 					}
 				}
 				else
@@ -630,19 +633,20 @@ public final class SecureConnection extends KNXnetIPRouting {
 			}
 		}
 		else if (svc == SecureSvc) {
-			final Object[] fields = unwrap(h, data, offset);
-			final long timestamp = (long) fields[1];
-			if (sessionId == 0 && !withinTolerance(src, timestamp, (byte[]) fields[2], (int) fields[3])) {
+			final var wrapper = unwrap(h, data, offset);
+			final long timestamp = wrapper.sequence();
+			if (sessionId == 0 && !withinTolerance(src, timestamp, wrapper.serialNumberBytes(), wrapper.tag())) {
 				logger.warn("{}:{} timestamp {} outside latency tolerance of {} ms (local {}) - ignore", src,
 						port, timestamp, mcastLatencyTolerance, timestamp());
 				return true;
 			}
 
-			final byte[] packet = (byte[]) fields[4];
-			final KNXnetIPHeader containedHeader = new KNXnetIPHeader(packet, 0);
+			final byte[] packet = wrapper.buffer();
+			final KNXnetIPHeader containedHeader = new KNXnetIPHeader(packet, wrapper.offset());
+			final int containedOffset = wrapper.offset() + containedHeader.getStructLength();
 
 			if (containedHeader.getServiceType() == SecureSessionStatus) {
-				final int status = newChannelStatus(containedHeader, packet, containedHeader.getStructLength());
+				final int status = newChannelStatus(containedHeader, packet, containedOffset);
 				LogService.log(logger, status == 0 ? LogLevel.DEBUG : LogLevel.ERROR, "{}", session);
 				setupLoop.quit();
 				sessionStatus = status;
@@ -651,7 +655,7 @@ public final class SecureConnection extends KNXnetIPRouting {
 			}
 			else {
 				// let base class handle contained in decrypted knxip packet
-				return super.handleServiceType(containedHeader, packet, containedHeader.getStructLength(), src, port);
+				return super.handleServiceType(containedHeader, packet, containedOffset, src, port);
 			}
 		}
 		else
@@ -863,112 +867,44 @@ public final class SecureConnection extends KNXnetIPRouting {
 	// seq: for multicasts, timestamp [ms]
 	// msg tag: for unicasts, tag is 0
 	private byte[] newSecurePacket(final long seq, final int msgTag, final byte[] knxipPacket) {
-		if (seq < 0 || seq > 0xffff_ffff_ffffL)
-			throw new KNXIllegalArgumentException(
-					"sequence / group counter " + seq + " out of range [0..0xffffffffffff]");
-		if (msgTag < 0 || msgTag > 0xffff)
-			throw new KNXIllegalArgumentException("message tag " + msgTag + " out of range [0..0xffff]");
-
-		final int svcLength = 2 + 6 + 6 + 2 + knxipPacket.length + macSize;
-		final KNXnetIPHeader header = new KNXnetIPHeader(KNXnetIPHeader.SecureWrapper, svcLength);
-
-		final ByteBuffer buffer = ByteBuffer.allocate(header.getTotalLength());
-		buffer.put(header.toByteArray());
-		buffer.putShort((short) sessionId);
-		buffer.putShort((short) (seq >> 32));
-		buffer.putInt((int) seq);
-		buffer.put(sno);
-		buffer.putShort((short) msgTag);
-		buffer.put(knxipPacket);
-
-		final byte[] secInfo = securityInfo(buffer.array(), header.getStructLength() + 2, knxipPacket.length);
-		final byte[] mac = cbcMac(buffer.array(), 0, buffer.position(), secInfo);
-		buffer.put(mac);
-		encrypt(buffer.array(), header.getStructLength() + 2 + 6 + 6 + 2, securityInfo(buffer.array(), 8, 0xff00));
-		return buffer.array();
+		return codec.wrap(sessionId, seq, sno, msgTag, knxipPacket);
 	}
 
 	public static byte[] newSecurePacket(final long sessionId, final long seq, final byte[] sno, final int msgTag,
 		final byte[] knxipPacket, final Key secretKey) {
-		if (seq < 0 || seq > 0xffff_ffff_ffffL)
-			throw new KNXIllegalArgumentException(
-					"sequence / group counter " + seq + " out of range [0..0xffffffffffff]");
-		if (msgTag < 0 || msgTag > 0xffff)
-			throw new KNXIllegalArgumentException("message tag " + msgTag + " out of range [0..0xffff]");
-
-		final int svcLength = 2 + 6 + 6 + 2 + knxipPacket.length + macSize;
-		final KNXnetIPHeader header = new KNXnetIPHeader(KNXnetIPHeader.SecureWrapper, svcLength);
-
-		final ByteBuffer buffer = ByteBuffer.allocate(header.getTotalLength());
-		buffer.put(header.toByteArray());
-		buffer.putShort((short) sessionId);
-		buffer.putShort((short) (seq >> 32));
-		buffer.putInt((int) seq);
-		buffer.put(sno);
-		buffer.putShort((short) msgTag);
-		buffer.put(knxipPacket);
-
-		final byte[] secInfo = securityInfo(buffer.array(), header.getStructLength() + 2, knxipPacket.length);
-		final byte[] mac = cbcMac(buffer.array(), 0, buffer.position(), secretKey, secInfo);
-		buffer.put(mac);
-		encrypt(buffer.array(), header.getStructLength() + 2 + 6 + 6 + 2, secretKey,
-				securityInfo(buffer.array(), 8, 0xff00));
-		return buffer.array();
+		return new SecureWrapperCodec(secretKey).wrap((int) sessionId, seq, sno, msgTag, knxipPacket);
 	}
 
-	private Object[] unwrap(final KNXnetIPHeader h, final byte[] data, final int offset) throws KNXFormatException {
-		final Object[] fields = unwrap(h, data, offset, secretKey);
+	// decrypts the contained packet in place
+	private SecureWrapperCodec.Wrapper unwrap(final KNXnetIPHeader h, final byte[] data, final int offset)
+		throws KNXFormatException {
+		final var wrapper = codec.unwrap(h, data, offset);
 
-		final int sid = (int) fields[0];
+		final int sid = wrapper.sessionId();
 		if (sid != sessionId)
 			throw new KnxSecureException("secure session mismatch: received ID " + sid + ", expected " + sessionId);
 
-		final long seq = (long) fields[1];
+		final long seq = wrapper.sequence();
 		if (sessionId != 0) {
 			final var rcvSeq = session.nextReceiveSeq();
 			if (seq < rcvSeq)
 				throw new KnxSecureException("received secure packet with sequence " + seq + " < expected " + rcvSeq);
 		}
 
-		final long snLong = (long) fields[2];
-		final byte[] sn = ByteBuffer.allocate(6).putShort((short) (snLong >> 32)).putInt((int) snLong).array();
-		final int tag = (int) fields[3];
-		final byte[] knxipPacket = (byte[]) fields[4];
-		logger.trace("received {} (session {} seq {} S/N {} tag {})", toHex(knxipPacket, " "), sid, seq, toHex(sn, ""),
-				tag);
-		return new Object[] { fields[0], fields[1], sn, fields[3], fields[4] };
+		if (logger.isTraceEnabled())
+			logger.trace("received {} (session {} seq {} S/N {} tag {})", toHex(wrapper.packet(), " "), sid, seq,
+					toHex(wrapper.serialNumberBytes(), ""), wrapper.tag());
+		return wrapper;
 	}
 
 	public static Object[] unwrap(final KNXnetIPHeader h, final byte[] data, final int offset, final Key secretKey)
 		throws KNXFormatException {
 		if ((h.getServiceType() & SecureSvc) != SecureSvc)
 			throw new KNXIllegalArgumentException("not a secure service type");
-
-		final int total = h.getTotalLength();
-		final int hdrLength = h.getStructLength();
-		final int minLength = hdrLength + 2 + 6 + 6 + 2 + hdrLength + macSize;
-		if (total < minLength)
-			throw new KNXFormatException("secure packet length < required minimum length " + minLength, total);
-
-		final ByteBuffer buffer = ByteBuffer.wrap(data, offset, total - hdrLength);
-
-		final int sid = buffer.getShort() & 0xffff;
-		final long seq = uint48(buffer);
-		final long sno = uint48(buffer);
-		final int tag = buffer.getShort() & 0xffff;
-
-		final ByteBuffer dec = decrypt(buffer, secretKey, securityInfo(data, offset + 2, 0xff00));
-
-		final byte[] knxipPacket = new byte[total - minLength + hdrLength];
-		dec.get(knxipPacket);
-		final byte[] mac = new byte[macSize];
-		dec.get(mac);
-
-		final byte[] frame = Arrays.copyOfRange(data, offset - hdrLength, offset - hdrLength + total);
-		System.arraycopy(knxipPacket, 0, frame, hdrLength + 2 + 6 + 6 + 2, knxipPacket.length);
-		cbcMacVerify(frame, 0, total - macSize, secretKey, securityInfo(data, offset + 2, knxipPacket.length), mac);
-
-		return new Object[] { sid, seq, sno, tag, knxipPacket };
+		final byte[] knxipPacket = new byte[Math.max(0, h.getTotalLength() - SecureWrapperCodec.Overhead)];
+		final var wrapper = new SecureWrapperCodec(secretKey).unwrap(h, data, offset, knxipPacket, 0);
+		return new Object[] { wrapper.sessionId(), wrapper.sequence(), wrapper.serialNumber(), wrapper.tag(),
+			knxipPacket };
 	}
 
 	private Object[] newSessionResponse(final KNXnetIPHeader h, final byte[] data, final int offset,
@@ -992,6 +928,7 @@ public final class SecureConnection extends KNXnetIPRouting {
 		final byte[] sharedSecret = keyAgreement(privateKey, serverPublicKey);
 		final byte[] sessionKey = sessionKey(sharedSecret);
 		secretKey = createSecretKey(sessionKey);
+		codec = new SecureWrapperCodec(secretKey);
 
 		final boolean skipDeviceAuth = Arrays.equals(session.deviceAuthKey().getEncoded(), new byte[16]);
 		if (skipDeviceAuth) {
@@ -1096,7 +1033,7 @@ public final class SecureConnection extends KNXnetIPRouting {
 
 		final byte[] secInfo = securityInfo(buffer.array(), 6, 0);
 		cbcMacVerify(data, offset - h.getStructLength(), h.getTotalLength() - macSize, secretKey, secInfo, mac.array());
-		logger.trace("received group sync timestamp {} ms (S/N {}, tag {})", timestamp, toHex(sn, ""), msgTag);
+		logger.trace("received group sync timestamp {} ms (S/N {}, tag {})", timestamp, hex(sn, ""), msgTag);
 		return new Object[] { timestamp, sn, msgTag };
 	}
 
@@ -1211,7 +1148,7 @@ public final class SecureConnection extends KNXnetIPRouting {
 
 	private byte[] cbcMacSimple(final Key secretKey, final byte[] data, final int offset, final int length) {
 		final byte[] exact = Arrays.copyOfRange(data, offset, offset + length);
-		logger.trace("authenticating (length {}): {}", length, toHex(exact, " "));
+		logger.trace("authenticating (length {}): {}", length, hex(exact, " "));
 
 		try {
 			final Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
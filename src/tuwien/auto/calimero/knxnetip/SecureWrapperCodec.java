@@ -0,0 +1,328 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+package tuwien.auto.calimero.knxnetip;
+
+import static tuwien.auto.calimero.DataUnitBuilder.toHex;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.KnxSecureException;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+
+/**
+ * Encodes and decodes KNX IP secure wrapper packets in a single pass over the packet, using one AES context per
+ * secret key. Authentication (CBC-MAC) and encryption (CTR) both only require single block AES encryptions, so the
+ * cipher is initialized once and reused for all packets. Codec methods are synchronized on the codec.
+ */
+final class SecureWrapperCodec {
+
+	private static final int SecureWrapper = 0x0950;
+	private static final int HeaderSize = 6;
+	private static final int MacSize = 16;
+	private static final int BlockSize = 16;
+	// session ID, sequence, serial number, message tag
+	private static final int WrapperFields = 2 + 6 + 6 + 2;
+
+	/** Number of bytes a secure wrapper adds to the wrapped KNX IP packet. */
+	static final int Overhead = HeaderSize + WrapperFields + MacSize;
+
+	/** Fields of a received secure wrapper, with the decrypted KNX IP packet. */
+	static final class Wrapper {
+		private final int sessionId;
+		private final long seq;
+		private final long serialNumber;
+		private final int tag;
+		private final byte[] buffer;
+		private final int offset;
+		private final int length;
+
+		private Wrapper(final int sessionId, final long seq, final long serialNumber, final int tag,
+			final byte[] buffer, final int offset, final int length) {
+			this.sessionId = sessionId;
+			this.seq = seq;
+			this.serialNumber = serialNumber;
+			this.tag = tag;
+			this.buffer = buffer;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		int sessionId() { return sessionId; }
+
+		/** @return sequence number for unicasts, timestamp for multicasts */
+		long sequence() { return seq; }
+
+		long serialNumber() { return serialNumber; }
+
+		byte[] serialNumberBytes() {
+			final byte[] sn = new byte[6];
+			for (int i = 0; i < 6; i++)
+				sn[i] = (byte) (serialNumber >> (40 - 8 * i));
+			return sn;
+		}
+
+		int tag() { return tag; }
+
+		/** @return buffer containing the decrypted KNX IP packet at {@link #offset()} */
+		byte[] buffer() { return buffer; }
+
+		int offset() { return offset; }
+
+		int length() { return length; }
+
+		/** @return copy of the decrypted KNX IP packet */
+		byte[] packet() { return Arrays.copyOfRange(buffer, offset, offset + length); }
+	}
+
+	private final Cipher aes;
+
+	// AES input block, CBC-MAC state, counter block, and key stream block
+	private final byte[] block = new byte[BlockSize];
+	private final byte[] mac = new byte[BlockSize];
+	private final byte[] counter = new byte[BlockSize];
+	private final byte[] keyStream = new byte[BlockSize];
+	private final byte[] received = new byte[MacSize];
+
+	SecureWrapperCodec(final Key secretKey) {
+		try {
+			aes = Cipher.getInstance("AES/ECB/NoPadding");
+			aes.init(Cipher.ENCRYPT_MODE, secretKey);
+		}
+		catch (final GeneralSecurityException e) {
+			throw new KnxSecureException("initializing AES cipher", e);
+		}
+	}
+
+	/**
+	 * Returns a new secure wrapper packet for a KNX IP packet.
+	 *
+	 * @see #wrap(int, long, byte[], int, byte[], int, int, byte[], int)
+	 */
+	byte[] wrap(final int sessionId, final long seq, final byte[] sno, final int msgTag, final byte[] knxipPacket) {
+		final byte[] wrapped = new byte[Overhead + knxipPacket.length];
+		wrap(sessionId, seq, sno, msgTag, knxipPacket, 0, knxipPacket.length, wrapped, 0);
+		return wrapped;
+	}
+
+	/**
+	 * Wraps a KNX IP packet into a secure wrapper packet, written to <code>dst</code>. The packet is authenticated and
+	 * encrypted in one pass.
+	 *
+	 * @param sessionId secure session ID, 0 for multicasts
+	 * @param seq sequence number for unicasts, timestamp [ms] for multicasts
+	 * @param sno 6 byte serial number
+	 * @param msgTag message tag, 0 for unicasts
+	 * @param knxipPacket buffer containing the KNX IP packet
+	 * @param offset packet offset
+	 * @param length packet length
+	 * @param dst destination buffer, with space for {@link #Overhead} + <code>length</code> bytes
+	 * @param dstOffset offset in <code>dst</code>
+	 * @return length of the secure wrapper packet
+	 */
+	synchronized int wrap(final int sessionId, final long seq, final byte[] sno, final int msgTag,
+		final byte[] knxipPacket, final int offset, final int length, final byte[] dst, final int dstOffset) {
+		if (seq < 0 || seq > 0xffff_ffff_ffffL)
+			throw new KNXIllegalArgumentException(
+					"sequence / group counter " + seq + " out of range [0..0xffffffffffff]");
+		if (msgTag < 0 || msgTag > 0xffff)
+			throw new KNXIllegalArgumentException("message tag " + msgTag + " out of range [0..0xffff]");
+		final int total = Overhead + length;
+		if (dst.length - dstOffset < total)
+			throw new KNXIllegalArgumentException("buffer too small for secure wrapper of length " + total);
+
+		int i = dstOffset;
+		dst[i++] = HeaderSize;
+		dst[i++] = KNXnetIPConnection.KNXNETIP_VERSION_10;
+		dst[i++] = (byte) (SecureWrapper >> 8);
+		dst[i++] = (byte) SecureWrapper;
+		dst[i++] = (byte) (total >> 8);
+		dst[i++] = (byte) total;
+		dst[i++] = (byte) (sessionId >> 8);
+		dst[i++] = (byte) sessionId;
+		for (int shift = 40; shift >= 0; shift -= 8)
+			dst[i++] = (byte) (seq >> shift);
+		System.arraycopy(sno, 0, dst, i, 6);
+		i += 6;
+		dst[i++] = (byte) (msgTag >> 8);
+		dst[i++] = (byte) msgTag;
+
+		cbcMac(dst, dstOffset, knxipPacket, offset, length);
+		final int fields = dstOffset + HeaderSize + 2;
+		cipher(dst, fields, knxipPacket, offset, dst, i, length);
+		// encrypt MAC with first key stream block
+		keyStream(dst, fields, 0);
+		for (int k = 0; k < MacSize; k++)
+			dst[i + length + k] = (byte) (mac[k] ^ keyStream[k]);
+		return total;
+	}
+
+	/**
+	 * Unwraps a secure wrapper packet, decrypting the contained KNX IP packet in place.
+	 *
+	 * @see #unwrap(KNXnetIPHeader, byte[], int, byte[], int)
+	 */
+	Wrapper unwrap(final KNXnetIPHeader h, final byte[] data, final int offset) throws KNXFormatException {
+		return unwrap(h, data, offset, data, offset + WrapperFields);
+	}
+
+	/**
+	 * Unwraps a secure wrapper packet, decrypting the contained KNX IP packet into <code>dst</code>. For in-place
+	 * decryption, <code>dst</code> is <code>data</code> with the offset of the encrypted packet, i.e.,
+	 * <code>offset + 16</code>.
+	 *
+	 * @param h secure wrapper header
+	 * @param data buffer containing the secure wrapper
+	 * @param offset offset of the wrapper body, i.e., after the header
+	 * @param dst destination buffer for the decrypted KNX IP packet
+	 * @param dstOffset offset in <code>dst</code>
+	 * @return the wrapper fields
+	 * @throws KNXFormatException on invalid secure wrapper length
+	 * @throws KnxSecureException if authentication of the packet failed
+	 */
+	synchronized Wrapper unwrap(final KNXnetIPHeader h, final byte[] data, final int offset, final byte[] dst,
+		final int dstOffset) throws KNXFormatException {
+		if (h.getServiceType() != SecureWrapper)
+			throw new KNXIllegalArgumentException("not a secure service type");
+
+		final int total = h.getTotalLength();
+		final int hdrLength = h.getStructLength();
+		final int minLength = hdrLength + WrapperFields + hdrLength + MacSize;
+		if (total < minLength)
+			throw new KNXFormatException("secure packet length < required minimum length " + minLength, total);
+		if (data.length - offset < total - hdrLength)
+			throw new KNXFormatException("secure packet exceeds buffer", total);
+		final int length = total - hdrLength - WrapperFields - MacSize;
+		if (dst.length - dstOffset < length)
+			throw new KNXIllegalArgumentException("buffer too small for KNX IP packet of length " + length);
+
+		int i = offset;
+		final int sid = (data[i++] & 0xff) << 8 | data[i++] & 0xff;
+		final long seq = uint48(data, i);
+		final long sno = uint48(data, i + 6);
+		i += 12;
+		final int tag = (data[i++] & 0xff) << 8 | data[i++] & 0xff;
+
+		final int fields = offset + 2;
+		keyStream(data, fields, 0);
+		for (int k = 0; k < MacSize; k++)
+			received[k] = (byte) (data[i + length + k] ^ keyStream[k]);
+		cipher(data, fields, data, i, dst, dstOffset, length);
+
+		cbcMac(data, offset - hdrLength, dst, dstOffset, length);
+		if (!MessageDigest.isEqual(mac, received)) {
+			final int from = offset - hdrLength;
+			final String packet = toHex(Arrays.copyOfRange(data, from, from + total), " ");
+			throw new KnxSecureException("authentication failed for " + packet);
+		}
+		return new Wrapper(sid, seq, sno, tag, dst, dstOffset, length);
+	}
+
+	// CTR mode, the key stream for packet data starts with the second counter block
+	private void cipher(final byte[] frame, final int fields, final byte[] src, final int srcOffset, final byte[] dst,
+		final int dstOffset, final int length) {
+		for (int k = 0; k < length; k += BlockSize) {
+			keyStream(frame, fields, 1 + k / BlockSize);
+			final int n = Math.min(BlockSize, length - k);
+			for (int j = 0; j < n; j++)
+				dst[dstOffset + k + j] = (byte) (src[srcOffset + k + j] ^ keyStream[j]);
+		}
+	}
+
+	// counter block is sequence, serial number, message tag, 0xff, block index
+	private void keyStream(final byte[] frame, final int fields, final int blockIndex) {
+		System.arraycopy(frame, fields, counter, 0, 14);
+		counter[14] = (byte) 0xff;
+		counter[15] = (byte) blockIndex;
+		encryptBlock(counter, keyStream);
+	}
+
+	// CBC-MAC over block 0 (sequence, serial number, message tag, packet length), followed by the associated data
+	// length, header, session ID, and packet, padded to the block size
+	private void cbcMac(final byte[] frame, final int frameOffset, final byte[] packet, final int offset,
+		final int length) {
+		Arrays.fill(mac, (byte) 0);
+		System.arraycopy(frame, frameOffset + HeaderSize + 2, block, 0, 14);
+		block[14] = (byte) (length >> 8);
+		block[15] = (byte) length;
+		macBlock();
+
+		final int associated = HeaderSize + 2;
+		block[0] = 0;
+		block[1] = associated;
+		System.arraycopy(frame, frameOffset, block, 2, associated);
+		final int first = Math.min(BlockSize - 2 - associated, length);
+		System.arraycopy(packet, offset, block, 2 + associated, first);
+		Arrays.fill(block, 2 + associated + first, BlockSize, (byte) 0);
+		macBlock();
+
+		for (int k = first; k < length; k += BlockSize) {
+			final int n = Math.min(BlockSize, length - k);
+			System.arraycopy(packet, offset + k, block, 0, n);
+			Arrays.fill(block, n, BlockSize, (byte) 0);
+			macBlock();
+		}
+	}
+
+	private void macBlock() {
+		for (int k = 0; k < BlockSize; k++)
+			block[k] ^= mac[k];
+		encryptBlock(block, mac);
+	}
+
+	private void encryptBlock(final byte[] input, final byte[] output) {
+		try {
+			aes.update(input, 0, BlockSize, output, 0);
+		}
+		catch (final ShortBufferException e) {
+			throw new KnxSecureException("AES block encryption", e);
+		}
+	}
+
+	private static long uint48(final byte[] data, final int offset) {
+		long l = 0;
+		for (int i = 0; i < 6; i++)
+			l = l << 8 | data[offset + i] & 0xff;
+		return l;
+	}
+}
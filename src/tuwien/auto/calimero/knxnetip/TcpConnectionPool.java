@@ -0,0 +1,244 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+package tuwien.auto.calimero.knxnetip;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.KNXListener;
+import tuwien.auto.calimero.KNXRemoteException;
+import tuwien.auto.calimero.knxnetip.KNXnetIPTunnel.TunnelingLayer;
+import tuwien.auto.calimero.knxnetip.util.TunnelingDib;
+
+/**
+ * Pool of KNXnet/IP TCP connections, multiplexing tunnels over one shared {@link Connection} per server. Servers
+ * added to the pool are considered interfaces of the same KNX installation: a new tunnel is opened on the server with
+ * the least number of open tunnels, up to the number of tunneling slots of each server. If a server rejects a tunnel
+ * (e.g., because all its tunneling slots are occupied by other clients), the next server is tried.
+ * <p>
+ * A TCP connection is established with the first tunnel to its server and kept open for reuse until the pool is
+ * closed; closing the pool closes all connections and their tunnels.
+ */
+public final class TcpConnectionPool implements AutoCloseable {
+
+	private static final class Endpoint {
+		final InetSocketAddress server;
+		final int slots;
+		final Set<KNXnetIPTunnel> tunnels = new HashSet<>();
+		// open tunnels plus ongoing connect attempts
+		int reserved;
+		Connection connection;
+
+		Endpoint(final InetSocketAddress server, final int slots) {
+			this.server = server;
+			this.slots = slots;
+		}
+
+		Connection connection(final InetSocketAddress local) {
+			// we cannot reuse a closed connection
+			if (connection == null || connection.socket().isClosed())
+				connection = Connection.newTcpConnection(local, server);
+			return connection;
+		}
+
+		@Override
+		public String toString() {
+			return Connection.addressPort(server) + " (" + reserved + "/" + slots + " tunnels)";
+		}
+	}
+
+	private final InetSocketAddress local;
+	// guarded by this
+	private final List<Endpoint> endpoints = new ArrayList<>();
+	private boolean closed;
+
+	/**
+	 * Creates a new connection pool, using a local host address on the same subnet as the server and an ephemeral
+	 * port for each connection.
+	 */
+	public TcpConnectionPool() {
+		this(new InetSocketAddress(0));
+	}
+
+	/**
+	 * Creates a new connection pool.
+	 *
+	 * @param local local endpoint to bind the TCP connections to, supply the wildcard address to use a local host
+	 *        address on the same subnet as the server, and port 0 to use an ephemeral port
+	 */
+	public TcpConnectionPool(final InetSocketAddress local) {
+		if (local.isUnresolved())
+			throw new KNXIllegalArgumentException("unresolved address " + local);
+		this.local = local;
+	}
+
+	/**
+	 * Adds a KNXnet/IP server to this pool, limiting the tunnels opened on that server to its number of tunneling
+	 * slots.
+	 *
+	 * @param server server control endpoint
+	 * @param tunneling tunneling DIB of the server, e.g., obtained by a description request
+	 */
+	public void addServer(final InetSocketAddress server, final TunnelingDib tunneling) {
+		addServer(server, tunneling.addresses().size());
+	}
+
+	/**
+	 * Adds a KNXnet/IP server to this pool.
+	 *
+	 * @param server server control endpoint
+	 * @param maxTunnels maximum number of tunnels this pool opens on the server, <code>maxTunnels &gt; 0</code>
+	 */
+	public synchronized void addServer(final InetSocketAddress server, final int maxTunnels) {
+		if (server.isUnresolved())
+			throw new KNXIllegalArgumentException("unresolved address " + server);
+		if (maxTunnels < 1)
+			throw new KNXIllegalArgumentException("maximum tunnels " + maxTunnels + " < 1");
+		if (endpoints.stream().anyMatch(ep -> ep.server.equals(server)))
+			throw new KNXIllegalArgumentException("server " + Connection.addressPort(server) + " already added");
+		endpoints.add(new Endpoint(server, maxTunnels));
+	}
+
+	/**
+	 * Opens a new tunnel on the least loaded server of this pool, sharing the TCP connection with any other tunnel
+	 * to that server.
+	 *
+	 * @param knxLayer KNX tunneling layer
+	 * @param tunnelingAddress the tunneling address to request, or <code>0.0.0</code> to let the server assign an
+	 *        address
+	 * @return the tunnel in open state
+	 * @throws KNXException if no server has a free tunneling slot, or on failure establishing the tunnel
+	 * @throws InterruptedException on interrupted thread while establishing the tunnel
+	 */
+	public KNXnetIPTunnel newTunnel(final TunnelingLayer knxLayer, final IndividualAddress tunnelingAddress)
+			throws KNXException, InterruptedException {
+		final Set<Endpoint> rejected = new HashSet<>();
+		KNXRemoteException rejection = null;
+		while (true) {
+			final Endpoint endpoint;
+			final Connection connection;
+			synchronized (this) {
+				if (closed)
+					throw new KNXConnectionClosedException("connection pool is closed");
+				endpoint = leastLoaded(rejected);
+				if (endpoint == null)
+					throw rejection != null ? rejection : new KNXException("no free tunneling slot in " + this);
+				connection = endpoint.connection(local);
+				endpoint.reserved++;
+			}
+
+			final KNXnetIPTunnel tunnel;
+			try {
+				tunnel = KNXnetIPTunnel.newTcpTunnel(knxLayer, connection, tunnelingAddress);
+			}
+			catch (final KNXRemoteException e) {
+				release(endpoint, null);
+				rejected.add(endpoint);
+				rejection = e;
+				continue;
+			}
+			catch (KNXException | InterruptedException | RuntimeException e) {
+				release(endpoint, null);
+				throw e;
+			}
+
+			synchronized (this) {
+				endpoint.tunnels.add(tunnel);
+			}
+			tunnel.addConnectionListener(new KNXListener() {
+				@Override
+				public void frameReceived(final FrameEvent e) {}
+
+				@Override
+				public void connectionClosed(final CloseEvent e) { release(endpoint, tunnel); }
+			});
+			if (tunnel.getState() == KNXnetIPConnection.CLOSED)
+				release(endpoint, tunnel);
+			return tunnel;
+		}
+	}
+
+	/**
+	 * Returns the number of open tunnels per server.
+	 *
+	 * @return list with one entry per server, in the order servers were added
+	 */
+	public synchronized List<Integer> openTunnels() {
+		return endpoints.stream().map(ep -> ep.tunnels.size()).collect(Collectors.toList());
+	}
+
+	@Override
+	public void close() {
+		final List<Connection> connections = new ArrayList<>();
+		synchronized (this) {
+			closed = true;
+			for (final Endpoint endpoint : endpoints)
+				if (endpoint.connection != null)
+					connections.add(endpoint.connection);
+		}
+		connections.forEach(Connection::close);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return endpoints.stream().map(Endpoint::toString)
+				.collect(Collectors.joining(", ", "TCP connection pool [", "]"));
+	}
+
+	private Endpoint leastLoaded(final Set<Endpoint> rejected) {
+		Endpoint least = null;
+		for (final Endpoint endpoint : endpoints) {
+			if (endpoint.reserved < endpoint.slots && !rejected.contains(endpoint)
+					&& (least == null || endpoint.reserved < least.reserved))
+				least = endpoint;
+		}
+		return least;
+	}
+
+	private synchronized void release(final Endpoint endpoint, final KNXnetIPTunnel tunnel) {
+		if (tunnel == null || endpoint.tunnels.remove(tunnel))
+			endpoint.reserved--;
+	}
+}
@@ -0,0 +1,154 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+package tuwien.auto.calimero.knxnetip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+
+/**
+ * Frames KNXnet/IP packets received over a TCP stream. Received data is read into a growable receive buffer, and
+ * complete packets are dispatched directly from that buffer, without copying. The buffer grows to fit the largest
+ * received packet (at most 64 KB).
+ */
+final class TcpFrameReader {
+
+	@FunctionalInterface
+	interface Handler {
+		/**
+		 * Dispatches a received KNXnet/IP packet; the buffer is only valid during this call.
+		 *
+		 * @param header packet header
+		 * @param data buffer containing the packet
+		 * @param offset offset of the packet body, i.e., after the header
+		 * @param length length of the packet body
+		 */
+		void dispatch(KNXnetIPHeader header, byte[] data, int offset, int length)
+				throws IOException, KNXFormatException;
+	}
+
+	private static final int HeaderSize = 6;
+
+	// in write mode, buffer contains received data in [start, position)
+	private ByteBuffer buffer;
+	private int start;
+
+	TcpFrameReader(final int initialCapacity) {
+		buffer = ByteBuffer.allocate(initialCapacity);
+	}
+
+	/**
+	 * Dispatches any complete packets still buffered, reads from the channel, and dispatches all complete packets
+	 * received. A handler exception is propagated after its packet got consumed, so the next call continues with the
+	 * next packet.
+	 *
+	 * @param channel channel to read from
+	 * @param handler handler for received packets
+	 * @return <code>false</code> if the end of the stream was reached, <code>true</code> otherwise
+	 * @throws IOException on I/O error reading the channel, or by the handler
+	 * @throws KNXFormatException on an invalid KNXnet/IP header, which discards all buffered data, or by the handler
+	 */
+	boolean read(final ReadableByteChannel channel, final Handler handler) throws IOException, KNXFormatException {
+		process(handler);
+		if (!buffer.hasRemaining())
+			compact();
+		if (channel.read(buffer) == -1)
+			return false;
+		process(handler);
+		return true;
+	}
+
+	int capacity() { return buffer.capacity(); }
+
+	private void process(final Handler handler) throws IOException, KNXFormatException {
+		final byte[] data = buffer.array();
+		while (buffer.position() - start >= HeaderSize) {
+			final KNXnetIPHeader header;
+			try {
+				header = new KNXnetIPHeader(data, start);
+			}
+			catch (final KNXFormatException e) {
+				reset();
+				throw e;
+			}
+			final int total = header.getTotalLength();
+			final int hdrLength = header.getStructLength();
+			if (total < hdrLength) {
+				reset();
+				throw new KNXFormatException("KNXnet/IP total length smaller than header", total);
+			}
+			if (buffer.position() - start < total) {
+				ensureCapacity(total);
+				return;
+			}
+			final int offset = start;
+			start += total;
+			if (start == buffer.position())
+				reset();
+			handler.dispatch(header, data, offset + hdrLength, total - hdrLength);
+		}
+	}
+
+	// makes sure the incomplete packet at start fits into the buffer
+	private void ensureCapacity(final int total) {
+		if (buffer.capacity() - start >= total)
+			return;
+		if (buffer.capacity() < total) {
+			final ByteBuffer larger = ByteBuffer.allocate(Integer.highestOneBit(total - 1) << 1);
+			larger.put(buffer.array(), start, buffer.position() - start);
+			buffer = larger;
+			start = 0;
+		}
+		else
+			compact();
+	}
+
+	// moves buffered data to the beginning of the buffer
+	private void compact() {
+		final int pending = buffer.position() - start;
+		System.arraycopy(buffer.array(), start, buffer.array(), 0, pending);
+		buffer.position(pending);
+		start = 0;
+	}
+
+	private void reset() {
+		buffer.clear();
+		start = 0;
+	}
+}
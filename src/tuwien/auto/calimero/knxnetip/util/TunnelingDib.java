@@ -97,6 +97,27 @@ public class TunnelingDib extends DIB {
 		}
 	}
 
+	/**
+	 * @return maximum APDU length supported by the tunneling server
+	 */
+	public final int maxApduLength() { return maxApduLength & 0xffff; }
+
+	/**
+	 * Returns the individual addresses of the tunneling slots; the number of addresses is the maximum number of
+	 * concurrent tunneling connections supported by the server.
+	 *
+	 * @return list of tunneling addresses
+	 */
+	public final List<IndividualAddress> addresses() { return List.of(addresses); }
+
+	/**
+	 * Returns the status of each tunneling slot, in the same order as {@link #addresses()}. The status is a bit field:
+	 * bit 0 indicates a free slot, bit 1 a slot requiring authorization, and bit 2 a usable slot.
+	 *
+	 * @return status of each slot
+	 */
+	public final int[] status() { return status.clone(); }
+
 	private static String formatStatus(final int status) {
 		final List<String> l = new ArrayList<>();
 		l.add((status & 1) == 1 ? "free" : "occupied");
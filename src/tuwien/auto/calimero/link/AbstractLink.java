@@ -149,7 +149,7 @@ public abstract class AbstractLink<T extends AutoCloseable> implements KNXNetwor
 
 					final int PeiIdentifyCon = 0xa8;
 					if ((frame[0] & 0xff) == PeiIdentifyCon) {
-						logger.info("PEI identify {}", DataUnitBuilder.toHex(frame, " "));
+						logger.info("PEI identify {}", DataUnitBuilder.hex(frame, " "));
 						final int manufacturer = unsigned(frame[3], frame[4]);
 						if (manufacturer == 0xc5) {
 							logger.info("link connected to weinzierl device");
@@ -184,13 +184,13 @@ public abstract class AbstractLink<T extends AutoCloseable> implements KNXNetwor
 						logger.debug("confirmation of {}", ldata.getDestination());
 					else
 						logger.warn("negative confirmation of {}: {}", ldata.getDestination(),
-								DataUnitBuilder.toHex(ldata.toByteArray(), " "));
+								DataUnitBuilder.hex(ldata.toByteArray(), " "));
 				}
 				else
 					logger.warn("unspecified frame event - ignored, msg code = 0x" + Integer.toHexString(mc));
 			}
 			catch (final KNXFormatException | RuntimeException ex) {
-				logger.warn("received unspecified frame {}", DataUnitBuilder.toHex(e.getFrameBytes(), " "), ex);
+				logger.warn("received unspecified frame {}", DataUnitBuilder.hex(e.getFrameBytes(), " "), ex);
 			}
 		}
 
@@ -492,7 +492,7 @@ public abstract class AbstractLink<T extends AutoCloseable> implements KNXNetwor
 					BcuSwitcher.pidCommMode, 1, 1);
 			onSend(recheck);
 			responseFor(CEMIDevMgmt.MC_PROPREAD_CON, BcuSwitcher.pidCommMode)
-					.ifPresent(mode -> logger.info("read comm mode {}", DataUnitBuilder.toHex(mode, "")));
+					.ifPresent(mode -> logger.info("read comm mode {}", DataUnitBuilder.hex(mode, "")));
 		}
 		// ??? check baos support ahead
 //		else if (activeEmi == EmiType.Emi1) {
@@ -155,7 +155,7 @@ final class BcuSwitcher
 			byte[] data = read(createGetValue(AddrExpectedPeiType, 1));
 			logger.info("PEI type {}", data[0] & 0xff);
 			data = read(createGetValue(AddrStartAddressTable, 1));
-			logger.debug("Address Table location {}", DataUnitBuilder.toHex(data, ""));
+			logger.debug("Address Table location {}", DataUnitBuilder.hex(data, ""));
 			data = read(createGetValue(AddrSystemState, 1));
 			logger.debug("Current operation mode {}", OperationMode.of(data[0] & 0xff));
 			// set PEI type 1: ensure that the application will not be started
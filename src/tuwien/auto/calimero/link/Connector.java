@@ -37,8 +37,11 @@
 package tuwien.auto.calimero.link;
 
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -49,7 +52,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.KNXAddress;
 import tuwien.auto.calimero.KNXException;
 import tuwien.auto.calimero.KNXIllegalArgumentException;
@@ -84,6 +89,13 @@ public final class Connector
 	public static final long NoMaxAttempts = Long.MAX_VALUE;
 	private long maxAttempts = 10;
 
+	private ReconnectPolicy policy;
+
+	// queue outbound frames while disconnected, disabled with capacity 0
+	private int sendQueueCapacity;
+	private long sendQueueTtl; // [ms]
+	private long sendQueuePacing; // [ms]
+
 	public Connector() {}
 
 	// copy ctor
@@ -95,6 +107,10 @@ public final class Connector
 		this.serverError = rhs.serverError;
 		this.internalError = rhs.internalError;
 		this.maxAttempts = rhs.maxAttempts;
+		this.policy = rhs.policy;
+		this.sendQueueCapacity = rhs.sendQueueCapacity;
+		this.sendQueueTtl = rhs.sendQueueTtl;
+		this.sendQueuePacing = rhs.sendQueuePacing;
 	}
 
 	// on successful connection, the attempts are reset to maxAttempts
@@ -124,6 +140,50 @@ public final class Connector
 		return this;
 	}
 
+	/**
+	 * Sets the reconnect policy used for scheduled reconnects, which replaces the fixed reconnect delay. A policy can be
+	 * shared by several connectors, its concurrency limit and circuit breaker apply per remote endpoint key (see
+	 * {@link #newLink(Object, TSupplier)}).
+	 *
+	 * @param policy reconnect policy
+	 * @return this connector
+	 */
+	public Connector reconnectPolicy(final ReconnectPolicy policy)
+	{
+		this.policy = policy;
+		return this;
+	}
+
+	/**
+	 * Enables queueing of outbound frames of a network link while the link is disconnected. Instead of blocking on or
+	 * failing a send, frames sent using non-blocking send methods (i.e., without waiting for a confirmation) are put
+	 * into a bounded queue. Frames are only queued while a connect is running or scheduled, or with connect on send
+	 * enabled; otherwise, a send fails with a closed link as without queueing. With connect on send enabled, queueing a
+	 * frame triggers a single asynchronous connect for all queued frames. After the link is (re-)connected, the queued
+	 * frames are sent in order, one frame every <code>pacing</code>. Queued frames expire after <code>ttl</code>; if
+	 * the queue is full, the oldest frame is discarded. A queued group value write replaces any queued group value
+	 * write to the same group address, so that only the latest value is sent.
+	 * <p>
+	 * Queued frames are sent, and the connect for queued frames is done, by a thread pool separate from the one
+	 * executing scheduled reconnects.
+	 *
+	 * @param capacity maximum number of queued frames, 0 disables queueing
+	 * @param ttl time-to-live of a queued frame
+	 * @param pacing interval between sending queued frames, {@link Duration#ZERO} sends queued frames back-to-back
+	 * @return this connector
+	 */
+	public Connector sendQueue(final int capacity, final Duration ttl, final Duration pacing)
+	{
+		if (capacity < 0)
+			throw new KNXIllegalArgumentException("send queue capacity " + capacity + " < 0");
+		if (ttl.isNegative() || pacing.isNegative())
+			throw new KNXIllegalArgumentException("negative send queue time-to-live or pacing");
+		sendQueueCapacity = capacity;
+		sendQueueTtl = ttl.toMillis();
+		sendQueuePacing = pacing.toMillis();
+		return this;
+	}
+
 	public Connector reconnectOn(final boolean errorOnCreation, final boolean serverDisconnect,
 		final boolean internalDisconnect)
 	{
@@ -144,7 +204,24 @@ public final class Connector
 	public KNXNetworkLink newLink(final TSupplier<? extends KNXNetworkLink> creator)
 		throws KNXException, InterruptedException
 	{
-		return new Link<KNXNetworkLink>(creator, this);
+		return new Link<KNXNetworkLink>(creator, this, null);
+	}
+
+	/**
+	 * Returns a new KNXNetworkLink with the specified behavior for (re-)connection to the KNX network, connecting to
+	 * the remote endpoint identified by <code>endpoint</code>. Links using the same endpoint key share the concurrency
+	 * limit, circuit breaker, and metrics of the {@link ReconnectPolicy} set for this connector.
+	 *
+	 * @param endpoint key identifying the remote endpoint, e.g., the socket address of a KNX IP server
+	 * @param creator supplies the specific KNX network link
+	 * @return a new KNX network link with the specified (re-)connection behavior configured
+	 * @throws KNXException on error creating the network link
+	 * @throws InterruptedException on interrupted thread
+	 */
+	public KNXNetworkLink newLink(final Object endpoint, final TSupplier<? extends KNXNetworkLink> creator)
+		throws KNXException, InterruptedException
+	{
+		return new Link<KNXNetworkLink>(creator, this, Objects.requireNonNull(endpoint));
 	}
 
 	/**
@@ -158,7 +235,24 @@ public final class Connector
 	public KNXNetworkMonitor newMonitor(final TSupplier<? extends KNXNetworkMonitor> creator)
 		throws KNXException, InterruptedException
 	{
-		return new Link<KNXNetworkMonitor>(creator, this);
+		return new Link<KNXNetworkMonitor>(creator, this, null);
+	}
+
+	/**
+	 * Returns a new KNXNetworMonitor with the specified behavior for (re-)connection to the KNX network, connecting to
+	 * the remote endpoint identified by <code>endpoint</code>.
+	 *
+	 * @param endpoint key identifying the remote endpoint
+	 * @param creator supplies the specific KNX network monitor
+	 * @return a new KNX network monitor with the specified (re-)connection behavior configured
+	 * @throws KNXException on error creating the monitor link
+	 * @throws InterruptedException on interrupted thread
+	 * @see #newLink(Object, TSupplier)
+	 */
+	public KNXNetworkMonitor newMonitor(final Object endpoint, final TSupplier<? extends KNXNetworkMonitor> creator)
+		throws KNXException, InterruptedException
+	{
+		return new Link<KNXNetworkMonitor>(creator, this, Objects.requireNonNull(endpoint));
 	}
 
 	// interruption policy: close link resource
@@ -183,31 +277,101 @@ public final class Connector
 			return t;
 		});
 
+		// sends queued frames and connects on behalf of queued frames, both of which might block; kept separate so
+		// that scheduled reconnects of other links are not delayed
+		private static ScheduledThreadPoolExecutor sendQueueExecutor = new ScheduledThreadPoolExecutor(4, runnable -> {
+			final Thread t = new Thread(runnable);
+			t.setName("Calimero Connector send queue " + t.getId());
+			t.setDaemon(true);
+			return t;
+		});
+
 		static {
 			// try to remove idle threads after a while
 			reconnect.setKeepAliveTime(61, TimeUnit.SECONDS);
 			reconnect.allowCoreThreadTimeOut(true);
+			sendQueueExecutor.setKeepAliveTime(61, TimeUnit.SECONDS);
+			sendQueueExecutor.allowCoreThreadTimeOut(true);
 		}
 
 		// we save a copy of the connector options that won't get modified
 		private final Connector connector;
+		private final ReconnectPolicy policy;
+		// key of the remote endpoint in the reconnect policy, this link if not specified
+		private final Object endpoint;
 
 		private volatile boolean closed;
 		private volatile Future<?> f = CompletableFuture.completedFuture(Void.TYPE);
 		private final AtomicBoolean connecting = new AtomicBoolean();
 		private final Object lock = new Object();
 
-		private Link(final TSupplier<? extends T> creator, final Connector options)
+		// frame sent while the link is disconnected, either as nsdu or as cEMI
+		private static final class Outbound
+		{
+			private static final int GroupValueWrite = 0x80;
+
+			final KNXAddress dst;
+			final Priority p;
+			final byte[] nsdu;
+			final CEMILData msg;
+			final long expires; // [ns]
+
+			Outbound(final KNXAddress dst, final Priority p, final byte[] nsdu, final CEMILData msg, final long ttl)
+			{
+				this.dst = dst;
+				this.p = p;
+				this.nsdu = nsdu;
+				this.msg = msg;
+				expires = System.nanoTime() + ttl * 1_000_000;
+			}
+
+			boolean expired(final long now) { return now - expires > 0; }
+
+			// a group value write supersedes a queued group value write to the same group address
+			boolean supersedes(final Outbound o)
+			{
+				return groupValueWrite() && o.groupValueWrite() && dst.equals(o.dst);
+			}
+
+			void send(final KNXNetworkLink link) throws KNXTimeoutException, KNXLinkClosedException
+			{
+				if (msg != null)
+					link.send(msg, false);
+				else
+					link.sendRequest(dst, p, nsdu);
+			}
+
+			private boolean groupValueWrite()
+			{
+				final byte[] apdu = msg != null ? msg.getPayload() : nsdu;
+				return dst instanceof GroupAddress && apdu.length > 1
+						&& DataUnitBuilder.getAPDUService(apdu) == GroupValueWrite;
+			}
+		}
+
+		private final Deque<Outbound> sendQueue = new ArrayDeque<>();
+		private boolean draining; // guarded by sendQueue
+		private long queueDropped; // guarded by sendQueue
+		private final AtomicBoolean queuedConnect = new AtomicBoolean();
+		private volatile Future<?> drain = CompletableFuture.completedFuture(Void.TYPE);
+
+		private Link(final TSupplier<? extends T> creator, final Connector options, final Object endpoint)
 			throws KNXException, InterruptedException
 		{
 			this.creator = creator;
 			connector = new Connector(options);
+			policy = connector.policy != null ? connector.policy : ReconnectPolicy.fixedDelay(connector.reconnectDelay);
+			this.endpoint = endpoint != null ? endpoint : this;
+			policy.add(this.endpoint);
 			try {
 				connect();
 			}
 			catch (final KNXException e) {
-				if (!connector.initialError)
+				if (!connector.initialError) {
+					if (this.endpoint == this)
+						policy.remove(this);
 					throw e;
+				}
 				logger().error("initial connection attempt", e);
 				scheduleConnect(connector.maxAttempts - 1);
 			}
@@ -222,6 +386,25 @@ public final class Connector
 			return impl;
 		}
 
+		/**
+		 * @return reconnect metrics of the remote endpoint of this link
+		 */
+		public ReconnectPolicy.Stats reconnectStats()
+		{
+			return policy.stats(endpoint);
+		}
+
+		/**
+		 * @return number of outbound frames queued while the link is disconnected or the queue is drained
+		 * @see Connector#sendQueue(int, Duration, Duration)
+		 */
+		public int queuedFrames()
+		{
+			synchronized (sendQueue) {
+				return sendQueue.size();
+			}
+		}
+
 		@Override
 		public void setKNXMedium(final KNXMediumSettings settings)
 		{
@@ -302,7 +485,8 @@ public final class Connector
 		public void sendRequest(final KNXAddress dst, final Priority p, final byte[] nsdu)
 			throws KNXTimeoutException, KNXLinkClosedException
 		{
-			link().sendRequest(dst, p, nsdu);
+			if (!enqueue(dst, p, nsdu, null))
+				link().sendRequest(dst, p, nsdu);
 		}
 
 		@Override
@@ -316,7 +500,8 @@ public final class Connector
 		public void send(final CEMILData msg, final boolean waitForCon) throws KNXTimeoutException,
 			KNXLinkClosedException
 		{
-			link().send(msg, waitForCon);
+			if (waitForCon || !enqueue(msg.getDestination(), null, null, msg))
+				link().send(msg, waitForCon);
 		}
 
 		@Override
@@ -341,6 +526,14 @@ public final class Connector
 		{
 			closed = true;
 			f.cancel(true);
+			drain.cancel(true);
+			synchronized (sendQueue) {
+				if (!sendQueue.isEmpty())
+					logger().info("link closed, discard {} queued frames", sendQueue.size());
+				sendQueue.clear();
+			}
+			if (endpoint == this)
+				policy.remove(endpoint);
 			try {
 				if (impl != null)
 					impl.close();
@@ -375,10 +568,11 @@ public final class Connector
 		{
 			try {
 				final KNXNetworkLink l = (KNXNetworkLink) impl;
+				if (l != null && (l.isOpen() || !connector.onSend))
+					return l;
 				// ??? should immediate connects here also count for scheduled connects, and
 				// increment the attempt counter?
-				return (KNXNetworkLink) (l == null ? connect()
-						: l.isOpen() ? l : connector.onSend ? connect() : l);
+				return (KNXNetworkLink) connectOnSend();
 			}
 			catch (final InterruptedException e) {
 				Thread.currentThread().interrupt();
@@ -396,31 +590,47 @@ public final class Connector
 		{
 			if (closed || remainingAttempts <= 0)
 				return;
+			final long attempt = connector.maxAttempts - remainingAttempts + 1;
+			f = reconnect.schedule(() -> scheduledConnect(remainingAttempts), policy.delay(attempt),
+					TimeUnit.MILLISECONDS);
+		}
+
+		private void scheduledConnect(final long remainingAttempts)
+		{
+			if (closed)
+				return;
 			final long max = connector.maxAttempts;
 			final long remaining = remainingAttempts - 1;
 			final long attempt = max - remaining;
-			final Runnable s = () -> {
-				try {
-					final String maxSuffix;
-					if (connector.maxAttempts == NoMaxAttempts)
-						maxSuffix = " (no max)";
-					else
-						maxSuffix = "/" + max + " (" + remaining + " remaining)";
-					logger().debug("execute scheduled connect {}{}", attempt, maxSuffix);
-					connect();
-				}
-				catch (KNXException | RuntimeException | InterruptedException e) {
-					if (attempt == 1)
-						logger().warn("connection attempt {}", attempt, e);
-					else {
-						final Throwable cause = e.getCause();
-						final String detail = cause != null && cause.getMessage() != null ? " (" + cause.getMessage() + ")" : "";
-						logger().warn("connection attempt {}: {}{}", attempt, e.getMessage(), detail);
-					}
-					scheduleConnect(remaining);
+			final long defer = policy.acquire(endpoint);
+			if (defer > 0) {
+				logger().debug("defer scheduled connect {} by {} ms ({})", attempt, defer, policy.stats(endpoint));
+				f = reconnect.schedule(() -> scheduledConnect(remainingAttempts), defer, TimeUnit.MILLISECONDS);
+				return;
+			}
+			try {
+				final String maxSuffix;
+				if (connector.maxAttempts == NoMaxAttempts)
+					maxSuffix = " (no max)";
+				else
+					maxSuffix = "/" + max + " (" + remaining + " remaining)";
+				logger().debug("execute scheduled connect {}{}", attempt, maxSuffix);
+				connect();
+			}
+			catch (KNXException | RuntimeException | InterruptedException e) {
+				if (attempt == 1)
+					logger().warn("connection attempt {}", attempt, e);
+				else {
+					final Throwable cause = e.getCause();
+					final String detail = cause != null && cause.getMessage() != null ? " (" + cause.getMessage() + ")"
+							: "";
+					logger().warn("connection attempt {}: {}{}", attempt, e.getMessage(), detail);
 				}
-			};
-			f = reconnect.schedule(s, connector.reconnectDelay, TimeUnit.MILLISECONDS);
+				scheduleConnect(remaining);
+			}
+			finally {
+				policy.release(endpoint);
+			}
 		}
 
 		private AutoCloseable connect() throws InterruptedException, KNXException
@@ -450,12 +660,19 @@ public final class Connector
 						listeners.forEach(monitor::addMonitorListener);
 					}
 					impl = t;
+					policy.succeeded(endpoint);
+					startDrain();
 				}
 				catch (final KNXRemoteException e) {
+					connectFailed();
 					final KNXLinkClosedException lce = new KNXLinkClosedException(e.getMessage());
 					lce.initCause(e);
 					throw lce;
 				}
+				catch (KNXException | RuntimeException e) {
+					connectFailed();
+					throw e;
+				}
 				finally {
 					connecting.set(false);
 					synchronized (lock) {
@@ -475,6 +692,128 @@ public final class Connector
 			return impl;
 		}
 
+		// connect on behalf of senders, subject to the circuit breaker and concurrency limit of the reconnect policy
+		private AutoCloseable connectOnSend() throws KNXException, InterruptedException
+		{
+			// an ongoing connect attempt of this link is shared
+			if (connecting.get())
+				return connect();
+			if (policy.acquire(endpoint) > 0) {
+				if (policy.circuitOpen(endpoint))
+					throw new KNXLinkClosedException("connect attempts suspended, circuit open after repeated failures");
+				throw new KNXLinkClosedException("connect deferred, max. concurrent connects to remote endpoint");
+			}
+			try {
+				return connect();
+			}
+			finally {
+				policy.release(endpoint);
+			}
+		}
+
+		// returns false if the frame is not queued but should be sent directly; frames are only queued if the link will
+		// get connected, otherwise the direct send reports the closed link
+		private boolean enqueue(final KNXAddress dst, final Priority p, final byte[] nsdu, final CEMILData msg)
+		{
+			final int capacity = connector.sendQueueCapacity;
+			if (capacity == 0)
+				return false;
+			synchronized (sendQueue) {
+				// keep order: while queued frames are pending or the last one is still being sent, subsequent frames are
+				// queued as well
+				if (closed || (sendQueue.isEmpty() && !draining && targetOpen()) || (!targetOpen() && !connectPending()))
+					return false;
+				final var frame = new Outbound(dst, p, nsdu != null ? nsdu.clone() : null, msg, connector.sendQueueTtl);
+				final long now = System.nanoTime();
+				sendQueue.removeIf(o -> o.expired(now) || frame.supersedes(o));
+				if (sendQueue.size() >= capacity) {
+					sendQueue.removeFirst();
+					if (queueDropped++ % 100 == 0)
+						logger().warn("send queue full ({} frames), discarded {} frames", capacity, queueDropped);
+				}
+				sendQueue.addLast(frame);
+			}
+			if (targetOpen())
+				startDrain();
+			else if (connector.onSend && !policy.circuitOpen(endpoint) && queuedConnect.compareAndSet(false, true))
+				sendQueueExecutor.execute(this::connectQueued);
+			return true;
+		}
+
+		// single asynchronous connect on behalf of all queued frames
+		private void connectQueued()
+		{
+			try {
+				if (!closed)
+					connectOnSend();
+			}
+			catch (KNXException | RuntimeException e) {
+				logger().info("connect for queued frames: {}", e.getMessage());
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				queuedConnect.set(false);
+			}
+		}
+
+		private void startDrain()
+		{
+			synchronized (sendQueue) {
+				if (draining || sendQueue.isEmpty())
+					return;
+				draining = true;
+			}
+			drain = sendQueueExecutor.submit(this::drainQueue);
+		}
+
+		// sends the next queued frame, and reschedules itself for the following frame (paced, if configured), so that
+		// the draining links take turns on the send queue executor; draining is reset only after the send of the last
+		// frame returned
+		private void drainQueue()
+		{
+			final Outbound frame;
+			final long now = System.nanoTime();
+			synchronized (sendQueue) {
+				while (!sendQueue.isEmpty() && sendQueue.peekFirst().expired(now))
+					sendQueue.removeFirst();
+				frame = sendQueue.pollFirst();
+				if (frame == null || closed || !targetOpen()) {
+					if (frame != null)
+						sendQueue.addFirst(frame);
+					draining = false;
+					return;
+				}
+			}
+			try {
+				frame.send((KNXNetworkLink) impl);
+			}
+			catch (final KNXLinkClosedException e) {
+				synchronized (sendQueue) {
+					sendQueue.addFirst(frame);
+					draining = false;
+				}
+				return;
+			}
+			catch (KNXTimeoutException | RuntimeException e) {
+				logger().warn("sending queued frame to {}", frame.dst, e);
+			}
+			drain = sendQueueExecutor.schedule(this::drainQueue, connector.sendQueuePacing, TimeUnit.MILLISECONDS);
+		}
+
+		// returns true if a connect is running or scheduled, or a send can start one
+		private boolean connectPending()
+		{
+			return connecting.get() || !f.isDone() || (connector.onSend && !policy.circuitOpen(endpoint));
+		}
+
+		private void connectFailed()
+		{
+			if (policy.failed(endpoint))
+				logger().warn("circuit open, suspend connect attempts ({})", policy.stats(endpoint));
+		}
+
 		private boolean targetOpen()
 		{
 			final T t = impl;
@@ -125,7 +125,7 @@ public class KNXNetworkLinkFT12 extends AbstractLink<FT12Connection>
 		try {
 			logger.debug("send message to {}{}", dst, (waitForCon ? ", wait for ack" : ""));
 			if (logger.isTraceEnabled())
-				logger.trace("EMI {}", DataUnitBuilder.toHex(msg, " "));
+				logger.trace("EMI {}", DataUnitBuilder.hex(msg, " "));
 			conn.send(msg, waitForCon);
 			logger.trace("send to {} succeeded", dst);
 		}
@@ -74,6 +74,7 @@ import tuwien.auto.calimero.knxnetip.LostMessageEvent;
 import tuwien.auto.calimero.knxnetip.RoutingBusyEvent;
 import tuwien.auto.calimero.knxnetip.RoutingListener;
 import tuwien.auto.calimero.knxnetip.SecureConnection;
+import tuwien.auto.calimero.knxnetip.TcpConnectionPool;
 import tuwien.auto.calimero.knxnetip.TunnelingListener;
 import tuwien.auto.calimero.knxnetip.servicetype.TunnelingFeature;
 import tuwien.auto.calimero.knxnetip.servicetype.TunnelingFeature.InterfaceFeature;
@@ -159,6 +160,22 @@ public class KNXNetworkLinkIP extends AbstractLink<KNXnetIPConnection>
 				settings.getDeviceAddress()), settings);
 	}
 
+	/**
+	 * Creates a new network link using KNXnet/IP tunneling over TCP, with the tunnel opened on the least loaded
+	 * server of the supplied connection pool.
+	 *
+	 * @param pool connection pool to obtain the tunnel from
+	 * @param settings medium settings defining device and KNX medium specifics for communication
+	 * @return the network link in open state
+	 * @throws KNXException on failure establishing link using the KNXnet/IP connection
+	 * @throws InterruptedException on interrupted thread while establishing link
+	 */
+	public static KNXNetworkLinkIP newTunnelingLink(final TcpConnectionPool pool, final KNXMediumSettings settings)
+			throws KNXException, InterruptedException {
+		return new KNXNetworkLinkIP(TunnelingV2, pool.newTunnel(TunnelingLayer.LinkLayer, settings.getDeviceAddress()),
+				settings);
+	}
+
 	public static KNXNetworkLinkIP newSecureTunnelingLink(final InetSocketAddress localEP, final InetSocketAddress remoteEP,
 		final boolean useNat, final byte[] deviceAuthCode, final int userId, final byte[] userKey, final KNXMediumSettings settings)
 		throws KNXException, InterruptedException {
@@ -125,7 +125,7 @@ public class KNXNetworkLinkTpuart extends AbstractLink<TpuartConnection>
 	{
 		try {
 			if (logger.isTraceEnabled())
-				logger.trace("cEMI {}", DataUnitBuilder.toHex(msg, " "));
+				logger.trace("cEMI {}", DataUnitBuilder.hex(msg, " "));
 			conn.send(msg, waitForCon);
 		}
 		catch (final InterruptedException | KNXPortClosedException e) {
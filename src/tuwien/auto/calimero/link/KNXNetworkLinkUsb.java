@@ -37,7 +37,6 @@
 package tuwien.auto.calimero.link;
 
 import java.util.EnumSet;
-import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -160,10 +159,8 @@ public class KNXNetworkLinkUsb extends AbstractLink<UsbConnection>
 	{
 		try {
 			if (logger.isTraceEnabled())
-				logger.trace("EMI {}", DataUnitBuilder.toHex(msg, " "));
-			final List<HidReport> reports = HidReport.create(activeEmi.emi, msg);
-			for (final HidReport r : reports)
-				conn.send(r, waitForCon);
+				logger.trace("EMI {}", DataUnitBuilder.hex(msg, " "));
+			conn.send(activeEmi.emi, msg, waitForCon);
 			logger.trace("send to {} succeeded", dst);
 		}
 		catch (final KNXPortClosedException e) {
@@ -190,7 +187,7 @@ public class KNXNetworkLinkUsb extends AbstractLink<UsbConnection>
 
 	@Override
 	void onSend(final CEMIDevMgmt frame) throws KNXPortClosedException, KNXTimeoutException {
-		conn.send(HidReport.create(KnxTunnelEmi.CEmi, frame.toByteArray()).get(0), true);
+		conn.send(KnxTunnelEmi.CEmi, frame.toByteArray(), true);
 	}
 
 	private boolean trySetActiveEmi(final EmiType active) throws KNXPortClosedException,
@@ -275,7 +272,7 @@ public class KNXNetworkLinkUsb extends AbstractLink<UsbConnection>
 			return;
 		final int objectInstance = 1;
 		final CEMI frame = new CEMIDevMgmt(CEMIDevMgmt.MC_PROPWRITE_REQ, objectType, objectInstance, pid, 1, 1, data);
-		logger.trace("write mgmt OT {} PID {} data 0x{}", objectType, pid, DataUnitBuilder.toHex(data, ""));
+		logger.trace("write mgmt OT {} PID {} data 0x{}", objectType, pid, DataUnitBuilder.hex(data, ""));
 		conn.send(HidReport.create(KnxTunnelEmi.CEmi, frame.toByteArray()).get(0), true);
 	}
 }
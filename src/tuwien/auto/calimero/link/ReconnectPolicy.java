@@ -0,0 +1,376 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+package tuwien.auto.calimero.link;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+
+/**
+ * Reconnect policy for links created by a {@link Connector}, using exponential back-off with jitter for reconnect
+ * delays, a limit of concurrent reconnects per remote endpoint, and a circuit breaker per remote endpoint.
+ * <p>
+ * A policy is intended to be shared by all links connecting to the same remote endpoints, e.g., the tunneling links
+ * to a KNX IP router. Links share an endpoint if they are created using the same endpoint key, see
+ * {@link Connector#newLink(Object, Connector.TSupplier)}. After a remote endpoint becomes unavailable, the jitter
+ * spreads the reconnect attempts of its links over time, and at most the configured number of reconnects per endpoint
+ * are attempted concurrently. After a number of consecutive failed connect attempts to an endpoint, its circuit opens
+ * and further connect attempts are suspended for the configured duration; afterwards, a single connect attempt decides
+ * whether the circuit closes again.
+ * <p>
+ * Any configuration has to be done before the policy is used by a connector.
+ */
+public final class ReconnectPolicy
+{
+	/** State of the circuit breaker of a remote endpoint. */
+	public enum CircuitState {
+		/** Connect attempts are allowed. */
+		Closed,
+		/** Connect attempts are suspended. */
+		Open,
+		/** A single connect attempt is allowed, which determines whether the circuit closes or opens again. */
+		HalfOpen
+	}
+
+	/** Reconnect metrics of a remote endpoint. */
+	public static final class Stats
+	{
+		private final long successes;
+		private final long failures;
+		private final long deferred;
+		private final long circuitOpened;
+		private final int active;
+		private final CircuitState state;
+
+		private Stats(final Endpoint ep)
+		{
+			successes = ep.successes;
+			failures = ep.failures;
+			deferred = ep.deferred;
+			circuitOpened = ep.circuitOpened;
+			active = ep.active;
+			state = ep.state;
+		}
+
+		/** @return number of connect attempts */
+		public long attempts() { return successes + failures; }
+
+		/** @return number of successful connect attempts */
+		public long successes() { return successes; }
+
+		/** @return number of failed connect attempts */
+		public long failures() { return failures; }
+
+		/** @return number of reconnects deferred due to the concurrency limit or an open circuit */
+		public long deferred() { return deferred; }
+
+		/** @return how often the circuit opened */
+		public long circuitOpened() { return circuitOpened; }
+
+		/** @return number of currently active reconnects */
+		public int activeReconnects() { return active; }
+
+		/** @return current state of the circuit breaker */
+		public CircuitState circuitState() { return state; }
+
+		@Override
+		public String toString()
+		{
+			return "attempts " + attempts() + " (" + successes + " successful, " + failures + " failed), " + deferred
+					+ " deferred, " + active + " active, circuit " + state + " (opened " + circuitOpened + " times)";
+		}
+	}
+
+	private static final class Endpoint
+	{
+		private long successes;
+		private long failures;
+		private long deferred;
+		private long circuitOpened;
+		private int active;
+		private int consecutiveFailures;
+		private CircuitState state = CircuitState.Closed;
+		private long openUntil; // [ns]
+	}
+
+	/** Failure threshold which disables the circuit breaker. */
+	public static final int NoCircuitBreaker = Integer.MAX_VALUE;
+
+	private long initialDelay = 2000; // [ms]
+	private long maxDelay = 120_000; // [ms]
+	private double multiplier = 2;
+	private double jitter = 0.5;
+	private int maxConcurrent = 4;
+	private int failureThreshold = NoCircuitBreaker;
+	private long openDuration = 60_000; // [ms]
+
+	private final Map<Object, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+	// reconnect behavior of a connector without policy: fixed delay, no concurrency limit, no circuit breaker
+	static ReconnectPolicy fixedDelay(final long delay)
+	{
+		return new ReconnectPolicy().backoff(Duration.ofMillis(delay), Duration.ofMillis(delay), 1).jitter(0)
+				.maxConcurrentReconnects(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new policy with an initial reconnect delay of 2 seconds, doubling for each further attempt up to 2
+	 * minutes, a jitter of 0.5, at most 4 concurrent reconnects per endpoint, and no circuit breaker.
+	 */
+	public ReconnectPolicy() {}
+
+	/**
+	 * Sets the exponential back-off of reconnect delays: the delay of attempt <i>n</i> (starting with 1) is
+	 * <code>min(max, initial * multiplier<sup>n - 1</sup>)</code>, reduced by the jitter.
+	 *
+	 * @param initial delay before the first reconnect attempt
+	 * @param max maximum delay between reconnect attempts, <code>max &ge; initial</code>
+	 * @param multiplier factor by which the delay increases with each attempt, <code>multiplier &ge; 1</code>
+	 * @return this policy
+	 */
+	public ReconnectPolicy backoff(final Duration initial, final Duration max, final double multiplier)
+	{
+		if (initial.isNegative() || max.compareTo(initial) < 0)
+			throw new KNXIllegalArgumentException("reconnect delays " + initial + " - " + max + " out of range");
+		if (multiplier < 1)
+			throw new KNXIllegalArgumentException("back-off multiplier " + multiplier + " < 1");
+		initialDelay = initial.toMillis();
+		maxDelay = max.toMillis();
+		this.multiplier = multiplier;
+		return this;
+	}
+
+	/**
+	 * Sets the jitter applied to reconnect delays: a delay <i>d</i> is reduced by a random amount in the range
+	 * <code>[0, jitter * d)</code>.
+	 *
+	 * @param jitter jitter, <code>0 &le; jitter &le; 1</code>; 0 disables the jitter
+	 * @return this policy
+	 */
+	public ReconnectPolicy jitter(final double jitter)
+	{
+		if (jitter < 0 || jitter > 1)
+			throw new KNXIllegalArgumentException("jitter " + jitter + " not in [0, 1]");
+		this.jitter = jitter;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of concurrent reconnects per remote endpoint; a reconnect exceeding this limit is
+	 * deferred.
+	 *
+	 * @param max maximum number of concurrent reconnects, <code>max &ge; 1</code>
+	 * @return this policy
+	 */
+	public ReconnectPolicy maxConcurrentReconnects(final int max)
+	{
+		if (max < 1)
+			throw new KNXIllegalArgumentException("max. concurrent reconnects " + max + " < 1");
+		maxConcurrent = max;
+		return this;
+	}
+
+	/**
+	 * Enables the circuit breaker, which suspends connect attempts to a remote endpoint for <code>openDuration</code>
+	 * after <code>failureThreshold</code> consecutive failed connect attempts.
+	 *
+	 * @param failureThreshold number of consecutive failed connect attempts to open the circuit, or
+	 *        {@link #NoCircuitBreaker}
+	 * @param openDuration duration the circuit stays open
+	 * @return this policy
+	 */
+	public ReconnectPolicy circuitBreaker(final int failureThreshold, final Duration openDuration)
+	{
+		if (failureThreshold < 1)
+			throw new KNXIllegalArgumentException("circuit breaker failure threshold " + failureThreshold + " < 1");
+		if (openDuration.isNegative())
+			throw new KNXIllegalArgumentException("negative circuit open duration " + openDuration);
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openDuration.toMillis();
+		return this;
+	}
+
+	/**
+	 * Returns the reconnect metrics of a remote endpoint.
+	 *
+	 * @param endpoint endpoint key
+	 * @return endpoint metrics, with all counters 0 for an unknown endpoint
+	 */
+	public Stats stats(final Object endpoint)
+	{
+		final Endpoint ep = endpoints.getOrDefault(endpoint, new Endpoint());
+		synchronized (ep) {
+			return new Stats(ep);
+		}
+	}
+
+	/**
+	 * Returns the reconnect metrics of all remote endpoints used with this policy.
+	 *
+	 * @return map of endpoint key to metrics
+	 */
+	public Map<Object, Stats> stats()
+	{
+		final Map<Object, Stats> stats = new HashMap<>();
+		endpoints.forEach((key, ep) -> {
+			synchronized (ep) {
+				stats.put(key, new Stats(ep));
+			}
+		});
+		return stats;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "reconnect delay " + initialDelay + " - " + maxDelay + " ms (x" + multiplier + ", jitter " + jitter
+				+ "), max. " + maxConcurrent + " concurrent reconnects"
+				+ (failureThreshold == NoCircuitBreaker ? ""
+						: ", circuit opens for " + openDuration + " ms after " + failureThreshold + " failures");
+	}
+
+	// returns the delay [ms] before reconnect attempt (starting with 1)
+	long delay(final long attempt)
+	{
+		final double exp = initialDelay * Math.pow(multiplier, Math.min(attempt - 1, 1024));
+		return jittered((long) Math.min(maxDelay, exp));
+	}
+
+	// returns 0 if the reconnect can start now, which has to be followed by release; otherwise returns the delay [ms]
+	// after which the reconnect can be tried again
+	long acquire(final Object endpoint)
+	{
+		final Endpoint ep = endpoint(endpoint);
+		synchronized (ep) {
+			if (ep.state == CircuitState.Open) {
+				final long remaining = ep.openUntil - System.nanoTime();
+				if (remaining > 0) {
+					ep.deferred++;
+					return Math.max(1, remaining / 1_000_000 + jittered(initialDelay));
+				}
+				ep.state = CircuitState.HalfOpen;
+			}
+			final int limit = ep.state == CircuitState.HalfOpen ? 1 : maxConcurrent;
+			if (ep.active >= limit) {
+				ep.deferred++;
+				return Math.max(1, jittered(initialDelay));
+			}
+			ep.active++;
+			return 0;
+		}
+	}
+
+	// release, succeeded, and failed ignore a removed endpoint, e.g., a connect still running after its link got closed
+	void release(final Object endpoint)
+	{
+		final Endpoint ep = endpoints.get(endpoint);
+		if (ep == null)
+			return;
+		synchronized (ep) {
+			ep.active--;
+		}
+	}
+
+	boolean circuitOpen(final Object endpoint)
+	{
+		final Endpoint ep = endpoints.get(endpoint);
+		if (ep == null)
+			return false;
+		synchronized (ep) {
+			return ep.state == CircuitState.Open && ep.openUntil - System.nanoTime() > 0;
+		}
+	}
+
+	void succeeded(final Object endpoint)
+	{
+		final Endpoint ep = endpoints.get(endpoint);
+		if (ep == null)
+			return;
+		synchronized (ep) {
+			ep.successes++;
+			ep.consecutiveFailures = 0;
+			ep.state = CircuitState.Closed;
+		}
+	}
+
+	// returns true if this failure (re-)opened the circuit
+	boolean failed(final Object endpoint)
+	{
+		final Endpoint ep = endpoints.get(endpoint);
+		if (ep == null)
+			return false;
+		synchronized (ep) {
+			ep.failures++;
+			ep.consecutiveFailures++;
+			final long now = System.nanoTime();
+			// an open circuit whose open duration expired is treated as half-open
+			if (ep.state == CircuitState.Open && ep.openUntil - now > 0)
+				return false;
+			if (ep.state == CircuitState.Closed && ep.consecutiveFailures < failureThreshold)
+				return false;
+			ep.state = CircuitState.Open;
+			ep.openUntil = now + openDuration * 1_000_000;
+			ep.circuitOpened++;
+			return true;
+		}
+	}
+
+	void add(final Object endpoint)
+	{
+		endpoint(endpoint);
+	}
+
+	void remove(final Object endpoint)
+	{
+		endpoints.remove(endpoint);
+	}
+
+	private Endpoint endpoint(final Object endpoint)
+	{
+		return endpoints.computeIfAbsent(endpoint, __ -> new Endpoint());
+	}
+
+	private long jittered(final long delay)
+	{
+		if (jitter == 0 || delay == 0)
+			return delay;
+		return delay - (long) (ThreadLocalRandom.current().nextDouble() * jitter * delay);
+	}
+}
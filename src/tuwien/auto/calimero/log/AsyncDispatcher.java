@@ -0,0 +1,256 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+package tuwien.auto.calimero.log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.Marker;
+
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.log.LogService.LogLevel;
+
+/**
+ * Dispatches log events asynchronously using a bounded ring buffer with preallocated event slots.
+ * <p>
+ * Producers copy the event into the next free slot; the dispatcher thread swaps all occupied slots with the slots
+ * of its batch at once, and logs the batch outside the lock. Events are neither wrapped in tasks nor copied, so
+ * dispatching does not allocate. If the ring buffer is full, an event is either dropped and counted, or the producer
+ * blocks until a slot becomes free.
+ */
+final class AsyncDispatcher
+{
+	static final int MaxCapacity = 1 << 20;
+
+	private static final class Event
+	{
+		Logger logger;
+		LogLevel level;
+		Marker marker;
+		String format;
+		Object[] args;
+		// name of the logging thread, the dispatcher thread takes on this name while logging the event
+		String threadName;
+
+		void clear()
+		{
+			logger = null;
+			marker = null;
+			format = null;
+			args = null;
+			threadName = null;
+		}
+	}
+
+	private final Event[] ring;
+	private final Event[] batch;
+	private final int mask;
+	private final boolean block;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	// guarded by lock
+	private long head;
+	private long tail;
+	private long dropped;
+	private long reportedDrops;
+	// set while the dispatcher thread logs a batch
+	private boolean dispatching;
+
+	private final Thread thread;
+	private final String threadName;
+
+	private final Logger logger = LogService.getLogger("calimero.log");
+
+	/**
+	 * Creates a new dispatcher and starts its dispatcher thread.
+	 *
+	 * @param capacity number of event slots, rounded up to a power of two
+	 * @param block <code>true</code> to block producers on a full ring buffer, <code>false</code> to drop events
+	 * @param threadName name of the dispatcher thread
+	 */
+	AsyncDispatcher(final int capacity, final boolean block, final String threadName)
+	{
+		if (capacity < 1 || capacity > MaxCapacity)
+			throw new KNXIllegalArgumentException("capacity " + capacity + " not in [1, 2^20]");
+		final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		ring = newEvents(size);
+		batch = newEvents(size);
+		mask = size - 1;
+		this.block = block;
+
+		this.threadName = threadName;
+		thread = new Thread(this::run, threadName);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static Event[] newEvents(final int size)
+	{
+		final Event[] events = new Event[size];
+		for (int i = 0; i < size; i++)
+			events[i] = new Event();
+		return events;
+	}
+
+	/**
+	 * Adds a log event for dispatching.
+	 *
+	 * @return <code>true</code> if the event was added, <code>false</code> if the event was dropped
+	 */
+	boolean dispatch(final Logger l, final LogLevel level, final Marker m, final String format, final Object... args)
+	{
+		// events logged while dispatching, e.g., by an appender, are logged directly, we must not wait for ourselves
+		if (Thread.currentThread() == thread) {
+			LogService.log(l, level, m, format, args);
+			return true;
+		}
+		lock.lock();
+		try {
+			while (tail - head > mask) {
+				if (!block) {
+					dropped++;
+					return false;
+				}
+				notFull.awaitUninterruptibly();
+			}
+			final Event e = ring[(int) tail & mask];
+			e.logger = l;
+			e.level = level;
+			e.marker = m;
+			e.format = format;
+			e.args = args;
+			e.threadName = Thread.currentThread().getName();
+			if (tail++ == head)
+				notEmpty.signal();
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of log events dropped due to a full ring buffer
+	 */
+	long dropped()
+	{
+		lock.lock();
+		try {
+			return dropped;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until all log events added so far got dispatched.
+	 *
+	 * @param timeout maximum time to wait in milliseconds
+	 * @return <code>true</code> if all events got dispatched, <code>false</code> on timeout
+	 * @throws InterruptedException on interrupted thread
+	 */
+	boolean flush(final long timeout) throws InterruptedException
+	{
+		long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+		lock.lock();
+		try {
+			final long until = tail;
+			while (head < until || dispatching) {
+				if (remaining <= 0)
+					return false;
+				remaining = notFull.awaitNanos(remaining);
+			}
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void run()
+	{
+		while (true) {
+			final int events;
+			final long drops;
+			lock.lock();
+			try {
+				dispatching = false;
+				notFull.signalAll();
+				while (head == tail)
+					notEmpty.awaitUninterruptibly();
+				events = (int) (tail - head);
+				// swap occupied ring slots with the (cleared) slots of our batch
+				for (int i = 0; i < events; i++) {
+					final int slot = (int) head++ & mask;
+					final Event e = ring[slot];
+					ring[slot] = batch[i];
+					batch[i] = e;
+				}
+				drops = dropped - reportedDrops;
+				reportedDrops = dropped;
+				dispatching = true;
+				if (block)
+					notFull.signalAll();
+			}
+			finally {
+				lock.unlock();
+			}
+
+			if (drops > 0)
+				logger.warn("async logging dropped {} log events (ring buffer full)", drops);
+			for (int i = 0; i < events; i++) {
+				final Event e = batch[i];
+				if (!e.threadName.equals(thread.getName()))
+					thread.setName(e.threadName);
+				try {
+					LogService.log(e.logger, e.level, e.marker, e.format, e.args);
+				}
+				catch (final RuntimeException ex) {
+					logger.error("dispatching log event", ex);
+				}
+				e.clear();
+			}
+			if (!threadName.equals(thread.getName()))
+				thread.setName(threadName);
+		}
+	}
+}
@@ -36,9 +36,6 @@
 
 package tuwien.auto.calimero.log;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
@@ -52,6 +49,12 @@ import tuwien.auto.calimero.KNXIllegalArgumentException;
  * {@link #getAsyncLogger(String)} provides a logger which dispatches the logged information
  * asynchronously. This minimizes the overhead on the calling thread, independent of the used
  * underlying logging framework implementation.
+ * <p>
+ * Asynchronous log events are buffered in a bounded ring buffer of 8192 events, the capacity can be set using the
+ * system property <code>calimero.log.async.capacity</code> (in the range [1, 2^20], other values are ignored). Events
+ * are logged with the name of the thread which logged the event. If the buffer is full, further events are dropped
+ * (see {@link #droppedAsyncEvents()}); set the system property <code>calimero.log.async.overflow=block</code> to
+ * block the logging thread instead until the buffer has space available.
  *
  * @author B. Malinowsky
  */
@@ -72,12 +75,9 @@ public final class LogService
 	}
 
 	private static final String loggerThreadName = "Calimero Async Logging";
-	private static final ExecutorService dispatcher = Executors.newFixedThreadPool(1, (r) -> {
-		final Thread t = Executors.defaultThreadFactory().newThread(r);
-		t.setName(loggerThreadName);
-		t.setDaemon(true);
-		return t;
-	});
+	private static final int defaultAsyncCapacity = 8192;
+	private static final AsyncDispatcher dispatcher = new AsyncDispatcher(asyncCapacity(),
+			"block".equalsIgnoreCase(System.getProperty("calimero.log.async.overflow")), loggerThreadName);
 
 	private LogService()
 	{}
@@ -108,6 +108,28 @@ public final class LogService
 		return new AsyncLogger(LogService.getLogger(name));
 	}
 
+	/**
+	 * Returns the number of log events dropped by asynchronous loggers because the ring buffer was full.
+	 *
+	 * @return number of dropped log events
+	 */
+	public static long droppedAsyncEvents()
+	{
+		return dispatcher.dropped();
+	}
+
+	// an invalid capacity must not prevent initialization of this class, we use the default capacity instead
+	private static int asyncCapacity()
+	{
+		final String property = "calimero.log.async.capacity";
+		final int capacity = Integer.getInteger(property, defaultAsyncCapacity);
+		if (capacity >= 1 && capacity <= AsyncDispatcher.MaxCapacity)
+			return capacity;
+		getLogger("calimero.log").warn("{}={} not in [1, {}], use capacity of {}", property,
+				System.getProperty(property), AsyncDispatcher.MaxCapacity, defaultAsyncCapacity);
+		return defaultAsyncCapacity;
+	}
+
 	static void async(final Logger l, final LogLevel level, final String msg, final Throwable t)
 	{
 		async(l, level, (Marker) null, "{}", msg, t);
@@ -115,7 +137,7 @@ public final class LogService
 
 	static void async(final Logger l, final LogLevel level, final Marker m, final String msg, final Throwable t)
 	{
-		async(l, level, (Marker) null, "{}", msg, t);
+		async(l, level, m, "{}", msg, t);
 	}
 
 	static void async(final Logger l, final LogLevel level, final String format, final Object... o)
@@ -127,13 +149,7 @@ public final class LogService
 	{
 		if (!isEnabled(l, level))
 			return;
-		final Thread thread = Thread.currentThread();
-		dispatcher.execute(() -> {
-			final Thread logger = Thread.currentThread();
-			logger.setName(thread.getName());
-			log(l, level, m, format, o);
-			logger.setName(loggerThreadName);
-		});
+		dispatcher.dispatch(l, level, m, format, o);
 	}
 
 	/**
@@ -150,7 +166,7 @@ public final class LogService
 		log(logger, level, (Marker) null, format, arguments);
 	}
 
-	private static void log(final Logger logger, final LogLevel level, final Marker marker,
+	static void log(final Logger logger, final LogLevel level, final Marker marker,
 		final String format, final Object... o)
 	{
 		switch (level) {
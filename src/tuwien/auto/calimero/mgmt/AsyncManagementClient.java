@@ -0,0 +1,146 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.KNXTimeoutException;
+
+/**
+ * Management client services which do not block the calling thread while waiting for a response. Each service
+ * registers for its response before the request is sent, and returns a future which completes with the result of the
+ * service once the response was received. Services of this interface complete exceptionally with the same exceptions
+ * the corresponding blocking service of {@link ManagementClient} throws, e.g., with a {@link KNXTimeoutException} if
+ * no response was received within the response timeout. Invalid arguments are rejected by throwing a
+ * {@link KNXIllegalArgumentException}.
+ * <p>
+ * Any number of services can be outstanding at the same time. Requests to connectionless destinations are sent in
+ * parallel; a connection-oriented destination still permits only one outstanding request at a time (i.e., requests to
+ * the same destination are sent one after the other).
+ *
+ * @see ManagementClient
+ */
+public interface AsyncManagementClient extends ManagementClient
+{
+	/**
+	 * Reads the individual address of KNX devices in programming mode, see
+	 * {@link ManagementClient#readAddress(boolean)}.
+	 *
+	 * @param oneAddressOnly <code>true</code> to complete with the first address received, <code>false</code> to
+	 *        collect all addresses received within the response timeout
+	 * @return future completing with the list of individual addresses
+	 */
+	CompletableFuture<List<IndividualAddress>> readAddressAsync(boolean oneAddressOnly);
+
+	/**
+	 * Reads the device descriptor information of a communication partner, see
+	 * {@link ManagementClient#readDeviceDesc(Destination, int)}.
+	 *
+	 * @param dst destination to read from
+	 * @param descType device descriptor type, 0 for type 0 or 2 for type 2
+	 * @return future completing with the device descriptor information
+	 */
+	CompletableFuture<byte[]> readDeviceDescAsync(Destination dst, int descType);
+
+	/**
+	 * Reads the value of a property of an interface object of a communication partner, see
+	 * {@link ManagementClient#readProperty(Destination, int, int, int, int)}. In contrast to the blocking service, the
+	 * requested elements are read using a single request, i.e., the elements have to fit into one response.
+	 *
+	 * @param dst destination to read from
+	 * @param objIndex interface object index
+	 * @param propertyId property identifier
+	 * @param start start index in the property value to start reading from
+	 * @param elements number of elements to read
+	 * @return future completing with the property value data
+	 */
+	CompletableFuture<byte[]> readPropertyAsync(Destination dst, int objIndex, int propertyId, int start,
+		int elements);
+
+	/**
+	 * Modifies the value of a property of an interface object of a communication partner, see
+	 * {@link ManagementClient#writeProperty(Destination, int, int, int, int, byte[])}.
+	 *
+	 * @param dst destination to write to
+	 * @param objIndex interface object index
+	 * @param propertyId property identifier
+	 * @param start start index in the property value to start writing to
+	 * @param elements number of elements to write
+	 * @param data byte array containing property value data to write
+	 * @return future completing after the written property value was read back successfully
+	 */
+	CompletableFuture<Void> writePropertyAsync(Destination dst, int objIndex, int propertyId, int start, int elements,
+		byte[] data);
+
+	/**
+	 * Reads the description of a property of an interface object of a communication partner, see
+	 * {@link ManagementClient#readPropertyDesc(Destination, int, int, int)}.
+	 *
+	 * @param dst destination to read from
+	 * @param objIndex interface object index
+	 * @param propertyId property identifier, specify 0 to use the property index
+	 * @param propIndex property index, starts with index 0 for the first property
+	 * @return future completing with the property description, starting with the property object index
+	 */
+	CompletableFuture<byte[]> readPropertyDescAsync(Destination dst, int objIndex, int propertyId, int propIndex);
+
+	/**
+	 * Reads memory data from the address space of a communication partner its controller, see
+	 * {@link ManagementClient#readMemory(Destination, int, int)}.
+	 *
+	 * @param dst connection-oriented destination to read from
+	 * @param startAddr start address to read in memory
+	 * @param bytes number of data bytes to read (with increasing addresses), <code>bytes &gt; 0</code>
+	 * @return future completing with the data read from the memory
+	 */
+	CompletableFuture<byte[]> readMemoryAsync(Destination dst, int startAddr, int bytes);
+
+	/**
+	 * Writes memory data in the address space of a communication partner its controller, see
+	 * {@link ManagementClient#writeMemory(Destination, int, byte[])}.
+	 *
+	 * @param dst connection-oriented destination to write to
+	 * @param startAddr start address to write in memory
+	 * @param data byte array containing the memory data to write
+	 * @return future completing after the memory data was sent, or in verify mode after the written data was read
+	 *         back successfully
+	 */
+	CompletableFuture<Void> writeMemoryAsync(Destination dst, int startAddr, byte[] data);
+}
@@ -42,12 +42,15 @@ import static tuwien.auto.calimero.mgmt.Destination.State.Disconnected;
 import static tuwien.auto.calimero.mgmt.Destination.State.OpenIdle;
 import static tuwien.auto.calimero.mgmt.Destination.State.OpenWait;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import tuwien.auto.calimero.FrameEvent;
 import tuwien.auto.calimero.IndividualAddress;
 import tuwien.auto.calimero.link.KNXLinkClosedException;
 
@@ -89,6 +92,13 @@ public class Destination implements AutoCloseable
 
 		Future<?> future = CompletableFuture.completedFuture(Void.TYPE);
 
+		// serializes connection-oriented sending, only one data frame of a connection is awaiting acknowledgment
+		final Object sendLock = new Object();
+		// frames of the connection received while awaiting acknowledgment, guarded by itself
+		final Deque<FrameEvent> received = new ArrayDeque<>();
+		boolean awaitingAck;
+		volatile int repeated;
+
 		/**
 		 * Creates a new aggregator proxy.
 		 *
@@ -0,0 +1,183 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.mgmt.PropertyAccess.PID;
+
+/**
+ * Caches static capabilities of remote KNX devices, so that management services and procedures skip redundant
+ * requests for information which does not change during normal device operation. Cached are device descriptors,
+ * static device object properties (e.g., serial number and maximum APDU length), which services are supported by a
+ * device, and the authorization level of an open connection.
+ * <p>
+ * Capabilities of a device expire after the time-to-live; they are invalidated explicitly on device restart and
+ * individual address write. The authorization level is only valid for the lifetime of a transport layer connection,
+ * and is cleared on disconnect.
+ */
+final class DeviceCapabilityCache
+{
+	static final Duration DefaultTimeToLive = Duration.ofMinutes(10);
+
+	/** Capabilities of a single device, an unknown capability is <code>null</code>. */
+	static final class Capabilities
+	{
+		private final long expires;
+
+		private final Map<Integer, byte[]> descriptors = new ConcurrentHashMap<>();
+		// device object properties with constant value, e.g., serial number
+		private final Map<Integer, byte[]> properties = new ConcurrentHashMap<>();
+
+		volatile Boolean extendedMemoryServices;
+		volatile Boolean serverVerification;
+
+		private volatile byte[] authorizeKey;
+		private volatile int authorizationLevel;
+
+		private Capabilities(final long expires)
+		{
+			this.expires = expires;
+		}
+
+		Optional<byte[]> descriptor(final int type)
+		{
+			return Optional.ofNullable(descriptors.get(type)).map(byte[]::clone);
+		}
+
+		void descriptor(final int type, final byte[] descriptor)
+		{
+			descriptors.put(type, descriptor.clone());
+		}
+
+		Optional<byte[]> property(final int pid)
+		{
+			return Optional.ofNullable(properties.get(pid)).map(byte[]::clone);
+		}
+
+		void property(final int pid, final byte[] data)
+		{
+			properties.put(pid, data.clone());
+		}
+
+		// authorization level for the key, valid while the connection is open
+		Optional<Integer> authorizationLevel(final byte[] key)
+		{
+			final byte[] k = authorizeKey;
+			return k != null && Arrays.equals(k, key) ? Optional.of(authorizationLevel) : Optional.empty();
+		}
+
+		void authorizationLevel(final byte[] key, final int level)
+		{
+			authorizationLevel = level;
+			authorizeKey = key.clone();
+		}
+
+		void clearAuthorization()
+		{
+			authorizeKey = null;
+		}
+
+		private boolean expired(final long now)
+		{
+			return now - expires >= 0;
+		}
+	}
+
+	// device object properties which are constant for a device
+	private static final int[] StaticProperties = { PID.SERIAL_NUMBER, PID.MANUFACTURER_ID, PID.MAX_APDULENGTH,
+		PID.ORDER_INFO };
+
+	private final Map<IndividualAddress, Capabilities> devices = new ConcurrentHashMap<>();
+	private final long timeToLive;
+
+	DeviceCapabilityCache()
+	{
+		this(DefaultTimeToLive);
+	}
+
+	DeviceCapabilityCache(final Duration timeToLive)
+	{
+		this.timeToLive = timeToLive.toNanos();
+	}
+
+	/**
+	 * Returns the capabilities of a device, a new (empty) entry is created if the device has no entry or its entry
+	 * expired.
+	 *
+	 * @param device device address
+	 * @return device capabilities
+	 */
+	Capabilities get(final IndividualAddress device)
+	{
+		final long now = System.nanoTime();
+		return devices.compute(device,
+				(__, c) -> c == null || c.expired(now) ? new Capabilities(now + timeToLive) : c);
+	}
+
+	void clearAuthorization(final IndividualAddress device)
+	{
+		final var c = devices.get(device);
+		if (c != null)
+			c.clearAuthorization();
+	}
+
+	void invalidate(final IndividualAddress device)
+	{
+		devices.remove(device);
+	}
+
+	void invalidateAll()
+	{
+		devices.clear();
+	}
+
+	static boolean isStaticProperty(final int objIndex, final int pid, final int start, final int elements)
+	{
+		if (objIndex != 0 || start != 1 || elements != 1)
+			return false;
+		for (final int p : StaticProperties)
+			if (p == pid)
+				return true;
+		return false;
+	}
+}
@@ -37,7 +37,6 @@
 package tuwien.auto.calimero.mgmt;
 
 import java.util.EnumSet;
-import java.util.List;
 import java.util.function.Consumer;
 
 import tuwien.auto.calimero.CloseEvent;
@@ -47,7 +46,6 @@ import tuwien.auto.calimero.KNXRemoteException;
 import tuwien.auto.calimero.KNXTimeoutException;
 import tuwien.auto.calimero.cemi.CEMIDevMgmt;
 import tuwien.auto.calimero.serial.KNXPortClosedException;
-import tuwien.auto.calimero.serial.usb.HidReport;
 import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.KnxTunnelEmi;
 import tuwien.auto.calimero.serial.usb.UsbConnection;
 import tuwien.auto.calimero.serial.usb.UsbConnection.EmiType;
@@ -166,9 +164,7 @@ public class LocalDeviceManagementUsb extends LocalDeviceManagement
 	protected void send(final CEMIDevMgmt frame, final Object mode) throws KNXTimeoutException,
 		KNXPortClosedException
 	{
-		final List<HidReport> reports = HidReport.create(KnxTunnelEmi.CEmi, frame.toByteArray());
-		for (final HidReport r : reports)
-			conn.send(r, true);
+		conn.send(KnxTunnelEmi.CEmi, frame.toByteArray(), true);
 	}
 
 	@Override
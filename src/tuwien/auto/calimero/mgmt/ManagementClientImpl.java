@@ -45,17 +45,23 @@ import static tuwien.auto.calimero.DataUnitBuilder.createLengthOptimizedAPDU;
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Deque;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 
@@ -73,7 +79,6 @@ import tuwien.auto.calimero.Priority;
 import tuwien.auto.calimero.ReturnCode;
 import tuwien.auto.calimero.SecurityControl;
 import tuwien.auto.calimero.SecurityControl.DataSecurity;
-import tuwien.auto.calimero.cemi.CEMI;
 import tuwien.auto.calimero.cemi.CEMILData;
 import tuwien.auto.calimero.dptxlator.PropertyTypes;
 import tuwien.auto.calimero.internal.EventListeners;
@@ -89,10 +94,13 @@ import tuwien.auto.calimero.mgmt.PropertyAccess.PID;
  * Uses {@link TransportLayer} internally for communication.
  * All management service methods invoked after a detach of the network link are allowed
  * to throw {@link IllegalStateException}.
+ * <p>
+ * The asynchronous services send their requests using a small pool of threads shared by all management clients, and
+ * do not occupy a thread while waiting for a response.
  *
  * @author B. Malinowsky
  */
-public class ManagementClientImpl implements ManagementClient
+public class ManagementClientImpl implements AsyncManagementClient
 {
 	private static final int ADC_READ = 0x0180;
 	private static final int ADC_RESPONSE = 0x01C0;
@@ -173,7 +181,10 @@ public class ManagementClientImpl implements ManagementClient
 		}
 
 		@Override
-		public void disconnected(final Destination d) {}
+		public void disconnected(final Destination d)
+		{
+			capabilities.clearAuthorization(d.getAddress());
+		}
 
 		@Override
 		public void group(final FrameEvent e) {}
@@ -190,12 +201,7 @@ public class ManagementClientImpl implements ManagementClient
 		private void checkResponse(final FrameEvent e) {
 			final var ldata = (CEMILData) e.getFrame();
 			try {
-				if (isActiveService(e)) {
-					synchronized (indications) {
-						indications.add(e);
-						indications.notifyAll();
-					}
-				}
+				dispatch(e);
 				listeners.fire(c -> c.accept(e));
 			}
 			catch (final RuntimeException rte) {
@@ -206,6 +212,17 @@ public class ManagementClientImpl implements ManagementClient
 
 	private static final boolean extMemoryServices = true;
 
+	// sends the requests of asynchronous services and expires their response waiters
+	private static final ScheduledThreadPoolExecutor async = new ScheduledThreadPoolExecutor(4, runnable -> {
+		final Thread t = new Thread(runnable, "Calimero management client");
+		t.setDaemon(true);
+		return t;
+	});
+
+	static {
+		async.setRemoveOnCancelPolicy(true);
+	}
+
 	private final TransportLayer tl;
 	private final TLListener tlListener = new TLListener();
 	private final SecureManagement sal;
@@ -214,8 +231,11 @@ public class ManagementClientImpl implements ManagementClient
 	private final IndividualAddress src;
 	private volatile Priority priority = Priority.LOW;
 	private volatile Duration responseTimeout = Duration.ofSeconds(5);
-	private final Deque<FrameEvent> indications = new ArrayDeque<>();
-	private final ConcurrentHashMap<Integer, Long> activeServiceResponses = new ConcurrentHashMap<>();
+	// correlation of responses to waiting requests, keyed by response service and source address
+	private final Map<Integer, List<ResponseWaiter>> waiters = new ConcurrentHashMap<>();
+	// connection-oriented destinations with outstanding asynchronous requests, mapped to the last queued request
+	private final Map<Destination, CompletableFuture<?>> queued = new ConcurrentHashMap<>();
+	private final DeviceCapabilityCache capabilities = new DeviceCapabilityCache();
 	private volatile boolean detachTransportLayer;
 	private volatile boolean detached;
 	private final Logger logger;
@@ -267,6 +287,24 @@ public class ManagementClientImpl implements ManagementClient
 		listeners.remove(onEvent);
 	}
 
+	/**
+	 * Invalidates the cached capabilities of a device, i.e., its device descriptors, maximum APDU length, static
+	 * device object properties, supported services, and authorization level. Capabilities are invalidated
+	 * automatically on restart and individual address write; invalidate explicitly if the device changed otherwise,
+	 * e.g., after it was reprogrammed by another client.
+	 *
+	 * @param device device address
+	 */
+	public void invalidateCapabilities(final IndividualAddress device)
+	{
+		capabilities.invalidate(device);
+	}
+
+	DeviceCapabilityCache capabilities()
+	{
+		return capabilities;
+	}
+
 	@Override
 	public void setResponseTimeout(final int timeout)
 	{
@@ -323,20 +361,31 @@ public class ManagementClientImpl implements ManagementClient
 	{
 		tl.broadcast(false, Priority.SYSTEM,
 				DataUnitBuilder.createAPDU(IND_ADDR_WRITE, newAddress.toByteArray()));
+		// we don't know the previous address of the device in programming mode
+		capabilities.invalidateAll();
 	}
 
 	@Override
 	public IndividualAddress[] readAddress(final boolean oneAddressOnly)
 		throws KNXTimeoutException, KNXRemoteException, KNXLinkClosedException, InterruptedException
 	{
-		final long start = registerActiveService(IND_ADDR_RESPONSE);
-		tl.broadcast(false, Priority.SYSTEM, DataUnitBuilder.createLengthOptimizedAPDU(IND_ADDR_READ));
 		final List<IndividualAddress> l = new ArrayList<>();
-		waitForResponses(IND_ADDR_RESPONSE, 0, 0, start, responseTimeout, (source, data) -> {
+		try (var waiter = expect(IND_ADDR_RESPONSE, null, 0, 0, (source, data) -> {
 			l.add(source);
 			return Optional.of(source.toByteArray());
-		}, oneAddressOnly);
-		return l.toArray(IndividualAddress[]::new);
+		}, oneAddressOnly)) {
+			tl.broadcast(false, Priority.SYSTEM, DataUnitBuilder.createLengthOptimizedAPDU(IND_ADDR_READ));
+			return waiter.await(responseTimeout).stream().map(IndividualAddress::new).toArray(IndividualAddress[]::new);
+		}
+	}
+
+	@Override
+	public CompletableFuture<List<IndividualAddress>> readAddressAsync(final boolean oneAddressOnly) {
+		final var waiter = expect(IND_ADDR_RESPONSE, null, 0, 0, (source, data) -> Optional.of(source.toByteArray()),
+				oneAddressOnly);
+		final byte[] apdu = DataUnitBuilder.createLengthOptimizedAPDU(IND_ADDR_READ);
+		return requestAsync(waiter, () -> tl.broadcast(false, Priority.SYSTEM, apdu), responseTimeout,
+				responses -> responses.stream().map(IndividualAddress::new).collect(toList()));
 	}
 
 	@Override
@@ -351,6 +400,7 @@ public class ManagementClientImpl implements ManagementClient
 		asdu[6] = (byte) (newAddress.getRawAddress() >>> 8);
 		asdu[7] = (byte) newAddress.getRawAddress();
 		tl.broadcast(false, Priority.SYSTEM, DataUnitBuilder.createAPDU(IND_ADDR_SN_WRITE, asdu));
+		capabilities.invalidateAll();
 	}
 
 	@Override
@@ -359,12 +409,11 @@ public class ManagementClientImpl implements ManagementClient
 	{
 		if (serialNo.length != 6)
 			throw new KNXIllegalArgumentException("length of serial number not 6 bytes");
-		final long start = registerActiveService(IND_ADDR_SN_RESPONSE);
-		tl.broadcast(false, Priority.SYSTEM, DataUnitBuilder.createAPDU(IND_ADDR_SN_READ, serialNo));
-		final byte[] address = waitForResponses(IND_ADDR_SN_RESPONSE, 10, 10, start, responseTimeout, (source,
-			apdu) -> Arrays.equals(serialNo, 0, 6, apdu, 2, 8) ? Optional.of(source.toByteArray()) : Optional.empty(),
-				true).get(0);
-		return new IndividualAddress(address);
+		try (var waiter = expect(IND_ADDR_SN_RESPONSE, null, 10, 10, (source, apdu) -> Arrays.equals(serialNo, 0, 6,
+				apdu, 2, 8) ? Optional.of(source.toByteArray()) : Optional.empty(), true)) {
+			tl.broadcast(false, Priority.SYSTEM, DataUnitBuilder.createAPDU(IND_ADDR_SN_READ, serialNo));
+			return new IndividualAddress(waiter.await(responseTimeout).get(0));
+		}
 	}
 
 	@Override
@@ -390,14 +439,13 @@ public class ManagementClientImpl implements ManagementClient
 	public void readDomainAddress(final BiConsumer<IndividualAddress, byte[]> response)
 		throws KNXLinkClosedException, KNXInvalidResponseException, KNXTimeoutException, InterruptedException
 	{
-		final long start = registerActiveService(DOA_RESPONSE);
-		tl.broadcast(true, priority, DataUnitBuilder.createLengthOptimizedAPDU(DOA_READ));
-		try {
-			// we allow 6 bytes ASDU for RF domains
-			waitForResponses(DOA_RESPONSE, 2, 6, start, responseTimeout, (source, apdu1) -> {
-				response.accept(source, Arrays.copyOfRange(apdu1, 2, apdu1.length));
-				return Optional.of(apdu1);
-			}, false);
+		// we allow 6 bytes ASDU for RF domains
+		try (var waiter = expect(DOA_RESPONSE, null, 2, 6, (source, apdu1) -> {
+			response.accept(source, Arrays.copyOfRange(apdu1, 2, apdu1.length));
+			return Optional.of(apdu1);
+		}, false)) {
+			tl.broadcast(true, priority, DataUnitBuilder.createLengthOptimizedAPDU(DOA_READ));
+			waiter.await(responseTimeout);
 		}
 		catch (final KNXTimeoutException e) {}
 	}
@@ -422,9 +470,6 @@ public class ManagementClientImpl implements ManagementClient
 		final byte... testInfo)
 		throws KNXLinkClosedException, KNXTimeoutException, KNXInvalidResponseException, InterruptedException
 	{
-		final long start = registerActiveService(NetworkParamResponse);
-		sendNetworkParameter(NetworkParamRead, remote, objectType, pid, testInfo);
-
 		final BiFunction<IndividualAddress, byte[], Optional<byte[]>> testResponse = (responder, apdu) -> {
 			if (apdu.length < 5)
 				return Optional.empty();
@@ -440,9 +485,9 @@ public class ManagementClientImpl implements ManagementClient
 			return receivedIot == objectType && receivedPid == pid ? Optional.of(apdu) : Optional.empty();
 		};
 
-		try {
-			final List<byte[]> responses = waitForResponses(NetworkParamResponse, 3, 14, start, responseTimeout,
-					testResponse, false);
+		try (var waiter = expect(NetworkParamResponse, null, 3, 14, testResponse, false)) {
+			sendNetworkParameter(NetworkParamRead, remote, objectType, pid, testInfo);
+			final List<byte[]> responses = waiter.await(responseTimeout);
 			final int prefix = 2 + 3 + testInfo.length;
 			return responses.stream().map(r -> Arrays.copyOfRange(r, prefix, r.length)).collect(toList());
 		}
@@ -487,9 +532,6 @@ public class ManagementClientImpl implements ManagementClient
 		final byte[] testInfo = allocate(1 + additionalTestInfo.length).put((byte) operand)
 				.put(additionalTestInfo).array();
 
-		final long start = registerActiveService(SystemNetworkParamResponse);
-		sendSystemNetworkParameter(SystemNetworkParamRead, objectType, pid, testInfo);
-
 		final BiFunction<IndividualAddress, byte[], Optional<byte[]>> testParamType = (responder, apdu) -> {
 			if (apdu.length < 6)
 				return Optional.empty();
@@ -511,9 +553,9 @@ public class ManagementClientImpl implements ManagementClient
 						: operand == 2 || operand == 3 ? additionalTestInfo[0] & 0xff : getResponseTimeout())
 				.plusMillis(500); // allow some communication overhead (medium access & device delay times)
 
-		try {
-			final List<byte[]> responders = waitForResponses(SystemNetworkParamResponse, 4, 12, start,
-					waitTime, testParamType, false);
+		try (var waiter = expect(SystemNetworkParamResponse, null, 4, 12, testParamType, false)) {
+			sendSystemNetworkParameter(SystemNetworkParamRead, objectType, pid, testInfo);
+			final List<byte[]> responders = waiter.await(waitTime);
 			final int prefix = 2 + 4 + 1 + additionalTestInfo.length;
 			return responders.stream().map(r -> Arrays.copyOfRange(r, prefix, r.length)).collect(toList());
 		}
@@ -552,9 +594,35 @@ public class ManagementClientImpl implements ManagementClient
 		final byte[] dd = new byte[apdu.length - 2];
 		for (int i = 0; i < apdu.length - 2; ++i)
 			dd[i] = apdu[2 + i];
+		capabilities.get(dst.getAddress()).descriptor(descType, dd);
 		return dd;
 	}
 
+	// same as readDeviceDesc, but answered from the capability cache if the descriptor is known; not to be used for
+	// checking whether a device is reachable
+	byte[] cachedDeviceDesc(final Destination dst, final int descType)
+		throws KNXInvalidResponseException, KNXDisconnectException, KNXTimeoutException, KNXLinkClosedException,
+		InterruptedException
+	{
+		final var cached = capabilities.get(dst.getAddress()).descriptor(descType);
+		if (cached.isPresent())
+			return cached.get();
+		return readDeviceDesc(dst, descType);
+	}
+
+	@Override
+	public CompletableFuture<byte[]> readDeviceDescAsync(final Destination dst, final int descType) {
+		if (descType < 0 || descType > 63)
+			throw new KNXIllegalArgumentException("descriptor type out of range [0..63]");
+		final var device = capabilities.get(dst.getAddress());
+		final byte[] send = createLengthOptimizedAPDU(DEVICE_DESC_READ, (byte) descType);
+		return requestAsync(dst, send, DEVICE_DESC_RESPONSE, 2, 14, (source, apdu) -> Optional.of(apdu), apdu -> {
+			final byte[] dd = Arrays.copyOfRange(apdu, 2, apdu.length);
+			device.descriptor(descType, dd);
+			return dd;
+		});
+	}
+
 	@Override
 	public void restart(final Destination dst) throws KNXTimeoutException, KNXLinkClosedException, InterruptedException
 	{
@@ -577,9 +645,11 @@ public class ManagementClientImpl implements ManagementClient
 		final int channel) throws KNXTimeoutException, KNXRemoteException, KNXLinkClosedException,
 		KNXDisconnectException, InterruptedException
 	{
+		// a restart might change the device configuration, e.g., after a master reset
+		capabilities.invalidate(dst.getAddress());
 		int time = 0;
 		if (basic) {
-			send(dst, priority, DataUnitBuilder.createLengthOptimizedAPDU(RESTART), 0);
+			send(dst, priority, DataUnitBuilder.createLengthOptimizedAPDU(RESTART));
 		}
 		else {
 			final byte[] sdu = new byte[] { 0x01, (byte) eraseCode, (byte) channel, };
@@ -633,7 +703,20 @@ public class ManagementClientImpl implements ManagementClient
 		final int start, final int elements) throws KNXTimeoutException, KNXRemoteException,
 		KNXDisconnectException, KNXLinkClosedException, InterruptedException
 	{
-		return readProperty(dst, objIndex, propertyId, start, elements, true).get(0);
+		if (!DeviceCapabilityCache.isStaticProperty(objIndex, propertyId, start, elements))
+			return readProperty(dst, objIndex, propertyId, start, elements, true).get(0);
+		final var device = capabilities.get(dst.getAddress());
+		var cached = device.property(propertyId);
+		if (cached.isPresent())
+			return cached.get();
+		// the first request to a destination queries the max. APDU length, which might be the property we look for
+		maxAsduLength(dst);
+		cached = device.property(propertyId);
+		if (cached.isPresent())
+			return cached.get();
+		final byte[] data = readProperty(dst, objIndex, propertyId, start, elements, true).get(0);
+		device.property(propertyId, data);
+		return data;
 	}
 
 	List<byte[]> readProperty(final Destination dst, final int objIndex, final int propertyId, final int start,
@@ -666,23 +749,23 @@ public class ManagementClientImpl implements ManagementClient
 			asdu[2] = (byte) ((queryElements << 4) | (((start + i) >>> 8) & 0xF));
 			asdu[3] = (byte) (start + i);
 
-			final long startSend = send(dst, priority, DataUnitBuilder.createAPDU(PROPERTY_READ, asdu), PROPERTY_RESPONSE);
-			waitForResponses(PROPERTY_RESPONSE, 4, maxAsduLength, startSend, responseTimeout, (source, apdu) -> {
+			try (var waiter = expect(PROPERTY_RESPONSE, dst.getAddress(), 4, maxAsduLength, (source, apdu) -> {
 				try {
-					if (source.equals(dst.getAddress())) {
-						responses.add(extractPropertyElements(apdu, objIndex, propertyId, queryElements));
-						return Optional.of(apdu);
-					}
+					responses.add(extractPropertyElements(apdu, objIndex, propertyId, queryElements));
+					return Optional.of(apdu);
 				}
 				catch (final KNXInvalidResponseException e) {
 					logger.debug("skip invalid property read response: {}", e.getMessage());
 				}
 				catch (final KNXRemoteException e) {
 					exceptions.add(e);
-					return Optional.of(new byte[0]); // return empty token to exit waitForResponses
+					return Optional.of(new byte[0]); // return empty token to complete the waiter
 				}
 				return Optional.empty();
-			}, oneResponseOnly);
+			}, oneResponseOnly)) {
+				send(dst, priority, DataUnitBuilder.createAPDU(PROPERTY_READ, asdu));
+				waiter.await(responseTimeout);
+			}
 		}
 
 		if (responses.isEmpty()) {
@@ -702,10 +785,45 @@ public class ManagementClientImpl implements ManagementClient
 		return responses;
 	}
 
+	@Override
+	public CompletableFuture<byte[]> readPropertyAsync(final Destination dst, final int objIndex,
+		final int propertyId, final int start, final int elements) {
+		if (objIndex < 0 || objIndex > 255 || propertyId < 0 || propertyId > 255
+			|| start < 0 || start > 0xFFF || elements < 0 || elements > 15)
+			throw new KNXIllegalArgumentException(String.format("argument value out of range: "
+					+ "OI 0 < %d < 256, PID 0 < %d < 256, start 0 < %d < 256, elems 0 < %d < 16",
+					objIndex, propertyId, start, elements));
+		final byte[] send = createAPDU(PROPERTY_READ, (byte) objIndex, (byte) propertyId,
+				(byte) ((elements << 4) | ((start >>> 8) & 0xF)), (byte) start);
+		return requestAsync(dst, send, PROPERTY_RESPONSE, 4, knownMaxAsduLength(dst),
+				(source, apdu) -> isPropertyResponse(apdu, objIndex, propertyId) ? Optional.of(apdu) : Optional.empty(),
+				apdu -> extractPropertyElements(apdu, objIndex, propertyId, elements));
+	}
+
 	@Override
 	public void writeProperty(final Destination dst, final int objIndex, final int propertyId, final int start,
 		final int elements, final byte[] data) throws KNXTimeoutException, KNXRemoteException, KNXDisconnectException,
 			KNXLinkClosedException, InterruptedException {
+		final byte[] asdu = propertyWriteAsdu(objIndex, propertyId, start, elements, data);
+		final byte[] send = DataUnitBuilder.createAPDU(PROPERTY_WRITE, asdu);
+		final byte[] apdu = sendWait2(dst, priority, send, PROPERTY_RESPONSE, 4, maxAsduLength(dst));
+		checkPropertyWritten(asdu, elements, data, apdu);
+	}
+
+	@Override
+	public CompletableFuture<Void> writePropertyAsync(final Destination dst, final int objIndex,
+		final int propertyId, final int start, final int elements, final byte[] data) {
+		final byte[] asdu = propertyWriteAsdu(objIndex, propertyId, start, elements, data);
+		return requestAsync(dst, createAPDU(PROPERTY_WRITE, asdu), PROPERTY_RESPONSE, 4, knownMaxAsduLength(dst),
+				(source, apdu) -> isPropertyResponse(apdu, objIndex, propertyId) ? Optional.of(apdu) : Optional.empty(),
+				apdu -> {
+					checkPropertyWritten(asdu, elements, data, apdu);
+					return null;
+				});
+	}
+
+	private static byte[] propertyWriteAsdu(final int objIndex, final int propertyId, final int start,
+		final int elements, final byte[] data) {
 		if (objIndex < 0 || objIndex > 255 || propertyId < 0 || propertyId > 255 || start < 0
 				|| start > 0xFFF || data.length == 0 || elements < 0 || elements > 15)
 			throw new KNXIllegalArgumentException("argument value out of range");
@@ -716,8 +834,11 @@ public class ManagementClientImpl implements ManagementClient
 		asdu[3] = (byte) start;
 		for (int i = 0; i < data.length; ++i)
 			asdu[4 + i] = data[i];
-		final byte[] send = DataUnitBuilder.createAPDU(PROPERTY_WRITE, asdu);
-		final byte[] apdu = sendWait2(dst, priority, send, PROPERTY_RESPONSE, 4, maxAsduLength(dst));
+		return asdu;
+	}
+
+	private static void checkPropertyWritten(final byte[] asdu, final int elements, final byte[] data,
+		final byte[] apdu) throws KNXRemoteException {
 		// if number of elements is 0, remote app had problems
 		final int elems = (apdu[4] & 0xFF) >> 4;
 		if (elems == 0)
@@ -856,6 +977,121 @@ public class ManagementClientImpl implements ManagementClient
 		throw new KNXTimeoutException("timeout occurred while waiting for data response");
 	}
 
+	@Override
+	public CompletableFuture<byte[]> readPropertyDescAsync(final Destination dst, final int objIndex,
+		final int propertyId, final int propIndex) {
+		if (objIndex < 0 || objIndex > 255 || propertyId < 0 || propertyId > 255 || propIndex < 0 || propIndex > 255)
+			throw new KNXIllegalArgumentException("argument value out of range");
+		final byte[] send = createAPDU(PROPERTY_DESC_READ, (byte) objIndex, (byte) propertyId,
+				(byte) (propertyId == 0 ? propIndex : 0));
+		// only accept a response containing the requested description
+		final BiFunction<IndividualAddress, byte[], Optional<byte[]>> filter = (source, apdu) -> {
+			final boolean oiOk = objIndex == (apdu[2] & 0xff);
+			final boolean pidOk = propertyId == 0 || propertyId == (apdu[3] & 0xff);
+			final boolean pidxOk = propertyId != 0 || propIndex == (apdu[4] & 0xff);
+			return oiOk && pidOk && pidxOk ? Optional.of(apdu) : Optional.empty();
+		};
+		return requestAsync(dst, send, PROPERTY_DESC_RESPONSE, 7, 7, filter, apdu -> {
+			// max_nr_elem field is a 4bit exponent + 12bit unsigned, on problem this field is 0
+			if (apdu[6] == 0 && apdu[7] == 0)
+				throw new KNXRemoteException("got no property description (object non-existant?)");
+			return Arrays.copyOfRange(apdu, 2, 9);
+		});
+	}
+
+	// Reads the descriptions of consecutive property indices using pipelined requests. An entry of the returned list
+	// is the property description, an empty array if the device reported no description (i.e., the property index does
+	// not exist), or null if no response was received.
+	List<byte[]> readPropertyDescs(final Destination dst, final int objIndex, final int propIndex, final int count)
+		throws KNXTimeoutException, KNXInvalidResponseException, KNXDisconnectException, KNXLinkClosedException,
+			InterruptedException {
+		if (objIndex < 0 || objIndex > 255 || propIndex < 0 || propIndex + count > 256)
+			throw new KNXIllegalArgumentException("argument value out of range");
+		final List<byte[]> requests = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			requests.add(createAPDU(PROPERTY_DESC_READ, (byte) objIndex, (byte) 0, (byte) (propIndex + i)));
+		// match OI and property index
+		final List<byte[]> responses = pipeline(dst, requests, PROPERTY_DESC_RESPONSE, 7, 7,
+				(req, res) -> req[2] == res[2] && req[4] == res[4]);
+		for (int i = 0; i < count; i++) {
+			final byte[] apdu = responses.get(i);
+			if (apdu != null)
+				responses.set(i, apdu[6] == 0 && apdu[7] == 0 ? new byte[0] : Arrays.copyOfRange(apdu, 2, 9));
+		}
+		return responses;
+	}
+
+	// Reads one or more elements of several properties of an interface object using pipelined requests. An entry of the
+	// returned list is the property data, or null if no response or a negative response was received.
+	List<byte[]> readProperties(final Destination dst, final int objIndex, final int[] propertyIds, final int start,
+		final int elements) throws KNXTimeoutException, KNXInvalidResponseException, KNXDisconnectException,
+			KNXLinkClosedException, InterruptedException {
+		if (objIndex < 0 || objIndex > 255 || start < 0 || start > 0xFFF || elements < 0 || elements > 15)
+			throw new KNXIllegalArgumentException("argument value out of range");
+		final List<byte[]> requests = new ArrayList<>(propertyIds.length);
+		for (final int pid : propertyIds) {
+			if (pid < 0 || pid > 255)
+				throw new KNXIllegalArgumentException("PID " + pid + " out of range");
+			requests.add(createAPDU(PROPERTY_READ, (byte) objIndex, (byte) pid,
+					(byte) ((elements << 4) | ((start >>> 8) & 0xF)), (byte) start));
+		}
+		// match OI, PID, and start index
+		final List<byte[]> responses = pipeline(dst, requests, PROPERTY_RESPONSE, 4, maxAsduLength(dst),
+				(req, res) -> req[2] == res[2] && req[3] == res[3] && (req[4] & 0xf) == (res[4] & 0xf)
+						&& req[5] == res[5]);
+		for (int i = 0; i < responses.size(); i++) {
+			final byte[] apdu = responses.get(i);
+			if (apdu != null) {
+				try {
+					responses.set(i, extractPropertyElements(apdu, objIndex, propertyIds[i], elements));
+				}
+				catch (final KNXRemoteException e) {
+					responses.set(i, null);
+				}
+			}
+		}
+		return responses;
+	}
+
+	// Sends all requests without waiting for the individual responses, and returns the responses in request order;
+	// an entry is null if no matching response was received within the response timeout. Only connectionless
+	// destinations are supported, a transport connection accepts only one outstanding request.
+	private List<byte[]> pipeline(final Destination dst, final List<byte[]> requests, final int response,
+		final int minAsduLen, final int maxAsduLen, final BiPredicate<byte[], byte[]> matches)
+		throws KNXTimeoutException, KNXInvalidResponseException, KNXDisconnectException, KNXLinkClosedException,
+			InterruptedException {
+		if (dst.isConnectionOriented())
+			throw new KNXIllegalArgumentException("pipelined requests require connectionless destination");
+		final byte[][] responses = new byte[requests.size()][];
+		final BiFunction<IndividualAddress, byte[], Optional<byte[]>> filter = (source, apdu) -> {
+			for (int i = 0; i < responses.length; i++)
+				if (responses[i] == null && matches.test(requests.get(i), apdu)) {
+					responses[i] = apdu;
+					return Optional.of(apdu);
+				}
+			return Optional.empty();
+		};
+		try (var waiter = new ResponseWaiter(response, dst.getAddress(), minAsduLen, maxAsduLen, filter,
+				responses.length)) {
+			final long start = System.nanoTime();
+			for (final byte[] apdu : requests)
+				send(dst, priority, apdu);
+			final Duration timeout = responseTimeout.plusNanos(System.nanoTime() - start);
+			try {
+				waiter.await(timeout);
+			}
+			catch (final KNXTimeoutException e) {}
+			// the waiter is done, responses are not modified anymore
+			synchronized (waiter) {
+				final long missing = Arrays.stream(responses).filter(r -> r == null).count();
+				if (missing > 0)
+					logger.debug("{} of {} pipelined requests to {} without response", missing, responses.length,
+							dst.getAddress());
+				return Arrays.asList(responses.clone());
+			}
+		}
+	}
+
 	@Override
 	public byte[] callFunctionProperty(final Destination dst, final int objectType, final int objInstance,
 			final int propertyId, final int serviceId, final byte... serviceInfo)
@@ -885,15 +1121,13 @@ public class ManagementClientImpl implements ManagementClient
 				.put((byte) (objInstance >> 4)).put((byte) (((objInstance & 0xf) << 4) | (propertyId >> 8)))
 				.put((byte) propertyId).put((byte) 0).put((byte) service).put(info);
 
-		final long startSend = send(dst, priority, createAPDU(cmd, asdu.array()), FunctionPropertyExtStateResponse);
-		final var responses = waitForResponses(FunctionPropertyExtStateResponse, 6, 252, startSend, responseTimeout,
-				(source, apdu) -> {
-					if (source.equals(dst.getAddress()))
-						return extractFunctionPropertyExtData(objectType, objInstance, propertyId, apdu);
-					return Optional.empty();
-				}, true);
+		final byte[] response;
+		try (var waiter = expect(FunctionPropertyExtStateResponse, dst.getAddress(), 6, 252,
+				(source, apdu) -> extractFunctionPropertyExtData(objectType, objInstance, propertyId, apdu), true)) {
+			send(dst, priority, createAPDU(cmd, asdu.array()));
+			response = waiter.await(responseTimeout).get(0);
+		}
 
-		final byte[] response = responses.get(0);
 		final var returnCode = ReturnCode.of(response[0] & 0xff);
 		if (returnCode != ReturnCode.Success)
 			throw new KNXRemoteException(format("function property response for %d(%d)|%d service %d: %s",
@@ -932,29 +1166,64 @@ public class ManagementClientImpl implements ManagementClient
 		throws KNXTimeoutException, KNXDisconnectException, KNXRemoteException,
 		KNXLinkClosedException, InterruptedException
 	{
-		final int maxStartAddress = extMemoryServices ? 0xffffff : 0xffff;
-		final int maxBytes = extMemoryServices ? 248 : 63;
-		if (startAddr < 0 || startAddr > maxStartAddress || bytes < 1 || bytes > maxBytes)
-			throw new KNXIllegalArgumentException("argument value out of range");
-		if (!dst.isConnectionOriented())
-			throw new KNXIllegalArgumentException("read memory requires connection-oriented mode: " + dst);
+		checkMemoryAccess(dst, startAddr, bytes, extMemoryServices ? 248 : 63, "read memory");
 
 		// use extended read service for memory access above 65 K
-		if (startAddr > 0xffff) {
-			final byte[] send = createAPDU(MemoryExtendedRead,
-					new byte[] { (byte) bytes, (byte) (startAddr >>> 16), (byte) (startAddr >>> 8), (byte) startAddr });
-			final byte[] apdu = sendWait(dst, priority, send, MemoryExtendedReadResponse, 4, 252);
-			final ReturnCode ret = ReturnCode.of(apdu[2] & 0xff);
-			if (ret != ReturnCode.Success)
-				throw new KNXRemoteException(
-						format("read memory from %s 0x%x: %s", dst.getAddress(), startAddr, ret.description()));
-			return Arrays.copyOfRange(apdu, 6, apdu.length);
-		}
+		if (startAddr > 0xffff)
+			return readMemoryExtended(dst, startAddr, bytes);
 
 		final byte[] apdu = sendWait(dst, priority,
 				createLengthOptimizedAPDU(MEMORY_READ,
 						new byte[] { (byte) bytes, (byte) (startAddr >>> 8), (byte) startAddr }),
 				MEMORY_RESPONSE, 2, 65);
+		return memoryData(startAddr, apdu);
+	}
+
+	// reads memory using the extended memory service, which is also allowed for memory below 65 K
+	byte[] readMemoryExtended(final Destination dst, final int startAddr, final int bytes)
+		throws KNXTimeoutException, KNXDisconnectException, KNXRemoteException, KNXLinkClosedException,
+			InterruptedException {
+		checkMemoryAccess(dst, startAddr, bytes, 248, "read memory");
+		final byte[] send = createAPDU(MemoryExtendedRead,
+				new byte[] { (byte) bytes, (byte) (startAddr >>> 16), (byte) (startAddr >>> 8), (byte) startAddr });
+		final byte[] apdu = sendWait(dst, priority, send, MemoryExtendedReadResponse, 4, 252);
+		return extendedMemoryData(dst, startAddr, apdu);
+	}
+
+	@Override
+	public CompletableFuture<byte[]> readMemoryAsync(final Destination dst, final int startAddr, final int bytes) {
+		checkMemoryAccess(dst, startAddr, bytes, extMemoryServices ? 248 : 63, "read memory");
+		final BiFunction<IndividualAddress, byte[], Optional<byte[]>> any = (source, apdu) -> Optional.of(apdu);
+		if (startAddr > 0xffff) {
+			final byte[] send = createAPDU(MemoryExtendedRead, (byte) bytes, (byte) (startAddr >>> 16),
+					(byte) (startAddr >>> 8), (byte) startAddr);
+			return requestAsync(dst, send, MemoryExtendedReadResponse, 4, 252, any,
+					apdu -> extendedMemoryData(dst, startAddr, apdu));
+		}
+		final byte[] send = createLengthOptimizedAPDU(MEMORY_READ, (byte) bytes, (byte) (startAddr >>> 8),
+				(byte) startAddr);
+		return requestAsync(dst, send, MEMORY_RESPONSE, 2, 65, any, apdu -> memoryData(startAddr, apdu));
+	}
+
+	private static void checkMemoryAccess(final Destination dst, final int startAddr, final int bytes,
+		final int maxBytes, final String service) {
+		final int maxStartAddress = extMemoryServices ? 0xffffff : 0xffff;
+		if (startAddr < 0 || startAddr > maxStartAddress || bytes < 1 || bytes > maxBytes)
+			throw new KNXIllegalArgumentException("argument value out of range");
+		if (!dst.isConnectionOriented())
+			throw new KNXIllegalArgumentException(service + " requires connection-oriented mode: " + dst);
+	}
+
+	private static byte[] extendedMemoryData(final Destination dst, final int startAddr, final byte[] apdu)
+		throws KNXRemoteException {
+		final ReturnCode ret = ReturnCode.of(apdu[2] & 0xff);
+		if (ret != ReturnCode.Success)
+			throw new KNXRemoteException(
+					format("read memory from %s 0x%x: %s", dst.getAddress(), startAddr, ret.description()));
+		return Arrays.copyOfRange(apdu, 6, apdu.length);
+	}
+
+	private static byte[] memoryData(final int startAddr, final byte[] apdu) throws KNXRemoteException {
 		int no = apdu[1] & 0x3F;
 		if (no == 0)
 			throw new KNXRemoteException("could not read memory from 0x"
@@ -970,55 +1239,99 @@ public class ManagementClientImpl implements ManagementClient
 		throws KNXDisconnectException, KNXTimeoutException, KNXRemoteException,
 		KNXLinkClosedException, InterruptedException
 	{
-		final int maxStartAddress = extMemoryServices ? 0xffffff : 0xffff;
-		final int maxBytes = extMemoryServices ? 250 : 63;
-		if (startAddr < 0 || startAddr > maxStartAddress || data.length == 0 || data.length > maxBytes)
-			throw new KNXIllegalArgumentException("argument value out of range");
-
-		if (!dst.isConnectionOriented())
-			throw new KNXIllegalArgumentException("write memory requires connection-oriented mode: " + dst);
+		checkMemoryAccess(dst, startAddr, data.length, extMemoryServices ? 250 : 63, "write memory");
 
 		// use extended write service for memory access above 65 K
 		if (startAddr > 0xffff) {
-			final byte[] addrBytes = { (byte) (startAddr >>> 16), (byte) (startAddr >>> 8), (byte) startAddr };
-			final byte[] asdu = allocate(4 + data.length).put((byte) data.length).put(addrBytes).put(data).array();
-			final byte[] send = createAPDU(MemoryExtendedWrite, asdu);
-			final byte[] apdu = sendWait(dst, priority, send, MemoryExtendedWriteResponse, 4, 252);
-			final ReturnCode ret = ReturnCode.of(apdu[2] & 0xff);
-			if (ret == ReturnCode.Success)
-				return;
-			String desc = ret.description();
-			if (ret == ReturnCode.SuccessWithCrc) {
-				final int crc = ((apdu[6] & 0xff) << 8) | (apdu[7] & 0xff);
-				if (crc16Ccitt(asdu) == crc)
-					return;
-				desc = "data verification failed (crc mismatch)";
-			}
-			throw new KNXRemoteException(format("write memory to %s 0x%x: %s", dst.getAddress(), startAddr, desc));
+			writeMemoryExtended(dst, startAddr, data);
+			return;
 		}
 
-		final byte[] asdu = new byte[data.length + 3];
-		asdu[0] = (byte) data.length;
-		asdu[1] = (byte) (startAddr >> 8);
-		asdu[2] = (byte) startAddr;
-		for (int i = 0; i < data.length; ++i)
-			asdu[3 + i] = data[i];
+		final byte[] asdu = memoryWriteAsdu(startAddr, data);
 		final byte[] send = DataUnitBuilder.createLengthOptimizedAPDU(MEMORY_WRITE, asdu);
 		if (dst.isVerifyMode()) {
 			// explicitly read back data
 			final byte[] apdu = sendWait(dst, priority, send, MEMORY_RESPONSE, 2, 65);
-			if ((apdu[1] & 0x3f) == 0)
-				throw new KNXRemoteException("remote app. could not write memory");
-			if (apdu.length - 4 != data.length)
-				throw new KNXInvalidResponseException("number of memory bytes differ");
-			for (int i = 4; i < apdu.length; ++i)
-				if (apdu[i] != asdu[i - 1])
-					throw new KNXRemoteException("verify failed (erroneous memory data)");
+			checkMemoryWritten(asdu, apdu);
 		}
 		else
 			tl.sendData(dst, priority, send);
 	}
 
+	// writes memory using the extended memory service, which is also allowed for memory below 65 K
+	void writeMemoryExtended(final Destination dst, final int startAddr, final byte[] data)
+		throws KNXTimeoutException, KNXDisconnectException, KNXRemoteException, KNXLinkClosedException,
+			InterruptedException {
+		checkMemoryAccess(dst, startAddr, data.length, 250, "write memory");
+		final byte[] asdu = extendedMemoryWriteAsdu(startAddr, data);
+		final byte[] send = createAPDU(MemoryExtendedWrite, asdu);
+		final byte[] apdu = sendWait(dst, priority, send, MemoryExtendedWriteResponse, 4, 252);
+		checkExtendedMemoryWritten(dst, startAddr, asdu, apdu);
+	}
+
+	@Override
+	public CompletableFuture<Void> writeMemoryAsync(final Destination dst, final int startAddr, final byte[] data) {
+		checkMemoryAccess(dst, startAddr, data.length, extMemoryServices ? 250 : 63, "write memory");
+		final BiFunction<IndividualAddress, byte[], Optional<byte[]>> any = (source, apdu) -> Optional.of(apdu);
+		if (startAddr > 0xffff) {
+			final byte[] asdu = extendedMemoryWriteAsdu(startAddr, data);
+			return requestAsync(dst, createAPDU(MemoryExtendedWrite, asdu), MemoryExtendedWriteResponse, 4, 252, any,
+					apdu -> {
+						checkExtendedMemoryWritten(dst, startAddr, asdu, apdu);
+						return null;
+					});
+		}
+		final byte[] asdu = memoryWriteAsdu(startAddr, data);
+		final byte[] send = createLengthOptimizedAPDU(MEMORY_WRITE, asdu);
+		if (dst.isVerifyMode())
+			return requestAsync(dst, send, MEMORY_RESPONSE, 2, 65, any, apdu -> {
+				checkMemoryWritten(asdu, apdu);
+				return null;
+			});
+		final Priority p = priority;
+		return queue(dst, () -> sendAsync(() -> tl.sendData(dst, p, send)));
+	}
+
+	private static byte[] extendedMemoryWriteAsdu(final int startAddr, final byte[] data) {
+		final byte[] addrBytes = { (byte) (startAddr >>> 16), (byte) (startAddr >>> 8), (byte) startAddr };
+		return allocate(4 + data.length).put((byte) data.length).put(addrBytes).put(data).array();
+	}
+
+	private static void checkExtendedMemoryWritten(final Destination dst, final int startAddr, final byte[] asdu,
+		final byte[] apdu) throws KNXRemoteException {
+		final ReturnCode ret = ReturnCode.of(apdu[2] & 0xff);
+		if (ret == ReturnCode.Success)
+			return;
+		String desc = ret.description();
+		if (ret == ReturnCode.SuccessWithCrc) {
+			final int crc = ((apdu[6] & 0xff) << 8) | (apdu[7] & 0xff);
+			if (crc16Ccitt(asdu) == crc)
+				return;
+			desc = "data verification failed (crc mismatch)";
+		}
+		throw new KNXRemoteException(format("write memory to %s 0x%x: %s", dst.getAddress(), startAddr, desc));
+	}
+
+	private static byte[] memoryWriteAsdu(final int startAddr, final byte[] data) {
+		final byte[] asdu = new byte[data.length + 3];
+		asdu[0] = (byte) data.length;
+		asdu[1] = (byte) (startAddr >> 8);
+		asdu[2] = (byte) startAddr;
+		for (int i = 0; i < data.length; ++i)
+			asdu[3 + i] = data[i];
+		return asdu;
+	}
+
+	private static void checkMemoryWritten(final byte[] asdu, final byte[] apdu) throws KNXRemoteException {
+		if ((apdu[1] & 0x3f) == 0)
+			throw new KNXRemoteException("remote app. could not write memory");
+		if (apdu.length - 4 != asdu.length - 3)
+			throw new KNXInvalidResponseException("number of memory bytes differ");
+		for (int i = 4; i < apdu.length; ++i)
+			if (apdu[i] != asdu[i - 1])
+				throw new KNXRemoteException("verify failed (erroneous memory data)");
+	}
+
 	static int crc16Ccitt(final byte[] input) {
 		final int polynom = 0x1021;
 		final byte[] padded = Arrays.copyOf(input, input.length + 2);
@@ -1042,12 +1355,21 @@ public class ManagementClientImpl implements ManagementClient
 			throw new KNXIllegalArgumentException("length of authorize key not 4 bytes");
 		if (!dst.isConnectionOriented())
 			throw new KNXIllegalArgumentException("authorize requires connection-oriented mode: " + dst);
+		// an authorization is valid for the lifetime of the connection
+		final var device = capabilities.get(dst.getAddress());
+		final var state = dst.getState();
+		if (state == Destination.State.OpenIdle || state == Destination.State.OpenWait) {
+			final var cached = device.authorizationLevel(key);
+			if (cached.isPresent())
+				return cached.get();
+		}
 		final byte[] asdu = new byte[] { 0, key[0], key[1], key[2], key[3] };
 		final byte[] apdu = sendWait(dst, priority,
 			DataUnitBuilder.createAPDU(AUTHORIZE_READ, asdu), AUTHORIZE_RESPONSE, 1, 1);
 		final int level = apdu[2] & 0xff;
 		if (level > 15)
 			throw new KNXInvalidResponseException("authorization level out of range [0..15]");
+		device.authorizationLevel(key, level);
 		return level;
 	}
 
@@ -1061,6 +1383,7 @@ public class ManagementClientImpl implements ManagementClient
 			throw new KNXIllegalArgumentException("level out of range or key length not 4 bytes");
 		if (!dst.isConnectionOriented())
 			throw new KNXIllegalArgumentException("write key requires connection-oriented mode: " + dst);
+		capabilities.clearAuthorization(dst.getAddress());
 		final byte[] apdu = sendWait(dst, priority,
 			DataUnitBuilder.createAPDU(KEY_WRITE, new byte[] { (byte) level, key[0],
 				key[1], key[2], key[3] }), KEY_RESPONSE, 1, 1);
@@ -1101,7 +1424,8 @@ public class ManagementClientImpl implements ManagementClient
 		dst.maxApduLength(maxDeviceApdu);
 		if (maxLinkApdu > maxDeviceApdu) {
 			try {
-				// note, this read property call already requires a default minimum apdu to be set
+				// note, this read property call already requires a default minimum apdu to be set; the property
+				// is answered from the capability cache if known
 				final var data = readProperty(dst, 0, PID.MAX_APDULENGTH, 1, 1);
 				maxDeviceApdu = (data[0] & 0xff) << 8 | data[1] & 0xff;
 				dst.maxApduLength(Math.min(maxLinkApdu, maxDeviceApdu));
@@ -1117,34 +1441,22 @@ public class ManagementClientImpl implements ManagementClient
 		return maxApduLength(dst) - 1;
 	}
 
-	private long registerActiveService(final int serviceType) {
-		final long now = System.nanoTime();
-		activeServiceResponses.merge(serviceType, now + responseTimeout.toNanos(),
-				(oldValue, value) -> oldValue < value ? value : oldValue);
-		return now;
-	}
-
-	private boolean isActiveService(final int serviceType, final long timestamp) {
-		return activeServiceResponses.computeIfPresent(serviceType,
-				(__, activeUntil) -> activeUntil < timestamp ? null : activeUntil) != null;
+	// max. ASDU length without querying the destination, uses the link maximum if the device maximum is not known yet
+	private int knownMaxAsduLength(final Destination dst) {
+		return dst.maxApduLength()
+				.orElseGet(() -> ((TransportLayerImpl) tl).link().getKNXMedium().maxApduLength()) - 1;
 	}
 
-	private boolean isActiveService(final FrameEvent e) {
-		return isActiveService(DataUnitBuilder.getAPDUService(e.getFrame().getPayload()), e.id());
-	}
-
-	// helper which sets the expected svc response, and sends in CO or CL mode
-	private long send(final Destination d, final Priority p, final byte[] apdu, final int response)
+	// helper which sends in CO or CL mode
+	private void send(final Destination d, final Priority p, final byte[] apdu)
 		throws KNXTimeoutException, KNXDisconnectException, KNXLinkClosedException, InterruptedException
 	{
-		final long start = registerActiveService(response);
 		final var secCtrl = SecurityControl.of(DataSecurity.AuthConf, toolAccess);
 		final var sapdu = sal.secureData(src, d.getAddress(), apdu, secCtrl).orElse(apdu);
 		if (d.isConnectionOriented())
 			tl.sendData(d, p, sapdu);
 		else
 			tl.sendData(d.getAddress(), p, sapdu);
-		return start;
 	}
 
 	private byte[] sendWait(final Destination d, final Priority p,
@@ -1152,8 +1464,11 @@ public class ManagementClientImpl implements ManagementClient
 		throws KNXDisconnectException, KNXTimeoutException, KNXInvalidResponseException,
 		KNXLinkClosedException, InterruptedException
 	{
-		final long start = send(d, p, apdu, response);
-		return waitForResponse(d.getAddress(), response, minAsduLen, maxAsduLen, start, responseTimeout);
+		try (var waiter = expect(response, d.getAddress(), minAsduLen, maxAsduLen, (source, data) -> Optional.of(data),
+				true)) {
+			send(d, p, apdu);
+			return waiter.await(responseTimeout).get(0);
+		}
 	}
 
 	private byte[] sendWait2(final Destination d, final Priority p,
@@ -1161,65 +1476,222 @@ public class ManagementClientImpl implements ManagementClient
 		throws KNXDisconnectException, KNXTimeoutException, KNXInvalidResponseException,
 		KNXLinkClosedException, InterruptedException
 	{
-		final long start = send(d, p, apdu, response);
-		return waitForResponse(d.getAddress(), response, minAsduLen, maxAsduLen, start, responseTimeout);
+		return sendWait(d, p, apdu, response, minAsduLen, maxAsduLen);
 	}
 
+	// registers a response waiter, which has to be done before sending the request
 	// min + max ASDU len are *not* including any field that contains ACPI
-	private byte[] waitForResponse(final IndividualAddress from, final int serviceType, final int minAsduLen,
-		final int maxAsduLen, final long start, final Duration timeout)
-				throws KNXInvalidResponseException, KNXTimeoutException, InterruptedException {
-		return waitForResponses(serviceType, minAsduLen, maxAsduLen, start, timeout,
-				(source, apdu) -> source.equals(from) ? Optional.of(apdu) : Optional.empty(), true).get(0);
+	private ResponseWaiter expect(final int serviceType, final IndividualAddress from, final int minAsduLen,
+		final int maxAsduLen, final BiFunction<IndividualAddress, byte[], Optional<byte[]>> responseFilter,
+		final boolean oneOnly) {
+		return new ResponseWaiter(serviceType, from, minAsduLen, maxAsduLen, responseFilter,
+				oneOnly ? 1 : Integer.MAX_VALUE);
 	}
 
-	// min + max ASDU len are *not* including any field that contains ACPI
-	private List<byte[]> waitForResponses(final int serviceType, final int minAsduLen, final int maxAsduLen,
-		final long start, final Duration timeout, final BiFunction<IndividualAddress, byte[], Optional<byte[]>> responseFilter,
-		final boolean oneOnly) throws KNXInvalidResponseException, KNXTimeoutException, InterruptedException {
-
-		long remaining = timeout.toMillis();
-		final long end = start / 1_000_000L + remaining;
-		final var responses = new ArrayList<byte[]>();
-		synchronized (indications) {
-			while (remaining > 0) {
-				for (final Iterator<FrameEvent> i = indications.iterator(); i.hasNext();) {
-					final var event = i.next();
-					// purge outdated events
-					if (start > event.id() + responseTimeout.toNanos()) {
-						i.remove();
-						continue;
-					}
-					// causality
-					if (start > event.id())
-						continue;
-					final CEMI frame = event.getFrame();
-					final byte[] apdu = frame.getPayload();
-					if (serviceType != DataUnitBuilder.getAPDUService(apdu))
-						continue;
-
-					final IndividualAddress source = ((CEMILData) frame).getSource();
-					if (apdu.length < minAsduLen + 2 || apdu.length > maxAsduLen + 2) {
-						final String s = "invalid ASDU response length " + (apdu.length - 2)
-								+ " bytes, expected " + minAsduLen + " to " + maxAsduLen;
-						logger.warn("received response from " + source + " with " + s);
-						if (oneOnly)
-							throw new KNXInvalidResponseException(s);
-					}
-					responseFilter.apply(source, apdu).ifPresent(response -> {
-						responses.add(response);
-						i.remove();
-					});
-					if (!responses.isEmpty() && oneOnly)
-						return responses;
+	@FunctionalInterface
+	private interface Request {
+		void send() throws KNXException, InterruptedException;
+	}
+
+	@FunctionalInterface
+	private interface ResponseParser<T> {
+		T parse(byte[] apdu) throws KNXException;
+	}
+
+	@FunctionalInterface
+	private interface ResponsesParser<T> {
+		T parse(List<byte[]> responses) throws KNXException;
+	}
+
+	// requests a single response from the destination, requests to a connection-oriented destination are queued
+	private <T> CompletableFuture<T> requestAsync(final Destination dst, final byte[] apdu, final int response,
+		final int minAsduLen, final int maxAsduLen,
+		final BiFunction<IndividualAddress, byte[], Optional<byte[]>> filter, final ResponseParser<T> parser) {
+		final Priority p = priority;
+		final Duration timeout = responseTimeout;
+		// the waiter is registered only once the request is about to be sent
+		return queue(dst, () -> requestAsync(expect(response, dst.getAddress(), minAsduLen, maxAsduLen, filter, true),
+				() -> send(dst, p, apdu), timeout, responses -> parser.parse(responses.get(0))));
+	}
+
+	private <T> CompletableFuture<T> requestAsync(final ResponseWaiter waiter, final Request request,
+		final Duration timeout, final ResponsesParser<T> parser) {
+		return sendAsync(request).thenCompose(__ -> waiter.expire(timeout)).thenCompose(responses -> {
+			try {
+				return CompletableFuture.completedFuture(parser.parse(responses));
+			}
+			catch (final KNXException e) {
+				return CompletableFuture.<T>failedFuture(e);
+			}
+		}).whenComplete((__, t) -> waiter.close());
+	}
+
+	// sends the request using the async executor, the returned future completes once the request was sent
+	private static CompletableFuture<Void> sendAsync(final Request request) {
+		final var sent = new CompletableFuture<Void>();
+		async.execute(() -> {
+			try {
+				request.send();
+				sent.complete(null);
+			}
+			catch (KNXException | RuntimeException e) {
+				sent.completeExceptionally(e);
+			}
+			catch (final InterruptedException e) {
+				sent.completeExceptionally(e);
+				Thread.currentThread().interrupt();
+			}
+		});
+		return sent;
+	}
+
+	// a connection-oriented destination accepts only one outstanding request, therefore a request is only started
+	// after the previous request to that destination completed; this avoids blocking executor threads while the
+	// transport layer waits for an acknowledgment
+	private <T> CompletableFuture<T> queue(final Destination dst, final Supplier<CompletableFuture<T>> request) {
+		if (!dst.isConnectionOriented())
+			return request.get();
+		final var next = new CompletableFuture<T>();
+		queued.compute(dst, (d, previous) -> {
+			final CompletableFuture<?> ready = previous == null ? CompletableFuture.completedFuture(null)
+					: previous.handle((__, t) -> null);
+			ready.thenComposeAsync(__ -> request.get(), async).whenComplete((result, t) -> {
+				if (t != null)
+					next.completeExceptionally(t instanceof CompletionException ? t.getCause() : t);
+				else
+					next.complete(result);
+			});
+			return next;
+		});
+		next.whenComplete((__, t) -> queued.remove(dst, next));
+		return next;
+	}
+
+	private static boolean isPropertyResponse(final byte[] apdu, final int objIndex, final int propertyId) {
+		return (apdu[2] & 0xff) == objIndex && (apdu[3] & 0xff) == propertyId;
+	}
+
+	// correlation key of response service and source address, a waiter for any source uses the key with address -1
+	private static int correlationKey(final int serviceType, final int address) {
+		return serviceType << 17 | (address & 0x1ffff);
+	}
+
+	// passes a received frame to the waiters for its service and source, the first waiter accepting it consumes it
+	private void dispatch(final FrameEvent e) {
+		final CEMILData frame = (CEMILData) e.getFrame();
+		final byte[] apdu = frame.getPayload();
+		final int service = DataUnitBuilder.getAPDUService(apdu);
+		final IndividualAddress source = frame.getSource();
+		final List<ResponseWaiter> fromSource = waiters.getOrDefault(
+				correlationKey(service, source.getRawAddress()), List.of());
+		for (final ResponseWaiter w : fromSource)
+			if (w.offer(e.id(), source, apdu))
+				return;
+		final List<ResponseWaiter> fromAny = waiters.getOrDefault(correlationKey(service, -1), List.of());
+		for (final ResponseWaiter w : fromAny)
+			if (w.offer(e.id(), source, apdu))
+				return;
+	}
+
+	/**
+	 * A request waiting for responses of a service type, either from a specific source or from any source. Waiters are
+	 * indexed by service type and source address; a received frame is offered only to the waiters matching its
+	 * service and source, and completes the response future of a waiter directly.
+	 */
+	private final class ResponseWaiter implements AutoCloseable
+	{
+		private final int key;
+		private final long start = System.nanoTime();
+		private final int minAsduLen;
+		private final int maxAsduLen;
+		private final BiFunction<IndividualAddress, byte[], Optional<byte[]>> responseFilter;
+		private final int expected;
+
+		private final List<byte[]> responses = new ArrayList<>();
+		final CompletableFuture<List<byte[]>> future = new CompletableFuture<>();
+
+		ResponseWaiter(final int serviceType, final IndividualAddress from, final int minAsduLen, final int maxAsduLen,
+			final BiFunction<IndividualAddress, byte[], Optional<byte[]>> responseFilter, final int expected) {
+			key = correlationKey(serviceType, from != null ? from.getRawAddress() : -1);
+			this.minAsduLen = minAsduLen;
+			this.maxAsduLen = maxAsduLen;
+			this.responseFilter = responseFilter;
+			this.expected = expected;
+			waiters.compute(key, (k, list) -> {
+				final var l = list == null ? new ArrayList<ResponseWaiter>(1) : new ArrayList<>(list);
+				l.add(this);
+				return l;
+			});
+		}
+
+		// returns true if this waiter consumed the response
+		synchronized boolean offer(final long eventId, final IndividualAddress source, final byte[] apdu) {
+			// causality
+			if (future.isDone() || start > eventId)
+				return false;
+			if (apdu.length < minAsduLen + 2 || apdu.length > maxAsduLen + 2) {
+				final String s = "invalid ASDU response length " + (apdu.length - 2) + " bytes, expected " + minAsduLen
+						+ " to " + maxAsduLen;
+				logger.warn("received response from " + source + " with " + s);
+				if (expected == 1) {
+					future.completeExceptionally(new KNXInvalidResponseException(s));
+					return false;
 				}
-				indications.wait(remaining);
-				remaining = end - System.nanoTime() / 1_000_000L;
 			}
+			final var response = responseFilter.apply(source, apdu);
+			if (response.isEmpty())
+				return false;
+			responses.add(response.get());
+			if (responses.size() == expected)
+				future.complete(List.copyOf(responses));
+			return true;
+		}
+
+		// waits until the expected number of responses was received, or the timeout (relative to the creation of this
+		// waiter) elapsed; returns the responses received so far
+		List<byte[]> await(final Duration timeout)
+			throws KNXInvalidResponseException, KNXTimeoutException, InterruptedException {
+			final long remaining = start + timeout.toNanos() - System.nanoTime();
+			try {
+				return new ArrayList<>(future.get(remaining, TimeUnit.NANOSECONDS));
+			}
+			catch (final ExecutionException e) {
+				throw (KNXInvalidResponseException) e.getCause();
+			}
+			catch (final TimeoutException e) {
+				synchronized (this) {
+					future.cancel(false);
+					if (responses.isEmpty())
+						throw new KNXTimeoutException("timeout waiting for data response");
+					return new ArrayList<>(responses);
+				}
+			}
+		}
+
+		// completes the response future after the timeout (relative to the time of calling this method) with the
+		// responses received so far, or exceptionally if no response was received
+		CompletableFuture<List<byte[]>> expire(final Duration timeout) {
+			final var task = async.schedule(this::timeout, timeout.toNanos(), TimeUnit.NANOSECONDS);
+			future.whenComplete((__, t) -> task.cancel(false));
+			return future;
+		}
+
+		private synchronized void timeout() {
+			if (responses.isEmpty())
+				future.completeExceptionally(new KNXTimeoutException("timeout waiting for data response"));
+			else
+				future.complete(List.copyOf(responses));
+		}
+
+		@Override
+		public void close() {
+			future.cancel(false);
+			waiters.computeIfPresent(key, (k, list) -> {
+				final var l = new ArrayList<>(list);
+				l.remove(this);
+				return l.isEmpty() ? null : l;
+			});
 		}
-		if (responses.isEmpty())
-			throw new KNXTimeoutException("timeout waiting for data response");
-		return responses;
 	}
 
 	private List<byte[]> readBroadcast(final Priority p, final byte[] apdu,
@@ -1227,10 +1699,11 @@ public class ManagementClientImpl implements ManagementClient
 		throws KNXLinkClosedException, KNXInvalidResponseException, KNXTimeoutException,
 		InterruptedException
 	{
-		final long start = registerActiveService(response);
-		tl.broadcast(true, p, apdu);
-		return waitForResponses(response, minAsduLen, maxAsduLen, start, responseTimeout,
-				(source, apdu1) -> Optional.of(apdu1), oneOnly);
+		try (var waiter = expect(response, null, minAsduLen, maxAsduLen, (source, apdu1) -> Optional.of(apdu1),
+				oneOnly)) {
+			tl.broadcast(true, p, apdu);
+			return waiter.await(responseTimeout);
+		}
 	}
 
 	// cut domain addresses out of APDUs
@@ -251,6 +251,25 @@ public interface ManagementProcedures extends AutoCloseable
 	void scanNetworkDevices(int area, int line, Consumer<IndividualAddress> device)
 		throws KNXTimeoutException, KNXLinkClosedException, InterruptedException;
 
+	/**
+	 * Determines the existing KNX network devices on several KNX subnetworks, following the KNX network management
+	 * subnetwork devices scan procedure <i>NM_SubnetworkDevices_Scan</i> for each subnetwork. Implementations may
+	 * scan the subnetworks concurrently; the default implementation scans one subnetwork after the other using
+	 * {@link #scanNetworkDevices(int, int, Consumer)}.
+	 *
+	 * @param subnetworks the KNX subnetworks to scan, each identified by the area and line of an individual address
+	 *        (the device part of the address is ignored)
+	 * @param device consumer called for every device found during the scan, possibly from another thread
+	 * @throws KNXTimeoutException on communication timeouts during the scan
+	 * @throws KNXLinkClosedException on a closed KNXNetworkLink to the KNX network
+	 * @throws InterruptedException if this thread was interrupted while scanning the network devices
+	 */
+	default void scanNetworkDevices(final List<IndividualAddress> subnetworks, final Consumer<IndividualAddress> device)
+		throws KNXTimeoutException, KNXLinkClosedException, InterruptedException {
+		for (final var subnetwork : subnetworks)
+			scanNetworkDevices(subnetwork.getArea(), subnetwork.getLine(), device);
+	}
+
 	/**
 	 * Determines the serial numbers of all KNX devices that have its individual address set to the
 	 * default individual address.
@@ -345,6 +364,66 @@ public interface ManagementProcedures extends AutoCloseable
 	byte[] readMemory(IndividualAddress device, long startAddress, int bytes) throws KNXException,
 			InterruptedException;
 
+	/**
+	 * Receives progress updates of memory transfers.
+	 */
+	@FunctionalInterface
+	interface TransferProgress
+	{
+		/**
+		 * Called after a part of the memory was transferred.
+		 *
+		 * @param transferred number of bytes transferred so far
+		 * @param total number of bytes of the transfer
+		 * @param bytesPerSecond average throughput of the transfer so far
+		 */
+		void progress(int transferred, int total, double bytesPerSecond);
+	}
+
+	/**
+	 * Writes a contiguous block of data to a the specified memory address of a device, like
+	 * {@link #writeMemory(IndividualAddress, long, byte[], boolean, boolean)}, and reports the transfer progress. The
+	 * default implementation reports the progress once, after the memory was written.
+	 *
+	 * @param device the destination device address
+	 * @param startAddress the memory destination start address, <code>0 &le; startAddress &le; 0xFFFFFFFF</code>
+	 * @param data the data to be written, with <code>data.length</code> equal to the number of bytes to write
+	 * @param verifyWrite <code>true</code> to verify any written memory, <code>false</code> otherwise
+	 * @param verifyByServer <code>true</code> to enable verification by the management server of any written memory,
+	 *        <code>false</code> otherwise
+	 * @param progress receives the transfer progress
+	 * @throws KNXException on communication error or device access problems
+	 * @throws InterruptedException on interrupted thread
+	 */
+	default void writeMemory(final IndividualAddress device, final long startAddress, final byte[] data,
+		final boolean verifyWrite, final boolean verifyByServer, final TransferProgress progress)
+		throws KNXException, InterruptedException {
+		final long start = System.nanoTime();
+		writeMemory(device, startAddress, data, verifyWrite, verifyByServer);
+		progress.progress(data.length, data.length, data.length * 1e9 / (System.nanoTime() - start));
+	}
+
+	/**
+	 * Reads a contiguous block of data from the specified memory address of a device, like
+	 * {@link #readMemory(IndividualAddress, long, int)}, and reports the transfer progress. The default implementation
+	 * reports the progress once, after the memory was read.
+	 *
+	 * @param device the destination device address
+	 * @param startAddress the memory source start address, <code>0 &le; startAddress &le; 0xFFFFFFFF</code>
+	 * @param bytes number of bytes to read, <code>0 &lt; bytes</code>
+	 * @param progress receives the transfer progress
+	 * @return an array of bytes, with the length of the array equal to <code>bytes</code>
+	 * @throws KNXException on communication error or device access problems
+	 * @throws InterruptedException on interrupted thread
+	 */
+	default byte[] readMemory(final IndividualAddress device, final long startAddress, final int bytes,
+		final TransferProgress progress) throws KNXException, InterruptedException {
+		final long start = System.nanoTime();
+		final byte[] data = readMemory(device, startAddress, bytes);
+		progress.progress(bytes, bytes, bytes * 1e9 / (System.nanoTime() - start));
+		return data;
+	}
+
 	/**
 	 * Detaches the network link from this management procedures instance.
 	 * <p>
@@ -37,13 +37,18 @@
 package tuwien.auto.calimero.mgmt;
 
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -62,6 +67,7 @@ import tuwien.auto.calimero.KNXRemoteException;
 import tuwien.auto.calimero.KNXTimeoutException;
 import tuwien.auto.calimero.link.KNXLinkClosedException;
 import tuwien.auto.calimero.link.KNXNetworkLink;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
 import tuwien.auto.calimero.log.LogService;
 
 /**
@@ -86,6 +92,15 @@ public class ManagementProceduresImpl implements ManagementProcedures
 	private static final int defaultApduLength = 15;
 	// transport layer connection disconnect timeout [ms]
 	private static final int disconnectTimeout = 6000;
+	// time to wait for a T-Disconnect after a T-Connect during scans, taking into account the KNXnet/IP
+	// tunneling.req retransmit timeout plus some network delay
+	private static final Duration scanDisconnectWait = Duration.ofMillis(disconnectTimeout + 1100);
+
+	// minimum period between T-Connects on the local link during scans, initialized from the link medium
+	Duration scanLinkSpacing;
+	// minimum period between T-Connects sent into the same subnetwork during scans, which limits the load of a TP1
+	// subnetwork and the queue of its router
+	Duration scanSubnetworkSpacing = Duration.ofMillis(115);
 
 	// procedures should synchronize on mc (this also prevents unwanted modifications of
 	// procedure timeouts set in mc)
@@ -95,24 +110,16 @@ public class ManagementProceduresImpl implements ManagementProcedures
 
 	private final Logger logger = LogService.getLogger("calimero.mgmt.MgmtProc");
 
+	// shared with our management client if possible
+	private final DeviceCapabilityCache capabilities;
+
 	private static final class TLListener implements TransportListener
 	{
-		private final Set<IndividualAddress> devices;
 		private final Consumer<IndividualAddress> disconnect;
-		private final boolean routers;
-
-		private TLListener(final Set<IndividualAddress> scanResult, final boolean scanRouters)
-		{
-			devices = scanResult;
-			disconnect = null;
-			routers = scanRouters;
-		}
 
-		private TLListener(final Consumer<IndividualAddress> onDisconnect, final boolean scanRouters)
+		private TLListener(final Consumer<IndividualAddress> onDisconnect)
 		{
 			disconnect = onDisconnect;
-			devices = null;
-			routers = scanRouters;
 		}
 
 		@Override
@@ -130,21 +137,8 @@ public class ManagementProceduresImpl implements ManagementProcedures
 		@Override
 		public void disconnected(final Destination d)
 		{
-			if (d.getDisconnectedBy() != Destination.REMOTE_ENDPOINT)
-				return;
-			final IndividualAddress addr = d.getAddress();
-			if (routers && addr.getDevice() == 0)
-				accept(addr);
-			else if (!routers && addr.getDevice() != 0)
-				accept(addr);
-		}
-
-		private void accept(final IndividualAddress addr)
-		{
-			if (disconnect != null)
-				disconnect.accept(addr);
-			else
-				devices.add(addr);
+			if (d.getDisconnectedBy() == Destination.REMOTE_ENDPOINT)
+				disconnect.accept(d.getAddress());
 		}
 
 		@Override
@@ -170,8 +164,11 @@ public class ManagementProceduresImpl implements ManagementProcedures
 		throws KNXLinkClosedException
 	{
 		tl = new TransportLayerImpl(link);
-		mc = new ManagementClientImpl(link, tl);
+		final var impl = new ManagementClientImpl(link, tl);
+		mc = impl;
+		capabilities = impl.capabilities();
 		detachMgmtAndTransportLayer = true;
+		scanLinkSpacing = scanLinkSpacing(link.getKNXMedium().getMedium());
 	}
 
 	/**
@@ -189,7 +186,17 @@ public class ManagementProceduresImpl implements ManagementProcedures
 		if (!mc.isOpen())
 			throw new IllegalStateException("management client not in open state");
 		tl = transportLayer;
+		capabilities = mc instanceof ManagementClientImpl ? ((ManagementClientImpl) mc).capabilities()
+				: new DeviceCapabilityCache();
 		detachMgmtAndTransportLayer = false;
+		scanLinkSpacing = scanLinkSpacing(((TransportLayerImpl) tl).link().getKNXMedium().getMedium());
+	}
+
+	// on TP1, PL110, and RF links, we keep 115 ms (increased from 100 ms, the default) to minimize the chance of
+	// overflow over FT1.2; a KNX IP link only has to pace the tunneling or routing requests
+	private static Duration scanLinkSpacing(final int medium)
+	{
+		return Duration.ofMillis(medium == KNXMediumSettings.MEDIUM_KNXIP ? 5 : 115);
 	}
 
 	@Override
@@ -233,6 +240,8 @@ public class ManagementProceduresImpl implements ManagementProcedures
 		InterruptedException
 	{
 		boolean exists = false;
+		// we check for an existing device, hence don't rely on any cached capabilities
+		capabilities.invalidate(newAddress);
 		try (Destination dst = getOrCreateDestination(newAddress)) {
 			mc.readDeviceDesc(dst, 0);
 			exists = true;
@@ -307,6 +316,7 @@ public class ManagementProceduresImpl implements ManagementProcedures
 	public boolean isAddressOccupied(final IndividualAddress devAddr)
 		throws KNXException, InterruptedException
 	{
+		capabilities.invalidate(devAddr);
 		try (Destination dst = mc.createDestination(devAddr, true)) {
 			mc.readDeviceDesc(dst, 0);
 		}
@@ -388,6 +398,17 @@ public class ManagementProceduresImpl implements ManagementProcedures
 		scanAddresses(addresses, false, device);
 	}
 
+	@Override
+	public void scanNetworkDevices(final List<IndividualAddress> subnetworks, final Consumer<IndividualAddress> device)
+		throws KNXLinkClosedException, InterruptedException
+	{
+		final List<IndividualAddress> addresses = new ArrayList<>();
+		for (final var subnetwork : subnetworks)
+			for (int i = 0; i <= 0xff; i++)
+				addresses.add(new IndividualAddress(subnetwork.getArea(), subnetwork.getLine(), i));
+		scanAddresses(addresses, false, device);
+	}
+
 	@Override
 	public List<byte[]> scanSerialNumbers(final int medium) throws KNXException, InterruptedException
 	{
@@ -439,6 +460,14 @@ public class ManagementProceduresImpl implements ManagementProcedures
 	public void writeMemory(final IndividualAddress device, final long startAddress,
 		final byte[] data, final boolean verifyWrite, final boolean verifyByServer)
 		throws KNXException, InterruptedException
+	{
+		writeMemory(device, startAddress, data, verifyWrite, verifyByServer, (transferred, total, throughput) -> {});
+	}
+
+	@Override
+	public void writeMemory(final IndividualAddress device, final long startAddress, final byte[] data,
+		final boolean verifyWrite, final boolean verifyByServer, final TransferProgress progress)
+		throws KNXException, InterruptedException
 	{
 		if (startAddress < 0 || startAddress > 0xffffffffL)
 			throw new KNXIllegalArgumentException("start address is no 32 Bit address");
@@ -448,19 +477,38 @@ public class ManagementProceduresImpl implements ManagementProcedures
 			throw new KNXIllegalArgumentException(
 				"verify write and verify by server not both applicable");
 
-		final Destination d = getOrCreateDestination(device, false, verifyByServer);
-		// if automatic server verification is requested, turn verify flag on
-		if (verifyByServer) {
-			// reading description checks whether property exists
-			/* final byte[] desc = */mc.readPropertyDesc(d, DEVICE_OBJECT_INDEX,
-				PropertyAccess.PID.DEVICE_CONTROL, 0);
-			final byte[] ctrl = mc.readProperty(d, DEVICE_OBJECT_INDEX,
-				PropertyAccess.PID.DEVICE_CONTROL, 1, 1);
-			// bit 2 is set for automatic management server verification (responds on
-			// memory write with a response containing the written data)
-			ctrl[0] |= 0x04;
-			mc.writeProperty(d, DEVICE_OBJECT_INDEX, PropertyAccess.PID.DEVICE_CONTROL,
-				1, 1, ctrl);
+		// if automatic server verification is requested, turn verify flag on; on write verification, we prefer
+		// server verification if available, which saves reading back the written memory; a device known to not support
+		// server verification is not probed again
+		final var known = capabilities.get(device);
+		final boolean knownNoVerification = Boolean.FALSE.equals(known.serverVerification);
+		final boolean serverVerification = verifyByServer || verifyWrite && !knownNoVerification;
+		Destination d = getOrCreateDestination(device, false, serverVerification);
+		boolean readBack = verifyWrite && knownNoVerification;
+		byte[] restoreDeviceControl = null;
+		if (serverVerification) {
+			try {
+				final byte[] ctrl = mc.readProperty(d, DEVICE_OBJECT_INDEX,
+					PropertyAccess.PID.DEVICE_CONTROL, 1, 1);
+				if (verifyWrite)
+					restoreDeviceControl = ctrl.clone();
+				// bit 2 is set for automatic management server verification (responds on
+				// memory write with a response containing the written data)
+				ctrl[0] |= 0x04;
+				mc.writeProperty(d, DEVICE_OBJECT_INDEX, PropertyAccess.PID.DEVICE_CONTROL,
+					1, 1, ctrl);
+			}
+			catch (KNXRemoteException | KNXTimeoutException e) {
+				// only a device rejecting the property is known to not support it, a timeout might be transient
+				if (e instanceof KNXRemoteException)
+					known.serverVerification = false;
+				if (verifyByServer)
+					throw e;
+				// on manual write verification, we explicitly read back memory
+				logger.debug("{} has no server verification ({}), read back written memory", device, e.getMessage());
+				readBack = true;
+				d = getOrCreateDestination(device, false, false);
+			}
 		}
 
 		// create structure to write
@@ -486,46 +534,74 @@ public class ManagementProceduresImpl implements ManagementProcedures
 		for (int i = 0; i < data.length; ++i)
 			write[offset + i] = data[i];
 
-		// write memory in chunks matching the maximum asdu length of the device
-		final int asduLength = readMaxAsduLength(d);
-		for (int i = 0; i < write.length; i += asduLength) {
-			final byte[] range = Arrays.copyOfRange(write, i, i + asduLength);
-
-			// on server verification, our mgmt client will already compare the response value
-			mc.writeMemory(d, (int) startAddress + i, range);
-
-			// on manual write verification, we explicitly read back memory
-			if (verifyWrite) {
-				final byte[] read = mc.readMemory(d, (int) startAddress + i, range.length);
-				if (!Arrays.equals(read, range))
-					throw new KNXRemoteException("verify failed (memory data differs)");
+		// on server verification, our mgmt client will already compare the response value
+		Throwable thrown = null;
+		try {
+			final var transfer = memoryTransfer(d, progress);
+			try {
+				transfer.write(startAddress, write, readBack);
 			}
+			catch (final KNXTimeoutException e) {
+				// the device accepted the verify bit, but does not respond with the written memory
+				if (verifyByServer || readBack || transfer.transferred() > 0)
+					throw e;
+				logger.debug("{} did not respond with server verification ({}), read back written memory", device,
+						e.getMessage());
+				d = getOrCreateDestination(device, false, false);
+				memoryTransfer(d, progress).write(startAddress, write, true);
+				return;
+			}
+			if (serverVerification && !readBack)
+				known.serverVerification = true;
+		}
+		catch (KNXException | InterruptedException | RuntimeException e) {
+			thrown = e;
+			throw e;
+		}
+		finally {
+			if (restoreDeviceControl != null)
+				restoreDeviceControl(d, restoreDeviceControl, thrown);
+		}
+	}
+
+	// a failed restore does not replace an exception of the memory write, but is added to it as suppressed
+	private void restoreDeviceControl(final Destination d, final byte[] deviceControl, final Throwable thrown)
+		throws KNXException, InterruptedException
+	{
+		try {
+			mc.writeProperty(d, DEVICE_OBJECT_INDEX, PropertyAccess.PID.DEVICE_CONTROL, 1, 1, deviceControl);
+		}
+		catch (KNXException | RuntimeException e) {
+			if (thrown == null)
+				throw e;
+			thrown.addSuppressed(e);
+		}
+		catch (final InterruptedException e) {
+			if (thrown == null)
+				throw e;
+			thrown.addSuppressed(e);
+			Thread.currentThread().interrupt();
 		}
 	}
 
 	@Override
 	public byte[] readMemory(final IndividualAddress device, final long startAddress,
 		final int bytes) throws KNXException, InterruptedException
+	{
+		return readMemory(device, startAddress, bytes, (transferred, total, throughput) -> {});
+	}
+
+	@Override
+	public byte[] readMemory(final IndividualAddress device, final long startAddress, final int bytes,
+		final TransferProgress progress) throws KNXException, InterruptedException
 	{
 		if (startAddress < 0 || startAddress > 0xffffffffL)
 			throw new KNXIllegalArgumentException("start address is no 32 Bit address");
 		if (bytes < 0)
 			throw new KNXIllegalArgumentException("bytes to read require a positive number");
-		// sanity check, at least emit a warning
-		// if (bytes > 4096)
-		// logger.warn("reading over 4K of device memory "
-		// + "(hope you know what you are doing)");
 
 		final Destination d = getOrCreateDestination(device);
-
-		final byte[] read = new byte[bytes];
-		final int asduLength = readMaxAsduLength(d);
-		for (int i = 0; i < read.length; i += asduLength) {
-			final int size = i + asduLength <= read.length ? asduLength : read.length - i;
-			final byte[] range = mc.readMemory(d, (int) startAddress + i, size);
-			System.arraycopy(range, 0, read, i, range.length);
-		}
-		return read;
+		return memoryTransfer(d, progress).read(startAddress, bytes);
 	}
 
 	@Override
@@ -544,96 +620,143 @@ public class ManagementProceduresImpl implements ManagementProcedures
 		return d != null ? d : tl.createDestination(device, true);
 	}
 
-	// work around for implementation in TL, which unconditionally throws if dst exists
+	// work around for implementation in TL, which unconditionally throws if dst exists; a destination with a
+	// different verify mode is replaced
 	private Destination getOrCreateDestination(final IndividualAddress device,
 		final boolean keepAlive, final boolean verifyByServer)
 	{
 		final Destination d = ((TransportLayerImpl) tl).getDestination(device);
-		return d != null ? d : tl.createDestination(device, true, keepAlive, verifyByServer);
+		if (d != null && d.isVerifyMode() == verifyByServer)
+			return d;
+		if (d != null)
+			d.destroy();
+		return tl.createDestination(device, true, keepAlive, verifyByServer);
 	}
 
-	private IndividualAddress[] scanAddresses(final List<IndividualAddress> addresses,
-		final boolean routers) throws KNXTimeoutException, KNXLinkClosedException,
-		InterruptedException
+	private MemoryTransfer memoryTransfer(final Destination d, final TransferProgress progress)
+		throws InterruptedException
 	{
-		final Set<IndividualAddress> devices = new HashSet<>();
-		final TransportListener tll = new TLListener(devices, routers);
-		tl.addTransportListener(tll);
+		return new MemoryTransfer(mc, d, maxApduLength(d), capabilities.get(d.getAddress()), progress, logger);
+	}
 
-		final List<Destination> destinations = new ArrayList<>();
-		try {
-			for (final Iterator<IndividualAddress> i = addresses.iterator(); i.hasNext();) {
-				final IndividualAddress remote = i.next();
-				final Destination d = getOrCreateDestination(remote, true, false);
-				destinations.add(d);
-				tl.connect(d);
-				// increased from 100 (the default) to minimize chance of overflow over FT1.2
-				waitFor(115);
-			}
-			// we wait in total (115 + 6000 + 1000 + 100) ms for a possible T-disconnect, taking
-			// into account the KNXnet/IP tunneling.req retransmit timeout plus some network delay
-			waitFor(disconnectTimeout + 1100);
-		}
-		finally {
-			tl.removeTransportListener(tll);
-			for (final Iterator<Destination> i = destinations.iterator(); i.hasNext();) {
-				final Destination d = i.next();
-				tl.destroyDestination(d);
-			}
-		}
-		final IndividualAddress[] array = devices
-				.toArray(new IndividualAddress[devices.size()]);
-		return array;
+	private IndividualAddress[] scanAddresses(final List<IndividualAddress> addresses,
+		final boolean routers) throws KNXLinkClosedException, InterruptedException
+	{
+		final Set<IndividualAddress> devices = ConcurrentHashMap.newKeySet();
+		scanAddresses(addresses, routers, devices::add);
+		return devices.toArray(new IndividualAddress[0]);
 	}
 
+	// Sends a T-Connect to every address, a device is found if it disconnects the connection after its connection
+	// timeout. The addresses are grouped by the subnetwork a T-Connect is sent into, and subnetworks are scanned
+	// concurrently by sending to them in turn. Frames are paced by the link spacing, which grows with the measured
+	// confirmation time of the link, and by the subnetwork spacing. Addresses which were not acknowledged on the bus
+	// (negative confirmation) are done immediately, the scan completes when all acknowledged addresses disconnected or
+	// the disconnect wait of the last acknowledged address elapsed.
 	private void scanAddresses(final List<IndividualAddress> addresses, final boolean routers,
 		final Consumer<IndividualAddress> response)
 			throws KNXLinkClosedException, InterruptedException
 	{
-		final TransportListener tll = new TLListener(response, routers);
+		// addresses awaiting a T-Disconnect, mapped to their deadline [ns]
+		final Map<IndividualAddress, Long> pending = new ConcurrentHashMap<>();
+		final TransportListener tll = new TLListener(address -> {
+			if (pending.remove(address) == null)
+				return;
+			if (routers == (address.getDevice() == 0))
+				response.accept(address);
+			synchronized (pending) {
+				pending.notifyAll();
+			}
+		});
 		tl.addTransportListener(tll);
 
+		final Map<Integer, Deque<IndividualAddress>> subnetworks = new LinkedHashMap<>();
+		for (final var address : addresses)
+			subnetworks.computeIfAbsent(subnetwork(address), __ -> new ArrayDeque<>()).add(address);
+		final Map<Integer, Long> nextSubnetworkSend = new HashMap<>();
+		final Deque<Integer> turns = new ArrayDeque<>(subnetworks.keySet());
+
+		final long linkSpacing = scanLinkSpacing.toNanos();
+		final long subnetworkSpacing = scanSubnetworkSpacing.toNanos();
+		long confirmation = 0;
+		long nextLinkSend = System.nanoTime();
 		final List<Destination> dst = new ArrayList<>();
 		try {
-			for (final var address : addresses) {
+			while (!turns.isEmpty()) {
+				final int subnetwork = turns.poll();
+				final var remaining = subnetworks.get(subnetwork);
+				final var address = remaining.poll();
+				if (!remaining.isEmpty())
+					turns.add(subnetwork);
+
+				waitUntil(Math.max(nextLinkSend, nextSubnetworkSend.getOrDefault(subnetwork, nextLinkSend)));
 				final var d = getOrCreateDestination(address, true, false);
 				dst.add(d);
+				final long start = System.nanoTime();
+				pending.put(address, Long.MAX_VALUE);
 				try {
 					tl.connect(d);
+					final long deadline = System.nanoTime() + scanDisconnectWait.toNanos();
+					pending.computeIfPresent(address, (__, v) -> deadline);
 				}
 				catch (final KNXTimeoutException e) {
-					logger.info("connect timeout during address scan for {}", d);
+					pending.remove(address);
+					logger.trace("no acknowledgment during address scan for {}", address);
 				}
-				// increased from 100 (the default) to minimize chance of overflow over FT1.2
-				waitFor(115);
+				final long sent = System.nanoTime();
+				// smoothed confirmation time, the link spacing shall leave the link at least half of its capacity
+				confirmation = confirmation == 0 ? sent - start : (3 * confirmation + sent - start) / 4;
+				nextLinkSend = start + Math.max(linkSpacing, 2 * confirmation);
+				nextSubnetworkSend.put(subnetwork, start + subnetworkSpacing);
+			}
+
+			final long last = pending.values().stream().mapToLong(Long::longValue).max().orElse(0);
+			synchronized (pending) {
+				long remaining;
+				while (!pending.isEmpty() && (remaining = last - System.nanoTime()) > 0)
+					TimeUnit.NANOSECONDS.timedWait(pending, remaining);
 			}
-			// we wait in total (115 + 6000 + 1000 + 100) ms for a possible T-disconnect, taking
-			// into account the KNXnet/IP tunneling.req retransmit timeout plus some network delay
-			waitFor(disconnectTimeout + 1100);
 		}
 		finally {
 			tl.removeTransportListener(tll);
-			// TODO this is not sufficient in the case getOrCreateDestination throws
 			dst.forEach(Destination::destroy);
 		}
 	}
 
-	private int readMaxAsduLength(final Destination d) throws InterruptedException
+	// the subnetwork a T-Connect to the address is sent into: devices are located on the line of their address, line
+	// couplers on the main line of their area, and area couplers on the backbone line
+	private static int subnetwork(final IndividualAddress address)
+	{
+		if (address.getDevice() != 0)
+			return address.getRawAddress() >> 8;
+		if (address.getLine() != 0)
+			return address.getArea() << 4;
+		return 0;
+	}
+
+	private static void waitUntil(final long nanoTime) throws InterruptedException
+	{
+		final long wait = nanoTime - System.nanoTime();
+		if (wait > 0)
+			TimeUnit.NANOSECONDS.sleep(wait);
+	}
+
+	// the device max. APDU length, limited by the link; the length is cached in the destination
+	private int maxApduLength(final Destination d) throws InterruptedException
 	{
-		// asdu is 3 bytes shorter than apdu
+		final Optional<Integer> cached = d.maxApduLength();
+		if (cached.isPresent())
+			return cached.get();
+		int max = defaultApduLength;
 		try {
 			final byte[] data = mc.readProperty(d, DEVICE_OBJECT_INDEX,
 				PropertyAccess.PID.MAX_APDULENGTH, 1, 1);
-			return toUnsigned(data) - 3;
+			final int maxLinkApdu = ((TransportLayerImpl) tl).link().getKNXMedium().maxApduLength();
+			max = Math.min(maxLinkApdu, toUnsigned(data));
 		}
-		catch (final KNXException e) {
-			return defaultApduLength - 3;
-		}
-	}
-
-	private static void waitFor(final int ms) throws InterruptedException
-	{
-		Thread.sleep(ms);
+		catch (final KNXException e) {}
+		d.maxApduLength(max);
+		return max;
 	}
 
 	private static int toUnsigned(final byte[] data)
@@ -0,0 +1,214 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXRemoteException;
+import tuwien.auto.calimero.KNXTimeoutException;
+import tuwien.auto.calimero.mgmt.DeviceCapabilityCache.Capabilities;
+import tuwien.auto.calimero.mgmt.ManagementProcedures.TransferProgress;
+
+/**
+ * Transfers blocks of device memory over a connection-oriented destination, using the largest memory chunks the
+ * device and the network allow. A transport layer connection permits only one outstanding request, hence chunks are
+ * transferred one after the other, and the transfer minimizes the number of round trips instead.
+ * <p>
+ * Extended memory services transfer up to 248 bytes per request (standard memory services 63 bytes). For memory
+ * below 65 K, extended memory services are used if the device maximum APDU length exceeds the standard memory
+ * services; whether the device supports them is probed with the first chunk, and remembered in the device capabilities.
+ */
+final class MemoryTransfer
+{
+	private static final int MaxStandardBytes = 63;
+	private static final int MaxExtendedBytes = 248;
+
+	private final ManagementClient mc;
+	private final Destination dst;
+	private final int maxApduLength;
+	// whether the device supports extended memory services is shared by transfers to the same device
+	private final Capabilities device;
+	private final TransferProgress progress;
+	private final Logger logger;
+
+	private long start;
+	private int transferred;
+
+	MemoryTransfer(final ManagementClient mc, final Destination dst, final int maxApduLength,
+		final Capabilities device, final TransferProgress progress, final Logger logger)
+	{
+		this.mc = mc;
+		this.dst = dst;
+		this.maxApduLength = maxApduLength;
+		this.device = device;
+		this.progress = progress;
+		this.logger = logger;
+	}
+
+	byte[] read(final long startAddress, final int bytes) throws KNXException, InterruptedException
+	{
+		final byte[] read = new byte[bytes];
+		begin();
+		while (transferred < bytes) {
+			final long address = startAddress + transferred;
+			final boolean extended = extended(address);
+			final int size = Math.min(chunkSize(extended), bytes - transferred);
+			final byte[] chunk;
+			try {
+				chunk = read(extended, address, size);
+			}
+			catch (final KNXTimeoutException e) {
+				if (!probing(extended, address))
+					throw e;
+				noExtendedServices();
+				continue;
+			}
+			if (extended && device.extendedMemoryServices == null)
+				device.extendedMemoryServices = true;
+			System.arraycopy(chunk, 0, read, transferred, chunk.length);
+			transferred(chunk.length, bytes);
+		}
+		done("read", bytes);
+		return read;
+	}
+
+	// on readBack, the written memory is read back and compared
+	void write(final long startAddress, final byte[] data, final boolean readBack)
+		throws KNXException, InterruptedException
+	{
+		begin();
+		while (transferred < data.length) {
+			final long address = startAddress + transferred;
+			final boolean extended = extended(address);
+			final int size = Math.min(chunkSize(extended), data.length - transferred);
+			final byte[] chunk = Arrays.copyOfRange(data, transferred, transferred + size);
+			try {
+				write(extended, address, chunk);
+			}
+			catch (final KNXTimeoutException e) {
+				if (!probing(extended, address))
+					throw e;
+				noExtendedServices();
+				continue;
+			}
+			if (extended && device.extendedMemoryServices == null)
+				device.extendedMemoryServices = true;
+			if (readBack && !Arrays.equals(read(extended, address, size), chunk))
+				throw new KNXRemoteException("verify failed (memory data differs)");
+			transferred(size, data.length);
+		}
+		done("wrote", data.length);
+	}
+
+	// number of bytes transferred by the last read or write
+	int transferred()
+	{
+		return transferred;
+	}
+
+	private byte[] read(final boolean extended, final long address, final int size)
+		throws KNXException, InterruptedException
+	{
+		if (extended && address <= 0xffff)
+			return ((ManagementClientImpl) mc).readMemoryExtended(dst, (int) address, size);
+		return mc.readMemory(dst, (int) address, size);
+	}
+
+	private void write(final boolean extended, final long address, final byte[] chunk)
+		throws KNXException, InterruptedException
+	{
+		if (extended && address <= 0xffff)
+			((ManagementClientImpl) mc).writeMemoryExtended(dst, (int) address, chunk);
+		else
+			mc.writeMemory(dst, (int) address, chunk);
+	}
+
+	// memory above 65 K always requires extended memory services
+	private boolean extended(final long address)
+	{
+		if (address > 0xffff)
+			return true;
+		if (!(mc instanceof ManagementClientImpl) || chunkSize(true) <= chunkSize(false))
+			return false;
+		return !Boolean.FALSE.equals(device.extendedMemoryServices);
+	}
+
+	// APDU length of a memory response without data: standard services 3 bytes (APCI with number of bytes, 16 bit
+	// address), extended services 6 bytes (APCI, number of bytes or return code, 24 bit address)
+	private int chunkSize(final boolean extended)
+	{
+		return extended ? Math.min(MaxExtendedBytes, maxApduLength - 6) : Math.min(MaxStandardBytes, maxApduLength - 3);
+	}
+
+	private boolean probing(final boolean extended, final long address)
+	{
+		return extended && address <= 0xffff && device.extendedMemoryServices == null;
+	}
+
+	private void noExtendedServices()
+	{
+		logger.info("{} does not respond to extended memory services, use standard memory services", dst.getAddress());
+		device.extendedMemoryServices = false;
+	}
+
+	private void begin()
+	{
+		start = System.nanoTime();
+		transferred = 0;
+	}
+
+	private void transferred(final int bytes, final int total)
+	{
+		transferred += bytes;
+		progress.progress(transferred, total, throughput());
+	}
+
+	private void done(final String action, final int bytes)
+	{
+		logger.debug("{} {} bytes of memory of {} ({} bytes/s)", action, bytes, dst.getAddress(),
+				Math.round(throughput()));
+	}
+
+	private double throughput()
+	{
+		final long elapsed = System.nanoTime() - start;
+		return elapsed > 0 ? transferred * 1e9 / elapsed : 0;
+	}
+}
@@ -38,14 +38,16 @@ package tuwien.auto.calimero.mgmt;
 
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -473,7 +475,15 @@ public class PropertyClient implements PropertyAccess, AutoCloseable
 		"Application Controller", "File Server Object", "", "", "", "Security Object", "", "RF Medium Object" };
 
 
-	private final Map<PropertyKey, Property> properties = Collections.synchronizedMap(new HashMap<>());
+	// property definitions, replaced on modification (copy-on-write), lookups are lock-free
+	private volatile PropertyIndex properties = PropertyIndex.Empty;
+	private final Definitions definitions = new Definitions();
+
+	// number of property descriptions requested at once during a property scan
+	private static final int ScanBatch = 8;
+	// property descriptions of scanned interface objects by object index; descriptions don't change, but the current
+	// number of elements is read on every scan
+	private final Map<Integer, List<byte[]>> scanned = new ConcurrentHashMap<>();
 
 	private final PropertyAdapter pa;
 	// helper flag to determine local DM mode, mainly for detecting absence of PDT
@@ -539,24 +549,23 @@ public class PropertyClient implements PropertyAccess, AutoCloseable
 	 */
 	public void addDefinitions(final Collection<Property> definitions)
 	{
-		for (final Iterator<Property> i = definitions.iterator(); i.hasNext();) {
-			final Property p = i.next();
-			properties.put(new PropertyKey(p.objType, p.id), p);
+		synchronized (this.definitions) {
+			properties = properties.with(definitions);
 		}
 	}
 
 	/**
 	 * Returns the property definitions used by property clients.
 	 * <p>
-	 * The returned map is synchronized and references the one used by the property
-	 * client. Property definitions might be added or removed as required. Modifications
-	 * will influence subsequent lookup behavior of the property client.<br>
+	 * The returned map is thread-safe and backed by the definitions of the property client. Property definitions
+	 * might be added or removed as required. Modifications will influence subsequent lookup behavior of the property
+	 * client. Iterating the map iterates over a snapshot of the definitions.<br>
 	 *
 	 * @return property map
 	 */
 	public Map<PropertyKey, Property> getDefinitions()
 	{
-		return properties;
+		return definitions;
 	}
 
 	@Override
@@ -702,11 +711,29 @@ public class PropertyClient implements PropertyAccess, AutoCloseable
 			}
 			// property with index 0 is description of object type
 			// rest are ordinary properties of the object
-			for (;; ++i)
-				consumer.accept(createDesc(objIndex, pa.getDescription(objIndex, 0, i)));
+			final List<byte[]> cached = scanned.get(objIndex);
+			if (cached != null) {
+				for (int from = 0; from < cached.size(); from += ScanBatch)
+					i += createDescs(objIndex, cached.subList(from, Math.min(cached.size(), from + ScanBatch)),
+							consumer);
+				return i;
+			}
+			final List<byte[]> descs = new ArrayList<>();
+			boolean complete = true;
+			for (boolean more = true; more;) {
+				final int count = Math.min(ScanBatch, 256 - i);
+				final List<byte[]> batch = new ArrayList<>(count);
+				complete = descriptions(objIndex, i, count, batch);
+				more = complete && count > 0 && batch.size() == count;
+				descs.addAll(batch);
+				i += createDescs(objIndex, batch, consumer);
+			}
+			// a scan cut short by a missing response is not cached, the next scan asks the device again
+			if (complete)
+				scanned.put(objIndex, descs);
 		}
 		catch (final KNXException e) {
-			if (!KNXRemoteException.class.equals(e.getClass()) && !KNXTimeoutException.class.equals(e.getClass())) {
+			if (!endOfScan(e)) {
 				logger.error("scan properties failed", e);
 				throw e;
 			}
@@ -714,23 +741,90 @@ public class PropertyClient implements PropertyAccess, AutoCloseable
 		return i;
 	}
 
-	private Description createDesc(final int oi, final byte[] desc) throws KNXException, InterruptedException
+	// a scan ends on a negative or missing response, i.e., when exceeding the existing interface objects or properties
+	private static boolean endOfScan(final KNXException e)
 	{
-		final int pid = desc[1] & 0xff;
-		byte[] data = new byte[4];
-		try {
-			data = pa.getProperty(oi, pid, 0, 1);
+		return KNXRemoteException.class.equals(e.getClass()) || KNXTimeoutException.class.equals(e.getClass());
+	}
+
+	private boolean pipelining()
+	{
+		return pa instanceof RemotePropertyServiceAdapter && ((RemotePropertyServiceAdapter) pa).pipelining();
+	}
+
+	// Reads the descriptions of consecutive property indices into descs, which ends before the first property index
+	// without description. With connectionless communication, requests are pipelined; a missing response is
+	// requested again before the scan is considered complete. Returns false if the descriptions ended on a timeout,
+	// i.e., descs might be incomplete.
+	private boolean descriptions(final int objIndex, final int propIndex, final int count, final List<byte[]> descs)
+		throws KNXException, InterruptedException
+	{
+		final List<byte[]> pipelined = pipelining()
+				? ((RemotePropertyServiceAdapter) pa).getDescriptions(objIndex, propIndex, count) : List.of();
+		for (int k = 0; k < count; k++) {
+			byte[] desc = k < pipelined.size() ? pipelined.get(k) : null;
+			if (desc == null) {
+				try {
+					desc = pa.getDescription(objIndex, 0, propIndex + k);
+				}
+				catch (final KNXException e) {
+					if (endOfScan(e))
+						return !(e instanceof KNXTimeoutException);
+					throw e;
+				}
+			}
+			if (desc.length == 0)
+				break;
+			descs.add(desc);
 		}
-		catch (final KNXRemoteException e) {
-			logger.warn("failed to get current number of elements for OI {} PID {}: {}", oi, pid, e.getMessage());
+		return true;
+	}
+
+	// creates the descriptions of a batch of properties and passes them on to the consumer
+	private int createDescs(final int oi, final List<byte[]> descs, final Consumer<Description> consumer)
+		throws KNXException, InterruptedException
+	{
+		List<byte[]> elements = List.of();
+		if (pipelining() && descs.size() > 1) {
+			final int[] pids = descs.stream().mapToInt(desc -> desc[1] & 0xff).toArray();
+			elements = ((RemotePropertyServiceAdapter) pa).getProperties(oi, pids, 0, 1);
+		}
+		int created = 0;
+		for (final byte[] desc : descs) {
+			final byte[] data = created < elements.size() ? elements.get(created) : null;
+			consumer.accept(createDesc(oi, desc, data != null ? data : currentElements(oi, desc[1] & 0xff)));
+			created++;
 		}
-		final Description d = new Description(getObjectType(oi, true), Description.parseCurrentElements(data), desc);
+		return created;
+	}
+
+	private Description createDesc(final int oi, final byte[] desc) throws KNXException, InterruptedException
+	{
+		return createDesc(oi, desc, currentElements(oi, desc[1] & 0xff));
+	}
+
+	private Description createDesc(final int oi, final byte[] desc, final byte[] currentElements)
+		throws KNXException, InterruptedException
+	{
+		final int elements = Description.parseCurrentElements(currentElements);
+		final Description d = new Description(getObjectType(oi, true), elements, desc);
 		// workaround for PDT on local DM
 		if (local)
 			d.setPDT(-1);
 		return d;
 	}
 
+	private byte[] currentElements(final int oi, final int pid) throws KNXException, InterruptedException
+	{
+		try {
+			return pa.getProperty(oi, pid, 0, 1);
+		}
+		catch (final KNXRemoteException e) {
+			logger.warn("failed to get current number of elements for OI {} PID {}: {}", oi, pid, e.getMessage());
+		}
+		return new byte[4];
+	}
+
 	private int getObjectType(final int objIndex, final boolean queryObject) throws KNXException, InterruptedException
 	{
 		for (final Iterator<Pair> i = objectTypes.iterator(); i.hasNext();) {
@@ -761,10 +855,11 @@ public class PropertyClient implements PropertyAccess, AutoCloseable
 	{
 		final int ot = getObjectType(objIndex, true);
 		int pdt = -1;
-		Property p = properties.get(new PropertyKey(ot, pid));
+		final PropertyIndex index = properties;
+		Property p = index.get(ot, pid);
 		// if no property found, lookup global pid
 		if (p == null && pid <= 50)
-			p = properties.get(new PropertyKey(pid));
+			p = index.get(PropertyKey.GLOBAL_OBJTYPE, pid);
 		if (p != null) {
 			if (p.dpt != null)
 				try {
@@ -966,6 +1061,116 @@ public class PropertyClient implements PropertyAccess, AutoCloseable
 		}
 	}
 
+	// map view of the property definitions, modifications replace the index
+	private final class Definitions extends AbstractMap<PropertyKey, Property>
+	{
+		@Override
+		public Property get(final Object key)
+		{
+			if (key instanceof PropertyKey) {
+				final PropertyKey k = (PropertyKey) key;
+				return properties.get(k.ot, k.id);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean containsKey(final Object key)
+		{
+			return get(key) != null;
+		}
+
+		@Override
+		public Property put(final PropertyKey key, final Property value)
+		{
+			if (value == null)
+				throw new NullPointerException("property definition");
+			synchronized (this) {
+				final Property old = properties.get(key.ot, key.id);
+				properties = properties.with(key.ot, key.id, value);
+				return old;
+			}
+		}
+
+		@Override
+		public Property remove(final Object key)
+		{
+			if (!(key instanceof PropertyKey))
+				return null;
+			final PropertyKey k = (PropertyKey) key;
+			synchronized (this) {
+				final Property old = properties.get(k.ot, k.id);
+				properties = properties.without(k.ot, k.id);
+				return old;
+			}
+		}
+
+		@Override
+		public synchronized void clear()
+		{
+			properties = PropertyIndex.Empty;
+		}
+
+		@Override
+		public int size()
+		{
+			return properties.size();
+		}
+
+		@Override
+		public Set<Entry<PropertyKey, Property>> entrySet()
+		{
+			return new AbstractSet<Entry<PropertyKey, Property>>() {
+				@Override
+				public Iterator<Entry<PropertyKey, Property>> iterator()
+				{
+					final PropertyIndex index = properties;
+					final Iterator<PropertyKey> keys = index.keys().iterator();
+					return new Iterator<Entry<PropertyKey, Property>>() {
+						private PropertyKey last;
+
+						@Override
+						public boolean hasNext()
+						{
+							return keys.hasNext();
+						}
+
+						@Override
+						public Entry<PropertyKey, Property> next()
+						{
+							last = keys.next();
+							return new SimpleEntry<PropertyKey, Property>(last, index.get(last.ot, last.id)) {
+								private static final long serialVersionUID = 1L;
+
+								@Override
+								public Property setValue(final Property value)
+								{
+									put(getKey(), value);
+									return super.setValue(value);
+								}
+							};
+						}
+
+						@Override
+						public void remove()
+						{
+							if (last == null)
+								throw new IllegalStateException();
+							Definitions.this.remove(last);
+							last = null;
+						}
+					};
+				}
+
+				@Override
+				public int size()
+				{
+					return properties.size();
+				}
+			};
+		}
+	}
+
 	private static final class Pair
 	{
 		final int oindex;
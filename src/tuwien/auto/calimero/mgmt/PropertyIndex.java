@@ -0,0 +1,166 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import tuwien.auto.calimero.mgmt.PropertyClient.Property;
+import tuwien.auto.calimero.mgmt.PropertyClient.PropertyKey;
+
+/**
+ * Immutable property definition index, mapping interface object type and PID to the property definition. Object types
+ * are kept sorted in an array, with one PID-indexed definition table per object type; lookups neither lock nor
+ * allocate. Modifications create a new index.
+ */
+final class PropertyIndex
+{
+	static final PropertyIndex Empty = new PropertyIndex(new int[0], new Property[0][], 0);
+
+	// sorted object types, global object type (-1) comes first
+	private final int[] objectTypes;
+	// tables[i][pid] holds the definition of objectTypes[i]
+	private final Property[][] tables;
+	private final int size;
+
+	private PropertyIndex(final int[] objectTypes, final Property[][] tables, final int size)
+	{
+		this.objectTypes = objectTypes;
+		this.tables = tables;
+		this.size = size;
+	}
+
+	Property get(final int objType, final int pid)
+	{
+		final int i = Arrays.binarySearch(objectTypes, objType);
+		if (i < 0)
+			return null;
+		final Property[] table = tables[i];
+		return pid >= 0 && pid < table.length ? table[pid] : null;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns a new index containing the definitions of this index together with the supplied definitions; a supplied
+	 * definition replaces an existing definition with the same object type and PID.
+	 */
+	PropertyIndex with(final Collection<Property> definitions)
+	{
+		final int[] ot = new int[definitions.size()];
+		final int[] pids = new int[ot.length];
+		final Property[] defs = definitions.toArray(new Property[0]);
+		for (int i = 0; i < defs.length; i++) {
+			ot[i] = defs[i].objType;
+			pids[i] = defs[i].id;
+		}
+		return with(ot, pids, defs);
+	}
+
+	PropertyIndex with(final int objType, final int pid, final Property definition)
+	{
+		return with(new int[] { objType }, new int[] { pid }, new Property[] { definition });
+	}
+
+	private PropertyIndex with(final int[] ot, final int[] pids, final Property[] defs)
+	{
+		int[] types = objectTypes;
+		for (final int type : ot) {
+			final int i = Arrays.binarySearch(types, type);
+			if (i < 0) {
+				final int insert = -i - 1;
+				final int[] grown = new int[types.length + 1];
+				System.arraycopy(types, 0, grown, 0, insert);
+				System.arraycopy(types, insert, grown, insert + 1, types.length - insert);
+				grown[insert] = type;
+				types = grown;
+			}
+		}
+		final Property[][] t = new Property[types.length][];
+		for (int i = 0; i < types.length; i++) {
+			final int existing = Arrays.binarySearch(objectTypes, types[i]);
+			t[i] = existing < 0 ? new Property[0] : tables[existing];
+		}
+		// tables are shared with this index, copy a table before its first modification
+		final boolean[] copied = new boolean[types.length];
+		int n = size;
+		for (int k = 0; k < defs.length; k++) {
+			final int pid = pids[k];
+			// a PID not yet assigned (i.e., "<tbd>" in the definitions resource) can't be looked up
+			if (pid < 0)
+				continue;
+			final int i = Arrays.binarySearch(types, ot[k]);
+			if (!copied[i] || t[i].length <= pid) {
+				t[i] = Arrays.copyOf(t[i], Math.max(t[i].length, pid + 1));
+				copied[i] = true;
+			}
+			if (t[i][pid] == null)
+				n++;
+			t[i][pid] = defs[k];
+		}
+		return new PropertyIndex(types, t, n);
+	}
+
+	PropertyIndex without(final int objType, final int pid)
+	{
+		final int i = Arrays.binarySearch(objectTypes, objType);
+		if (i < 0 || pid < 0 || pid >= tables[i].length || tables[i][pid] == null)
+			return this;
+		final Property[][] t = tables.clone();
+		t[i] = t[i].clone();
+		t[i][pid] = null;
+		return new PropertyIndex(objectTypes, t, size - 1);
+	}
+
+	/**
+	 * Returns the keys of all definitions, ordered by object type and PID.
+	 */
+	List<PropertyKey> keys()
+	{
+		final List<PropertyKey> keys = new ArrayList<>(size);
+		for (int i = 0; i < objectTypes.length; i++)
+			for (int pid = 0; pid < tables[i].length; pid++)
+				if (tables[i][pid] != null)
+					keys.add(new PropertyKey(objectTypes[i], pid));
+		return keys;
+	}
+}
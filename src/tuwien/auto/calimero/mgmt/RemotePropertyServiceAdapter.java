@@ -36,6 +36,7 @@
 
 package tuwien.auto.calimero.mgmt;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 import tuwien.auto.calimero.CloseEvent;
@@ -156,6 +157,26 @@ public class RemotePropertyServiceAdapter implements PropertyAdapter
 		return mc.readPropertyDesc(dst, objIndex, pid, propIndex);
 	}
 
+	// returns whether requests to the destination can be pipelined, requires connectionless communication
+	boolean pipelining()
+	{
+		return !dst.isConnectionOriented() && mc instanceof ManagementClientImpl;
+	}
+
+	// see ManagementClientImpl#readPropertyDescs
+	List<byte[]> getDescriptions(final int objIndex, final int propIndex, final int count)
+		throws KNXException, InterruptedException
+	{
+		return ((ManagementClientImpl) mc).readPropertyDescs(dst, objIndex, propIndex, count);
+	}
+
+	// see ManagementClientImpl#readProperties
+	List<byte[]> getProperties(final int objIndex, final int[] pids, final int start, final int elements)
+		throws KNXException, InterruptedException
+	{
+		return ((ManagementClientImpl) mc).readProperties(dst, objIndex, pids, start, elements);
+	}
+
 	/**
 	 * {@inheritDoc} The name for this adapter starts with "remote PS " + remote KNX
 	 * individual address, allowing easier distinction of adapter types.
@@ -42,8 +42,6 @@ import static tuwien.auto.calimero.mgmt.Destination.State.Disconnected;
 import static tuwien.auto.calimero.mgmt.Destination.State.OpenIdle;
 import static tuwien.auto.calimero.mgmt.Destination.State.OpenWait;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -115,18 +113,20 @@ public class TransportLayerImpl implements TransportLayer
 			}
 			else {
 				final IndividualAddress src = f.getSource();
-				// are we waiting for ack?
-				synchronized (indications) {
-					if (active != null && active.getDestination().getAddress().equals(src)) {
-						indications.add(e);
-						indications.notify();
-						return;
-					}
-				}
 				AggregatorProxy ap = null;
 				synchronized (proxies) {
 					ap = proxies.get(src);
 				}
+				// are we waiting for ack?
+				if (ap != null) {
+					synchronized (ap.received) {
+						if (ap.awaitingAck) {
+							ap.received.add(e);
+							ap.received.notify();
+							return;
+						}
+					}
+				}
 				try {
 					handleConnected(f, ap);
 				}
@@ -173,16 +173,11 @@ public class TransportLayerImpl implements TransportLayer
 	private volatile boolean detached;
 	private final KNXNetworkLink lnk;
 	private final NetworkLinkListener lnkListener = new NLListener();
-	private final Deque<FrameEvent> indications = new ArrayDeque<>();
 	private final EventListeners<TransportListener> listeners;
 
 	// holds the mapping of connection destination address to proxy
 	private final Map<IndividualAddress, AggregatorProxy> proxies = new HashMap<>();
 	private final Map<IndividualAddress, AggregatorProxy> incomingProxies = new HashMap<>();
-	private AggregatorProxy active;
-
-	private volatile int repeated;
-	private final Object lock = new Object();
 
 	/**
 	 * Creates a new client-side transport layer end-point attached to the supplied KNX network
@@ -279,8 +274,8 @@ public class TransportLayerImpl implements TransportLayer
 			if (p.getDestination() == d) {
 				d.destroy();
 				proxies.remove(d.getAddress());
-				synchronized (indications) {
-					indications.notify();
+				synchronized (p.received) {
+					p.received.notify();
 				}
 			}
 			else
@@ -330,42 +325,51 @@ public class TransportLayerImpl implements TransportLayer
 	public void sendData(final Destination d, final Priority p, final byte[] tsdu)
 		throws KNXDisconnectException, KNXLinkClosedException
 	{
-		try {
-			connect(d);
-		}
-		catch (final KNXTimeoutException e) {
-			throw new KNXDisconnectException("no connection opened for " + d.getAddress() + " (timeout)", d);
-		}
 		final AggregatorProxy ap = getProxy(d);
-		tsdu[0] = (byte) (tsdu[0] & 0x03 | DATA_CONNECTED | ap.getSeqSend() << 2);
-		// the entry lock guards between send and return (only one at a time)
-		synchronized (lock) {
-			// on indications we do wait() for incoming messages
-			synchronized (indications) {
-				try {
-					active = ap;
-					for (repeated = 0; repeated < MAX_REPEAT + 1; ++repeated) {
-						try {
-							logger.trace("sending data connected to {}, attempt {}", d.getAddress(), (repeated + 1));
-							// set state and timer
-							ap.setState(OpenWait);
-							lnk.sendRequestWait(d.getAddress(), p, tsdu);
-							if (waitForAck())
-								return;
-						}
-						catch (final KNXTimeoutException e) {}
-						// cancel repetitions if detached or destroyed
-						if (detached || d.getState() == Destroyed)
-							throw new KNXDisconnectException("send data connected failed", d);
+		// the send lock of the destination guards between send and return (only one at a time), sending to other
+		// destinations is not blocked
+		synchronized (ap.sendLock) {
+			try {
+				connect(d);
+			}
+			catch (final KNXTimeoutException e) {
+				throw new KNXDisconnectException("no connection opened for " + d.getAddress() + " (timeout)", d);
+			}
+			tsdu[0] = (byte) (tsdu[0] & 0x03 | DATA_CONNECTED | ap.getSeqSend() << 2);
+			try {
+				synchronized (ap.received) {
+					ap.awaitingAck = true;
+				}
+				for (ap.repeated = 0; ap.repeated < MAX_REPEAT + 1; ++ap.repeated) {
+					try {
+						logger.trace("sending data connected to {}, attempt {}", d.getAddress(), (ap.repeated + 1));
+						// set state and timer
+						ap.setState(OpenWait);
+						lnk.sendRequestWait(d.getAddress(), p, tsdu);
+						if (waitForAck(ap))
+							return;
 					}
+					catch (final KNXTimeoutException e) {}
+					// cancel repetitions if detached or destroyed
+					if (detached || d.getState() == Destroyed)
+						throw new KNXDisconnectException("send data connected failed", d);
 				}
-				finally {
-					active = null;
-					repeated = 0;
+			}
+			finally {
+				ap.repeated = 0;
+				synchronized (ap.received) {
+					ap.awaitingAck = false;
+				}
+				// handle frames which arrived after the acknowledgment
+				for (FrameEvent e = nextReceived(ap); e != null; e = nextReceived(ap)) {
+					try {
+						handleConnected((CEMILData) e.getFrame(), ap);
+					}
+					catch (final KNXTimeoutException ignore) {}
 				}
 			}
+			disconnectIndicate(ap, true);
 		}
-		disconnectIndicate(ap, true);
 		throw new KNXDisconnectException("send data connected failed", d);
 	}
 
@@ -514,7 +518,7 @@ public class TransportLayerImpl implements TransportLayer
 			if (d.getState() == Disconnected || !sender.equals(d.getAddress()))
 				checkSendDisconnect(frame);
 			else if (d.getState() == OpenWait && seq == Objects.requireNonNull(p).getSeqSend()
-					&& repeated < MAX_REPEAT) {
+					&& p.repeated < MAX_REPEAT) {
 				; // do nothing, we will send message again
 			}
 			else
@@ -522,24 +526,27 @@ public class TransportLayerImpl implements TransportLayer
 		}
 	}
 
-	private boolean waitForAck() throws KNXTimeoutException, KNXDisconnectException, KNXLinkClosedException
+	private boolean waitForAck(final AggregatorProxy ap)
+		throws KNXTimeoutException, KNXDisconnectException, KNXLinkClosedException
 	{
 		boolean interrupted = false;
 		try {
 			long remaining = ACK_TIMEOUT * 1000L;
 			final long end = System.currentTimeMillis() + remaining;
-			final Destination d = active.getDestination();
+			final Destination d = ap.getDestination();
 			while (remaining > 0) {
 				try {
-					while (indications.size() > 0)
-						handleConnected((CEMILData) indications.remove().getFrame(), active);
+					for (FrameEvent e = nextReceived(ap); e != null; e = nextReceived(ap))
+						handleConnected((CEMILData) e.getFrame(), ap);
 					if (d.getState() == Disconnected || d.getState() == Destroyed)
 						throw new KNXDisconnectException(d.getAddress() + " disconnected while awaiting ACK", d);
 					if (d.getState() == OpenIdle)
 						return true;
-					indications.wait(remaining);
-					if (d.getState() == Disconnected || d.getState() == Destroyed)
-						throw new KNXDisconnectException(d.getAddress() + " disconnected while awaiting ACK", d);
+					synchronized (ap.received) {
+						// state is set before notifying, so check again before waiting
+						if (ap.received.isEmpty() && d.getState() == OpenWait)
+							ap.received.wait(remaining);
+					}
 				}
 				catch (final InterruptedException e) {
 					interrupted = true;
@@ -554,6 +561,13 @@ public class TransportLayerImpl implements TransportLayer
 		return false;
 	}
 
+	private static FrameEvent nextReceived(final AggregatorProxy ap)
+	{
+		synchronized (ap.received) {
+			return ap.received.poll();
+		}
+	}
+
 	private void closeDestinations(final boolean skipSendDisconnect)
 	{
 		// we can't use proxies default iterator due to concurrent modifications in
@@ -40,6 +40,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -47,7 +48,6 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 
 import tuwien.auto.calimero.CloseEvent;
-import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.FrameEvent;
 import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.IndividualAddress;
@@ -603,10 +603,11 @@ public class FT12Connection implements AutoCloseable
 		return NoLDataAddress;
 	}
 
-	private final class Receiver extends Thread
+	private final class Receiver extends Thread implements FT12FrameAssembler.Handler
 	{
 		private volatile boolean quit;
 		private int lastChecksum;
+		private final FT12FrameAssembler assembler = new FT12FrameAssembler(this, logger);
 
 		Receiver()
 		{
@@ -617,19 +618,21 @@ public class FT12Connection implements AutoCloseable
 		@Override
 		public void run()
 		{
+			final byte[] chunk = new byte[256];
 			try {
 				while (!quit) {
+					// block for the next character, then take all available characters at once
 					final int c = is.read();
-					if (c > -1) {
-						if (c == ACK)
-							signalAck();
-						else if (c == START)
-							readFrame();
-						else if (c == START_FIXED)
-							readShortFrame();
-						else
-							logger.trace("received unexpected start byte 0x" + Integer.toHexString(c) + " - ignored");
+					if (c == -1) {
+						assembler.expire(Duration.ofMillis(idleTimeout(adapter.getBaudRate())));
+						continue;
 					}
+					chunk[0] = (byte) c;
+					int length = 1;
+					final int available = Math.min(is.available(), chunk.length - 1);
+					if (available > 0)
+						length += Math.max(0, is.read(chunk, 1, available));
+					assembler.consume(ByteBuffer.wrap(chunk, 0, length));
 				}
 			}
 			catch (final IOException | InterruptedException e) {
@@ -650,52 +653,39 @@ public class FT12Connection implements AutoCloseable
 			catch (final InterruptedException e) {}
 		}
 
-		private boolean readShortFrame() throws IOException
+		@Override
+		public void ack() throws InterruptedException
 		{
-			final byte[] buf = new byte[3];
-			if (is.read(buf) == 3 && buf[0] == buf[1] && (buf[2] & 0xff) == END) {
-				// for our purposes (reset and status), FRAMECOUNT_VALID is never set
-				if ((buf[0] & 0x30) == 0) {
-					sendAck();
-					final int fc = buf[0] & 0x0f;
-					logger.trace("received " + (fc == RESET ? "reset" : fc == REQ_STATUS
-							? "status" : "unknown function code "));
-					return true;
-				}
+			signalAck();
+		}
+
+		@Override
+		public void shortFrame(final int ctrl) throws IOException
+		{
+			// for our purposes (reset and status), FRAMECOUNT_VALID is never set
+			if ((ctrl & 0x30) == 0) {
+				sendAck();
+				final int fc = ctrl & 0x0f;
+				logger.trace("received " + (fc == RESET ? "reset" : fc == REQ_STATUS
+						? "status" : "unknown function code "));
 			}
-			return false;
 		}
 
-		private boolean readFrame() throws IOException, InterruptedException
+		@Override
+		public void frame(final int ctrl, final ByteBuffer data, final byte chk)
+			throws IOException, InterruptedException
 		{
-			final int len = is.read();
-			final byte[] buf = new byte[len + 4];
-			// read rest of frame, check header, ctrl, and end tag
-			final int read = is.read(buf);
-			if (read == len + 4 && (buf[0] & 0xff) == len && (buf[1] & 0xff) == START && (buf[len + 3] & 0xff) == END) {
-				final byte chk = buf[buf.length - 2];
-				if (!checkCtrlField(buf[2] & 0xff, chk))
-					return false;
-
-				if (checksum(buf, 2, len) != chk)
-					logger.warn("invalid checksum in frame " + DataUnitBuilder.toHex(buf, " "));
-				else {
-					sendAck();
-					lastChecksum = chk;
-					rcvFrameCount ^= FRAMECOUNT_BIT;
-					final byte[] ldata = new byte[len - 1];
-					for (int i = 0; i < ldata.length; ++i)
-						ldata[i] = buf[3 + i];
+			if (!checkCtrlField(ctrl, chk))
+				return;
+			sendAck();
+			lastChecksum = chk;
+			rcvFrameCount ^= FRAMECOUNT_BIT;
+			final byte[] ldata = new byte[data.remaining()];
+			data.get(ldata);
 
-					fireFrameReceived(ldata);
+			fireFrameReceived(ldata);
 
-					checkLDataCon(ldata);
-					return true;
-				}
-			}
-			else
-				logger.warn("invalid frame, discarded " + read + " bytes: " + DataUnitBuilder.toHex(buf, " "));
-			return false;
+			checkLDataCon(ldata);
 		}
 
 		private boolean checkCtrlField(final int c, final byte chk)
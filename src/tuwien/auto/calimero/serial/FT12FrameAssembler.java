@@ -0,0 +1,241 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.serial;
+
+import static tuwien.auto.calimero.serial.FT12Connection.ACK;
+import static tuwien.auto.calimero.serial.FT12Connection.START;
+import static tuwien.auto.calimero.serial.FT12Connection.START_FIXED;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+
+import org.slf4j.Logger;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+
+/**
+ * Assembles FT1.2 frames from chunks of received bytes. The assembler does not block, it consumes whatever bytes are
+ * available (e.g., read from a serial port, a pseudo-terminal, or an in-memory channel), keeps the bytes of an
+ * incomplete frame, and dispatches every complete frame to its handler. Frames are validated in the receive buffer,
+ * without copying; on an invalid frame, the assembler re-synchronizes on the next start character.
+ */
+final class FT12FrameAssembler
+{
+	/** Handler of received FT1.2 frames. */
+	interface Handler
+	{
+		/** Received a single character acknowledgment. */
+		void ack() throws IOException, InterruptedException;
+
+		/**
+		 * Received a frame with fixed length.
+		 *
+		 * @param ctrl control field
+		 */
+		void shortFrame(int ctrl) throws IOException, InterruptedException;
+
+		/**
+		 * Received a frame with variable length and valid checksum.
+		 *
+		 * @param ctrl control field
+		 * @param data user data, the buffer is only valid during this call
+		 * @param checksum frame checksum
+		 */
+		void frame(int ctrl, ByteBuffer data, byte checksum) throws IOException, InterruptedException;
+	}
+
+	private static final int END = 0x16;
+	// variable length frame: 4 bytes header, ctrl field, up to 255 bytes user data, checksum, end
+	private static final int MaxFrameSize = 4 + 1 + 255 + 2;
+
+	private final Handler handler;
+	private final Logger logger;
+	private final ByteBuffer buffer = ByteBuffer.allocate(2 * MaxFrameSize);
+
+	private long lastReceived;
+
+	FT12FrameAssembler(final Handler handler, final Logger logger)
+	{
+		this.handler = handler;
+		this.logger = logger;
+	}
+
+	/**
+	 * Reads the available bytes from the channel and dispatches all complete frames.
+	 *
+	 * @param channel channel to read from
+	 * @return number of bytes read, possibly 0, or -1 if the channel has reached end-of-stream
+	 * @throws IOException on I/O error reading the channel, or thrown by the handler
+	 * @throws InterruptedException if the handler was interrupted
+	 */
+	int read(final ReadableByteChannel channel) throws IOException, InterruptedException
+	{
+		final int read = channel.read(buffer);
+		if (read > 0)
+			received();
+		return read;
+	}
+
+	/**
+	 * Consumes a chunk of received bytes and dispatches all complete frames.
+	 *
+	 * @param chunk received bytes, the chunk is consumed completely
+	 * @throws IOException thrown by the handler
+	 * @throws InterruptedException if the handler was interrupted
+	 */
+	void consume(final ByteBuffer chunk) throws IOException, InterruptedException
+	{
+		while (chunk.hasRemaining()) {
+			final int n = Math.min(chunk.remaining(), buffer.remaining());
+			final ByteBuffer slice = chunk.duplicate();
+			slice.limit(slice.position() + n);
+			buffer.put(slice);
+			chunk.position(chunk.position() + n);
+			received();
+		}
+	}
+
+	/**
+	 * Discards the bytes of an incomplete frame if no bytes were received within the idle timeout, i.e., the maximum
+	 * time between two frame characters.
+	 *
+	 * @param idleTimeout idle timeout
+	 * @return <code>true</code> if an incomplete frame was discarded, <code>false</code> otherwise
+	 */
+	boolean expire(final Duration idleTimeout)
+	{
+		if (buffer.position() == 0 || System.nanoTime() - lastReceived < idleTimeout.toNanos())
+			return false;
+		logger.warn("idle timeout, discard incomplete frame {}", hex(0, buffer.position()));
+		buffer.clear();
+		return true;
+	}
+
+	private void received() throws IOException, InterruptedException
+	{
+		lastReceived = System.nanoTime();
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining() && dispatch());
+		}
+		finally {
+			buffer.compact();
+		}
+	}
+
+	// returns false if the buffer does not contain a complete frame yet
+	private boolean dispatch() throws IOException, InterruptedException
+	{
+		final int pos = buffer.position();
+		final int c = buffer.get(pos) & 0xff;
+		if (c == ACK) {
+			buffer.position(pos + 1);
+			handler.ack();
+			return true;
+		}
+		if (c == START_FIXED) {
+			if (buffer.remaining() < 4)
+				return false;
+			final int ctrl = buffer.get(pos + 1) & 0xff;
+			// checksum of a fixed length frame is the ctrl field
+			if (buffer.get(pos + 2) == buffer.get(pos + 1) && (buffer.get(pos + 3) & 0xff) == END) {
+				buffer.position(pos + 4);
+				handler.shortFrame(ctrl);
+			}
+			else
+				skip("invalid fixed length frame");
+			return true;
+		}
+		if (c == START) {
+			if (buffer.remaining() < 4)
+				return false;
+			final int len = buffer.get(pos + 1) & 0xff;
+			if (len == 0 || buffer.get(pos + 2) != buffer.get(pos + 1) || (buffer.get(pos + 3) & 0xff) != START) {
+				skip("invalid frame header");
+				return true;
+			}
+			final int size = len + 6;
+			if (buffer.remaining() < size)
+				return false;
+			if ((buffer.get(pos + size - 1) & 0xff) != END) {
+				skip("invalid frame end");
+				return true;
+			}
+			final byte chk = buffer.get(pos + size - 2);
+			if (checksum(pos + 4, len) != chk) {
+				logger.warn("invalid checksum in frame {}", hex(pos, size));
+				buffer.position(pos + size);
+				return true;
+			}
+			final int ctrl = buffer.get(pos + 4) & 0xff;
+			final ByteBuffer data = buffer.duplicate();
+			data.position(pos + 5).limit(pos + size - 2);
+			buffer.position(pos + size);
+			handler.frame(ctrl, data.slice().asReadOnlyBuffer(), chk);
+			return true;
+		}
+		buffer.position(pos + 1);
+		logger.trace("received unexpected start byte 0x{} - ignored", Integer.toHexString(c));
+		return true;
+	}
+
+	// skip the start character, and re-synchronize on the next start character
+	private void skip(final String reason)
+	{
+		final int pos = buffer.position();
+		logger.warn("{}, discard 0x{} ({})", reason, Integer.toHexString(buffer.get(pos) & 0xff),
+				hex(pos, Math.min(buffer.remaining(), MaxFrameSize)));
+		buffer.position(pos + 1);
+	}
+
+	private byte checksum(final int offset, final int length)
+	{
+		byte chk = 0;
+		for (int i = 0; i < length; ++i)
+			chk += buffer.get(offset + i);
+		return chk;
+	}
+
+	private String hex(final int offset, final int length)
+	{
+		final byte[] bytes = new byte[length];
+		buffer.duplicate().position(offset).get(bytes);
+		return DataUnitBuilder.toHex(bytes, " ");
+	}
+}
@@ -48,10 +48,8 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import tuwien.auto.calimero.CloseEvent;
 import tuwien.auto.calimero.DataUnitBuilder;
@@ -141,9 +139,6 @@ public class TpuartConnection implements AutoCloseable
 	private final Receiver receiver;
 	private final Object lock = new Object();
 
-	private volatile boolean idle;
-	private final Object enterIdleLock = new Object();
-
 	// NYI compare to received frame for .con, or just remove
 	private volatile byte[] req;
 	private volatile int state;
@@ -287,7 +282,7 @@ public class TpuartConnection implements AutoCloseable
 		try {
 			final byte[] data = toUartServices(cEmiToTP1(frame));
 			if (logger.isTraceEnabled())
-				logger.trace("create UART services {}", DataUnitBuilder.toHex(data, " "));
+				logger.trace("create UART services {}", DataUnitBuilder.hex(data, " "));
 			req = frame.clone();
 			final long start = System.nanoTime();
 
@@ -295,10 +290,7 @@ public class TpuartConnection implements AutoCloseable
 			if (group)
 				sending.put(new GroupAddress(new byte[] { frame[6], frame[7] }), start);
 
-			synchronized (enterIdleLock) {
-				while (!idle)
-					enterIdleLock.wait();
-			}
+			receiver.detector.awaitIdle();
 			logger.trace("UART ready for sending after {} us", (System.nanoTime() - start) / 1000);
 
 			logger.debug("write UART services, {}", (waitForCon ? "waiting for .con" : "non-blocking"));
@@ -463,41 +455,21 @@ public class TpuartConnection implements AutoCloseable
 		return valid;
 	}
 
-	// Stores the currently used max. inter-byte delay, to also be available for subsequent tpuart connections.
-	private static AtomicInteger maxInterByteDelay = new AtomicInteger(5200); // 50 bit times [us]
-	static {
-		final var key = "calimero.serial.tpuart.maxInterByteDelay";
-		try {
-			final var delay = System.getProperty(key);
-			if (delay != null) {
-				final int value = Integer.parseUnsignedInt(delay);
-				maxInterByteDelay.set(value);
-				LoggerFactory.getLogger("calimero.serial.tpuart").info("using {} of {} us", key, value);
-			}
-		}
-		catch (final RuntimeException e) {
-			LoggerFactory.getLogger("calimero.serial.tpuart").warn("on checking property {}", key, e);
-		}
-	}
-
-	private final class Receiver extends Thread
+	private final class Receiver extends Thread implements TpuartGapDetector.Handler
 	{
+		// character transmission time at 19200 Bd, 8E1
+		private static final long CharTime = 573_000; // [ns]
+		// we transition to idle state after some time of inactivity
+		private static final long Inactivity = 10_000_000; // [ns]
+
 		private volatile boolean quit;
 
-		private final ByteArrayOutputStream in = new ByteArrayOutputStream();
-		private long lastRead;
-		private boolean extFrame;
-		private boolean frameAcked;
+		final TpuartGapDetector detector = new TpuartGapDetector(this, CharTime, Inactivity, logger);
 
 		private byte[] lastReceived = new byte[0];
 		volatile long lastUartState; // [us]
 		private boolean uartStatePending;
 
-		private int maxDelay = maxInterByteDelay.get();
-		private int consecutiveFrameDrops = -1;
-
-		private long coolDownUntil;
-
 		Receiver()
 		{
 			super("Calimero TP-UART receiver");
@@ -519,53 +491,31 @@ public class TpuartConnection implements AutoCloseable
 			catch (final IOException ignore) {}
 			logger.trace("drained rx queue ({} bytes)", drained);
 
-			long enterIdleTimestamp = 0; // [ns]
+			final byte[] burst = new byte[64];
 			while (!quit) {
 				try {
-					final long start = System.nanoTime();
+					// block for the next character, then take all characters already available
 					final int c = is.read();
-
 					if (c == -1) {
 						checkUartState();
-
-						// we transition to idle state after some time of inactivity, and notify a waiting sender
-						final long inactivity = 10_000; // [us]
-						if (enterIdleTimestamp == 0)
-							enterIdleTimestamp = start;
-						else if (coolDownUntil > start) {
-							// we received a temperature warning and are in cool down mode (no sending allowed)
-							// throttle busy wait on input stream
-							Thread.sleep(1);
-						}
-						else if ((start - enterIdleTimestamp) / 1000 > inactivity) {
-							synchronized (enterIdleLock) {
-								idle = true;
-								enterIdleLock.notify();
-							}
-						}
 						continue;
 					}
+					burst[0] = (byte) c;
+					final int available = Math.min(is.available(), burst.length - 1);
+					final int read = available > 0 ? Math.max(0, is.read(burst, 1, available)) : 0;
+					final long timestamp = System.nanoTime();
 
-					final long idlePeriod = (start - enterIdleTimestamp) / 1000;
-					if (enterIdleTimestamp != 0 && idlePeriod > 100_000)
+					final long idlePeriod = (timestamp - detector.lastReceived()) / 1000;
+					if (idlePeriod > 100_000)
 						logger.trace("receiver woke from extended idle period of {} us", idlePeriod);
-					idle = false;
-					enterIdleTimestamp = 0;
-
-					if (parseFrame(c) || isLDataCon(c) || isUartStateInd(c))
-						; // nothing to do
-					else if (c == Reset_ind) {
-						uartStatePending = false;
-						logger.debug("TP-UART reset.ind");
-					}
+					detector.accept(burst, 1 + read, timestamp);
 
-					final long loop = System.nanoTime() - start;
+					final long loop = System.nanoTime() - timestamp;
 					logger.trace("loop time = {} us", loop / 1000);
 				}
 				catch (final RuntimeException e) {
 					logger.warn("continue after internal error in receiver loop", e);
 				}
-				catch (final InterruptedException e) {}
 				catch (final IOException e) {
 					if (!quit)
 						close(CloseEvent.INTERNAL, "receiver communication failure, " + e.toString());
@@ -588,115 +538,52 @@ public class TpuartConnection implements AutoCloseable
 			}
 		}
 
-		private int maxInterByteDelay()
+		@Override
+		public void character(final int c) throws IOException
 		{
-			// cond: consecutively losing 4 frames (1 msg w/ 1 .ind + 2 .ind repetitions, and 1st .ind of next msg)
-			if (consecutiveFrameDrops >= 3) {
-				maxDelay = maxInterByteDelay.accumulateAndGet(Math.min(maxDelay + 500, 20_000), Math::max);
-				logger.warn("{} partial frames discarded, increase max. inter-byte delay to {} us",
-						consecutiveFrameDrops + 1, maxDelay);
-				consecutiveFrameDrops = -1;
+			if (isShortAck(c) || isLDataCon(c) || isUartStateInd(c))
+				; // nothing to do
+			else if (c == Reset_ind) {
+				uartStatePending = false;
+				logger.debug("TP-UART reset.ind");
 			}
-			return maxDelay;
 		}
 
-		private boolean parseFrame(final int c) throws IOException
+		@Override
+		public void frame(final byte[] data)
 		{
-			final long now = System.nanoTime() / 1000;
-			int size = in.size();
-			if (size > 0) {
-				// empty current buffer if we didn't receive data for some time
-				final int minLength = extFrame ? 7 : 6;
-				final long diff = now - lastRead;
-				if (size < minLength && diff > maxInterByteDelay()) {
-					resetReceiveBuffer(c, diff);
-					size = 0;
-				}
-				else if (size >= minLength && diff > 4 * maxInterByteDelay()) {
-					resetReceiveBuffer(c, diff);
-					size = 0;
+			try {
+				logger.debug("received TP1 L-Data (length {}): {}", data.length, DataUnitBuilder.hex(data, " "));
+				if (busmon) {
+					fireFrameReceived(createBusmonInd(data));
 				}
-			}
+				else {
+					// check repetition of a directly preceding correctly received frame
+					final boolean repeated = (data[0] & RepeatFlag) == 0;
+					if (repeated && Arrays.equals(lastReceived, 0, lastReceived.length - 2, data, 0, data.length - 2)) {
+						logger.debug("ignore repetition of directly preceding correctly received frame");
+					}
+					else {
+						lastReceived = data.clone();
+						lastReceived[0] &= ~RepeatFlag; // set repeat flag
 
-			if (size > 0) {
-				in.write(c);
-				lastRead = now;
-				final int minLength = extFrame ? 7 : 6;
-				if (size + 1 >= minLength) {
-					final byte[] frame = in.toByteArray();
-					ack(frame);
-
-					// check if we got the expected frame size
-					final int total;
-					if (extFrame)
-						total = 8 + (frame[6] & 0x3f) + 1;
-					else
-						total = 7 + (frame[5] & 0x0f) + 1;
-
-					if (frame.length >= total) {
-						try {
-							final byte[] data = in.toByteArray();
-							logger.debug("received TP1 L-Data (length {}): {}", frame.length,
-									DataUnitBuilder.toHex(data, " "));
-							consecutiveFrameDrops = -1;
-							if (busmon) {
-								fireFrameReceived(createBusmonInd(data));
-							}
-							else {
-								// check repetition of a directly preceding correctly received frame
-								final boolean repeated = (data[0] & RepeatFlag) == 0;
-								if (repeated && Arrays.equals(lastReceived, 0, lastReceived.length - 2, frame, 0, data.length - 2)) {
-									logger.debug("ignore repetition of directly preceding correctly received frame");
-								}
-								else {
-									lastReceived = data.clone();
-									lastReceived[0] &= ~RepeatFlag; // set repeat flag
-
-									fireFrameReceived(createLDataInd(data));
-								}
-							}
-						}
-						catch (final Exception e) {
-							logger.error("error creating {} from TP1 data (length {}): {}",
-									busmon ? "Busmon.ind" : "L-Data", frame.length, DataUnitBuilder.toHex(frame, " "),
-									e);
-						}
-						finally {
-							in.reset();
-						}
+						fireFrameReceived(createLDataInd(data));
 					}
 				}
 			}
-			else if (isLDataStart(c)) {
-				lastRead = now;
-				in.reset();
-				in.write(c);
-				frameAcked = false;
-				final byte[] minBytes = new byte[extFrame ? 6 : 5];
-				final int read = is.read(minBytes);
-				final long initialMinBytes = (System.nanoTime() / 1000 - lastRead);
-				if (read > 0) {
-					in.write(minBytes, 0, read - 1);
-					lastRead = System.nanoTime() / 1000;
-					parseFrame(minBytes[read - 1]);
-				}
-				logger.trace("finished reading {} bytes {} us", read, initialMinBytes);
+			catch (final Exception e) {
+				logger.error("error creating {} from TP1 data (length {}): {}", busmon ? "Busmon.ind" : "L-Data",
+						data.length, DataUnitBuilder.hex(data, " "), e);
 			}
-			// busmon mode only: short acks
-			else if (c == Ack || c == Nak || c == Busy)
-				fireFrameReceived(createBusmonInd(new byte[] { (byte) c }));
-			else
-				return false;
-			return true;
 		}
 
-		private void resetReceiveBuffer(final int c, final long diff) {
-			final byte[] buf = in.toByteArray();
-			in.reset();
-			logger.debug("reset receive buffer after {} us, char 0x{}, discard partial frame (length {}) {}", diff,
-					Integer.toHexString(c), buf.length,
-					DataUnitBuilder.toHex(buf, " "));
-			consecutiveFrameDrops++;
+		// busmon mode only: short acks
+		private boolean isShortAck(final int c)
+		{
+			final boolean shortAck = c == Ack || c == Nak || c == Busy;
+			if (shortAck)
+				fireFrameReceived(createBusmonInd(new byte[] { (byte) c }));
+			return shortAck;
 		}
 
 		private void checkUartState() throws IOException {
@@ -739,7 +626,7 @@ public class TpuartConnection implements AutoCloseable
 					protError ? ", protocol error" : "");
 
 			if (tempWarning) {
-				coolDownUntil = System.nanoTime() + 1_000_000_000;
+				detector.pause(System.nanoTime() + 1_000_000_000);
 				logger.warn("TP-UART high temperature warning! Sending is paused for 1 second ...");
 			}
 			return true;
@@ -757,25 +644,13 @@ public class TpuartConnection implements AutoCloseable
 			return con;
 		}
 
-		private boolean isLDataStart(final int c)
-		{
-			if ((c & 0x03) != 0)
-				return false;
-			final boolean start = (c & 0xd0) == StdFrameFormat || (c & 0xd0) == ExtFrameFormat;
-			if (start) {
-//				final boolean repeated = (c & RepeatFlag) == 0;
-//				logger.trace("start of frame 0x{}, repeated = {}", Integer.toHexString(c), repeated);
-				extFrame = (c & 0xd0) == ExtFrameFormat;
-			}
-			return start;
-		}
-
 		// pre: we have a new .ind frame, length > 5
 		// The ack service has to be sent at the latest 1.7 ms after receiving the
 		// address-type bit of the L-Data.ind
-		private void ack(final byte[] frame) throws IOException
+		@Override
+		public void header(final byte[] frame, final boolean extFrame) throws IOException
 		{
-			if (busmon || frameAcked)
+			if (busmon)
 				return;
 			final int addrOffset = extFrame ? 4 : 3;
 			final byte[] addr = new byte[] { frame[addrOffset], frame[addrOffset + 1] };
@@ -800,7 +675,6 @@ public class TpuartConnection implements AutoCloseable
 				os.write(new byte[] { (byte) ack });
 				logger.trace("write ACK (0x{}) for {}", Integer.toHexString(ack), dst);
 			}
-			frameAcked = true;
 		}
 
 		// TODO We assemble a .con using our saved .req, and let the TP-UART L-Data frame bubble up
@@ -884,14 +758,14 @@ public class TpuartConnection implements AutoCloseable
 		{
 			if (frame == null)
 				return;
-			logger.trace("cEMI (length {}): {}", frame.length, DataUnitBuilder.toHex(frame, " "));
+			logger.trace("cEMI (length {}): {}", frame.length, DataUnitBuilder.hex(frame, " "));
 			try {
 				final CEMI msg = CEMIFactory.create(frame, 0, frame.length);
 				final FrameEvent fe = new FrameEvent(this, msg);
 				listeners.fire(l -> l.frameReceived(fe));
 			}
 			catch (final KNXFormatException | RuntimeException e) {
-				logger.error("invalid frame for cEMI: {}", DataUnitBuilder.toHex(frame, " "), e);
+				logger.error("invalid frame for cEMI: {}", DataUnitBuilder.hex(frame, " "), e);
 			}
 		}
 	}
@@ -0,0 +1,312 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.serial;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+
+/**
+ * Detects TP1 frame boundaries and bus idle state of a TP-UART receive stream, based on the receive time stamps
+ * ({@link System#nanoTime()}) of the received characters. The detector is a state machine driven by the receiver,
+ * waiting for bus idle uses nanosecond deadlines instead of polling.
+ * <p>
+ * A frame is discarded if the gap between two of its characters exceeds the max. inter-byte delay; after the frame
+ * header is complete, a gap of up to 4 times the max. inter-byte delay is tolerated. If partial frames are discarded
+ * repeatedly, the max. inter-byte delay is increased. The bus is idle after a period of inactivity without receiving
+ * any characters.
+ */
+final class TpuartGapDetector
+{
+	enum State {
+		/** No characters received during the inactivity period. */
+		Idle,
+		/** Receiving characters which are not part of a frame. */
+		Active,
+		/** Receiving a frame. */
+		Frame
+	}
+
+	/** Handler of received frames, called by the receiver thread. */
+	interface Handler
+	{
+		/**
+		 * Received the header of a frame, which contains the destination address, and allows acknowledging the frame
+		 * before the frame is complete.
+		 *
+		 * @param frame buffer with the partially received frame
+		 * @param extended <code>true</code> for extended frame format, <code>false</code> for standard frame format
+		 */
+		void header(byte[] frame, boolean extended) throws IOException;
+
+		/**
+		 * Received a complete frame.
+		 *
+		 * @param frame TP1 frame, including checksum
+		 */
+		void frame(byte[] frame);
+
+		/**
+		 * Received a character which is not part of a frame, e.g., a TP-UART service.
+		 *
+		 * @param c received character
+		 */
+		void character(int c) throws IOException;
+	}
+
+	private static final int StdFrameFormat = 0x90;
+	private static final int ExtFrameFormat = 0x10;
+	// TP-UART supports frames of up to 64 bytes
+	private static final int MaxFrameLength = 64;
+
+	// Stores the currently used max. inter-byte delay, to also be available for subsequent tpuart connections.
+	private static final AtomicInteger maxInterByteDelay = new AtomicInteger(5200); // 50 bit times [us]
+	static {
+		final var key = "calimero.serial.tpuart.maxInterByteDelay";
+		try {
+			final var delay = System.getProperty(key);
+			if (delay != null) {
+				final int value = Integer.parseUnsignedInt(delay);
+				maxInterByteDelay.set(value);
+				LoggerFactory.getLogger("calimero.serial.tpuart").info("using {} of {} us", key, value);
+			}
+		}
+		catch (final RuntimeException e) {
+			LoggerFactory.getLogger("calimero.serial.tpuart").warn("on checking property {}", key, e);
+		}
+	}
+
+	private final Handler handler;
+	private final Logger logger;
+	private final long charTime;
+	private final long inactivity;
+
+	// bounded receive buffer of the current frame
+	private final byte[] frame = new byte[MaxFrameLength];
+	private int length;
+	private boolean extFrame;
+	private boolean header;
+
+	private volatile State state = State.Active;
+	// time stamps [ns]
+	private volatile long lastReceived;
+	private volatile long pausedUntil;
+
+	private int maxDelay = maxInterByteDelay.get();
+	private int consecutiveFrameDrops = -1;
+
+	/**
+	 * Creates a new gap detector.
+	 *
+	 * @param handler handler of received frames
+	 * @param charTime transmission time of one character between TP-UART and host [ns]
+	 * @param inactivity period without received characters after which the bus is idle [ns]
+	 * @param logger logger
+	 */
+	TpuartGapDetector(final Handler handler, final long charTime, final long inactivity, final Logger logger)
+	{
+		this.handler = handler;
+		this.charTime = charTime;
+		this.inactivity = inactivity;
+		this.logger = logger;
+		lastReceived = System.nanoTime();
+	}
+
+	/**
+	 * Accepts a burst of characters, which were read at once. The characters are time stamped backwards from the read
+	 * time stamp, i.e., the last character of the burst is received at the read time stamp, and every preceding
+	 * character one character time earlier. This way, reading characters in bursts does not make up gaps.
+	 *
+	 * @param burst buffer with received characters
+	 * @param length number of characters in buffer
+	 * @param readTime time stamp of reading the burst [ns]
+	 * @throws IOException thrown by the handler
+	 */
+	void accept(final byte[] burst, final int length, final long readTime) throws IOException
+	{
+		for (int i = 0; i < length; i++)
+			accept(burst[i] & 0xff, Math.max(lastReceived, readTime - (length - 1 - i) * charTime));
+	}
+
+	/**
+	 * Accepts a received character.
+	 *
+	 * @param c received character
+	 * @param timestamp receive time stamp of the character [ns]
+	 * @throws IOException thrown by the handler
+	 */
+	void accept(final int c, final long timestamp) throws IOException
+	{
+		if (!frameCharacter(c, timestamp))
+			handler.character(c);
+	}
+
+	// returns false if the character is no frame character
+	private boolean frameCharacter(final int c, final long timestamp) throws IOException
+	{
+		final long gap = timestamp - lastReceived;
+		lastReceived = timestamp;
+		if (state == State.Frame) {
+			final int minLength = extFrame ? 7 : 6;
+			final long maxGap = TimeUnit.MICROSECONDS.toNanos(maxInterByteDelay());
+			if (length < minLength && gap > maxGap || length >= minLength && gap > 4 * maxGap)
+				discard(c, gap);
+			else
+				return append(c);
+		}
+		if (!isLDataStart(c)) {
+			state = State.Active;
+			return false;
+		}
+		state = State.Frame;
+		extFrame = (c & 0xd0) == ExtFrameFormat;
+		header = false;
+		length = 0;
+		return append(c);
+	}
+
+	/**
+	 * Returns the receive state, the bus is idle if no characters were received during the inactivity period.
+	 *
+	 * @param now current time [ns]
+	 * @return receive state
+	 */
+	State state(final long now)
+	{
+		return now - lastReceived >= inactivity ? State.Idle : state;
+	}
+
+	/**
+	 * @return receive time stamp of the last character [ns]
+	 */
+	long lastReceived()
+	{
+		return lastReceived;
+	}
+
+	/**
+	 * Pauses idle state until the supplied deadline, e.g., to not send while the controller cools down.
+	 *
+	 * @param until deadline [ns]
+	 */
+	void pause(final long until)
+	{
+		pausedUntil = until;
+	}
+
+	/**
+	 * Waits until the bus is idle and idle state is not paused.
+	 *
+	 * @throws InterruptedException on interrupted thread
+	 */
+	void awaitIdle() throws InterruptedException
+	{
+		while (true) {
+			final long now = System.nanoTime();
+			// receiving a character moves the deadline, hence we check again after parking
+			final long remaining = Math.max(lastReceived + inactivity, pausedUntil) - now;
+			if (remaining <= 0)
+				return;
+			LockSupport.parkNanos(this, remaining);
+			if (Thread.interrupted())
+				throw new InterruptedException("waiting for idle TP1 bus");
+		}
+	}
+
+	private boolean append(final int c) throws IOException
+	{
+		if (length == frame.length) {
+			logger.warn("frame exceeds max. length of {} bytes, discard {}", MaxFrameLength,
+					DataUnitBuilder.toHex(frame, " "));
+			state = State.Active;
+			length = 0;
+			return true;
+		}
+		frame[length++] = (byte) c;
+		final int minLength = extFrame ? 7 : 6;
+		if (length < minLength)
+			return true;
+		if (!header) {
+			header = true;
+			handler.header(frame, extFrame);
+		}
+		final int total = extFrame ? 8 + (frame[6] & 0x3f) + 1 : 7 + (frame[5] & 0x0f) + 1;
+		if (length >= total) {
+			state = State.Active;
+			consecutiveFrameDrops = -1;
+			final byte[] complete = new byte[length];
+			System.arraycopy(frame, 0, complete, 0, length);
+			handler.frame(complete);
+		}
+		return true;
+	}
+
+	private void discard(final int c, final long gap)
+	{
+		logger.debug("reset receive buffer after {} us, char 0x{}, discard partial frame (length {}) {}", gap / 1000,
+				Integer.toHexString(c), length, DataUnitBuilder.toHex(Arrays.copyOf(frame, length), " "));
+		state = State.Active;
+		length = 0;
+		consecutiveFrameDrops++;
+	}
+
+	private int maxInterByteDelay()
+	{
+		// cond: consecutively losing 4 frames (1 msg w/ 1 .ind + 2 .ind repetitions, and 1st .ind of next msg)
+		if (consecutiveFrameDrops >= 3) {
+			maxDelay = maxInterByteDelay.accumulateAndGet(Math.min(maxDelay + 500, 20_000), Math::max);
+			logger.warn("{} partial frames discarded, increase max. inter-byte delay to {} us",
+					consecutiveFrameDrops + 1, maxDelay);
+			consecutiveFrameDrops = -1;
+		}
+		return maxDelay;
+	}
+
+	private static boolean isLDataStart(final int c)
+	{
+		if ((c & 0x03) != 0)
+			return false;
+		return (c & 0xd0) == StdFrameFormat || (c & 0xd0) == ExtFrameFormat;
+	}
+}
@@ -0,0 +1,208 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+package tuwien.auto.calimero.serial.usb;
+
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.serial.usb.HidReport.BusAccessServerFeature;
+import tuwien.auto.calimero.serial.usb.HidReportHeader.PacketType;
+import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.BusAccessServerService;
+import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.KnxTunnelEmi;
+import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.Protocol;
+
+/**
+ * Decodes KNX USB HID reports in place from a report buffer, and assembles EMI frames of multiple reports into a
+ * reusable frame buffer. A reader is not thread-safe, reports are expected in order of reception from one thread.
+ */
+final class HidReportReader
+{
+	/** Handler of decoded reports, the supplied buffers are only valid during a call. */
+	interface Handler
+	{
+		/**
+		 * A complete EMI frame was received.
+		 *
+		 * @param emi EMI type
+		 * @param buffer buffer containing the frame
+		 * @param offset frame offset in <code>buffer</code>
+		 * @param length frame length
+		 * @throws KNXFormatException on invalid frame
+		 */
+		void frame(KnxTunnelEmi emi, byte[] buffer, int offset, int length) throws KNXFormatException;
+
+		/**
+		 * A Bus Access Server feature service report was received.
+		 *
+		 * @param report the report
+		 * @throws KNXFormatException on invalid report
+		 */
+		void featureService(byte[] report) throws KNXFormatException;
+	}
+
+	private static final int ReportId = 0x01;
+	private static final int ReportHeaderSize = 3;
+	private static final int ProtocolHeaderSize = 8;
+	private static final int MaxDataLength = HidReportWriter.ReportSize - ReportHeaderSize;
+	private static final int MaxReports = 5;
+
+	private static final int Start = PacketType.Start.id();
+	private static final int End = PacketType.End.id();
+	private static final int Partial = PacketType.Partial.id();
+
+	private final Handler handler;
+
+	private final byte[] frame = new byte[MaxReports * MaxDataLength];
+	private int length;
+	// expected sequence number of the next partial report, 0 if no frame assembly is in progress
+	private int nextSeq;
+	private KnxTunnelEmi emi;
+
+	HidReportReader(final Handler handler)
+	{
+		this.handler = handler;
+	}
+
+	/**
+	 * Reads a received HID report.
+	 *
+	 * @param report report buffer, the report starts at index 0
+	 * @param reportLength actual length of the report
+	 * @throws KNXFormatException on invalid report, or a report out of sequence, which discards the frame in assembly
+	 */
+	void read(final byte[] report, final int reportLength) throws KNXFormatException
+	{
+		if (reportLength < ReportHeaderSize)
+			throw new KNXFormatException("frame to short to fit HID report header");
+		final int id = report[0] & 0xff;
+		if (id != ReportId)
+			throw new KNXFormatException("not a KNX USB report (wrong report ID " + id + ")");
+		final int info = report[1] & 0xff;
+		final int seq = info >> 4;
+		if (seq < 1 || seq > MaxReports)
+			throw new KNXFormatException("sequence number " + seq + " not in [1..5]");
+		final int type = info & (Start | End | Partial);
+		if (type == (Start | End | Partial))
+			throw new KNXFormatException("invalid packet type " + type);
+		final int dataLength = report[2] & 0xff;
+		if (dataLength > MaxDataLength)
+			throw new KNXFormatException("data length " + dataLength + " not in [0..61]");
+		if (ReportHeaderSize + dataLength > reportLength)
+			throw new KNXFormatException("HID class report data length " + (ReportHeaderSize + dataLength)
+					+ " exceeds frame length " + reportLength);
+
+		if ((type & Start) != 0)
+			readStart(report, type, dataLength);
+		else
+			readPartial(report, seq, type, dataLength);
+	}
+
+	private void readStart(final byte[] report, final int type, final int dataLength) throws KNXFormatException
+	{
+		// a new start packet discards any incomplete frame
+		reset();
+		if (dataLength < ProtocolHeaderSize)
+			throw new KNXFormatException("frame to short to fit transfer protocol header");
+		int i = ReportHeaderSize;
+		final int ver = report[i++] & 0xff;
+		if (ver != 0)
+			throw new KNXFormatException("invalid transfer protocol header version " + ver + " != 0");
+		final int size = report[i++] & 0xff;
+		if (size != ProtocolHeaderSize)
+			throw new KNXFormatException("unsupported transfer protocol header size " + size + " != "
+					+ ProtocolHeaderSize);
+		final int bodyLength = (report[i++] & 0xff) << 8 | report[i++] & 0xff;
+		final int protocol = report[i++] & 0xff;
+		final int service = report[i++] & 0xff;
+		i += 2; // manufacturer code
+
+		final int body = dataLength - ProtocolHeaderSize;
+		final boolean single = type == (Start | End);
+		if (single && bodyLength != body)
+			throw new KNXFormatException("unexpected KNX USB protocol body length " + body + ", expected "
+					+ bodyLength);
+
+		if (protocol == Protocol.BusAccessServerFeature.id()) {
+			if (service < 1 || service > BusAccessServerService.values().length)
+				throw new KNXFormatException("unsupported service/EMI ID", service);
+			final int feature = body > 0 ? report[i] & 0xff : 0;
+			if (feature < 1 || feature > BusAccessServerFeature.values().length)
+				throw new KNXFormatException("unsupported device service feature ID " + feature);
+			handler.featureService(report);
+			return;
+		}
+		if (protocol != Protocol.KnxTunnel.id())
+			throw new KNXFormatException("unsupported protocol ID", protocol);
+		final KnxTunnelEmi[] emis = KnxTunnelEmi.values();
+		if (service < 1 || service > emis.length)
+			throw new KNXFormatException("unsupported service/EMI ID", service);
+
+		if ((type & End) != 0) {
+			// frame fits into a single report, no need to assemble
+			handler.frame(emis[service - 1], report, i, body);
+			return;
+		}
+		emi = emis[service - 1];
+		System.arraycopy(report, i, frame, 0, body);
+		length = body;
+		nextSeq = 2;
+	}
+
+	private void readPartial(final byte[] report, final int seq, final int type, final int dataLength)
+		throws KNXFormatException
+	{
+		if (seq != nextSeq) {
+			final int expected = nextSeq;
+			reset();
+			throw new KNXFormatException("received out of order HID report (expected seq " + expected + ", got "
+					+ seq + ") - ignore complete KNX frame");
+		}
+		System.arraycopy(report, ReportHeaderSize, frame, length, dataLength);
+		length += dataLength;
+		++nextSeq;
+		if ((type & End) == 0)
+			return;
+		final KnxTunnelEmi assembled = emi;
+		final int frameLength = length;
+		reset();
+		handler.frame(assembled, frame, 0, frameLength);
+	}
+
+	private void reset()
+	{
+		length = 0;
+		nextSeq = 0;
+		emi = null;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+package tuwien.auto.calimero.serial.usb;
+
+import java.util.Arrays;
+
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.serial.usb.HidReport.BusAccessServerFeature;
+import tuwien.auto.calimero.serial.usb.HidReportHeader.PacketType;
+import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.BusAccessServerService;
+import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.KnxTunnelEmi;
+import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.Protocol;
+import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.ServiceId;
+
+/**
+ * Encodes KNX USB HID reports directly into 64 byte report buffers, without creating intermediate report objects.
+ * The encoded reports are equal to the ones of {@link HidReport#toByteArray()}.
+ */
+final class HidReportWriter
+{
+	static final int ReportSize = 64;
+
+	private static final int ReportHeaderSize = 3;
+	private static final int ProtocolHeaderSize = 8;
+	private static final int MaxDataStartPacket = 52;
+	private static final int MaxDataPartialPacket = 61;
+	private static final int MaxReports = 5;
+
+	/** Maximum length of an EMI frame, which fits into the HID reports of one frame. */
+	static final int MaxFrameLength = MaxDataStartPacket + (MaxReports - 1) * MaxDataPartialPacket;
+
+	private HidReportWriter() {}
+
+	/**
+	 * Returns the number of HID reports required for an EMI frame.
+	 *
+	 * @param frameLength length of the EMI frame
+	 * @return number of reports
+	 */
+	static int reports(final int frameLength)
+	{
+		if (frameLength > MaxFrameLength)
+			throw new KNXIllegalArgumentException("frame too large: " + frameLength + " > " + MaxFrameLength);
+		if (frameLength <= MaxDataStartPacket)
+			return 1;
+		return 1 + (frameLength - MaxDataStartPacket + MaxDataPartialPacket - 1) / MaxDataPartialPacket;
+	}
+
+	/**
+	 * Writes the HID reports of an EMI frame consecutively into <code>reports</code>, starting at
+	 * <code>offset</code>. Unused bytes of a report are cleared, so report buffers can be reused.
+	 *
+	 * @param emi EMI type
+	 * @param frame the EMI message
+	 * @param reports destination buffer with space for {@link #reports(int)} reports of 64 bytes
+	 * @param offset start offset in <code>reports</code>
+	 * @return number of written reports
+	 */
+	static int write(final KnxTunnelEmi emi, final byte[] frame, final byte[] reports, final int offset)
+	{
+		final int count = reports(frame.length);
+		if (reports.length - offset < count * ReportSize)
+			throw new KNXIllegalArgumentException("report buffer too small for " + count + " reports");
+		int from = 0;
+		int pos = offset;
+		for (int seq = 1; seq <= count; seq++) {
+			final boolean start = seq == 1;
+			final int maxData = start ? MaxDataStartPacket : MaxDataPartialPacket;
+			final int length = Math.min(maxData, frame.length - from);
+
+			int type = start ? PacketType.Start.id() : 0;
+			if (count > 1)
+				type |= PacketType.Partial.id();
+			if (seq == count)
+				type |= PacketType.End.id();
+
+			int i = header(reports, pos, seq, type, start ? ProtocolHeaderSize + length : length);
+			if (start)
+				i = protocolHeader(reports, i, length, Protocol.KnxTunnel, emi);
+			System.arraycopy(frame, from, reports, i, length);
+			from += length;
+			pos += ReportSize;
+			Arrays.fill(reports, i + length, pos, (byte) 0);
+		}
+		return count;
+	}
+
+	/**
+	 * Writes a single HID report for use with the Bus Access Server feature service.
+	 *
+	 * @param service Bus Access Server service
+	 * @param feature feature ID
+	 * @param data feature protocol data
+	 * @param report destination buffer with space for one report of 64 bytes
+	 * @param offset start offset in <code>report</code>
+	 */
+	static void writeFeatureService(final BusAccessServerService service, final BusAccessServerFeature feature,
+		final byte[] data, final byte[] report, final int offset)
+	{
+		if (data.length > MaxDataStartPacket)
+			throw new KNXIllegalArgumentException("frame too large: " + data.length + " > " + MaxDataStartPacket);
+		final int bodyLength = data.length + 1;
+		final int type = PacketType.Start.id() | PacketType.End.id();
+		int i = header(report, offset, 1, type, ProtocolHeaderSize + bodyLength);
+		i = protocolHeader(report, i, bodyLength, Protocol.BusAccessServerFeature, service);
+		report[i++] = (byte) feature.id();
+		System.arraycopy(data, 0, report, i, data.length);
+		Arrays.fill(report, i + data.length, offset + ReportSize, (byte) 0);
+	}
+
+	private static int header(final byte[] report, final int offset, final int seq, final int type,
+		final int dataLength)
+	{
+		report[offset] = 0x01;
+		report[offset + 1] = (byte) (seq << 4 | type);
+		report[offset + 2] = (byte) dataLength;
+		return offset + ReportHeaderSize;
+	}
+
+	private static int protocolHeader(final byte[] report, final int offset, final int bodyLength,
+		final Protocol protocol, final ServiceId service)
+	{
+		int i = offset;
+		report[i++] = 0; // version
+		report[i++] = ProtocolHeaderSize;
+		report[i++] = (byte) (bodyLength >> 8);
+		report[i++] = (byte) bodyLength;
+		report[i++] = (byte) protocol.id();
+		report[i++] = (byte) service.id();
+		// manufacturer code
+		report[i++] = 0;
+		report[i++] = 0;
+		return i;
+	}
+}
@@ -41,7 +41,6 @@ import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toUnmodifiableList;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
@@ -79,10 +78,6 @@ import javax.usb.UsbNotClaimedException;
 import javax.usb.UsbNotOpenException;
 import javax.usb.UsbPipe;
 import javax.usb.UsbPlatformException;
-import javax.usb.event.UsbPipeDataEvent;
-import javax.usb.event.UsbPipeErrorEvent;
-import javax.usb.event.UsbPipeEvent;
-import javax.usb.event.UsbPipeListener;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -108,10 +103,8 @@ import tuwien.auto.calimero.cemi.CEMIFactory;
 import tuwien.auto.calimero.internal.EventListeners;
 import tuwien.auto.calimero.serial.KNXPortClosedException;
 import tuwien.auto.calimero.serial.usb.HidReport.BusAccessServerFeature;
-import tuwien.auto.calimero.serial.usb.HidReportHeader.PacketType;
 import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.BusAccessServerService;
 import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.KnxTunnelEmi;
-import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.Protocol;
 
 /**
  * KNX USB connection providing EMI data exchange and Bus Access Server Feature service. The implementation for USB is
@@ -210,97 +203,72 @@ public class UsbConnection implements AutoCloseable
 	private final Object responseLock = new Object();
 	private HidReport response;
 
-	// TODO Make sure list is not filled with junk data over time, e.g., add timestamp and sweep
-	// after > 5 * tunnelingTimeout. Also identify and log unknown entries.
-	// Not tested, because partial reports are not used currently
-	private final List<HidReport> partialReportList = Collections.synchronizedList(new ArrayList<>());
+	// number of outstanding input IRPs
+	private static final int InputIrps = 4;
+	private static final byte[] EmptyReport = new byte[UsbIrpPipeline.ReportSize];
+	private final UsbIrpPipeline pipeline;
 
-	private final UsbCallback callback = new UsbCallback();
-
-	private final class UsbCallback extends Thread implements UsbPipeListener
+	private final class ReportReceiver implements UsbIrpPipeline.Receiver, HidReportReader.Handler
 	{
-		private volatile boolean close;
-
-		{
-			setDaemon(true);
-			setName("Calimero USB callback");
-		}
-
-		@Override
-		public void run()
-		{
-			try {
-				while (!close)
-					in.syncSubmit(new byte[64]);
+		private final int idx;
+		private final String dir;
+		private final HidReportReader reader = new HidReportReader(this);
 
-			}
-			catch (UsbNotActiveException | UsbNotOpenException | IllegalArgumentException
-					| UsbDisconnectedException | UsbException e) {
-				if (!close)
-					close(CloseEvent.INTERNAL, e.getMessage());
-			}
-		}
-
-		@Override
-		public void errorEventOccurred(final UsbPipeErrorEvent event)
+		ReportReceiver(final UsbPipe pipe)
 		{
-			final byte epaddr = endpointAddress(event);
-			final int idx = epaddr & UsbConst.ENDPOINT_NUMBER_MASK;
-			final String dir = DescriptorUtils.getDirectionName(epaddr);
-
-			final UsbException e = event.getUsbException();
-			logger.error("EP {} {} error event for I/O request, {}", idx, dir, e.toString());
+			final byte epaddr = pipe.getUsbEndpoint().getUsbEndpointDescriptor().bEndpointAddress();
+			idx = epaddr & UsbConst.ENDPOINT_NUMBER_MASK;
+			dir = DescriptorUtils.getDirectionName(epaddr);
 		}
 
 		@Override
-		public void dataEventOccurred(final UsbPipeDataEvent event)
+		public void received(final byte[] data, final int length)
 		{
-			final byte epaddr = endpointAddress(event);
-			final int idx = epaddr & UsbConst.ENDPOINT_NUMBER_MASK;
-			final String dir = DescriptorUtils.getDirectionName(epaddr);
-
-			final byte[] data = event.getData();
 			// with some implementations, we might get a 0-length or unchanged array back, skip further parsing
-			if (event.getActualLength() == 0 || Arrays.equals(data, new byte[64])) {
-				logger.debug("EP {} {} empty I/O request (length {})", idx, dir, event.getActualLength());
+			if (length == 0 || Arrays.equals(data, EmptyReport)) {
+				logger.debug("EP {} {} empty I/O request (length {})", idx, dir, length);
 				return;
 			}
 			try {
-				final HidReport r = new HidReport(data);
-				logger.trace("EP {} {} I/O request {}", idx, dir, DataUnitBuilder
-						.toHex(Arrays.copyOfRange(data, 0, r.getReportHeader().getDataLength() + 3), ""));
-				final EnumSet<PacketType> packetType = r.getReportHeader().getPacketType();
-				final TransferProtocolHeader tph = r.getTransferProtocolHeader();
-				if (packetType.contains(PacketType.Partial) || tph == null)
-					assemblePartialPackets(r);
-				else if (tph.getProtocol() == Protocol.KnxTunnel)
-					fireFrameReceived((KnxTunnelEmi) tph.getService(), r.getData());
-				else if (tph.getProtocol() == Protocol.BusAccessServerFeature) {
-					// check whether we are waiting for a device feature response service
-					if (tph.getService() == BusAccessServerService.Response)
-						setResponse(r);
-					else if (tph.getService() == BusAccessServerService.Info) {
-						final BusAccessServerFeature feature = r.getFeatureId();
-						logger.info("{} {}", feature, DataUnitBuilder.toHex(r.getData(), ""));
-					}
+				if (logger.isTraceEnabled()) {
+					final int end = Math.min(length, (data[2] & 0xff) + 3);
+					logger.trace("EP {} {} I/O request {}", idx, dir, DataUnitBuilder.toHex(new StringBuilder(2 * end),
+							data, 0, end, ""));
 				}
-				else
-					logger.warn("unexpected service {}: {}", tph.getService(), DataUnitBuilder.toHex(data, ""));
+				reader.read(data, length);
 			}
 			catch (final KNXFormatException | RuntimeException e) {
 				logger.error("creating HID class report from {}", DataUnitBuilder.toHex(data, ""), e);
 			}
 		}
 
-		private byte endpointAddress(final UsbPipeEvent event)
+		@Override
+		public void frame(final KnxTunnelEmi emi, final byte[] buffer, final int offset, final int length)
+			throws KNXFormatException
 		{
-			final UsbEndpoint ep = event.getUsbPipe().getUsbEndpoint();
-			return ep.getUsbEndpointDescriptor().bEndpointAddress();
+			fireFrameReceived(emi, buffer, offset, length);
 		}
 
-		void quit()
+		@Override
+		public void featureService(final byte[] report) throws KNXFormatException
 		{
-			close = true;
+			final HidReport r = new HidReport(report);
+			final TransferProtocolHeader tph = r.getTransferProtocolHeader();
+			// check whether we are waiting for a device feature response service
+			if (tph.getService() == BusAccessServerService.Response)
+				setResponse(r);
+			else if (tph.getService() == BusAccessServerService.Info) {
+				final BusAccessServerFeature feature = r.getFeatureId();
+				logger.info("{} {}", feature, DataUnitBuilder.toHex(r.getData(), ""));
+			}
+			else
+				logger.warn("unexpected service {}: {}", tph.getService(), DataUnitBuilder.toHex(report, ""));
+		}
+
+		@Override
+		public void failed(final String reason)
+		{
+			close(CloseEvent.INTERNAL, reason);
 		}
 	}
 
@@ -432,7 +400,6 @@ public class UsbConnection implements AutoCloseable
 
 			out = open(knxUsbIf, epAddressOut);
 			in = open(knxUsbIf, epAddressIn);
-			in.addUsbPipeListener(callback);
 			// if necessary, unclog the incoming pipe
 			UsbIrp irp;
 			do {
@@ -441,7 +408,8 @@ public class UsbConnection implements AutoCloseable
 			}
 			while (irp.isComplete());
 
-			callback.start();
+			pipeline = new UsbIrpPipeline(in, out, InputIrps, new ReportReceiver(in), logger);
+			pipeline.start();
 		}
 		catch (UsbNotActiveException | UsbDisconnectedException | UsbNotClaimedException | UsbException e) {
 			throw new KNXException("open USB connection '" + this.name + "'", e);
@@ -475,14 +443,62 @@ public class UsbConnection implements AutoCloseable
 		listeners.remove(l);
 	}
 
-	@SuppressWarnings("unused")
 	public void send(final HidReport report, final boolean blocking) throws KNXPortClosedException, KNXTimeoutException
 	{
+		send(List.of(report), blocking);
+	}
+
+	/**
+	 * Sends an EMI frame, encoded into the HID reports required for the frame.
+	 *
+	 * @param emi EMI type of the frame
+	 * @param frame EMI frame
+	 * @param blocking <code>true</code> to return after all reports are transferred, <code>false</code> to return
+	 *        after submitting the reports
+	 * @throws KNXPortClosedException on error sending over USB, the connection is closed; this includes an error of a
+	 *         preceding non-blocking send
+	 * @throws KNXTimeoutException on timeout
+	 */
+	public void send(final KnxTunnelEmi emi, final byte[] frame, final boolean blocking)
+		throws KNXPortClosedException, KNXTimeoutException
+	{
+		// the reports are transferred asynchronously, hence one buffer per frame and not a shared one
+		final byte[] reports = new byte[HidReportWriter.reports(frame.length) * HidReportWriter.ReportSize];
+		final int count = HidReportWriter.write(emi, frame, reports, 0);
+		if (logger.isTraceEnabled())
+			logger.trace("sending {} frame in {} I/O request(s) {}", emi, count, DataUnitBuilder.hex(frame, ""));
 		try {
-			final byte[] data = report.toByteArray();
-			logger.trace("sending I/O request {}", DataUnitBuilder
-					.toHex(Arrays.copyOfRange(data, 0, report.getReportHeader().getDataLength() + 3), ""));
-			out.syncSubmit(data);
+			pipeline.send(reports, count, blocking);
+		}
+		catch (UsbException | UsbNotActiveException | UsbNotClaimedException | UsbDisconnectedException e) {
+			close();
+			throw new KNXPortClosedException("error sending report over USB", name, e);
+		}
+	}
+
+	/**
+	 * Sends the HID reports of a frame. The reports are submitted together, and transferred in order without waiting
+	 * for the completion of a preceding report.
+	 *
+	 * @param reports reports of a frame
+	 * @param blocking <code>true</code> to return after all reports are transferred, <code>false</code> to return
+	 *        after submitting the reports
+	 * @throws KNXPortClosedException on error sending over USB, the connection is closed; this includes an error of a
+	 *         preceding non-blocking send
+	 * @throws KNXTimeoutException on timeout
+	 */
+	public void send(final List<HidReport> reports, final boolean blocking)
+		throws KNXPortClosedException, KNXTimeoutException
+	{
+		try {
+			final List<byte[]> data = new ArrayList<>(reports.size());
+			for (final HidReport report : reports) {
+				final byte[] d = report.toByteArray();
+				logger.trace("sending I/O request {}",
+						DataUnitBuilder.hex(d, 0, report.getReportHeader().getDataLength() + 3, ""));
+				data.add(d);
+			}
+			pipeline.send(data, blocking);
 		}
 		catch (UsbException | UsbNotActiveException | UsbNotClaimedException | UsbDisconnectedException e) {
 			close();
@@ -665,15 +681,13 @@ public class UsbConnection implements AutoCloseable
 			return;
 		final boolean win = System.getProperty("os.name", "unknown").toLowerCase().contains("win");
 		try {
-			in.removeUsbPipeListener(callback);
-			callback.quit();
+			pipeline.close();
 
 			if (out.isOpen()) {
 				out.abortAllSubmissions();
 				out.close();
 			}
 			if (in.isOpen()) {
-				// TODO this causes our callback thread to quit with exception
 				in.abortAllSubmissions();
 				in.close();
 			}
@@ -760,54 +774,18 @@ public class UsbConnection implements AutoCloseable
 		}
 	}
 
-	private void assemblePartialPackets(final HidReport part) throws KNXFormatException
-	{
-		partialReportList.add(part);
-		if (!part.getReportHeader().getPacketType().contains(PacketType.End))
-			return;
-
-		final ByteArrayOutputStream data = new ByteArrayOutputStream();
-		KnxTunnelEmi emiType = null;
-		for (int i = 0; i < partialReportList.size(); i++) {
-			final HidReport r = partialReportList.get(i);
-			if (r.getReportHeader().getSeqNumber() != i + 1) {
-				// unexpected order, ignore complete KNX frame and discard received reports
-				final String reports = partialReportList.stream().map(Object::toString)
-						.collect(Collectors.joining("]\n\t[", "\t[", "]"));
-				logger.warn("received out of order HID report (expected seq {}, got {}) - ignore complete KNX frame, "
-						+ "discard reports:\n{}", i + 1, r.getReportHeader().getSeqNumber(), reports);
-				partialReportList.clear();
-				return;
-			}
-			if (r.getReportHeader().getPacketType().contains(PacketType.Start))
-				emiType = (KnxTunnelEmi) r.getTransferProtocolHeader().getService();
-			final byte[] body = r.getData();
-			data.write(body, 0, body.length);
-		}
-		final byte[] assembled = data.toByteArray();
-		logger.debug("assembling KNX data frame from {} partial packets complete: {}", partialReportList.size(),
-				DataUnitBuilder.toHex(assembled, " "));
-		partialReportList.clear();
-		fireFrameReceived(emiType, assembled);
-	}
-
-	/**
-	 * Fires a frame received event ({@link KNXListener#frameReceived(FrameEvent)}) for the supplied EMI
-	 * <code>frame</code>.
-	 *
-	 * @param frame the EMI1/EMI2/cEMI L-data frame to generate the event for
-	 * @throws KNXFormatException on error creating cEMI message
-	 */
-	private void fireFrameReceived(final KnxTunnelEmi emiType, final byte[] frame) throws KNXFormatException
+	private void fireFrameReceived(final KnxTunnelEmi emiType, final byte[] buffer, final int offset, final int length)
+		throws KNXFormatException
 	{
-		logger.debug("received {} frame {}", emiType, DataUnitBuilder.toHex(frame, ""));
-		final FrameEvent fe ;
+		if (logger.isDebugEnabled())
+			logger.debug("received {} frame {}", emiType,
+					DataUnitBuilder.toHex(new StringBuilder(2 * length), buffer, offset, length, ""));
+		final FrameEvent fe;
 		// check baos main service and forward frame as raw bytes
-		if ((frame[0] & 0xff) == 0xf0)
-			fe = new FrameEvent(this, frame);
+		if ((buffer[offset] & 0xff) != 0xf0 && emiType == KnxTunnelEmi.CEmi)
+			fe = new FrameEvent(this, CEMIFactory.create(buffer, offset, length));
 		else
-			fe = emiType == KnxTunnelEmi.CEmi ? new FrameEvent(this, CEMIFactory.create(frame, 0, frame.length))
-					: new FrameEvent(this, frame);
+			fe = new FrameEvent(this, Arrays.copyOfRange(buffer, offset, offset + length));
 		listeners.fire(l -> l.frameReceived(fe));
 	}
 
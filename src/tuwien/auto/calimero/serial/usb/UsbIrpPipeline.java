@@ -0,0 +1,288 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.serial.usb;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.usb.UsbDisconnectedException;
+import javax.usb.UsbException;
+import javax.usb.UsbIrp;
+import javax.usb.UsbNotActiveException;
+import javax.usb.UsbNotOpenException;
+import javax.usb.UsbPipe;
+import javax.usb.event.UsbPipeDataEvent;
+import javax.usb.event.UsbPipeErrorEvent;
+import javax.usb.event.UsbPipeListener;
+
+import org.slf4j.Logger;
+
+/**
+ * Asynchronous I/O request (IRP) pipeline for HID reports over the interrupt pipes of a KNX USB interface.
+ * <p>
+ * Several input IRPs are outstanding at any time, each with its own 64 byte report buffer. A completed input IRP is
+ * handed over to the callback thread, which dispatches the report and resubmits the IRP with its buffer, while the
+ * pipe already continues with the next outstanding IRP. Output reports are submitted asynchronously; the reports of
+ * one frame are submitted together, and a blocking send only waits for the completion of the last report. An error of
+ * a report sent non-blocking is thrown by a subsequent send, at the latest by the next blocking send.
+ */
+final class UsbIrpPipeline implements UsbPipeListener
+{
+	static final int ReportSize = 64;
+
+	/** Receiver of HID reports and pipeline failures. */
+	interface Receiver
+	{
+		/**
+		 * Received a HID report, called by the callback thread.
+		 *
+		 * @param report report buffer, only valid during this call
+		 * @param length actual length of the report
+		 */
+		void received(byte[] report, int length);
+
+		/**
+		 * The pipeline failed, it is not possible to continue receiving reports.
+		 *
+		 * @param reason reason of the failure
+		 */
+		void failed(String reason);
+	}
+
+	private final UsbPipe in;
+	private final UsbPipe out;
+	private final int inputIrps;
+	private final Receiver receiver;
+	private final Logger logger;
+
+	private final List<UsbIrp> input = new ArrayList<>();
+	private final BlockingQueue<UsbIrp> completed = new LinkedBlockingQueue<>();
+	private final Object sendLock = new Object();
+	// output IRPs of non-blocking sends which were not checked for completion yet, guarded by sendLock
+	private final Deque<UsbIrp> unchecked = new ArrayDeque<>();
+	private final Thread callback;
+
+	private volatile boolean closed;
+
+	UsbIrpPipeline(final UsbPipe in, final UsbPipe out, final int inputIrps, final Receiver receiver,
+		final Logger logger)
+	{
+		this.in = in;
+		this.out = out;
+		this.inputIrps = inputIrps;
+		this.receiver = receiver;
+		this.logger = logger;
+		callback = new Thread(this::dispatch, "Calimero USB callback");
+		callback.setDaemon(true);
+	}
+
+	/**
+	 * Submits the input IRPs and starts dispatching received reports.
+	 *
+	 * @throws UsbException on error submitting input IRPs
+	 */
+	void start() throws UsbException
+	{
+		in.addUsbPipeListener(this);
+		out.addUsbPipeListener(this);
+		callback.start();
+		for (int i = 0; i < inputIrps; i++) {
+			final UsbIrp irp = in.createUsbIrp();
+			irp.setData(new byte[ReportSize]);
+			input.add(irp);
+		}
+		for (final UsbIrp irp : input)
+			in.asyncSubmit(irp);
+	}
+
+	/**
+	 * Submits the reports of a frame to the output pipe.
+	 *
+	 * @param reports reports of one frame, each report at most 64 bytes
+	 * @param blocking <code>true</code> to wait for completion of all reports, <code>false</code> to return after
+	 *        submitting the reports
+	 * @throws UsbException on error submitting or transferring a report, or on error transferring a report of a
+	 *         preceding non-blocking send
+	 */
+	void send(final List<byte[]> reports, final boolean blocking) throws UsbException
+	{
+		final List<UsbIrp> irps = new ArrayList<>(reports.size());
+		for (final byte[] report : reports) {
+			final UsbIrp irp = out.createUsbIrp();
+			irp.setData(report);
+			irps.add(irp);
+		}
+		submit(irps, blocking);
+	}
+
+	/**
+	 * Submits the reports of a frame to the output pipe, with the reports stored consecutively in one buffer. The
+	 * buffer must not be modified before the reports are transferred.
+	 *
+	 * @param reports buffer containing <code>count</code> reports of 64 bytes
+	 * @param count number of reports
+	 * @param blocking <code>true</code> to wait for completion of all reports, <code>false</code> to return after
+	 *        submitting the reports
+	 * @throws UsbException on error submitting or transferring a report, or on error transferring a report of a
+	 *         preceding non-blocking send
+	 */
+	void send(final byte[] reports, final int count, final boolean blocking) throws UsbException
+	{
+		final List<UsbIrp> irps = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final UsbIrp irp = out.createUsbIrp();
+			irp.setData(reports, i * ReportSize, ReportSize);
+			irps.add(irp);
+		}
+		submit(irps, blocking);
+	}
+
+	private void submit(final List<UsbIrp> irps, final boolean blocking) throws UsbException
+	{
+		// submit reports of a frame together, so that the reports of concurrent sends do not interleave
+		synchronized (sendLock) {
+			checkCompleted();
+			for (final UsbIrp irp : irps)
+				out.asyncSubmit(irp);
+			if (!blocking) {
+				unchecked.addAll(irps);
+				return;
+			}
+		}
+		// IRPs of a pipe complete in order of submission
+		irps.get(irps.size() - 1).waitUntilComplete();
+		for (final UsbIrp irp : irps)
+			if (irp.isUsbException())
+				throw irp.getUsbException();
+		// IRPs submitted before ours are complete as well
+		synchronized (sendLock) {
+			checkCompleted();
+		}
+	}
+
+	// throws the first error of the completed IRPs of preceding non-blocking sends; IRPs complete in order of submission
+	private void checkCompleted() throws UsbException
+	{
+		UsbException error = null;
+		while (!unchecked.isEmpty() && unchecked.peek().isComplete()) {
+			final UsbIrp irp = unchecked.remove();
+			if (error == null && irp.isUsbException())
+				error = irp.getUsbException();
+		}
+		if (error != null)
+			throw error;
+	}
+
+	/**
+	 * Stops the pipeline, outstanding IRPs are not resubmitted.
+	 */
+	void close()
+	{
+		closed = true;
+		in.removeUsbPipeListener(this);
+		out.removeUsbPipeListener(this);
+		callback.interrupt();
+	}
+
+	@Override
+	public void dataEventOccurred(final UsbPipeDataEvent event)
+	{
+		if (event.getUsbPipe() == in && event.hasUsbIrp())
+			completed.add(event.getUsbIrp());
+	}
+
+	@Override
+	public void errorEventOccurred(final UsbPipeErrorEvent event)
+	{
+		if (closed)
+			return;
+		final String dir = event.getUsbPipe() == in ? "input" : "output";
+		logger.error("error event for {} I/O request, {}", dir, event.getUsbException().toString());
+		if (event.getUsbPipe() == in)
+			failed(event.getUsbException().getMessage());
+	}
+
+	private void dispatch()
+	{
+		try {
+			while (!closed) {
+				final UsbIrp irp = completed.take();
+				if (!input.contains(irp))
+					continue;
+				try {
+					receiver.received(irp.getData(), irp.getActualLength());
+				}
+				catch (final RuntimeException e) {
+					logger.error("dispatching HID report", e);
+				}
+				resubmit(irp);
+			}
+		}
+		catch (final InterruptedException e) {}
+	}
+
+	private void resubmit(final UsbIrp irp)
+	{
+		if (closed)
+			return;
+		// clear buffer, we identify a report which was not written to by its zero content
+		Arrays.fill(irp.getData(), (byte) 0);
+		irp.setActualLength(0);
+		irp.setUsbException(null);
+		irp.setComplete(false);
+		try {
+			in.asyncSubmit(irp);
+		}
+		catch (UsbNotActiveException | UsbNotOpenException | IllegalArgumentException | UsbDisconnectedException
+				| UsbException e) {
+			failed(e.getMessage());
+		}
+	}
+
+	private void failed(final String reason)
+	{
+		if (closed)
+			return;
+		closed = true;
+		receiver.failed(reason);
+	}
+}
@@ -40,33 +40,99 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 
 /**
  * Default XML reader implementation of the XmlReader interface.
  * <p>
  * Does not add any feature not already documented in the implemented interface. No support for XML namespaces and
  * processing instructions. This reader is not thread safe.
+ * <p>
+ * The reader uses its own input buffer and reusable tag buffers; element and attribute names are interned in a
+ * symbol table, and attribute values are only created when requested.
  *
  * @author B. Malinowsky
  */
 class DefaultXmlReader implements XmlReader
 {
+	// growable char sequence, reused for reading tags and text
+	private static final class Chars
+	{
+		char[] a = new char[128];
+		int len;
+
+		void append(final char c)
+		{
+			if (len == a.length)
+				a = Arrays.copyOf(a, 2 * len);
+			a[len++] = c;
+		}
+
+		boolean startsWith(final String s)
+		{
+			return len >= s.length() && equals(s, 0, s.length());
+		}
+
+		boolean endsWith(final String s)
+		{
+			return len >= s.length() && equals(s, len - s.length(), len);
+		}
+
+		boolean equals(final String s, final int from, final int to)
+		{
+			return s != null && matches(s, a, from, to);
+		}
+
+		int indexOf(final char c, final int from, final int to)
+		{
+			for (int i = from; i < to; i++)
+				if (a[i] == c)
+					return i;
+			return -1;
+		}
+
+		String string(final int from, final int to)
+		{
+			return new String(a, from, to - from);
+		}
+
+		@Override
+		public String toString()
+		{
+			return string(0, len);
+		}
+	}
+
 	private final Map<String, Object> config = new HashMap<>();
 
 	private final Reader r;
 	private final boolean close;
 
+	private final char[] buf = new char[8192];
+	private int pos;
+	private int limit;
+
+	private final Chars tag = new Chars();
+	private final Chars scratch = new Chars();
+
+	// symbol table with interned element and attribute names, open addressing
+	private String[] symbols = new String[256];
+	private int symbolCount;
+
 	private String elemName;
-	private List<String> attributeName;
-	private List<String> attributeValue;
+	// attribute names and value ranges refer to the current tag, values are created on demand
+	private String[] attributeName = new String[8];
+	private int[] valueStart = new int[8];
+	private int[] valueEnd = new int[8];
+	private String[] attributeValue = new String[8];
+	private int attributes;
 	private String elemText;
 	private boolean emptyTag;
 
-	private final Stack<String> openElems = new Stack<>();
+	private final List<String> openElems = new ArrayList<>();
 	private int event;
 	private int line;
 
@@ -82,8 +148,7 @@ class DefaultXmlReader implements XmlReader
 	/**
 	 * Creates a new XML reader with input <code>r</code>.
 	 * <p>
-	 * If necessary, the {@link Reader} should already be buffered or wrapped with a buffered reader, e.g., when reading
-	 * from a file on disk.
+	 * The reader input is buffered internally.
 	 *
 	 * @param r a {@link Reader} for input
 	 * @param closeReader close <code>r</code> when XML reader is closed
@@ -99,8 +164,7 @@ class DefaultXmlReader implements XmlReader
 	private void setElement(final String name)
 	{
 		elemName = name;
-		attributeName = new ArrayList<>();
-		attributeValue = new ArrayList<>();
+		attributes = 0;
 		elemText = null;
 		emptyTag = false;
 	}
@@ -112,38 +176,51 @@ class DefaultXmlReader implements XmlReader
 			if (line == 0)
 				line = 1;
 
-			read('<');
-			String str = read('>');
+			// skip any text outside of elements
+			read('<', null);
+			read('>', tag);
 			// if no comment and no closing tag
-			if (str.length() == 0 || skipComment(str) || skipInstruction(str))
+			if (tag.len == 0 || skipComment(tag) || skipInstruction(tag))
 				continue;
-			final StringBuilder buf = new StringBuilder();
-			if (readCDATASection(str, buf)) {
-				setElement(openElems.peek());
-				elemText = buf.toString();
+			final StringBuilder cdata = new StringBuilder();
+			if (readCDATASection(tag, cdata)) {
+				setElement(peek());
+				elemText = cdata.toString();
 				event = XmlReader.CHARACTERS;
 				return event;
 			}
-			str = str.trim();
+			final char[] a = tag.a;
+			int start = 0;
+			int end = tag.len;
+			while (start < end && a[start] <= ' ')
+				start++;
+			while (end > start && a[end - 1] <= ' ')
+				end--;
+			if (start == end)
+				continue;
 			// extract element name
-			String name = splitOnSpace(str);
-			if (name.charAt(name.length() - 1) == '/')
-				name = name.substring(0, name.length() - 1);
-			if (name.charAt(0) == '/') {
-				if (!name.substring(1).equals(openElems.peek()))
-					throw new KNXMLException("element end tag does not match start tag", name.substring(1), line);
-				setElement(openElems.pop());
+			int nameEnd = start;
+			while (nameEnd < end && a[nameEnd] > ' ')
+				nameEnd++;
+			if (a[nameEnd - 1] == '/')
+				nameEnd--;
+			if (a[start] == '/') {
+				if (!tag.equals(peek(), start + 1, nameEnd))
+					throw new KNXMLException("element end tag does not match start tag",
+							tag.string(start + 1, nameEnd), line);
+				setElement(pop());
 				event = XmlReader.END_ELEMENT;
 				return event;
 			}
+			final String name = symbol(a, start, nameEnd);
 			setElement(name);
-			extractAttributes(str.substring(name.length()));
+			extractAttributes(nameEnd, end);
 			if (!emptyTag)
-				openElems.push(name);
+				openElems.add(name);
 			event = XmlReader.START_ELEMENT;
 			return event;
 		}
-		if (!openElems.empty())
+		if (!openElems.isEmpty())
 			throw new KNXMLException("end of XML input with elements left open");
 		event = XmlReader.END_DOCUMENT;
 		return event;
@@ -156,44 +233,68 @@ class DefaultXmlReader implements XmlReader
 		final int index = openElems.lastIndexOf(name);
 		if (index == -1)
 			throw new KNXMLException("no matching element open tag: " + name, this);
-		String end = null;
 		final StringBuilder content = new StringBuilder(50);
+		final Chars end = scratch;
 		while (canRead()) {
 			// read text content
-			final String s = read('<');
-			final boolean current = openElems.peek().equals(name);
+			read('<', end);
+			final boolean current = name.equals(peek());
 			// if character data is for current element, append it
-			if (current && s.length() > 0)
-				content.append(References.replace(s, false));
+			if (current && end.len > 0)
+				appendText(content, end);
 			// read a possible end tag
-			end = read('>');
+			read('>', end);
 			if (skipComment(end))
 				;
 			else if (current && readCDATASection(end, content))
 				;
-			else if (end.length() > 0 && end.charAt(0) == '/') {
+			else if (end.len > 0 && end.a[0] == '/') {
 				// actually, no white space is allowed between '/' and tag name
 				// but there might be some between end of name and '>'
-				final String tag = end.substring(1).trim();
+				int to = end.len;
+				while (to > 1 && end.a[to - 1] <= ' ')
+					to--;
+				int from = 1;
+				while (from < to && end.a[from] <= ' ')
+					from++;
 				// got end tag?
-				if (!tag.equals(openElems.peek()))
-					throw new KNXMLException("element end tag does not match start tag", tag, line);
-				openElems.pop();
-				if (tag.equals(name)) {
+				if (!end.equals(peek(), from, to))
+					throw new KNXMLException("element end tag does not match start tag", end.string(from, to), line);
+				if (pop().equals(name)) {
 					elemText = content.toString();
 					event = XmlReader.END_ELEMENT;
 					return;
 				}
 			}
-			else if (end.length() > 0)
+			else if (end.len > 0)
 				// don't push empty element tags
-				if (end.charAt(end.length() - 1) != '/') {
-					final String tag = splitOnSpace(end);
-					if (tag.length() > 0)
-						openElems.push(tag);
+				if (end.a[end.len - 1] != '/') {
+					int to = 0;
+					while (to < end.len && end.a[to] > ' ')
+						to++;
+					if (to > 0)
+						openElems.add(symbol(end.a, 0, to));
 				}
 		}
-		throw new KNXMLException("end of XML input with elements left open", end, line);
+		throw new KNXMLException("end of XML input with elements left open", end.toString(), line);
+	}
+
+	private static void appendText(final StringBuilder content, final Chars text)
+	{
+		if (text.indexOf('&', 0, text.len) == -1)
+			content.append(text.a, 0, text.len);
+		else
+			content.append(References.replace(text.toString(), false));
+	}
+
+	private String peek()
+	{
+		return openElems.isEmpty() ? null : openElems.get(openElems.size() - 1);
+	}
+
+	private String pop()
+	{
+		return openElems.remove(openElems.size() - 1);
 	}
 
 	@Override
@@ -208,77 +309,169 @@ class DefaultXmlReader implements XmlReader
 
 	private boolean canRead()
 	{
+		if (pos < limit)
+			return true;
 		try {
-			return r.ready();
+			pos = 0;
+			limit = Math.max(0, r.read(buf, 0, buf.length));
+			return limit > 0;
 		}
 		catch (final IOException e) {
+			limit = 0;
 			return false;
 		}
 	}
 
-	private String read(final char delimiter) throws KNXMLException
+	// reads up to the delimiter into dst, or skips the input if dst is null
+	private void read(final char delimiter, final Chars dst) throws KNXMLException
+	{
+		if (dst != null)
+			dst.len = 0;
+		boolean cr = false;
+		while (pos < limit || fill(dst)) {
+			final char c = buf[pos++];
+			if (c == delimiter)
+				return;
+			if (c == '\n')
+				++line;
+			else if (cr) {
+				++line;
+				if (dst != null)
+					dst.append('\n');
+			}
+			cr = c == '\r';
+			if (!cr && dst != null)
+				dst.append(c);
+		}
+	}
+
+	private boolean fill(final Chars dst) throws KNXMLException
 	{
-		final StringBuilder buf = new StringBuilder(50);
 		try {
-			boolean cr = false;
-			for (int c = r.read(); c != -1 && c != delimiter; c = r.read()) {
-				if (c == '\n')
-					++line;
-				else if (cr) {
-					++line;
-					buf.append('\n');
-				}
-				cr = c == '\r';
-				if (!cr)
-					buf.append((char) c);
-			}
+			pos = 0;
+			limit = Math.max(0, r.read(buf, 0, buf.length));
+			return limit > 0;
 		}
 		catch (final IOException e) {
-			throw new KNXMLException(e.getMessage(), buf.toString(), line);
+			limit = 0;
+			throw new KNXMLException(e.getMessage(), dst != null ? dst.toString() : "", line);
 		}
-		return buf.toString();
 	}
 
-	// adds all available attributes to current element
-	private void extractAttributes(final String attributes)
+	// adds all available attributes of the tag range [from, to) to current element
+	private void extractAttributes(final int from, final int to)
 	{
-		String s = attributes.trim();
-		if (s.length() > 0 && s.charAt(s.length() - 1) == '/')
+		final char[] a = tag.a;
+		int i = from;
+		while (i < to && a[i] <= ' ')
+			i++;
+		if (i < to && a[to - 1] == '/')
 			emptyTag = true;
 
-		while (s.length() != 0) {
-			final int equal = s.indexOf('=');
-			if (equal == -1 || equal == s.length() - 1)
+		while (i < to) {
+			final int equal = tag.indexOf('=', i, to);
+			if (equal == -1 || equal == to - 1)
 				break;
 			// cut off attribute name
-			final String att = s.substring(0, equal).trim();
-			s = s.substring(equal + 1).trim();
-			if (s.length() == 0)
+			int attEnd = equal;
+			while (i < attEnd && a[i] <= ' ')
+				i++;
+			while (attEnd > i && a[attEnd - 1] <= ' ')
+				attEnd--;
+			final int attStart = i;
+			i = equal + 1;
+			while (i < to && a[i] <= ' ')
+				i++;
+			if (i == to)
 				break;
-			final boolean quote = s.charAt(0) == '\'' || s.charAt(0) == '\"';
-			if (att.length() > 0 && quote) {
-				String value = s.substring(1);
-				final int end = value.indexOf(s.charAt(0));
-				if (end >= 0)
-					value = value.substring(0, end);
-				attributeName.add(att);
-				attributeValue.add(References.replace(value, false));
+			final char q = a[i];
+			final boolean quote = q == '\'' || q == '\"';
+			if (attEnd > attStart && quote) {
+				int end = tag.indexOf(q, i + 1, to);
+				if (end == -1)
+					end = to;
+				addAttribute(symbol(a, attStart, attEnd), i + 1, end);
 			}
-			final int i = s.indexOf(quote ? s.charAt(0) : ' ', 1);
-			s = i == -1 ? "" : s.substring(i + 1);
+			final int next = tag.indexOf(quote ? q : ' ', i + 1, to);
+			i = next == -1 ? to : next + 1;
 		}
 	}
 
-	private boolean readCDATASection(final String s, final StringBuilder buf) throws KNXMLException
+	private void addAttribute(final String name, final int start, final int end)
+	{
+		if (attributes == attributeName.length) {
+			final int size = 2 * attributes;
+			attributeName = Arrays.copyOf(attributeName, size);
+			valueStart = Arrays.copyOf(valueStart, size);
+			valueEnd = Arrays.copyOf(valueEnd, size);
+			attributeValue = Arrays.copyOf(attributeValue, size);
+		}
+		attributeName[attributes] = name;
+		valueStart[attributes] = start;
+		valueEnd[attributes] = end;
+		attributeValue[attributes] = null;
+		attributes++;
+	}
+
+	private String attributeValue(final int index)
+	{
+		String value = attributeValue[index];
+		if (value == null) {
+			final int start = valueStart[index];
+			final int end = valueEnd[index];
+			value = tag.string(start, end);
+			if (tag.indexOf('&', start, end) != -1)
+				value = References.replace(value, false);
+			attributeValue[index] = value;
+		}
+		return value;
+	}
+
+	private String symbol(final char[] a, final int from, final int to)
+	{
+		int h = 0;
+		for (int i = from; i < to; i++)
+			h = 31 * h + a[i];
+		final int mask = symbols.length - 1;
+		int i = (h ^ (h >>> 16)) & mask;
+		for (String s; (s = symbols[i]) != null; i = (i + 1) & mask)
+			if (s.hashCode() == h && matches(s, a, from, to))
+				return s;
+		final String s = new String(a, from, to - from);
+		symbols[i] = s;
+		if (++symbolCount > symbols.length / 2) {
+			final String[] old = symbols;
+			symbols = new String[2 * old.length];
+			for (final String sym : old)
+				if (sym != null) {
+					int k = (sym.hashCode() ^ (sym.hashCode() >>> 16)) & (symbols.length - 1);
+					while (symbols[k] != null)
+						k = (k + 1) & (symbols.length - 1);
+					symbols[k] = sym;
+				}
+		}
+		return s;
+	}
+
+	private static boolean matches(final String s, final char[] a, final int from, final int to)
+	{
+		if (s.length() != to - from)
+			return false;
+		for (int i = from; i < to; i++)
+			if (a[i] != s.charAt(i - from))
+				return false;
+		return true;
+	}
+
+	private boolean readCDATASection(final Chars s, final StringBuilder buf) throws KNXMLException
 	{
 		if (!s.startsWith("![CDATA["))
 			return false;
-		buf.append(s.substring(8));
-		String cdata = s;
-		while (!cdata.endsWith("]]")) {
+		buf.append(s.a, 8, s.len - 8);
+		while (!s.endsWith("]]")) {
 			buf.append('>');
-			cdata = read('>');
-			buf.append(cdata);
+			read('>', s);
+			buf.append(s.a, 0, s.len);
 		}
 		// trim CDEnd ('>' is not included)
 		buf.delete(buf.length() - 2, buf.length());
@@ -286,21 +479,21 @@ class DefaultXmlReader implements XmlReader
 	}
 
 	// checks if '<' marks begin of a comment, and if so skips over it
-	private boolean skipComment(final String s) throws KNXMLException
+	private boolean skipComment(final Chars s) throws KNXMLException
 	{
 		if (s.startsWith("!--")) {
-			String comment = s;
-			while (canRead() && !comment.endsWith("--"))
-				comment = read('>');
+			while (canRead() && !s.endsWith("--"))
+				read('>', s);
 			return true;
 		}
 		return false;
 	}
 
-	private boolean skipInstruction(final String tag)
+	private boolean skipInstruction(final Chars s)
 	{
 		// is this a processing instruction
-		if (tag.charAt(0) == '?' && tag.charAt(tag.length() - 1) == '?') {
+		if (s.a[0] == '?' && s.a[s.len - 1] == '?') {
+			final String tag = s.toString();
 			// check for decl section
 			// TODO detection is already implemented in entity resolver, use that
 			int idx = tag.indexOf("version");
@@ -319,14 +512,6 @@ class DefaultXmlReader implements XmlReader
 		return false;
 	}
 
-	private static String splitOnSpace(final String s)
-	{
-		for (int i = 0; i < s.length(); ++i)
-			if (Character.isSpaceChar(s.charAt(i)))
-				return s.substring(0, i);
-		return s;
-	}
-
 	@Override
 	public Object getProperty(final String name) throws IllegalArgumentException
 	{
@@ -378,9 +563,9 @@ class DefaultXmlReader implements XmlReader
 	public String getAttributeValue(final String namespaceURI, final String localName)
 	{
 		inStartEvent();
-		final int i = attributeName.indexOf(localName);
-		if (i != -1)
-			return attributeValue.get(i);
+		for (int i = 0; i < attributes; i++)
+			if (attributeName[i].equals(localName))
+				return attributeValue(i);
 		return null;
 	}
 
@@ -394,7 +579,7 @@ class DefaultXmlReader implements XmlReader
 	public int getAttributeCount()
 	{
 		inStartEvent();
-		return attributeName.size();
+		return attributes;
 	}
 
 	@Override
@@ -408,7 +593,9 @@ class DefaultXmlReader implements XmlReader
 	public String getAttributeLocalName(final int index)
 	{
 		inStartEvent();
-		return attributeName.get(index);
+		if (index >= attributes)
+			throw new IndexOutOfBoundsException("attribute index " + index);
+		return attributeName[index];
 	}
 
 	@Override
@@ -429,14 +616,16 @@ class DefaultXmlReader implements XmlReader
 	public String getAttributeValue(final int index)
 	{
 		inStartEvent();
-		return attributeValue.get(index);
+		if (index >= attributes)
+			throw new IndexOutOfBoundsException("attribute index " + index);
+		return attributeValue(index);
 	}
 
 	@Override
 	public boolean isAttributeSpecified(final int index)
 	{
 		inStartEvent();
-		return attributeName.size() > index;
+		return attributes > index;
 	}
 
 	@Override
@@ -0,0 +1,151 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class DataUnitBuilderTest {
+	private static final byte[] Frame = { 0x29, 0x00, (byte) 0xbc, (byte) 0xe0, 0x11, 0x05, 0x0a, 0x01, 0x01, 0x00,
+		(byte) 0x80, 0x0c, (byte) 0xff };
+
+	@Test
+	void toHex() {
+		assertEquals("", DataUnitBuilder.toHex(new byte[0], " "));
+		assertEquals("00", DataUnitBuilder.toHex(new byte[1], " "));
+		assertEquals("2900bce011050a010100800cff", DataUnitBuilder.toHex(Frame, null));
+		assertEquals("2900bce011050a010100800cff", DataUnitBuilder.toHex(Frame, ""));
+		assertEquals("29 00 bc e0 11 05 0a 01 01 00 80 0c ff", DataUnitBuilder.toHex(Frame, " "));
+		assertEquals("29::00::bc", DataUnitBuilder.toHex(new byte[] { 0x29, 0, (byte) 0xbc }, "::"));
+	}
+
+	@Test
+	void toHexAllByteValues() {
+		final byte[] data = new byte[256];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte) i;
+		final String hex = DataUnitBuilder.toHex(data, "");
+		for (int i = 0; i < data.length; i++)
+			assertEquals(String.format("%02x", i), hex.substring(2 * i, 2 * i + 2));
+		assertArrayEquals(data, DataUnitBuilder.fromHex(hex));
+	}
+
+	@Test
+	void appendHexRange() {
+		final var sb = new StringBuilder("frame ");
+		assertSame(sb, DataUnitBuilder.toHex(sb, Frame, 2, 3, " "));
+		assertEquals("frame bc e0 11", sb.toString());
+		DataUnitBuilder.toHex(sb, Frame, 0, 0, " ");
+		assertEquals("frame bc e0 11", sb.toString());
+	}
+
+	@Test
+	void lazyHex() {
+		final byte[] data = Frame.clone();
+		final Object hex = DataUnitBuilder.hex(data, " ");
+		assertEquals(DataUnitBuilder.toHex(data, " "), hex.toString());
+		// formatting is deferred until requested
+		data[0] = 0x11;
+		assertTrue(hex.toString().startsWith("11 00"));
+		assertEquals("e0 11", DataUnitBuilder.hex(data, 3, 2, " ").toString());
+		assertEquals("", DataUnitBuilder.hex(data, 3, 0, " ").toString());
+	}
+
+	@Test
+	void appendHexToReusedBuilderDoesNotAllocate() {
+		final var threads = threadMXBean();
+		final var sb = new StringBuilder(64);
+		final long tid = Thread.currentThread().getId();
+		final int iterations = 100_000;
+		for (int i = 0; i < iterations; i++) {
+			sb.setLength(0);
+			DataUnitBuilder.toHex(sb, Frame, 0, Frame.length, " ");
+		}
+
+		final long start = threads.getThreadAllocatedBytes(tid);
+		for (int i = 0; i < iterations; i++) {
+			sb.setLength(0);
+			DataUnitBuilder.toHex(sb, Frame, 0, Frame.length, " ");
+		}
+		final long allocated = threads.getThreadAllocatedBytes(tid) - start;
+		// formatting a frame into a new string takes more than 50 bytes, allow some bytes of unrelated allocations
+		assertTrue(allocated < iterations / 10, "allocated " + allocated + " bytes");
+		assertEquals(DataUnitBuilder.toHex(Frame, " "), sb.toString());
+	}
+
+	@Test
+	void lazyHexAllocatesLessForDisabledLogLevel() {
+		final var threads = threadMXBean();
+		final Logger logger = LoggerFactory.getLogger("calimero.test");
+		assumeTrue(!logger.isTraceEnabled());
+		final long tid = Thread.currentThread().getId();
+		final int iterations = 10_000;
+		for (int i = 0; i < iterations; i++) {
+			logger.trace("frame {}", DataUnitBuilder.toHex(Frame, " "));
+			logger.trace("frame {}", DataUnitBuilder.hex(Frame, " "));
+		}
+
+		long start = threads.getThreadAllocatedBytes(tid);
+		for (int i = 0; i < iterations; i++)
+			logger.trace("frame {}", DataUnitBuilder.toHex(Frame, " "));
+		final long eager = threads.getThreadAllocatedBytes(tid) - start;
+
+		start = threads.getThreadAllocatedBytes(tid);
+		for (int i = 0; i < iterations; i++)
+			logger.trace("frame {}", DataUnitBuilder.hex(Frame, " "));
+		final long lazy = threads.getThreadAllocatedBytes(tid) - start;
+
+		assertTrue(lazy * 4 < eager, "lazy formatting allocated " + lazy + " bytes, eager " + eager + " bytes");
+	}
+
+	private static com.sun.management.ThreadMXBean threadMXBean() {
+		final var bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		final var threads = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+		return threads;
+	}
+}
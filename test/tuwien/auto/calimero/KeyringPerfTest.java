@@ -0,0 +1,197 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import performance.base.PerfTestCase;
+import tuwien.auto.calimero.internal.Security;
+
+/**
+ * Keyring startup, loading a generated keyring with 5000 secure group addresses and 1000 devices, and decrypting
+ * all group keys.
+ */
+public class KeyringPerfTest extends PerfTestCase
+{
+	private static final String keyringFile = Util.getTargetPath() + "large.knxkeys";
+	private static final char[] pwd = "pwd".toCharArray();
+	private static final int Groups = 5000;
+	private static final int Devices = 1000;
+
+	/**
+	 * @param name name of test case
+	 */
+	public KeyringPerfTest(final String name)
+	{
+		super(name);
+		warmups = 2;
+		measure = 5;
+	}
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		final String created = "2020-06-11T06:45:22";
+		final byte[] pwdHash = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+				.generateSecret(new PBEKeySpec(pwd, "1.keyring.ets.knx.org".getBytes(UTF_8), 65_536, 128))
+				.getEncoded();
+		final byte[] iv = Arrays.copyOf(MessageDigest.getInstance("SHA-256").digest(created.getBytes(UTF_8)), 16);
+		final Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(pwdHash, "AES"), new IvParameterSpec(iv));
+
+		// keyring signature input: element names with sorted attributes, followed by the password hash
+		final ByteArrayOutputStream signed = new ByteArrayOutputStream();
+		final StringBuilder sb = new StringBuilder();
+		startElement(signed, "Devices");
+		sb.append("  <Devices>\n");
+		for (int i = 1; i <= Devices; i++) {
+			final String address = new IndividualAddress(i).toString();
+			final String toolKey = encryptedKey(cipher, i);
+			final String seq = Integer.toString(i);
+			startElement(signed, "Device", "IndividualAddress", address, "SequenceNumber", seq, "ToolKey", toolKey);
+			signed.write(2);
+			sb.append("    <Device IndividualAddress=\"").append(address).append("\" ToolKey=\"").append(toolKey)
+					.append("\" SequenceNumber=\"").append(seq).append("\" />\n");
+		}
+		signed.write(2);
+		startElement(signed, "GroupAddresses");
+		sb.append("  </Devices>\n  <GroupAddresses>\n");
+		for (int i = 1; i <= Groups; i++) {
+			final String address = Integer.toString(i);
+			final String key = encryptedKey(cipher, i);
+			startElement(signed, "Group", "Address", address, "Key", key);
+			signed.write(2);
+			sb.append("    <Group Address=\"").append(address).append("\" Key=\"").append(key).append("\" />\n");
+		}
+		signed.write(2);
+		signed.write(2);
+		sb.append("  </GroupAddresses>\n</Keyring>\n");
+
+		final ByteArrayOutputStream keyring = new ByteArrayOutputStream();
+		startElement(keyring, "Keyring", "Created", created, "CreatedBy", "test", "Project", "Large");
+		signed.writeTo(keyring);
+		appendString(keyring, Base64.getEncoder().encodeToString(pwdHash));
+		final byte[] signature = Arrays.copyOf(MessageDigest.getInstance("SHA-256").digest(keyring.toByteArray()), 16);
+
+		sb.insert(0, "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+				+ "<Keyring Project=\"Large\" CreatedBy=\"test\" Created=\"" + created + "\" Signature=\""
+				+ Base64.getEncoder().encodeToString(signature) + "\" xmlns=\"http://knx.org/xml/keyring/1\">\n");
+		Files.writeString(Paths.get(keyringFile), sb);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		printResults();
+		Files.deleteIfExists(Paths.get(keyringFile));
+		super.tearDown();
+	}
+
+	// attributes are name/value pairs, sorted by name
+	private static void startElement(final ByteArrayOutputStream os, final String name, final String... attributes)
+	{
+		os.write(1);
+		appendString(os, name);
+		for (final String s : attributes)
+			appendString(os, s);
+	}
+
+	private static void appendString(final ByteArrayOutputStream os, final String s)
+	{
+		final byte[] bytes = s.getBytes(UTF_8);
+		os.write(bytes.length);
+		os.write(bytes, 0, bytes.length);
+	}
+
+	private static String encryptedKey(final Cipher cipher, final int i) throws GeneralSecurityException
+	{
+		final byte[] key = new byte[16];
+		Arrays.fill(key, (byte) i);
+		return Base64.getEncoder().encodeToString(cipher.doFinal(key));
+	}
+
+	/**
+	 * Loads the keyring without decrypting any data.
+	 */
+	public void testLoad()
+	{
+		Keyring.load(keyringFile);
+	}
+
+	/**
+	 * Loads the keyring and decrypts all group keys in parallel.
+	 */
+	public void testLoadAndDecryptGroupKeys()
+	{
+		final var keyring = Keyring.load(keyringFile);
+		if (keyring.decryptGroupKeys(pwd).size() != Groups)
+			fail("missing group keys");
+	}
+
+	/**
+	 * Loads the keyring with its password and decrypts all group keys one by one.
+	 */
+	public void testLoadAndDecryptEachGroupKey()
+	{
+		final var keyring = new Keyring(keyringFile, pwd);
+		keyring.load();
+		keyring.groups().values().forEach(key -> keyring.decryptKey(key, pwd));
+	}
+
+	/**
+	 * Loads the keyring and sets up device tool keys and group keys for secure communication.
+	 */
+	public void testUseKeyring()
+	{
+		Security.useKeyring(Keyring.load(keyringFile), pwd);
+	}
+}
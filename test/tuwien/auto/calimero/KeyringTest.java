@@ -46,6 +46,7 @@ import static tuwien.auto.calimero.DataUnitBuilder.fromHex;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
@@ -175,6 +176,38 @@ class KeyringTest {
 		assertArrayEquals(groupAddrKey, keyring.decryptKey(encrypted, keyringPwd));
 	}
 
+	@Test
+	void decryptGroupKeys() {
+		final var keyring = Keyring.load(keyringUri);
+		final var groupKeys = keyring.decryptGroupKeys(keyringPwd);
+
+		assertEquals(keyring.groups().keySet(), groupKeys.keySet());
+		keyring.groups().forEach((group, key) -> assertArrayEquals(keyring.decryptKey(key, keyringPwd),
+				groupKeys.get(group)));
+		assertArrayEquals(fromHex("E14343050F4377E3159B90AFE0228216"), groupKeys.get(new GroupAddress(1, 1, 1)));
+	}
+
+	@Test
+	void decryptToolKeys() {
+		final var keyring = Keyring.load(keyringUri);
+		final var toolKeys = keyring.decryptToolKeys(keyringPwd);
+
+		assertEquals(keyring.devices().keySet(), toolKeys.keySet());
+		assertArrayEquals(fromHex("AEAC47C4653ED0B25249B4AB3F474479"), toolKeys.get(host));
+	}
+
+	@Test
+	void decryptWithChangingPassword() {
+		final var keyring = new Keyring(keyringUri, keyringPwd);
+		keyring.load();
+		final byte[] encrypted = keyring.groups().get(new GroupAddress(1, 1, 1));
+		final byte[] groupAddrKey = fromHex("E14343050F4377E3159B90AFE0228216");
+
+		assertArrayEquals(groupAddrKey, keyring.decryptKey(encrypted, keyringPwd));
+		assertFalse(Arrays.equals(groupAddrKey, keyring.decryptKey(encrypted, "wrong".toCharArray())));
+		assertArrayEquals(groupAddrKey, keyring.decryptKey(encrypted, keyringPwd));
+	}
+
 	@Test
 	void keyringWithValidSignature() {
 		final var keyring = Keyring.load(keyringUri);
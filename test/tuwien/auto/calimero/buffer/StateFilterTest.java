@@ -0,0 +1,181 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.buffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.buffer.cache.Cache;
+import tuwien.auto.calimero.buffer.cache.LFUCache;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.datapoint.CommandDP;
+import tuwien.auto.calimero.datapoint.Datapoint;
+import tuwien.auto.calimero.datapoint.DatapointMap;
+import tuwien.auto.calimero.datapoint.DatapointModel;
+import tuwien.auto.calimero.datapoint.StateDP;
+import tuwien.auto.calimero.link.KNXNetworkLink;
+
+class StateFilterTest
+{
+	private final GroupAddress state = new GroupAddress(1, 0, 1);
+	private final GroupAddress expired = new GroupAddress(1, 0, 2);
+	private final GroupAddress command = new GroupAddress(1, 0, 3);
+
+	private final StateFilter filter = new StateFilter();
+	private Config config;
+
+	private static final class Config implements Configuration
+	{
+		private Cache cache;
+		private DatapointModel<? extends Datapoint> model;
+
+		@Override
+		public void activate(final boolean activate) {}
+
+		@Override
+		public boolean isActive() { return true; }
+
+		@Override
+		public void setCache(final Cache c) { cache = c; }
+
+		@Override
+		public Cache getCache() { return cache; }
+
+		@Override
+		public void setDatapointModel(final DatapointModel<? extends Datapoint> model) { this.model = model; }
+
+		@Override
+		public DatapointModel<? extends Datapoint> getDatapointModel() { return model; }
+
+		@Override
+		public void setFilter(final NetworkFilter nf, final RequestFilter rf) {}
+
+		@Override
+		public NetworkFilter getNetworkFilter() { return null; }
+
+		@Override
+		public RequestFilter getRequestFilter() { return null; }
+
+		@Override
+		public KNXNetworkLink getBaseLink() { return null; }
+
+		@Override
+		public KNXNetworkLink getBufferedLink() { return null; }
+
+		@Override
+		public void setQueryBufferOnly(final boolean bufferOnly) {}
+	}
+
+	@BeforeEach
+	void init()
+	{
+		final DatapointMap<Datapoint> map = new DatapointMap<>();
+		map.add(new StateDP(state, "state", 1, "1.001"));
+		final StateDP expiring = new StateDP(expired, "expiring", 1, "1.001");
+		expiring.setExpirationTimeout(1);
+		map.add(expiring);
+		map.add(new CommandDP(command, "command", 1, "1.001"));
+
+		config = new Config();
+		config.setCache(new LFUCache(0, 0));
+		config.setDatapointModel(map);
+		filter.init(config);
+	}
+
+	@Test
+	void saveAndLoadStateValues() throws IOException, KNXFormatException
+	{
+		filter.accept(groupWrite(state), config);
+		filter.accept(groupWrite(command), config);
+		final CEMILData buffered = filter.request(state, config);
+		assertNotNull(buffered);
+		assertNull(filter.request(command, config));
+
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		filter.save(config, new DataOutputStream(os));
+
+		config.getCache().clear();
+		assertNull(filter.request(state, config));
+		filter.load(config, new DataInputStream(new ByteArrayInputStream(os.toByteArray())));
+		final CEMILData restored = filter.request(state, config);
+		assertNotNull(restored);
+		assertArrayEquals(buffered.toByteArray(), restored.toByteArray());
+		assertNull(filter.request(command, config));
+	}
+
+	@Test
+	void skipExpiredStateValues() throws IOException, KNXFormatException, InterruptedException
+	{
+		filter.accept(groupWrite(expired), config);
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		filter.save(config, new DataOutputStream(os));
+
+		config.getCache().clear();
+		Thread.sleep(1100);
+		filter.load(config, new DataInputStream(new ByteArrayInputStream(os.toByteArray())));
+		assertNull(config.getCache().get(expired));
+	}
+
+	@Test
+	void loadInvalidSnapshot()
+	{
+		final byte[] data = new byte[10];
+		assertThrows(KNXFormatException.class,
+				() -> filter.load(config, new DataInputStream(new ByteArrayInputStream(data))));
+	}
+
+	private static CEMILData groupWrite(final GroupAddress dst)
+	{
+		return new CEMILData(CEMILData.MC_LDATA_IND, new IndividualAddress(1, 1, 5), dst, new byte[] { 0, (byte) 0x81 },
+				Priority.LOW);
+	}
+}
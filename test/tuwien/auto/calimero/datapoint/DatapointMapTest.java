@@ -39,17 +39,28 @@ package tuwien.auto.calimero.datapoint;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.Priority;
 import tuwien.auto.calimero.Util;
 import tuwien.auto.calimero.xml.KNXMLException;
 import tuwien.auto.calimero.xml.XmlInputFactory;
@@ -63,6 +74,7 @@ import tuwien.auto.calimero.xml.XmlWriter;
 public class DatapointMapTest
 {
 	private static final String dpFile = Util.getTargetPath() + "datapointMap.xml";
+	private static final String parallelFile = Util.getTargetPath() + "datapointMapParallel.xml";
 
 	private DatapointModel<Datapoint> m;
 	private final GroupAddress ga1 = new GroupAddress(1, 1, 1);
@@ -266,4 +278,122 @@ public class DatapointMapTest
 		m.save(w2);
 		w2.close();
 	}
+
+	@Test
+	void loadParallel() throws KNXMLException
+	{
+		final StateDP sdp = new StateDP(new GroupAddress(4, 4, 4), "state", 9, "9.001");
+		sdp.setExpirationTimeout(30);
+		sdp.addUpdatingAddress(new GroupAddress(4, 4, 5));
+		sdp.addInvalidatingAddress(new GroupAddress(4, 4, 6));
+		final DatapointMap<Datapoint> saved = new DatapointMap<>();
+		saved.add(dp1);
+		saved.add(dp2);
+		saved.add(sdp);
+		final int base = new GroupAddress(10, 0, 0).getRawAddress();
+		for (int i = 0; i < 2000; i++)
+			saved.add(new CommandDP(new GroupAddress(base + i), "dp " + i, 1, "1.001"));
+		try (XmlWriter w = XmlOutputFactory.newInstance().createXMLWriter(parallelFile)) {
+			saved.save(w);
+		}
+
+		final DatapointMap<Datapoint> loaded = new DatapointMap<>();
+		final AtomicInteger notifications = new AtomicInteger();
+		final AtomicInteger added = new AtomicInteger();
+		loaded.addChangeListener(new ChangeListener() {
+			@Override
+			public void onDatapointAdded(final DatapointModel<? extends Datapoint> model, final Datapoint dp) {}
+
+			@Override
+			public void onDatapointRemoved(final DatapointModel<? extends Datapoint> model, final Datapoint dp) {}
+
+			@Override
+			public void onDatapointsAdded(final DatapointModel<? extends Datapoint> model,
+				final Collection<? extends Datapoint> datapoints) {
+				notifications.incrementAndGet();
+				added.addAndGet(datapoints.size());
+			}
+		});
+		try (XmlReader r = XmlInputFactory.newInstance().createXMLReader(parallelFile)) {
+			loaded.load(r, ForkJoinPool.commonPool());
+		}
+		assertEquals(1, notifications.get());
+		assertEquals(saved.getDatapoints().size(), added.get());
+		assertEquals(saved.getDatapoints().size(), loaded.getDatapoints().size());
+		for (final Datapoint dp : saved.getDatapoints())
+			assertEquals(dp.toString(), loaded.get(dp.getMainAddress()).toString());
+
+		final StateDP state = (StateDP) loaded.get(sdp.getMainAddress());
+		assertEquals(30, state.getExpirationTimeout());
+		assertTrue(state.isUpdating(new GroupAddress(4, 4, 5)));
+		assertTrue(state.isInvalidating(new GroupAddress(4, 4, 6)));
+
+		// loading into a map which already contains those datapoints fails and leaves the map unmodified
+		final DatapointMap<Datapoint> nonEmpty = new DatapointMap<>();
+		nonEmpty.add(sdp);
+		try (XmlReader r = XmlInputFactory.newInstance().createXMLReader(parallelFile)) {
+			assertThrows(KNXMLException.class, () -> nonEmpty.load(r, ForkJoinPool.commonPool()));
+		}
+		assertEquals(1, nonEmpty.getDatapoints().size());
+
+		// ensure state-based DPs only
+		try (XmlReader r = XmlInputFactory.newInstance().createXMLReader(parallelFile)) {
+			assertThrows(KNXMLException.class, () -> new DatapointMap<StateDP>(StateDP.class).load(r,
+					ForkJoinPool.commonPool()));
+		}
+	}
+
+	@Test
+	void loadParallelRejectsStateContentInCommandDatapoint()
+	{
+		final String xml = "<datapoints><datapoint stateBased=\"false\" name=\"cmd\" mainNumber=\"1\" dptID=\"1.001\""
+				+ " priority=\"low\"><knxAddress type=\"group\">1/1/1</knxAddress>"
+				+ "<expiration timeout=\"10\"/></datapoint></datapoints>";
+		final DatapointMap<Datapoint> map = new DatapointMap<>();
+		final XmlReader r = XmlInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+		assertThrows(KNXMLException.class, () -> map.load(r, ForkJoinPool.commonPool()));
+		assertTrue(map.getDatapoints().isEmpty());
+	}
+
+	@Test
+	void saveAndLoadSnapshot() throws IOException, KNXFormatException
+	{
+		final StateDP sdp = new StateDP(new GroupAddress(4, 4, 4), "state", 9, "9.001");
+		sdp.setExpirationTimeout(30);
+		sdp.setPriority(Priority.URGENT);
+		sdp.addUpdatingAddress(new GroupAddress(4, 4, 5));
+		sdp.addInvalidatingAddress(new GroupAddress(4, 4, 6));
+		sdp.locations().add("room");
+		m.add(dp1);
+		m.add(dp2);
+		m.add(sdp);
+
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		((DatapointMap<Datapoint>) m).save(new DataOutputStream(os));
+		final byte[] snapshot = os.toByteArray();
+
+		final DatapointMap<Datapoint> loaded = new DatapointMap<>();
+		loaded.load(new DataInputStream(new ByteArrayInputStream(snapshot)));
+		assertEquals(3, loaded.getDatapoints().size());
+		for (final Datapoint dp : ((DatapointMap<Datapoint>) m).getDatapoints())
+			assertEquals(dp.toString(), loaded.get(dp.getMainAddress()).toString());
+		final StateDP state = (StateDP) loaded.get(sdp.getMainAddress());
+		assertEquals(30, state.getExpirationTimeout());
+		assertTrue(state.isUpdating(new GroupAddress(4, 4, 5)));
+		assertTrue(state.isInvalidating(new GroupAddress(4, 4, 6)));
+		assertEquals(List.of("room"), state.locations());
+		assertNull(loaded.get(ga2).getDPT());
+
+		// duplicate datapoints
+		assertThrows(KNXFormatException.class,
+				() -> loaded.load(new DataInputStream(new ByteArrayInputStream(snapshot))));
+		assertEquals(3, loaded.getDatapoints().size());
+		// command-based datapoint in state-based map
+		final DatapointMap<StateDP> stateDps = new DatapointMap<>(StateDP.class);
+		assertThrows(KNXFormatException.class,
+				() -> stateDps.load(new DataInputStream(new ByteArrayInputStream(snapshot))));
+		// no snapshot
+		assertThrows(KNXFormatException.class,
+				() -> loaded.load(new DataInputStream(new ByteArrayInputStream(new byte[10]))));
+	}
 }
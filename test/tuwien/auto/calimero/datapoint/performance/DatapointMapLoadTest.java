@@ -0,0 +1,149 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.datapoint.performance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import performance.base.PerfTestCase;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.Util;
+import tuwien.auto.calimero.datapoint.CommandDP;
+import tuwien.auto.calimero.datapoint.Datapoint;
+import tuwien.auto.calimero.datapoint.DatapointMap;
+import tuwien.auto.calimero.datapoint.StateDP;
+import tuwien.auto.calimero.xml.XmlInputFactory;
+import tuwien.auto.calimero.xml.XmlOutputFactory;
+import tuwien.auto.calimero.xml.XmlReader;
+import tuwien.auto.calimero.xml.XmlWriter;
+
+/**
+ * Loading a generated datapoint model of 25000 datapoints: sequential XML, parallel XML, and binary snapshot.
+ */
+public class DatapointMapLoadTest extends PerfTestCase
+{
+	private static final String dpFile = Util.getTargetPath() + "largeDatapointMap.xml";
+	private static final String snapshotFile = Util.getTargetPath() + "largeDatapointMap.snapshot";
+	private static final int datapoints = 25_000;
+
+	/**
+	 * @param name name of test case
+	 */
+	public DatapointMapLoadTest(final String name)
+	{
+		super(name);
+		warmups = 3;
+		measure = 5;
+	}
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		final DatapointMap<Datapoint> m = new DatapointMap<>();
+		for (int i = 1; i <= datapoints; i++) {
+			final GroupAddress main = new GroupAddress(i);
+			if (i % 3 == 0)
+				m.add(new CommandDP(main, "command datapoint " + i, 1, "1.001"));
+			else {
+				final StateDP dp = new StateDP(main, "state datapoint " + i, 9, "9.001");
+				dp.setExpirationTimeout(i % 300);
+				dp.addUpdatingAddress(new GroupAddress(0xffff - i % 100));
+				dp.addInvalidatingAddress(new GroupAddress(0xffff - 100 - i % 100));
+				m.add(dp);
+			}
+		}
+		try (XmlWriter w = XmlOutputFactory.newInstance().createXMLWriter(dpFile)) {
+			m.save(w);
+		}
+		try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshotFile)))) {
+			m.save(os);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		printResults();
+	}
+
+	/**
+	 * Sequential loading using {@link DatapointMap#load(XmlReader)}.
+	 */
+	public void testLoad()
+	{
+		final DatapointMap<Datapoint> m = new DatapointMap<>();
+		try (XmlReader r = XmlInputFactory.newInstance().createXMLReader(dpFile)) {
+			m.load(r);
+		}
+		assertEquals(datapoints, m.getDatapoints().size());
+	}
+
+	/**
+	 * Streaming, parallel loading using {@link DatapointMap#load(XmlReader, ForkJoinPool)}.
+	 */
+	public void testLoadParallel()
+	{
+		final DatapointMap<Datapoint> m = new DatapointMap<>();
+		try (XmlReader r = XmlInputFactory.newInstance().createXMLReader(dpFile)) {
+			m.load(r, ForkJoinPool.commonPool());
+		}
+		assertEquals(datapoints, m.getDatapoints().size());
+	}
+
+	/**
+	 * Loading the binary snapshot using {@link DatapointMap#load(java.io.DataInput)}.
+	 *
+	 * @throws IOException on I/O error
+	 * @throws KNXFormatException on malformed snapshot
+	 */
+	public void testLoadSnapshot() throws IOException, KNXFormatException
+	{
+		final DatapointMap<Datapoint> m = new DatapointMap<>();
+		try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+			m.load(is);
+		}
+		assertEquals(datapoints, m.getDatapoints().size());
+	}
+}
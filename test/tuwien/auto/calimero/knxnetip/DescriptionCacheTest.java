@@ -0,0 +1,235 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.KNXTimeoutException;
+import tuwien.auto.calimero.knxnetip.servicetype.DescriptionRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.DescriptionResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.util.DeviceDIB;
+import tuwien.auto.calimero.knxnetip.util.ServiceFamiliesDIB;
+
+class DescriptionCacheTest {
+	private static final InetAddress loopback = InetAddress.getLoopbackAddress();
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final AtomicInteger maxOutstanding = new AtomicInteger();
+
+	private final List<StandInServer> servers = new ArrayList<>();
+	private Discoverer discoverer;
+	private DescriptionCache cache;
+
+	// answers description requests after a delay
+	private final class StandInServer implements AutoCloseable {
+		private final DatagramChannel channel;
+		private final AtomicInteger requests = new AtomicInteger();
+		private volatile String name = "stand-in";
+		private volatile boolean responding = true;
+		private final long delay;
+
+		StandInServer(final long delay) throws IOException {
+			this.delay = delay;
+			channel = DatagramChannel.open().bind(new InetSocketAddress(loopback, 0));
+			final var t = new Thread(this::run, "stand-in description server");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		InetSocketAddress address() throws IOException { return (InetSocketAddress) channel.getLocalAddress(); }
+
+		private void run() {
+			final var buf = ByteBuffer.allocate(512);
+			try {
+				while (true) {
+					channel.receive(buf.clear());
+					requests.incrementAndGet();
+					if (!responding)
+						continue;
+					maxOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+					Thread.sleep(delay);
+					outstanding.decrementAndGet();
+
+					final var h = new KNXnetIPHeader(buf.array(), 0);
+					final var req = new DescriptionRequest(buf.array(), h.getStructLength());
+					final var dst = new InetSocketAddress(req.getEndpoint().getAddress(), req.getEndpoint().getPort());
+					final var device = new DeviceDIB(name, 0, 0, DeviceDIB.MEDIUM_TP1, new IndividualAddress(1, 1, 1),
+							new byte[6], Discoverer.SYSTEM_SETUP_MULTICAST, new byte[6]);
+					final var families = new ServiceFamiliesDIB(new int[] { 2, 3, 4 }, new int[] { 1, 1, 1 });
+					channel.send(ByteBuffer.wrap(PacketHelper.toPacket(new DescriptionResponse(device, families))),
+							dst);
+				}
+			}
+			catch (IOException | KNXFormatException | InterruptedException ignore) {}
+		}
+
+		@Override
+		public void close() throws IOException { channel.close(); }
+	}
+
+	@BeforeEach
+	void init() throws KNXException {
+		discoverer = new Discoverer(loopback, 0, false, false);
+	}
+
+	@AfterEach
+	void cleanup() throws IOException {
+		if (cache != null)
+			cache.close();
+		for (final var server : servers)
+			server.close();
+	}
+
+	private StandInServer newServer(final long delay) throws IOException {
+		final var server = new StandInServer(delay);
+		servers.add(server);
+		return server;
+	}
+
+	@Test
+	void cachedWithinTimeToLive() throws IOException, KNXException, InterruptedException {
+		final var server = newServer(0);
+		cache = new DescriptionCache(discoverer, Duration.ofMinutes(1), 4);
+		final var result = cache.get(server.address(), 2);
+		assertEquals("stand-in", result.getResponse().getDevice().getName());
+		assertSame(result, cache.get(server.address(), 2));
+		assertEquals(1, server.requests.get());
+	}
+
+	@Test
+	void expiredDescriptionIsRefreshed() throws IOException, KNXException, InterruptedException {
+		final var server = newServer(0);
+		cache = new DescriptionCache(discoverer, Duration.ZERO, 4);
+		final var first = cache.get(server.address(), 2);
+		final var second = cache.get(server.address(), 2);
+		assertEquals(2, server.requests.get());
+		// unchanged description is not parsed again
+		assertSame(first.getResponse(), second.getResponse());
+
+		server.name = "changed";
+		final var third = cache.get(server.address(), 2);
+		assertNotSame(first.getResponse(), third.getResponse());
+		assertEquals("changed", third.getResponse().getDevice().getName());
+	}
+
+	@Test
+	void invalidate() throws IOException, KNXException, InterruptedException {
+		final var server = newServer(0);
+		cache = new DescriptionCache(discoverer, Duration.ofMinutes(1), 4);
+		cache.get(server.address(), 2);
+		cache.invalidate(server.address());
+		cache.get(server.address(), 2);
+		assertEquals(2, server.requests.get());
+	}
+
+	@Test
+	void concurrentRequestsAreShared() throws IOException, KNXException, InterruptedException, ExecutionException {
+		final var server = newServer(200);
+		cache = new DescriptionCache(discoverer, Duration.ofMinutes(1), 4);
+		final var async = cache.getAll(List.of(server.address()), 2).get(server.address());
+		final var result = cache.get(server.address(), 2);
+		assertSame(result, async.get());
+		assertEquals(1, server.requests.get());
+	}
+
+	@Test
+	void parallelRequestsAreBounded() throws IOException, InterruptedException, ExecutionException {
+		final List<InetSocketAddress> addresses = new ArrayList<>();
+		for (int i = 0; i < 6; i++)
+			addresses.add(newServer(150).address());
+		cache = new DescriptionCache(discoverer, Duration.ofMinutes(1), 2);
+		final var descriptions = cache.getAll(addresses, 2);
+		assertEquals(addresses, new ArrayList<>(descriptions.keySet()));
+		for (final var cf : descriptions.values())
+			assertEquals("stand-in", cf.get().getResponse().getDevice().getName());
+		assertEquals(2, maxOutstanding.get());
+	}
+
+	@Test
+	void closeCompletesPendingRequests() throws IOException, InterruptedException {
+		final var first = newServer(3000);
+		final var second = newServer(3000);
+		cache = new DescriptionCache(discoverer, Duration.ofMinutes(1), 1);
+		// first request is in progress, second one is waiting for the executor
+		final var descriptions = cache.getAll(List.of(first.address(), second.address()), 5);
+		while (outstanding.get() == 0)
+			Thread.sleep(10);
+		cache.close();
+
+		for (final var cf : descriptions.values()) {
+			final var e = assertThrows(ExecutionException.class, () -> cf.get(1, TimeUnit.SECONDS));
+			assertTrue(e.getCause() instanceof KNXConnectionClosedException, e.getCause().toString());
+		}
+		assertThrows(KNXConnectionClosedException.class, () -> cache.get(second.address(), 1));
+	}
+
+	@Test
+	void timeout() throws IOException {
+		final var server = newServer(0);
+		server.responding = false;
+		cache = new DescriptionCache(discoverer, Duration.ofMinutes(1), 4);
+		assertThrows(KNXTimeoutException.class, () -> cache.get(server.address(), 1));
+		final var cf = cache.getAll(List.of(server.address()), 1).get(server.address());
+		final var e = assertThrows(ExecutionException.class, cf::get);
+		assertTrue(e.getCause() instanceof KNXTimeoutException, e.getCause().toString());
+	}
+}
@@ -0,0 +1,247 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.knxnetip.Discoverer.Result;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchResponse;
+import tuwien.auto.calimero.knxnetip.util.DIB;
+import tuwien.auto.calimero.knxnetip.util.DeviceDIB;
+import tuwien.auto.calimero.knxnetip.util.HPAI;
+import tuwien.auto.calimero.knxnetip.util.ServiceFamiliesDIB;
+
+class DiscoveryServiceTest {
+	private static final InetAddress loopback = InetAddress.getLoopbackAddress();
+	private static final Duration interval = Duration.ofMillis(200);
+	private static final Duration responseWindow = Duration.ofMillis(100);
+
+	private StandInResponder responder;
+	private DiscoveryService service;
+	private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+	// answers search requests on behalf of several servers, each server responding from its own channel
+	private static final class StandInResponder implements AutoCloseable {
+		private final DatagramChannel channel;
+		private final List<DatagramChannel> servers = new ArrayList<>();
+		private final List<String> names = new ArrayList<>();
+		private final List<Boolean> responding = new ArrayList<>();
+		private volatile int requests;
+
+		StandInResponder(final int servers) throws IOException {
+			channel = DatagramChannel.open().bind(new InetSocketAddress(loopback, 0));
+			for (int i = 0; i < servers; i++) {
+				this.servers.add(DatagramChannel.open().bind(new InetSocketAddress(loopback, 0)));
+				names.add("server " + i);
+				responding.add(true);
+			}
+			final var t = new Thread(this::run, "stand-in search responder");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		InetSocketAddress address() throws IOException { return (InetSocketAddress) channel.getLocalAddress(); }
+
+		synchronized void respond(final int server, final boolean respond) { responding.set(server, respond); }
+
+		synchronized void rename(final int server, final String name) { names.set(server, name); }
+
+		private void run() {
+			final var buf = ByteBuffer.allocate(512);
+			try {
+				while (true) {
+					channel.receive(buf.clear());
+					requests++;
+					final var h = new KNXnetIPHeader(buf.array(), 0);
+					final var req = SearchRequest.from(h, buf.array(), h.getStructLength());
+					final var dst = new InetSocketAddress(req.getEndpoint().getAddress(), req.getEndpoint().getPort());
+					final boolean ext = h.getServiceType() == KNXnetIPHeader.SearchRequest;
+					synchronized (this) {
+						for (int i = 0; i < servers.size(); i++)
+							if (responding.get(i))
+								servers.get(i).send(ByteBuffer.wrap(response(i, ext)), dst);
+					}
+				}
+			}
+			catch (IOException | KNXFormatException ignore) {}
+		}
+
+		private byte[] response(final int server, final boolean ext) throws IOException {
+			final var ctrlEndpoint = new HPAI(loopback, ((InetSocketAddress) servers.get(server).getLocalAddress())
+					.getPort());
+			final var device = new DeviceDIB(names.get(server), 0, 0, DeviceDIB.MEDIUM_TP1,
+					new IndividualAddress(1, 1, server), new byte[6], Discoverer.SYSTEM_SETUP_MULTICAST, new byte[6]);
+			final var families = new ServiceFamiliesDIB(new int[] { 2, 3, 4 }, new int[] { 1, 1, ext ? 2 : 1 });
+			return PacketHelper.toPacket(new SearchResponse(ext, ctrlEndpoint, List.<DIB>of(device, families)));
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+			for (final var server : servers)
+				server.close();
+		}
+	}
+
+	private final DiscoveryService.Listener listener = new DiscoveryService.Listener() {
+		@Override
+		public void added(final Result<SearchResponse> server) { events.add("added " + name(server)); }
+
+		@Override
+		public void removed(final Result<SearchResponse> server) { events.add("removed " + name(server)); }
+
+		@Override
+		public void changed(final Result<SearchResponse> previous, final Result<SearchResponse> current) {
+			events.add("changed " + name(previous) + " -> " + name(current));
+		}
+	};
+
+	private static String name(final Result<SearchResponse> result) {
+		return result.getResponse().getDevice().getName();
+	}
+
+	@BeforeEach
+	void init() throws IOException, KNXException {
+		responder = new StandInResponder(2);
+		service = new DiscoveryService(interval, responseWindow, responder.address(),
+				NetworkInterface.getByInetAddress(loopback));
+		service.addListener(listener);
+	}
+
+	@AfterEach
+	void cleanup() throws IOException {
+		service.close();
+		responder.close();
+	}
+
+	private String nextEvent() throws InterruptedException {
+		final var event = events.poll(2, TimeUnit.SECONDS);
+		return event == null ? "no event" : event;
+	}
+
+	private void assertEvents(final String... expected) throws InterruptedException {
+		final List<String> actual = new ArrayList<>();
+		for (int i = 0; i < expected.length; i++)
+			actual.add(nextEvent());
+		actual.sort(null);
+		final var sorted = new ArrayList<>(List.of(expected));
+		sorted.sort(null);
+		assertEquals(sorted, actual);
+	}
+
+	@Test
+	void serversAdded() throws InterruptedException {
+		service.start();
+		assertEvents("added server 0", "added server 1");
+		assertEquals(2, service.servers().size());
+	}
+
+	@Test
+	void duplicateResponsesAreMerged() throws InterruptedException {
+		service.start();
+		assertEvents("added server 0", "added server 1");
+		// further rounds with identical responses do not notify
+		Thread.sleep(3 * interval.toMillis());
+		assertTrue(events.isEmpty(), events.toString());
+		// the extended response takes precedence over the standard response
+		for (final var server : service.servers())
+			assertEquals(2, server.getResponse().getServiceFamilies().getVersion(4));
+	}
+
+	@Test
+	void changedServer() throws InterruptedException {
+		service.start();
+		assertEvents("added server 0", "added server 1");
+		responder.rename(1, "renamed");
+		assertEquals("changed server 1 -> renamed", nextEvent());
+	}
+
+	@Test
+	void removedServer() throws InterruptedException {
+		service.start();
+		assertEvents("added server 0", "added server 1");
+		responder.respond(0, false);
+		assertEquals("removed server 0", nextEvent());
+		assertEquals(1, service.servers().size());
+
+		responder.respond(0, true);
+		assertEquals("added server 0", nextEvent());
+	}
+
+	@Test
+	void socketsAreReused() throws InterruptedException {
+		service.start();
+		assertEvents("added server 0", "added server 1");
+		final var local = service.servers().get(0).localEndpoint();
+		Thread.sleep(3 * interval.toMillis());
+		assertTrue(responder.requests >= 6, "requests " + responder.requests);
+		for (final var server : service.servers())
+			assertEquals(local, server.localEndpoint());
+	}
+
+	@Test
+	void invalidResponseWindow() {
+		assertThrows(KNXIllegalArgumentException.class, () -> new DiscoveryService(interval, interval.plusMillis(1),
+				responder.address(), NetworkInterface.getByInetAddress(loopback)));
+	}
+}
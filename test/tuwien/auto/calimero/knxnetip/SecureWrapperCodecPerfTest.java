@@ -0,0 +1,149 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import java.security.Key;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import performance.base.PerfTestCase;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+
+/**
+ * Wrap and unwrap of KNX IP secure packets with 30 and 250 byte payloads, using a cached codec with its reusable
+ * buffers, compared to the static API, which initializes the cipher and allocates per packet.
+ */
+public class SecureWrapperCodecPerfTest extends PerfTestCase {
+	private static final int Iterations = 5_000;
+
+	private final Key key = new SecretKeySpec(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 },
+			"AES");
+	private final byte[] sno = { 0, (byte) 0xfa, 0x12, 0x34, 0x56, 0x78 };
+	private final SecureWrapperCodec codec = new SecureWrapperCodec(key);
+
+	private final byte[] packet30 = packet(30);
+	private final byte[] packet250 = packet(250);
+	private final byte[] wrapped30 = codec.wrap(0, 1, sno, 0, packet30);
+	private final byte[] wrapped250 = codec.wrap(0, 1, sno, 0, packet250);
+	private final byte[] buffer = new byte[SecureWrapperCodec.Overhead + 250];
+
+	/**
+	 * @param name name of test case
+	 */
+	public SecureWrapperCodecPerfTest(final String name) {
+		super(name);
+		warmups = 5;
+		measure = 10;
+		setNormalize(Iterations);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		printResults();
+		super.tearDown();
+	}
+
+	private static byte[] packet(final int length) {
+		final byte[] packet = new byte[length];
+		final byte[] header = new KNXnetIPHeader(KNXnetIPHeader.ROUTING_IND, length - 6).toByteArray();
+		System.arraycopy(header, 0, packet, 0, header.length);
+		return packet;
+	}
+
+	/**
+	 * Wraps a 30 byte packet into a reused buffer.
+	 */
+	public void testWrap30() {
+		for (int i = 0; i < Iterations; i++)
+			codec.wrap(0, i, sno, 0, packet30, 0, packet30.length, buffer, 0);
+	}
+
+	/**
+	 * Wraps a 250 byte packet into a reused buffer.
+	 */
+	public void testWrap250() {
+		for (int i = 0; i < Iterations; i++)
+			codec.wrap(0, i, sno, 0, packet250, 0, packet250.length, buffer, 0);
+	}
+
+	/**
+	 * Unwraps a 30 byte packet into a reused buffer.
+	 *
+	 * @throws KNXFormatException on error
+	 */
+	public void testUnwrap30() throws KNXFormatException {
+		final KNXnetIPHeader h = new KNXnetIPHeader(wrapped30, 0);
+		for (int i = 0; i < Iterations; i++)
+			codec.unwrap(h, wrapped30, 6, buffer, 0);
+	}
+
+	/**
+	 * Unwraps a 250 byte packet into a reused buffer.
+	 *
+	 * @throws KNXFormatException on error
+	 */
+	public void testUnwrap250() throws KNXFormatException {
+		final KNXnetIPHeader h = new KNXnetIPHeader(wrapped250, 0);
+		for (int i = 0; i < Iterations; i++)
+			codec.unwrap(h, wrapped250, 6, buffer, 0);
+	}
+
+	/**
+	 * Wraps and unwraps a 30 byte packet using the static API, for comparison.
+	 *
+	 * @throws KNXFormatException on error
+	 */
+	public void testStaticWrapUnwrap30() throws KNXFormatException {
+		for (int i = 0; i < Iterations; i++) {
+			final byte[] wrapped = SecureConnection.newSecurePacket(0, i, sno, 0, packet30, key);
+			SecureConnection.unwrap(new KNXnetIPHeader(wrapped, 0), wrapped, 6, key);
+		}
+	}
+
+	/**
+	 * Wraps and unwraps a 250 byte packet using the static API, for comparison.
+	 *
+	 * @throws KNXFormatException on error
+	 */
+	public void testStaticWrapUnwrap250() throws KNXFormatException {
+		for (int i = 0; i < Iterations; i++) {
+			final byte[] wrapped = SecureConnection.newSecurePacket(0, i, sno, 0, packet250, key);
+			SecureConnection.unwrap(new KNXnetIPHeader(wrapped, 0), wrapped, 6, key);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.Key;
+import java.util.Arrays;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.KnxSecureException;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+
+class SecureWrapperCodecTest {
+	private static final Key key = new SecretKeySpec(DataUnitBuilder.fromHex("000102030405060708090a0b0c0d0e0f"),
+			"AES");
+	private static final byte[] sno = DataUnitBuilder.fromHex("00fa12345678");
+	private static final long timestamp = 0x0123456789aL;
+	private static final int tag = 0xbeef;
+
+	// secure wrapper of a 30 byte routing indication
+	private static final byte[] wrapped30 = DataUnitBuilder.fromHex("061009500044000000123456789a00fa12345678beef"
+			+ "53fc377e8e799494503297cdb8907e2c9e3412584a01f72dedea404eb15987d0b8a244485602634523e65e10eb2f");
+
+	private final SecureWrapperCodec codec = new SecureWrapperCodec(key);
+
+	private static byte[] packet(final int length) {
+		final byte[] packet = new byte[length];
+		for (int i = 0; i < length; i++)
+			packet[i] = (byte) (i * 7 + 3);
+		final byte[] header = new KNXnetIPHeader(KNXnetIPHeader.ROUTING_IND, length - 6).toByteArray();
+		System.arraycopy(header, 0, packet, 0, header.length);
+		return packet;
+	}
+
+	@Test
+	void wrap() {
+		assertArrayEquals(wrapped30, codec.wrap(0, timestamp, sno, tag, packet(30)));
+	}
+
+	@Test
+	void wrapIntoBuffer() {
+		final byte[] packet = packet(30);
+		final byte[] buffer = new byte[100];
+		final int length = codec.wrap(0, timestamp, sno, tag, packet, 0, packet.length, buffer, 10);
+		assertEquals(wrapped30.length, length);
+		assertArrayEquals(wrapped30, Arrays.copyOfRange(buffer, 10, 10 + length));
+	}
+
+	@Test
+	void unwrap() throws KNXFormatException {
+		final byte[] dst = new byte[30];
+		final var wrapper = codec.unwrap(new KNXnetIPHeader(wrapped30, 0), wrapped30, 6, dst, 0);
+		assertEquals(0, wrapper.sessionId());
+		assertEquals(timestamp, wrapper.sequence());
+		assertArrayEquals(sno, wrapper.serialNumberBytes());
+		assertEquals(tag, wrapper.tag());
+		assertEquals(30, wrapper.length());
+		assertArrayEquals(packet(30), dst);
+	}
+
+	@Test
+	void unwrapInPlace() throws KNXFormatException {
+		final byte[] data = wrapped30.clone();
+		final var wrapper = codec.unwrap(new KNXnetIPHeader(data, 0), data, 6);
+		assertArrayEquals(packet(30), wrapper.packet());
+		assertEquals(6 + 16, wrapper.offset());
+	}
+
+	@Test
+	void roundTrip() throws KNXFormatException {
+		for (final int length : new int[] { 6, 8, 16, 30, 250, 1000 }) {
+			final byte[] packet = packet(length);
+			final byte[] wrapped = codec.wrap(5, 1234, sno, 0, packet);
+			final var wrapper = codec.unwrap(new KNXnetIPHeader(wrapped, 0), wrapped, 6);
+			assertEquals(5, wrapper.sessionId());
+			assertEquals(1234, wrapper.sequence());
+			assertArrayEquals(packet, wrapper.packet(), "packet length " + length);
+		}
+	}
+
+	@Test
+	void staticApiUsesCodec() throws KNXFormatException {
+		final byte[] packet = packet(30);
+		assertArrayEquals(wrapped30, SecureConnection.newSecurePacket(0, timestamp, sno, tag, packet, key));
+		final Object[] fields = SecureConnection.unwrap(new KNXnetIPHeader(wrapped30, 0), wrapped30, 6, key);
+		assertEquals(timestamp, fields[1]);
+		assertEquals(tag, fields[3]);
+		assertArrayEquals(packet, (byte[]) fields[4]);
+	}
+
+	@Test
+	void authenticationFailure() {
+		final byte[] data = wrapped30.clone();
+		data[30] ^= 1;
+		assertThrows(KnxSecureException.class, () -> codec.unwrap(new KNXnetIPHeader(data, 0), data, 6));
+	}
+
+	@Test
+	void wrongKey() {
+		final var other = new SecureWrapperCodec(new SecretKeySpec(new byte[16], "AES"));
+		assertThrows(KnxSecureException.class, () -> other.unwrap(new KNXnetIPHeader(wrapped30, 0), wrapped30, 6));
+	}
+
+	@Test
+	void tooShort() {
+		final byte[] data = DataUnitBuilder.fromHex("061009500020000000123456789a00fa12345678beef00000000000000000000");
+		assertThrows(KNXFormatException.class, () -> codec.unwrap(new KNXnetIPHeader(data, 0), data, 6));
+	}
+}
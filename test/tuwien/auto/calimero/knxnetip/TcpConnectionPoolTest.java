@@ -0,0 +1,240 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.KNXRemoteException;
+import tuwien.auto.calimero.knxnetip.KNXnetIPTunnel.TunnelingLayer;
+import tuwien.auto.calimero.knxnetip.servicetype.ConnectResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.DisconnectRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.DisconnectResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.ErrorCodes;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.util.HPAI;
+import tuwien.auto.calimero.knxnetip.util.TunnelCRD;
+import tuwien.auto.calimero.knxnetip.util.TunnelingDib;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+
+class TcpConnectionPoolTest {
+	private static final InetSocketAddress local = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+	private final List<StandInServer> servers = new ArrayList<>();
+	private TcpConnectionPool pool = new TcpConnectionPool(local);
+
+	// accepts tunneling connect requests over TCP up to its number of slots
+	private static final class StandInServer implements AutoCloseable {
+		private final ServerSocketChannel server;
+		private final int slots;
+		private final AtomicInteger tunnels = new AtomicInteger();
+		private final AtomicInteger connections = new AtomicInteger();
+		private int channelId;
+
+		StandInServer(final int slots) throws IOException {
+			this.slots = slots;
+			server = ServerSocketChannel.open().bind(local);
+			final var t = new Thread(this::accept, "stand-in server");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		InetSocketAddress address() throws IOException { return (InetSocketAddress) server.getLocalAddress(); }
+
+		private void accept() {
+			try {
+				while (true) {
+					final var ch = server.accept();
+					connections.incrementAndGet();
+					final var t = new Thread(() -> serve(ch), "stand-in server connection");
+					t.setDaemon(true);
+					t.start();
+				}
+			}
+			catch (final IOException ignore) {}
+		}
+
+		private void serve(final SocketChannel ch) {
+			final var reader = new TcpFrameReader(512);
+			try (ch) {
+				while (reader.read(ch, (header, data, offset, length) -> respond(ch, header, data, offset)));
+			}
+			catch (IOException | KNXFormatException ignore) {}
+		}
+
+		private void respond(final SocketChannel ch, final KNXnetIPHeader header, final byte[] data,
+				final int offset) throws IOException, KNXFormatException {
+			final byte[] res;
+			if (header.getServiceType() == KNXnetIPHeader.CONNECT_REQ) {
+				if (tunnels.incrementAndGet() > slots) {
+					tunnels.decrementAndGet();
+					res = PacketHelper.toPacket(new ConnectResponse(ErrorCodes.NO_MORE_CONNECTIONS));
+				}
+				else {
+					final int id = ++channelId;
+					res = PacketHelper.toPacket(new ConnectResponse(id, ErrorCodes.NO_ERROR, HPAI.Tcp,
+							new TunnelCRD(new IndividualAddress(1, 1, id))));
+				}
+			}
+			else if (header.getServiceType() == KNXnetIPHeader.DISCONNECT_REQ) {
+				tunnels.decrementAndGet();
+				final var req = new DisconnectRequest(data, offset);
+				res = PacketHelper.toPacket(new DisconnectResponse(req.getChannelID(), ErrorCodes.NO_ERROR));
+			}
+			else
+				return;
+			ch.write(ByteBuffer.wrap(res));
+		}
+
+		@Override
+		public void close() throws IOException { server.close(); }
+	}
+
+	@AfterEach
+	void cleanup() throws IOException {
+		pool.close();
+		for (final var server : servers)
+			server.close();
+	}
+
+	private StandInServer addServer(final int slots, final int maxTunnels) throws IOException {
+		final var server = new StandInServer(slots);
+		servers.add(server);
+		pool.addServer(server.address(), maxTunnels);
+		return server;
+	}
+
+	private KNXnetIPTunnel newTunnel() throws KNXException, InterruptedException {
+		return pool.newTunnel(TunnelingLayer.LinkLayer, KNXMediumSettings.BackboneRouter);
+	}
+
+	@Test
+	void tunnelsShareConnection() throws IOException, KNXException, InterruptedException {
+		final var server = addServer(4, 4);
+		for (int i = 0; i < 3; i++)
+			newTunnel();
+		assertEquals(List.of(3), pool.openTunnels());
+		assertEquals(3, server.tunnels.get());
+		assertEquals(1, server.connections.get());
+	}
+
+	@Test
+	void tunnelsLimitedToSlots() throws IOException, KNXException, InterruptedException {
+		addServer(4, 2);
+		newTunnel();
+		newTunnel();
+		assertThrows(KNXException.class, this::newTunnel);
+		assertEquals(List.of(2), pool.openTunnels());
+	}
+
+	@Test
+	void closedTunnelFreesSlot() throws IOException, KNXException, InterruptedException {
+		final var server = addServer(2, 2);
+		final var tunnel = newTunnel();
+		newTunnel();
+		tunnel.close();
+		assertEquals(List.of(1), pool.openTunnels());
+		newTunnel();
+		assertEquals(List.of(2), pool.openTunnels());
+		assertEquals(1, server.connections.get());
+	}
+
+	@Test
+	void loadBalancesAcrossServers() throws IOException, KNXException, InterruptedException {
+		addServer(4, 4);
+		addServer(4, 4);
+		for (int i = 0; i < 5; i++)
+			newTunnel();
+		assertEquals(List.of(3, 2), pool.openTunnels());
+	}
+
+	@Test
+	void rejectedTunnelTriesNextServer() throws IOException, KNXException, InterruptedException {
+		// server supports fewer tunnels than configured, e.g., because other clients occupy slots
+		addServer(1, 4);
+		addServer(4, 4);
+		for (int i = 0; i < 4; i++)
+			newTunnel();
+		assertEquals(List.of(1, 3), pool.openTunnels());
+	}
+
+	@Test
+	void allServersRejectTunnel() throws IOException, KNXException, InterruptedException {
+		addServer(1, 4);
+		newTunnel();
+		assertThrows(KNXRemoteException.class, this::newTunnel);
+		assertEquals(List.of(1), pool.openTunnels());
+	}
+
+	@Test
+	void maxTunnelsFromTunnelingDib() throws IOException {
+		final var server = new StandInServer(2);
+		servers.add(server);
+		final var dib = new TunnelingDib(List.of(new IndividualAddress(1, 1, 1), new IndividualAddress(1, 1, 2)),
+				new int[] { 5, 4 });
+		pool.addServer(server.address(), dib);
+		assertThrows(KNXIllegalArgumentException.class, () -> pool.addServer(server.address(), 1));
+	}
+
+	@Test
+	void closedPool() throws IOException, KNXException, InterruptedException {
+		addServer(2, 2);
+		final var tunnel = newTunnel();
+		pool.close();
+		assertEquals(KNXnetIPConnection.CLOSED, tunnel.getState());
+		assertThrows(KNXConnectionClosedException.class, this::newTunnel);
+		pool = new TcpConnectionPool(local);
+	}
+}
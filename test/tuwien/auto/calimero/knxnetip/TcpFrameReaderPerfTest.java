@@ -0,0 +1,132 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import performance.base.PerfTestCase;
+import tuwien.auto.calimero.KNXFormatException;
+
+/**
+ * Receives KNXnet/IP frames over a loopback TCP connection from a local stand-in server, using a socket channel and
+ * the TCP frame reader.
+ */
+public class TcpFrameReaderPerfTest extends PerfTestCase {
+	private static final int Frames = 20_000;
+
+	private ServerSocketChannel server;
+	private long frames;
+	private long bytes;
+
+	/**
+	 * @param name name of test case
+	 */
+	public TcpFrameReaderPerfTest(final String name) {
+		super(name);
+		warmups = 3;
+		measure = 5;
+		setNormalize(Frames);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		printResults();
+		server.close();
+		if (frames > 0)
+			System.out.printf("%s: received %d frames, %.1f MB%n", getName(), frames, bytes / 1e6);
+		super.tearDown();
+	}
+
+	/**
+	 * Receives small frames, the size of tunneling requests.
+	 *
+	 * @throws Exception on error
+	 */
+	public void testSmallFrames() throws Exception {
+		receive(21, 21);
+	}
+
+	/**
+	 * Receives frames of mixed sizes, including frames larger than the initial receive buffer.
+	 *
+	 * @throws Exception on error
+	 */
+	public void testMixedFrames() throws Exception {
+		receive(21, 1500);
+	}
+
+	private void receive(final int minBody, final int maxBody) throws IOException, KNXFormatException,
+		InterruptedException {
+		final var os = new ByteArrayOutputStream();
+		for (int i = 0; i < Frames; i++)
+			os.writeBytes(TcpFrameReaderTest.frame(TcpFrameReaderTest.body(minBody + i % (maxBody - minBody + 1), i)));
+		final byte[] stream = os.toByteArray();
+
+		final var sender = new Thread(() -> {
+			try (var ch = server.accept()) {
+				ch.write(ByteBuffer.wrap(stream));
+			}
+			catch (final IOException e) {
+				e.printStackTrace();
+			}
+		}, "stand-in server");
+		sender.start();
+
+		final long[] received = new long[1];
+		final var reader = new TcpFrameReader(512);
+		try (var ch = SocketChannel.open(server.getLocalAddress())) {
+			while (reader.read(ch, (header, data, offset, length) -> received[0]++));
+		}
+		sender.join();
+		if (received[0] != Frames)
+			fail("received " + received[0] + " frames");
+		frames += received[0];
+		bytes += stream.length;
+	}
+}
@@ -0,0 +1,207 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+
+class TcpFrameReaderTest {
+	private final List<byte[]> received = new ArrayList<>();
+	private final TcpFrameReader.Handler handler = (header, data, offset, length) -> {
+		assertEquals(header.getTotalLength() - header.getStructLength(), length);
+		received.add(Arrays.copyOfRange(data, offset, offset + length));
+	};
+
+	// channel stub returning the stream in chunks of at most chunk bytes
+	private static final class ChunkedChannel implements ReadableByteChannel {
+		private final ByteBuffer stream;
+		private final int chunk;
+
+		ChunkedChannel(final byte[] stream, final int chunk) {
+			this.stream = ByteBuffer.wrap(stream);
+			this.chunk = chunk;
+		}
+
+		@Override
+		public int read(final ByteBuffer dst) {
+			if (!stream.hasRemaining())
+				return -1;
+			final int n = Math.min(Math.min(chunk, dst.remaining()), stream.remaining());
+			final var slice = stream.slice();
+			slice.limit(n);
+			dst.put(slice);
+			stream.position(stream.position() + n);
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() { return true; }
+
+		@Override
+		public void close() {}
+	}
+
+	static byte[] body(final int length, final int seed) {
+		final byte[] body = new byte[length];
+		for (int i = 0; i < length; i++)
+			body[i] = (byte) (i * 31 + seed);
+		return body;
+	}
+
+	static byte[] frame(final byte[] body) {
+		final var frame = ByteBuffer.allocate(6 + body.length);
+		frame.put(new KNXnetIPHeader(KNXnetIPHeader.TUNNELING_REQ, body.length).toByteArray()).put(body);
+		return frame.array();
+	}
+
+	private static byte[] stream(final byte[]... frames) {
+		final var os = new ByteArrayOutputStream();
+		for (final byte[] frame : frames)
+			os.writeBytes(frame);
+		return os.toByteArray();
+	}
+
+	private void readAll(final TcpFrameReader reader, final ReadableByteChannel ch)
+		throws IOException, KNXFormatException {
+		while (reader.read(ch, handler));
+	}
+
+	@Test
+	void framesSplitAcrossReads() throws IOException, KNXFormatException {
+		final byte[] b1 = body(20, 1);
+		final byte[] b2 = body(100, 2);
+		final byte[] b3 = body(0, 3);
+		readAll(new TcpFrameReader(512), new ChunkedChannel(stream(frame(b1), frame(b2), frame(b3)), 3));
+		assertEquals(3, received.size());
+		assertArrayEquals(b1, received.get(0));
+		assertArrayEquals(b2, received.get(1));
+		assertArrayEquals(b3, received.get(2));
+	}
+
+	@Test
+	void multipleFramesInOneRead() throws IOException, KNXFormatException {
+		final var reader = new TcpFrameReader(512);
+		final var ch = new ChunkedChannel(stream(frame(body(10, 1)), frame(body(11, 2)), frame(body(12, 3))), 512);
+		assertTrue(reader.read(ch, handler));
+		assertEquals(3, received.size());
+		assertFalse(reader.read(ch, handler));
+	}
+
+	@Test
+	void frameWrappingAroundBufferEnd() throws IOException, KNXFormatException {
+		final var frames = new byte[20][];
+		for (int i = 0; i < frames.length; i++)
+			frames[i] = frame(body(50 + i * 13, i));
+		final var reader = new TcpFrameReader(128);
+		readAll(reader, new ChunkedChannel(stream(frames), 97));
+		assertEquals(frames.length, received.size());
+		for (int i = 0; i < frames.length; i++)
+			assertArrayEquals(body(50 + i * 13, i), received.get(i));
+		assertEquals(512, reader.capacity());
+	}
+
+	@Test
+	void largeFrameGrowsBuffer() throws IOException, KNXFormatException {
+		final byte[] large = body(60_000, 5);
+		final byte[] small = body(30, 6);
+		final var reader = new TcpFrameReader(512);
+		readAll(reader, new ChunkedChannel(stream(frame(small), frame(large), frame(small)), 1400));
+		assertEquals(3, received.size());
+		assertArrayEquals(large, received.get(1));
+		assertArrayEquals(small, received.get(2));
+		assertEquals(65536, reader.capacity());
+	}
+
+	@Test
+	void invalidHeaderDiscardsBufferedData() throws IOException, KNXFormatException {
+		final byte[] invalid = frame(body(10, 0));
+		invalid[1] = 0x20;
+		final var reader = new TcpFrameReader(512);
+		final var ch = new ChunkedChannel(stream(invalid, frame(body(10, 1))), 512);
+		assertThrows(KNXFormatException.class, () -> reader.read(ch, handler));
+		assertEquals(0, received.size());
+
+		// resynchronizes with the next read
+		final byte[] b = body(8, 2);
+		readAll(reader, new ChunkedChannel(frame(b), 512));
+		assertEquals(1, received.size());
+		assertArrayEquals(b, received.get(0));
+	}
+
+	@Test
+	void totalLengthSmallerThanHeader() {
+		final byte[] invalid = frame(body(10, 0));
+		invalid[4] = 0;
+		invalid[5] = 4;
+		final var reader = new TcpFrameReader(512);
+		assertThrows(KNXFormatException.class, () -> reader.read(new ChunkedChannel(invalid, 512), handler));
+	}
+
+	@Test
+	void handlerExceptionKeepsFollowingFrames() throws IOException, KNXFormatException {
+		final var reader = new TcpFrameReader(512);
+		final var ch = new ChunkedChannel(stream(frame(body(10, 1)), frame(body(10, 2)), frame(body(10, 3))), 512);
+		final TcpFrameReader.Handler failFirst = (header, data, offset, length) -> {
+			if (received.isEmpty()) {
+				received.add(new byte[0]);
+				throw new KNXFormatException("first frame");
+			}
+			handler.dispatch(header, data, offset, length);
+		};
+		assertThrows(KNXFormatException.class, () -> reader.read(ch, failFirst));
+		while (reader.read(ch, failFirst));
+		assertEquals(3, received.size());
+		assertArrayEquals(body(10, 2), received.get(1));
+		assertArrayEquals(body(10, 3), received.get(2));
+	}
+}
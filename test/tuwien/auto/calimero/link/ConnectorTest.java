@@ -0,0 +1,512 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.link;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.link.ReconnectPolicy.CircuitState;
+
+/**
+ * Reconnects of connector links to a local stand-in server, which refuses connections for a period.
+ */
+class ConnectorTest
+{
+	private static final byte[] GroupRead = new byte[2];
+
+	private final StandInServer server = new StandInServer();
+	private final List<KNXNetworkLink> links = new ArrayList<>();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger maxActive = new AtomicInteger();
+	private volatile long connectTime; // [ms]
+	private final AtomicInteger connects = new AtomicInteger();
+	// frames sent over stand-in links, formatted as "destination apdu"
+	private final List<String> sent = new CopyOnWriteArrayList<>();
+	private final List<Long> sendTimes = new CopyOnWriteArrayList<>();
+	private final List<String> sendThreads = new CopyOnWriteArrayList<>();
+	// if set, the next frame sent over a stand-in link blocks until this latch is released
+	private volatile CountDownLatch blockNextSend;
+	private final CountDownLatch sendBlocked = new CountDownLatch(1);
+
+	// refuses connections until started, and accepts connections afterwards
+	private static final class StandInServer implements AutoCloseable
+	{
+		private final InetSocketAddress address;
+		private volatile ServerSocket socket;
+
+		StandInServer()
+		{
+			// reserve an ephemeral port, which refuses connections while nobody listens
+			try (var s = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+				address = (InetSocketAddress) s.getLocalSocketAddress();
+			}
+			catch (final IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void start() throws IOException
+		{
+			final var s = new ServerSocket();
+			s.setReuseAddress(true);
+			s.bind(address);
+			socket = s;
+			final var t = new Thread(() -> {
+				try {
+					while (true)
+						s.accept();
+				}
+				catch (final IOException ignore) {}
+			}, "stand-in server");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if (socket != null)
+				socket.close();
+		}
+	}
+
+	@AfterEach
+	void cleanup() throws IOException
+	{
+		links.forEach(KNXNetworkLink::close);
+		server.close();
+	}
+
+	@Test
+	void exponentialBackoff()
+	{
+		final var policy = new ReconnectPolicy().backoff(Duration.ofMillis(100), Duration.ofSeconds(1), 2).jitter(0);
+		assertEquals(100, policy.delay(1));
+		assertEquals(200, policy.delay(2));
+		assertEquals(800, policy.delay(4));
+		assertEquals(1000, policy.delay(5));
+		assertEquals(1000, policy.delay(Long.MAX_VALUE));
+	}
+
+	@Test
+	void jitteredBackoff()
+	{
+		final var policy = new ReconnectPolicy().backoff(Duration.ofMillis(100), Duration.ofSeconds(1), 2).jitter(0.5);
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		for (int i = 0; i < 1000; i++) {
+			final long delay = policy.delay(2);
+			min = Math.min(min, delay);
+			max = Math.max(max, delay);
+		}
+		assertTrue(min >= 100 && max <= 200, "delay range " + min + " - " + max);
+		assertTrue(max - min > 50, "delays not spread, range " + min + " - " + max);
+	}
+
+	@Test
+	void reconnectAfterRefusedPeriod() throws KNXException, InterruptedException, IOException
+	{
+		final var policy = new ReconnectPolicy().backoff(Duration.ofMillis(20), Duration.ofMillis(100), 2);
+		final var link = newLink(connector(policy), server.address);
+		assertNull(((Connector.Link<?>) link).target());
+
+		Thread.sleep(300);
+		server.start();
+		awaitCondition(() -> ((Connector.Link<?>) link).target() != null);
+
+		final var stats = policy.stats(server.address);
+		assertEquals(1, stats.successes());
+		assertTrue(stats.failures() >= 2, stats.toString());
+		assertEquals(stats.toString(), ((Connector.Link<?>) link).reconnectStats().toString());
+	}
+
+	@Test
+	void concurrentReconnectsLimitedPerEndpoint() throws KNXException, InterruptedException, IOException
+	{
+		connectTime = 20;
+		final var policy = new ReconnectPolicy().backoff(Duration.ofMillis(10), Duration.ofMillis(10), 1)
+				.maxConcurrentReconnects(2);
+		final var connector = connector(policy);
+		for (int i = 0; i < 10; i++)
+			newLink(connector, server.address);
+
+		Thread.sleep(300);
+		server.start();
+		awaitCondition(() -> links.stream().allMatch(l -> ((Connector.Link<?>) l).target() != null));
+
+		assertTrue(maxActive.get() <= 2, "concurrent reconnects " + maxActive.get());
+		final var stats = policy.stats(server.address);
+		assertEquals(10, stats.successes());
+		assertTrue(stats.deferred() > 0, stats.toString());
+		assertEquals(0, stats.activeReconnects());
+	}
+
+	@Test
+	void endpointsDoNotShareLimits()
+	{
+		final var policy = new ReconnectPolicy().maxConcurrentReconnects(1);
+		assertEquals(0, policy.acquire("endpoint 1"));
+		assertTrue(policy.acquire("endpoint 1") > 0);
+		assertEquals(0, policy.acquire("endpoint 2"));
+		policy.release("endpoint 1");
+		assertEquals(0, policy.acquire("endpoint 1"));
+		assertEquals(1, policy.stats("endpoint 1").deferred());
+		assertEquals(0, policy.stats("endpoint 2").deferred());
+	}
+
+	@Test
+	void circuitOpensAfterConsecutiveFailures() throws KNXException, InterruptedException, IOException
+	{
+		final var policy = new ReconnectPolicy().backoff(Duration.ofMillis(10), Duration.ofMillis(10), 1)
+				.circuitBreaker(3, Duration.ofMillis(500));
+		final var link = newLink(connector(policy), server.address);
+		awaitCondition(() -> policy.stats(server.address).circuitState() == CircuitState.Open);
+
+		// connect on send fails fast without connect attempt
+		final long attempts = policy.stats(server.address).attempts();
+		assertEquals(3, attempts);
+		assertThrows(KNXLinkClosedException.class,
+				() -> link.sendRequest(new GroupAddress(1, 1, 1), Priority.LOW, new byte[2]));
+		assertEquals(attempts, policy.stats(server.address).attempts());
+
+		server.start();
+		awaitCondition(() -> ((Connector.Link<?>) link).target() != null);
+		final var stats = policy.stats(server.address);
+		assertEquals(CircuitState.Closed, stats.circuitState());
+		assertEquals(1, stats.circuitOpened());
+		assertEquals(4, stats.attempts());
+	}
+
+	@Test
+	void failureAfterOpenDurationReopensCircuit() throws InterruptedException
+	{
+		final var policy = new ReconnectPolicy().circuitBreaker(1, Duration.ofMillis(50));
+		policy.add("endpoint");
+		assertTrue(policy.failed("endpoint"));
+		assertTrue(policy.circuitOpen("endpoint"));
+		Thread.sleep(100);
+		// open duration expired, but no scheduled reconnect changed the state to half-open yet
+		assertEquals(CircuitState.Open, policy.stats("endpoint").circuitState());
+		assertFalse(policy.circuitOpen("endpoint"));
+		assertTrue(policy.failed("endpoint"));
+		assertTrue(policy.circuitOpen("endpoint"));
+		assertEquals(2, policy.stats("endpoint").circuitOpened());
+	}
+
+	@Test
+	void closedLinkWithoutEndpointKeyIsRemovedFromPolicy() throws KNXException, InterruptedException
+	{
+		final var policy = new ReconnectPolicy();
+		final var link = connector(policy).newLink(() -> connect(server.address));
+		links.add(link);
+		assertEquals(1, policy.stats().size());
+
+		link.close();
+		// a connect attempt which was still running when the link got closed
+		policy.failed(link);
+		policy.release(link);
+		assertTrue(policy.stats().isEmpty());
+	}
+
+	@Test
+	void connectOnSendLimitedPerEndpoint() throws KNXException, InterruptedException
+	{
+		final var policy = new ReconnectPolicy().maxConcurrentReconnects(1);
+		final var link = newLink(connector(policy).maxConnectAttempts(1), server.address);
+		assertNull(((Connector.Link<?>) link).target());
+
+		// another link to the same endpoint occupies the only reconnect slot
+		assertEquals(0, policy.acquire(server.address));
+		final int attempts = connects.get();
+		assertThrows(KNXLinkClosedException.class,
+				() -> link.sendRequest(new GroupAddress(1, 1, 1), Priority.LOW, GroupRead));
+		assertEquals(attempts, connects.get());
+		policy.release(server.address);
+	}
+
+	@Test
+	void circuitReopensOnFailedHalfOpenAttempt() throws KNXException, InterruptedException
+	{
+		final var policy = new ReconnectPolicy().backoff(Duration.ofMillis(10), Duration.ofMillis(10), 1)
+				.circuitBreaker(2, Duration.ofMillis(100));
+		newLink(connector(policy), server.address);
+		awaitCondition(() -> policy.stats(server.address).circuitOpened() >= 2);
+		final var stats = policy.stats(server.address);
+		// every reopening takes a single attempt
+		assertEquals(stats.circuitOpened() + 1, stats.attempts());
+		assertEquals(0, stats.successes());
+	}
+
+	@Test
+	void framesQueuedWhileDisconnected() throws KNXException, InterruptedException, IOException
+	{
+		final var connector = connector(fastReconnect()).sendQueue(100, Duration.ofSeconds(10), Duration.ZERO);
+		final var link = newLink(connector, server.address);
+		for (int i = 1; i <= 5; i++)
+			link.sendRequest(new GroupAddress(1, 1, i), Priority.LOW, GroupRead);
+		assertEquals(5, ((Connector.Link<?>) link).queuedFrames());
+		assertTrue(sent.isEmpty());
+
+		server.start();
+		awaitCondition(() -> sent.size() == 5);
+		assertEquals(List.of("1/1/1 0000", "1/1/2 0000", "1/1/3 0000", "1/1/4 0000", "1/1/5 0000"), sent);
+		assertEquals(0, ((Connector.Link<?>) link).queuedFrames());
+		// queued frames are not sent by the threads executing scheduled reconnects
+		for (final String thread : sendThreads)
+			assertTrue(thread.startsWith("Calimero Connector send queue"), thread);
+
+		// connected link sends directly
+		link.sendRequest(new GroupAddress(1, 1, 6), Priority.LOW, GroupRead);
+		assertEquals("1/1/6 0000", sent.get(5));
+	}
+
+	@Test
+	void framesNotQueuedWithoutPendingConnect() throws KNXException, InterruptedException
+	{
+		// no scheduled reconnects after the initial connect fails, and no connect on send
+		final var connector = connector(fastReconnect()).maxConnectAttempts(1).connectOnSend(false)
+				.sendQueue(100, Duration.ofSeconds(10), Duration.ZERO);
+		final var link = newLink(connector, server.address);
+		assertNull(((Connector.Link<?>) link).target());
+		assertThrows(KNXLinkClosedException.class,
+				() -> link.sendRequest(new GroupAddress(1, 1, 1), Priority.LOW, GroupRead));
+		assertEquals(0, ((Connector.Link<?>) link).queuedFrames());
+	}
+
+	@Test
+	void queuedGroupWritesCoalesce() throws KNXException, InterruptedException, IOException
+	{
+		final var connector = connector(fastReconnect()).sendQueue(100, Duration.ofSeconds(10), Duration.ZERO);
+		final var link = newLink(connector, server.address);
+		final var group = new GroupAddress(1, 1, 1);
+		link.sendRequest(group, Priority.LOW, groupWrite(1));
+		link.sendRequest(group, Priority.LOW, groupWrite(2));
+		link.sendRequest(new GroupAddress(1, 1, 2), Priority.LOW, groupWrite(1));
+		link.sendRequest(group, Priority.LOW, GroupRead);
+		link.sendRequest(group, Priority.LOW, groupWrite(3));
+		assertEquals(3, ((Connector.Link<?>) link).queuedFrames());
+
+		server.start();
+		awaitCondition(() -> sent.size() == 3);
+		assertEquals(List.of("1/1/2 0081", "1/1/1 0000", "1/1/1 0083"), sent);
+	}
+
+	@Test
+	void expiredFramesDiscarded() throws KNXException, InterruptedException, IOException
+	{
+		final var connector = connector(fastReconnect()).sendQueue(100, Duration.ofMillis(100), Duration.ZERO);
+		final var link = newLink(connector, server.address);
+		link.sendRequest(new GroupAddress(1, 1, 1), Priority.LOW, GroupRead);
+		Thread.sleep(200);
+		link.sendRequest(new GroupAddress(1, 1, 2), Priority.LOW, GroupRead);
+
+		server.start();
+		awaitCondition(() -> ((Connector.Link<?>) link).queuedFrames() == 0);
+		assertEquals(List.of("1/1/2 0000"), sent);
+	}
+
+	@Test
+	void fullQueueDiscardsOldestFrame() throws KNXException, InterruptedException, IOException
+	{
+		final var connector = connector(fastReconnect()).sendQueue(3, Duration.ofSeconds(10), Duration.ZERO);
+		final var link = newLink(connector, server.address);
+		for (int i = 1; i <= 5; i++)
+			link.sendRequest(new GroupAddress(1, 1, i), Priority.LOW, GroupRead);
+		assertEquals(3, ((Connector.Link<?>) link).queuedFrames());
+
+		server.start();
+		awaitCondition(() -> sent.size() == 3);
+		assertEquals(List.of("1/1/3 0000", "1/1/4 0000", "1/1/5 0000"), sent);
+	}
+
+	@Test
+	void pacedDrain() throws KNXException, InterruptedException, IOException
+	{
+		final var connector = connector(fastReconnect()).sendQueue(100, Duration.ofSeconds(10), Duration.ofMillis(50));
+		final var link = newLink(connector, server.address);
+		for (int i = 1; i <= 4; i++)
+			link.sendRequest(new GroupAddress(1, 1, i), Priority.LOW, GroupRead);
+
+		server.start();
+		awaitCondition(() -> sent.size() == 4);
+		for (int i = 1; i < sendTimes.size(); i++) {
+			final long interval = (sendTimes.get(i) - sendTimes.get(i - 1)) / 1_000_000;
+			assertTrue(interval >= 45, "send interval " + interval + " ms");
+		}
+	}
+
+	@Test
+	void frameSentDuringDrainIsQueued() throws KNXException, InterruptedException, IOException
+	{
+		final var connector = connector(fastReconnect()).sendQueue(100, Duration.ofSeconds(10), Duration.ZERO);
+		final var link = newLink(connector, server.address);
+		link.sendRequest(new GroupAddress(1, 1, 1), Priority.LOW, GroupRead);
+
+		final var release = new CountDownLatch(1);
+		blockNextSend = release;
+		server.start();
+		// the last queued frame is in flight, the queue itself is empty
+		assertTrue(sendBlocked.await(5, TimeUnit.SECONDS));
+		link.sendRequest(new GroupAddress(1, 1, 2), Priority.LOW, GroupRead);
+		assertEquals(1, ((Connector.Link<?>) link).queuedFrames());
+
+		release.countDown();
+		awaitCondition(() -> sent.size() == 2);
+		assertEquals(List.of("1/1/1 0000", "1/1/2 0000"), sent);
+	}
+
+	@Test
+	void queuedFramesShareConnectOnSend() throws KNXException, InterruptedException, IOException
+	{
+		// no scheduled reconnects after the initial connect fails
+		final var connector = connector(fastReconnect()).maxConnectAttempts(1)
+				.sendQueue(100, Duration.ofSeconds(10), Duration.ZERO);
+		final var link = newLink(connector, server.address);
+		assertEquals(1, connects.get());
+
+		server.start();
+		connectTime = 100;
+		for (int i = 1; i <= 3; i++)
+			link.sendRequest(new GroupAddress(1, 1, i), Priority.LOW, GroupRead);
+		awaitCondition(() -> sent.size() == 3);
+		assertEquals(2, connects.get());
+	}
+
+	private static ReconnectPolicy fastReconnect()
+	{
+		return new ReconnectPolicy().backoff(Duration.ofMillis(20), Duration.ofMillis(20), 1);
+	}
+
+	private static byte[] groupWrite(final int value)
+	{
+		return new byte[] { 0, (byte) (0x80 | value) };
+	}
+
+	private static Connector connector(final ReconnectPolicy policy)
+	{
+		return new Connector().reconnectOn(true, true, true).maxConnectAttempts(Connector.NoMaxAttempts)
+				.reconnectPolicy(policy);
+	}
+
+	private KNXNetworkLink newLink(final Connector connector, final InetSocketAddress remote)
+		throws KNXException, InterruptedException
+	{
+		final var link = connector.newLink(remote, () -> connect(remote));
+		links.add(link);
+		return link;
+	}
+
+	// connects a socket to the stand-in server, and returns a link proxy for the socket
+	private KNXNetworkLink connect(final InetSocketAddress remote) throws KNXException, InterruptedException
+	{
+		// only scheduled reconnects are subject to the concurrency limit, not the initial connect in the caller thread
+		connects.incrementAndGet();
+		final boolean scheduled = Thread.currentThread().getName().startsWith("Calimero Connector");
+		if (scheduled)
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+		try {
+			Thread.sleep(connectTime);
+			final var socket = new Socket();
+			socket.connect(remote, 1000);
+			return (KNXNetworkLink) Proxy.newProxyInstance(KNXNetworkLink.class.getClassLoader(),
+					new Class<?>[] { KNXNetworkLink.class }, (proxy, method, args) -> {
+						switch (method.getName()) {
+						case "isOpen": return !socket.isClosed();
+						case "getHopCount": return 6;
+						case "getName": return "stand-in link";
+						case "close": socket.close(); return null;
+						case "sendRequest":
+							final var release = blockNextSend;
+							if (release != null) {
+								blockNextSend = null;
+								sendBlocked.countDown();
+								release.await();
+							}
+							sendTimes.add(System.nanoTime());
+							sendThreads.add(Thread.currentThread().getName());
+							sent.add(args[0] + " " + DataUnitBuilder.toHex((byte[]) args[2], ""));
+							return null;
+						case "hashCode": return System.identityHashCode(proxy);
+						case "equals": return proxy == args[0];
+						case "toString": return "stand-in link " + socket.getLocalSocketAddress();
+						default: return null;
+						}
+					});
+		}
+		catch (final IOException e) {
+			throw new KNXException("connecting to " + remote, e);
+		}
+		finally {
+			if (scheduled)
+				active.decrementAndGet();
+		}
+	}
+
+	private static void awaitCondition(final BooleanSupplier condition) throws InterruptedException
+	{
+		final long end = System.nanoTime() + 5_000_000_000L;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < end, "timeout waiting for condition");
+			Thread.sleep(10);
+		}
+	}
+}
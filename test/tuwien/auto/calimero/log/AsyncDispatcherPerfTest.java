@@ -0,0 +1,120 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+
+import performance.base.PerfTestCase;
+import tuwien.auto.calimero.log.LogService.LogLevel;
+
+/**
+ * Throughput of asynchronous logging of small events, comparing the ring buffer dispatcher with submitting each event
+ * as task to a single thread executor.
+ */
+public class AsyncDispatcherPerfTest extends PerfTestCase
+{
+	private static final int Events = 100_000;
+
+	// result sink, so the dispatched events are not optimized away
+	private volatile long events;
+	private final Logger logger = AsyncDispatcherTest.logger(arg -> events++);
+
+	/**
+	 * @param name name of test case
+	 */
+	public AsyncDispatcherPerfTest(final String name)
+	{
+		super(name);
+		warmups = 3;
+		measure = 5;
+		setNormalize(Events);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		printResults();
+		super.tearDown();
+	}
+
+	/**
+	 * Dispatches events over the ring buffer, dropping events on overflow.
+	 *
+	 * @throws InterruptedException on interrupted thread
+	 */
+	public void testRingBufferDrop() throws InterruptedException
+	{
+		dispatch(new AsyncDispatcher(8192, false, "perf dispatcher"));
+	}
+
+	/**
+	 * Dispatches events over the ring buffer, blocking the caller on overflow.
+	 *
+	 * @throws InterruptedException on interrupted thread
+	 */
+	public void testRingBufferBlock() throws InterruptedException
+	{
+		dispatch(new AsyncDispatcher(8192, true, "perf dispatcher"));
+	}
+
+	/**
+	 * Submits each event as task to a single thread executor with an unbounded queue.
+	 *
+	 * @throws InterruptedException on interrupted thread
+	 */
+	public void testExecutor() throws InterruptedException
+	{
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		for (int i = 0; i < Events; i++) {
+			final int event = i;
+			executor.execute(() -> logger.debug("{}", event));
+		}
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	private void dispatch(final AsyncDispatcher dispatcher) throws InterruptedException
+	{
+		for (int i = 0; i < Events; i++)
+			dispatcher.dispatch(logger, LogLevel.DEBUG, null, "{}", i);
+		dispatcher.flush(10_000);
+	}
+}
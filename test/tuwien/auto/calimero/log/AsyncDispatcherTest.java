@@ -0,0 +1,187 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import tuwien.auto.calimero.log.LogService.LogLevel;
+
+/**
+ * Asynchronous dispatch of log events over the bounded ring buffer, with both overflow policies.
+ */
+class AsyncDispatcherTest
+{
+	private final List<Object> logged = new CopyOnWriteArrayList<>();
+
+	// returns a logger with all levels enabled, which passes the first argument of logged events to consumer
+	static Logger logger(final Consumer<Object> consumer)
+	{
+		return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] { Logger.class },
+				(proxy, method, args) -> {
+					if (method.getReturnType() == boolean.class)
+						return true;
+					if (method.getName().equals("getName"))
+						return "test";
+					// first argument following the format, which is optionally preceded by a marker
+					final int format = args[0] instanceof String ? 0 : 1;
+					Object arg = args.length > format + 1 ? args[format + 1] : null;
+					if (arg instanceof Object[])
+						arg = ((Object[]) arg).length > 0 ? ((Object[]) arg)[0] : null;
+					consumer.accept(arg);
+					return null;
+				});
+	}
+
+	private final Logger logger = logger(logged::add);
+
+	@Test
+	void dispatchInOrder() throws InterruptedException
+	{
+		final var dispatcher = new AsyncDispatcher(64, true, "test dispatcher");
+		for (int i = 0; i < 10_000; i++)
+			assertTrue(dispatcher.dispatch(logger, LogLevel.TRACE, null, "{}", i));
+		assertTrue(dispatcher.flush(5000));
+		assertEquals(10_000, logged.size());
+		for (int i = 0; i < logged.size(); i++)
+			assertEquals(i, logged.get(i));
+		assertEquals(0, dispatcher.dropped());
+	}
+
+	@Test
+	void dropOnFullBuffer() throws InterruptedException
+	{
+		final var dispatcher = new AsyncDispatcher(4, false, "test dispatcher");
+		final var blocked = new CountDownLatch(1);
+		final var release = new CountDownLatch(1);
+		final Logger blocking = logger(arg -> {
+			if (arg.equals(0)) {
+				blocked.countDown();
+				try {
+					release.await();
+				}
+				catch (final InterruptedException e) {}
+			}
+			logged.add(arg);
+		});
+
+		dispatcher.dispatch(blocking, LogLevel.DEBUG, null, "{}", 0);
+		blocked.await();
+		for (int i = 1; i <= 4; i++)
+			assertTrue(dispatcher.dispatch(blocking, LogLevel.DEBUG, null, "{}", i));
+		for (int i = 5; i <= 7; i++)
+			assertFalse(dispatcher.dispatch(blocking, LogLevel.DEBUG, null, "{}", i));
+		assertEquals(3, dispatcher.dropped());
+
+		release.countDown();
+		assertTrue(dispatcher.flush(5000));
+		assertEquals(List.of(0, 1, 2, 3, 4), logged);
+	}
+
+	@Test
+	void blockOnFullBuffer() throws InterruptedException
+	{
+		final var dispatcher = new AsyncDispatcher(2, true, "test dispatcher");
+		final var blocked = new CountDownLatch(1);
+		final var release = new CountDownLatch(1);
+		final Logger blocking = logger(arg -> {
+			if (arg.equals(0)) {
+				blocked.countDown();
+				try {
+					release.await();
+				}
+				catch (final InterruptedException e) {}
+			}
+			logged.add(arg);
+		});
+
+		dispatcher.dispatch(blocking, LogLevel.INFO, null, "{}", 0);
+		blocked.await();
+		final var producer = new Thread(() -> {
+			for (int i = 1; i <= 5; i++)
+				dispatcher.dispatch(blocking, LogLevel.INFO, null, "{}", i);
+		});
+		producer.start();
+		while (producer.getState() != Thread.State.WAITING)
+			Thread.sleep(1);
+
+		release.countDown();
+		producer.join(5000);
+		assertTrue(dispatcher.flush(5000));
+		assertEquals(List.of(0, 1, 2, 3, 4, 5), logged);
+		assertEquals(0, dispatcher.dropped());
+	}
+
+	@Test
+	void logWhileDispatching() throws InterruptedException
+	{
+		final var dispatcher = new AsyncDispatcher(1, true, "test dispatcher");
+		final Logger nested = logger(logged::add);
+		final Logger logging = logger(arg -> {
+			logged.add(arg);
+			// fill the buffer, then log from within the dispatcher thread
+			dispatcher.dispatch(nested, LogLevel.WARN, null, "{}", "other");
+			dispatcher.dispatch(nested, LogLevel.WARN, null, "{}", "nested");
+		});
+		dispatcher.dispatch(logging, LogLevel.WARN, null, "{}", "event");
+		assertTrue(dispatcher.flush(5000));
+		assertEquals(List.of("event", "other", "nested"), logged);
+	}
+
+	@Test
+	void logWithNameOfLoggingThread() throws InterruptedException
+	{
+		final var dispatcher = new AsyncDispatcher(16, true, "test dispatcher");
+		final Logger names = logger(arg -> logged.add(Thread.currentThread().getName()));
+		final var producer = new Thread(() -> dispatcher.dispatch(names, LogLevel.INFO, null, "{}", 0), "producer");
+		producer.start();
+		producer.join(5000);
+		dispatcher.dispatch(names, LogLevel.INFO, null, "{}", 1);
+		assertTrue(dispatcher.flush(5000));
+		assertEquals(List.of("producer", Thread.currentThread().getName()), logged);
+	}
+}
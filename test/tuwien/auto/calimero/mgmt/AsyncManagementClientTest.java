@@ -0,0 +1,205 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.KNXRemoteException;
+import tuwien.auto.calimero.KNXTimeoutException;
+
+/**
+ * Asynchronous management services using a simulated link.
+ */
+class AsyncManagementClientTest
+{
+	private static final int Devices = 200;
+	private static final Duration Latency = Duration.ofMillis(200);
+
+	private static final int DeviceDescRead = 0x300;
+	private static final int DeviceDescResponse = 0x340;
+	private static final int MemoryRead = 0x200;
+	private static final int MemoryResponse = 0x240;
+	private static final int PropertyRead = 0x03D5;
+	private static final int PropertyResponse = 0x03D6;
+	private static final int PropertyDescRead = 0x03D8;
+	private static final int PropertyDescResponse = 0x03D9;
+
+	private final IndividualAddress silent = new IndividualAddress(1, 2, 1);
+	private final IndividualAddress memory = new IndividualAddress(1, 2, 2);
+
+	private SimulatedLink link;
+	private ManagementClientImpl mc;
+
+	@BeforeEach
+	void init() throws Exception
+	{
+		link = new SimulatedLink();
+		for (int i = 1; i <= Devices; i++) {
+			final IndividualAddress device = new IndividualAddress(1, 1, i);
+			link.device(device, Latency, apdu -> respond(device, apdu));
+		}
+		link.device(silent, Duration.ofMillis(10), apdu -> null);
+		link.device(memory, Duration.ofMillis(20), AsyncManagementClientTest::respondMemory);
+		mc = new ManagementClientImpl(link);
+		mc.responseTimeout(Duration.ofSeconds(2));
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		mc.detach();
+		link.close();
+	}
+
+	@Test
+	void outstandingPropertyReads() throws Exception
+	{
+		final List<CompletableFuture<byte[]>> reads = new ArrayList<>();
+		final long start = System.nanoTime();
+		for (int i = 1; i <= Devices; i++) {
+			final Destination d = mc.createDestination(new IndividualAddress(1, 1, i), false);
+			d.maxApduLength(15);
+			reads.add(mc.readPropertyAsync(d, 0, PropertyAccess.PID.SERIAL_NUMBER, 1, 1));
+		}
+		CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).get();
+		final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+		for (int i = 1; i <= Devices; i++)
+			assertEquals(new IndividualAddress(1, 1, i), new IndividualAddress(reads.get(i - 1).get()));
+		// sequential reads would take Devices * Latency
+		assertTrue(elapsed.compareTo(Latency.multipliedBy(Devices / 4)) < 0, "reading took " + elapsed);
+	}
+
+	@Test
+	void readDeviceDesc() throws Exception
+	{
+		final Destination d = mc.createDestination(new IndividualAddress(1, 1, 1), false);
+		assertArrayEquals(new byte[] { 0x07, (byte) 0xb0 }, mc.readDeviceDescAsync(d, 0).get());
+	}
+
+	@Test
+	void readPropertyDescOfMissingProperty()
+	{
+		final Destination d = mc.createDestination(new IndividualAddress(1, 1, 1), false);
+		final var e = assertThrows(ExecutionException.class, () -> mc.readPropertyDescAsync(d, 0, 200, 0).get());
+		assertEquals(KNXRemoteException.class, e.getCause().getClass());
+	}
+
+	@Test
+	void timeout()
+	{
+		mc.responseTimeout(Duration.ofMillis(300));
+		final Destination d = mc.createDestination(silent, false);
+		d.maxApduLength(15);
+		final var read = mc.readPropertyAsync(d, 0, PropertyAccess.PID.SERIAL_NUMBER, 1, 1);
+		final var e = assertThrows(ExecutionException.class, read::get);
+		assertEquals(KNXTimeoutException.class, e.getCause().getClass());
+	}
+
+	@Test
+	void invalidArgument()
+	{
+		final Destination d = mc.createDestination(silent, false);
+		assertThrows(KNXIllegalArgumentException.class, () -> mc.readPropertyAsync(d, 256, 1, 1, 1));
+	}
+
+	@Test
+	void queuedMemoryReadsOfConnectionOrientedDestination() throws Exception
+	{
+		final Destination d = mc.createDestination(memory, true);
+		final List<CompletableFuture<byte[]>> reads = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+			reads.add(mc.readMemoryAsync(d, 0x100 + i * 4, 4));
+		for (int i = 0; i < 8; i++)
+			assertArrayEquals(new byte[] { 1, (byte) (i * 4), 0, 0 }, reads.get(i).get());
+		assertEquals(Destination.State.OpenIdle, d.getState());
+	}
+
+	@Test
+	void memoryReadRequiresConnectionOrientedDestination()
+	{
+		final Destination d = mc.createDestination(memory, false);
+		assertThrows(KNXIllegalArgumentException.class, () -> mc.readMemoryAsync(d, 0x100, 4));
+	}
+
+	private static byte[] respond(final IndividualAddress device, final byte[] apdu)
+	{
+		final int service = DataUnitBuilder.getAPDUService(apdu);
+		if (service == DeviceDescRead)
+			return DataUnitBuilder.createLengthOptimizedAPDU(DeviceDescResponse, (byte) 0, (byte) 0x07, (byte) 0xb0);
+		if (service == PropertyDescRead)
+			return DataUnitBuilder.createAPDU(PropertyDescResponse, apdu[2], apdu[3], apdu[4], (byte) 0, (byte) 0,
+					(byte) 0, (byte) 0);
+		if (service == PropertyRead) {
+			final byte[] address = device.toByteArray();
+			return DataUnitBuilder.createAPDU(PropertyResponse, apdu[2], apdu[3], apdu[4], apdu[5], address[0],
+					address[1]);
+		}
+		return null;
+	}
+
+	// responds with the memory address as data
+	private static byte[] respondMemory(final byte[] apdu)
+	{
+		if (DataUnitBuilder.getAPDUService(apdu) != MemoryRead)
+			return null;
+		final int bytes = apdu[1] & 0x3f;
+		final byte[] asdu = new byte[3 + bytes];
+		asdu[0] = (byte) bytes;
+		asdu[1] = apdu[2];
+		asdu[2] = apdu[3];
+		asdu[3] = apdu[2];
+		asdu[4] = apdu[3];
+		return DataUnitBuilder.createLengthOptimizedAPDU(MemoryResponse, asdu);
+	}
+}
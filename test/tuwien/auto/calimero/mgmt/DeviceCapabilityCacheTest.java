@@ -0,0 +1,238 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.IndividualAddress;
+
+/**
+ * Management services and procedures skip requests for cached device capabilities.
+ */
+class DeviceCapabilityCacheTest
+{
+	private static final int DeviceDescRead = 0x0300;
+	private static final int DeviceDescResponse = 0x0340;
+	private static final int AuthorizeRead = 0x03D1;
+	private static final int AuthorizeResponse = 0x03D2;
+	private static final int PropertyRead = 0x03D5;
+	private static final int PropertyResponse = 0x03D6;
+
+	private static final byte[] SerialNumber = { 0, 1, 2, 3, 4, 5 };
+
+	private final IndividualAddress address = new IndividualAddress(1, 1, 5);
+	private final Map<Integer, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+	private SimulatedLink link;
+	private TransportLayerImpl tl;
+	private ManagementClientImpl mc;
+	private ManagementProceduresImpl mp;
+
+	@BeforeEach
+	void init() throws Exception
+	{
+		link = new SimulatedLink();
+		link.getKNXMedium().setMaxApduLength(254);
+		link.device(address, Duration.ofMillis(1), this::respond);
+		tl = new TransportLayerImpl(link);
+		mc = new ManagementClientImpl(link, tl);
+		mc.responseTimeout(Duration.ofMillis(300));
+		mp = new ManagementProceduresImpl(mc, tl);
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		mp.detach();
+		mc.detach();
+		tl.detach();
+		link.close();
+	}
+
+	private int requests(final int service)
+	{
+		return requests.getOrDefault(service, new AtomicInteger()).get();
+	}
+
+	private byte[] respond(final byte[] apdu)
+	{
+		final int service = DataUnitBuilder.getAPDUService(apdu);
+		requests.computeIfAbsent(service, __ -> new AtomicInteger()).incrementAndGet();
+		switch (service) {
+		case DeviceDescRead:
+			return DataUnitBuilder.createLengthOptimizedAPDU(DeviceDescResponse, (byte) 0, (byte) 0x07, (byte) 0xb0);
+		case AuthorizeRead:
+			return DataUnitBuilder.createAPDU(AuthorizeResponse, (byte) 2);
+		case PropertyRead: {
+			final int pid = apdu[3] & 0xff;
+			if (pid == PropertyAccess.PID.MAX_APDULENGTH)
+				return propertyResponse(apdu, (byte) 0, (byte) 254);
+			if (pid == PropertyAccess.PID.SERIAL_NUMBER)
+				return propertyResponse(apdu, SerialNumber);
+			return propertyResponse(apdu, (byte) 0);
+		}
+		default:
+			return null;
+		}
+	}
+
+	private static byte[] propertyResponse(final byte[] request, final byte... data)
+	{
+		final byte[] asdu = new byte[4 + data.length];
+		System.arraycopy(request, 2, asdu, 0, 4);
+		System.arraycopy(data, 0, asdu, 4, data.length);
+		return DataUnitBuilder.createAPDU(PropertyResponse, asdu);
+	}
+
+	@Test
+	void deviceDescriptorIsCached() throws Exception
+	{
+		try (var dst = mc.createDestination(address, false)) {
+			assertArrayEquals(new byte[] { 0x07, (byte) 0xb0 }, mc.cachedDeviceDesc(dst, 0));
+			assertArrayEquals(new byte[] { 0x07, (byte) 0xb0 }, mc.cachedDeviceDesc(dst, 0));
+		}
+		assertEquals(1, requests(DeviceDescRead));
+	}
+
+	@Test
+	void readDeviceDescAlwaysSendsRequest() throws Exception
+	{
+		try (var dst = mc.createDestination(address, false)) {
+			mc.cachedDeviceDesc(dst, 0);
+			assertArrayEquals(new byte[] { 0x07, (byte) 0xb0 }, mc.readDeviceDesc(dst, 0));
+			assertArrayEquals(new byte[] { 0x07, (byte) 0xb0 }, mc.readDeviceDescAsync(dst, 0).get());
+		}
+		assertEquals(3, requests(DeviceDescRead));
+	}
+
+	@Test
+	void restartInvalidates() throws Exception
+	{
+		try (var dst = mc.createDestination(address, false)) {
+			mc.cachedDeviceDesc(dst, 0);
+			mc.restart(dst);
+			mc.cachedDeviceDesc(dst, 0);
+		}
+		assertEquals(2, requests(DeviceDescRead));
+	}
+
+	@Test
+	void addressWriteInvalidates() throws Exception
+	{
+		try (var dst = mc.createDestination(address, false)) {
+			mc.cachedDeviceDesc(dst, 0);
+			mc.writeAddress(new IndividualAddress(1, 1, 6));
+			mc.cachedDeviceDesc(dst, 0);
+		}
+		assertEquals(2, requests(DeviceDescRead));
+	}
+
+	@Test
+	void staticPropertiesAreSharedByDestinations() throws Exception
+	{
+		for (int i = 0; i < 3; i++) {
+			try (var dst = mc.createDestination(address, true)) {
+				assertArrayEquals(SerialNumber, mc.readProperty(dst, 0, PropertyAccess.PID.SERIAL_NUMBER, 1, 1));
+				// max. APDU length is queried for the first property read
+				mc.readProperty(dst, 0, PropertyAccess.PID.PROGMODE, 1, 1);
+			}
+		}
+		assertEquals(1 + 1 + 3, requests(PropertyRead));
+	}
+
+	@Test
+	void memoryTransfersReuseMaxApduLength() throws Exception
+	{
+		mp.readMemory(address, 0x4000, 0);
+		mp.readMemory(address, 0x4000, 0);
+		assertEquals(1, requests(PropertyRead));
+	}
+
+	@Test
+	void addressCheckDoesNotUseCache() throws Exception
+	{
+		try (var dst = mc.createDestination(address, false)) {
+			mc.cachedDeviceDesc(dst, 0);
+		}
+		mp.isAddressOccupied(address);
+		assertEquals(2, requests(DeviceDescRead));
+	}
+
+	@Test
+	void authorizationIsValidWhileConnected() throws Exception
+	{
+		final byte[] key = { 1, 2, 3, 4 };
+		try (var dst = mc.createDestination(address, true)) {
+			assertEquals(2, mc.authorize(dst, key));
+			assertEquals(2, mc.authorize(dst, key));
+			assertEquals(1, requests(AuthorizeRead));
+			// another key is authorized again
+			mc.authorize(dst, new byte[4]);
+			assertEquals(2, requests(AuthorizeRead));
+
+			tl.disconnect(dst);
+			mc.authorize(dst, new byte[4]);
+			assertEquals(3, requests(AuthorizeRead));
+		}
+	}
+
+	@Test
+	void capabilitiesExpire() throws Exception
+	{
+		final var cache = new DeviceCapabilityCache(Duration.ofMillis(20));
+		final var capabilities = cache.get(address);
+		capabilities.descriptor(0, new byte[2]);
+		assertSame(capabilities, cache.get(address));
+		Thread.sleep(30);
+		final var expired = cache.get(address);
+		assertNotSame(capabilities, expired);
+		assertEquals(false, expired.descriptor(0).isPresent());
+	}
+}
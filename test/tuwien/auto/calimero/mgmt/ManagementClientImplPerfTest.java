@@ -0,0 +1,151 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import performance.base.PerfTestCase;
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.IndividualAddress;
+
+/**
+ * Response correlation with 64 concurrent outstanding property read requests to different devices, using a simulated
+ * link with a response latency of 20 ms per device.
+ */
+public class ManagementClientImplPerfTest extends PerfTestCase
+{
+	private static final int Requests = 64;
+	private static final int PropertyRead = 0x03D5;
+	private static final int PropertyResponse = 0x03D6;
+
+	private SimulatedLink link;
+	private ManagementClientImpl mc;
+	private final List<Destination> destinations = new ArrayList<>();
+	private ExecutorService executor;
+
+	/**
+	 * @param name name of test case
+	 */
+	public ManagementClientImplPerfTest(final String name)
+	{
+		super(name);
+		warmups = 3;
+		measure = 10;
+	}
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		link = new SimulatedLink();
+		for (int i = 1; i <= Requests; i++) {
+			final IndividualAddress device = new IndividualAddress(1, 1, i);
+			link.device(device, Duration.ofMillis(20), apdu -> {
+				if (DataUnitBuilder.getAPDUService(apdu) != PropertyRead)
+					return null;
+				final byte[] address = device.toByteArray();
+				return DataUnitBuilder.createAPDU(PropertyResponse, apdu[2], apdu[3], apdu[4], apdu[5], address[0],
+						address[1]);
+			});
+		}
+		mc = new ManagementClientImpl(link);
+		for (int i = 1; i <= Requests; i++)
+			destinations.add(mc.createDestination(new IndividualAddress(1, 1, i), false));
+		executor = Executors.newFixedThreadPool(Requests);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		executor.shutdownNow();
+		mc.detach();
+		link.close();
+		printResults();
+	}
+
+	/**
+	 * All requests outstanding at the same time.
+	 *
+	 * @throws Exception on error
+	 */
+	public void testConcurrentRequests() throws Exception
+	{
+		final List<Callable<byte[]>> reads = new ArrayList<>();
+		for (final Destination d : destinations)
+			reads.add(() -> mc.readProperty(d, 0, PropertyAccess.PID.SERIAL_NUMBER, 1, 1));
+		final List<Future<byte[]>> results = executor.invokeAll(reads);
+		for (int i = 0; i < Requests; i++)
+			assertResponse(destinations.get(i), results.get(i).get());
+	}
+
+	/**
+	 * All requests outstanding at the same time, using the asynchronous service from the test thread.
+	 *
+	 * @throws Exception on error
+	 */
+	public void testAsyncRequests() throws Exception
+	{
+		final List<CompletableFuture<byte[]>> reads = new ArrayList<>();
+		for (final Destination d : destinations)
+			reads.add(mc.readPropertyAsync(d, 0, PropertyAccess.PID.SERIAL_NUMBER, 1, 1));
+		for (int i = 0; i < Requests; i++)
+			assertResponse(destinations.get(i), reads.get(i).get());
+	}
+
+	/**
+	 * One request after the other, for comparison.
+	 *
+	 * @throws Exception on error
+	 */
+	public void testSequentialRequests() throws Exception
+	{
+		for (final Destination d : destinations.subList(0, Requests / 4))
+			assertResponse(d, mc.readProperty(d, 0, PropertyAccess.PID.SERIAL_NUMBER, 1, 1));
+	}
+
+	private static void assertResponse(final Destination d, final byte[] data)
+	{
+		assertEquals(d.getAddress(), new IndividualAddress(data));
+	}
+}
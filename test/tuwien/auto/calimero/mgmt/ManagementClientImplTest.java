@@ -36,8 +36,10 @@
 
 package tuwien.auto.calimero.mgmt;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -330,6 +332,21 @@ class ManagementClientImplTest
 		//assertTrue(Arrays.equals(desc, cmp));
 	}
 
+	@Test
+	void readPropertyDescsPipelined() throws KNXException, InterruptedException
+	{
+		final ManagementClientImpl impl = (ManagementClientImpl) mc;
+		final List<byte[]> descs = impl.readPropertyDescs(dcl, 0, 0, 8);
+		assertEquals(8, descs.size());
+		for (int i = 0; i < descs.size(); i++) {
+			final byte[] desc = descs.get(i);
+			assertNotNull(desc, "no response for property index " + i);
+			if (desc.length > 0)
+				assertArrayEquals(mc.readPropertyDesc(dcl, 0, 0, i), desc);
+		}
+		assertThrows(KNXIllegalArgumentException.class, () -> impl.readPropertyDescs(dco, 0, 0, 8));
+	}
+
 	@Test
 	void testWriteAddressIndividualAddress() throws InterruptedException, KNXException
 	{
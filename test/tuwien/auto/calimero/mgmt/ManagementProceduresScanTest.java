@@ -0,0 +1,138 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.IndividualAddress;
+
+/**
+ * Network scans over a simulated bus, where devices acknowledge T-Connects and disconnect idle connections, and
+ * frames to addresses without a device are negatively confirmed.
+ */
+class ManagementProceduresScanTest
+{
+	private static final Duration SubnetworkSpacing = Duration.ofMillis(10);
+	private static final Duration IdleDisconnect = Duration.ofMillis(300);
+
+	private final List<IndividualAddress> lines = List.of(new IndividualAddress(1, 1, 0),
+			new IndividualAddress(1, 2, 0), new IndividualAddress(1, 3, 0), new IndividualAddress(1, 4, 0));
+	private final Set<IndividualAddress> devices = Set.of(new IndividualAddress(1, 1, 1),
+			new IndividualAddress(1, 1, 255), new IndividualAddress(1, 2, 7), new IndividualAddress(1, 4, 100));
+	private final Set<IndividualAddress> routers = Set.of(new IndividualAddress(1, 1, 0),
+			new IndividualAddress(1, 2, 0), new IndividualAddress(2, 0, 0));
+
+	private SimulatedLink link;
+	private ManagementProceduresImpl mp;
+
+	@BeforeEach
+	void init() throws Exception
+	{
+		link = new SimulatedLink().frameTime(Duration.ofMillis(1)).negativeConfirmations()
+				.idleDisconnect(IdleDisconnect);
+		for (final var device : devices)
+			link.device(device, Duration.ofMillis(5), apdu -> null);
+		for (final var router : routers)
+			link.device(router, Duration.ofMillis(5), apdu -> null);
+		mp = new ManagementProceduresImpl(link);
+		mp.scanLinkSpacing = Duration.ofMillis(2);
+		mp.scanSubnetworkSpacing = SubnetworkSpacing;
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		mp.detach();
+		link.close();
+	}
+
+	@Test
+	void scanLinesConcurrently() throws Exception
+	{
+		final Set<IndividualAddress> found = ConcurrentHashMap.newKeySet();
+		mp.scanNetworkDevices(lines, found::add);
+		assertEquals(devices, found);
+
+		// scanning one line after the other sends all requests of a line before the requests of the next line;
+		// with concurrent scans, requests to other lines are sent while the first line is still being scanned
+		final var firstLine = lines.get(0);
+		final List<Integer> lineOfRequest = link.destinations().stream().filter(IndividualAddress.class::isInstance)
+				.map(IndividualAddress.class::cast).map(d -> d.getArea() << 4 | d.getLine())
+				.collect(Collectors.toList());
+		final int lineId = firstLine.getArea() << 4 | firstLine.getLine();
+		final int first = lineOfRequest.indexOf(lineId);
+		final int last = lineOfRequest.lastIndexOf(lineId);
+		final long otherLines = lineOfRequest.subList(first, last).stream().filter(l -> l != lineId).distinct().count();
+		assertEquals(lines.size() - 1, otherLines, "lines scanned concurrently with line " + firstLine);
+	}
+
+	@Test
+	void streamDevicesDuringScan() throws Exception
+	{
+		final long start = System.nanoTime();
+		final var first = new long[1];
+		mp.scanNetworkDevices(1, 1, device -> {
+			if (first[0] == 0)
+				first[0] = System.nanoTime();
+		});
+		final long end = System.nanoTime();
+		assertTrue(first[0] > start && first[0] < end - IdleDisconnect.toNanos(), "device not reported during scan");
+	}
+
+	@Test
+	void scanRouters() throws Exception
+	{
+		final long start = System.nanoTime();
+		final var found = mp.scanNetworkRouters();
+		final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+		assertEquals(routers, Set.of(found));
+		// completes once all acknowledged routers disconnected, without waiting the full disconnect timeout
+		assertTrue(elapsed.compareTo(Duration.ofSeconds(3)) < 0, "scan took " + elapsed);
+	}
+}
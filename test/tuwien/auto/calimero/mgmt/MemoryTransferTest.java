@@ -0,0 +1,340 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXRemoteException;
+
+/**
+ * Memory transfers of management procedures with a simulated device memory.
+ */
+class MemoryTransferTest
+{
+	private static final int MemoryRead = 0x0200;
+	private static final int MemoryResponse = 0x0240;
+	private static final int MemoryWrite = 0x0280;
+	private static final int MemoryExtendedWrite = 0b0111111011;
+	private static final int MemoryExtendedWriteResponse = 0b0111111100;
+	private static final int MemoryExtendedRead = 0b0111111101;
+	private static final int MemoryExtendedReadResponse = 0b0111111110;
+	private static final int PropertyRead = 0x03D5;
+	private static final int PropertyResponse = 0x03D6;
+	private static final int PropertyWrite = 0x03D7;
+
+	private static final int Size = 20 * 1024;
+	private static final int Start = 0x4000;
+
+	private final IndividualAddress address = new IndividualAddress(1, 1, 5);
+	private final byte[] data = new byte[Size];
+
+	private SimulatedLink link;
+	private TransportLayerImpl tl;
+	private ManagementClientImpl mc;
+	private ManagementProceduresImpl mp;
+
+	/** Simulated device with 64 K of memory. */
+	private static final class Device
+	{
+		final byte[] memory = new byte[0x10000];
+		final int maxApdu;
+		final boolean extendedServices;
+		final boolean deviceControl;
+		volatile int control;
+		// device accepts the verify bit in device control, but might not respond with the written memory
+		volatile boolean verifyResponses = true;
+		volatile boolean corruptVerifyResponses;
+		volatile boolean rejectControlRestore;
+		final Map<Integer, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+		Device(final int maxApdu, final boolean extendedServices, final boolean deviceControl)
+		{
+			this.maxApdu = maxApdu;
+			this.extendedServices = extendedServices;
+			this.deviceControl = deviceControl;
+		}
+
+		int requests(final int service)
+		{
+			return requests.getOrDefault(service, new AtomicInteger()).get();
+		}
+
+		byte[] respond(final byte[] apdu)
+		{
+			final int service = DataUnitBuilder.getAPDUService(apdu);
+			requests.computeIfAbsent(service, __ -> new AtomicInteger()).incrementAndGet();
+			switch (service) {
+			case MemoryRead: {
+				final int bytes = apdu[1] & 0x3f;
+				final int addr = (apdu[2] & 0xff) << 8 | apdu[3] & 0xff;
+				return memoryResponse(addr, Arrays.copyOfRange(memory, addr, addr + bytes));
+			}
+			case MemoryWrite: {
+				final int addr = (apdu[2] & 0xff) << 8 | apdu[3] & 0xff;
+				System.arraycopy(apdu, 4, memory, addr, apdu.length - 4);
+				// verify mode
+				if ((control & 0x04) == 0 || !verifyResponses)
+					return null;
+				final byte[] written = Arrays.copyOfRange(memory, addr, addr + apdu.length - 4);
+				if (corruptVerifyResponses)
+					written[0] ^= 0xff;
+				return memoryResponse(addr, written);
+			}
+			case MemoryExtendedRead: {
+				if (!extendedServices)
+					return null;
+				final int bytes = apdu[2] & 0xff;
+				final int addr = (apdu[3] & 0xff) << 16 | (apdu[4] & 0xff) << 8 | apdu[5] & 0xff;
+				final byte[] asdu = new byte[4 + bytes];
+				System.arraycopy(apdu, 3, asdu, 1, 3);
+				System.arraycopy(memory, addr, asdu, 4, bytes);
+				assertTrue(asdu.length + 2 <= maxApdu + 1, "APDU exceeds device maximum");
+				return DataUnitBuilder.createAPDU(MemoryExtendedReadResponse, asdu);
+			}
+			case MemoryExtendedWrite: {
+				if (!extendedServices)
+					return null;
+				final int addr = (apdu[3] & 0xff) << 16 | (apdu[4] & 0xff) << 8 | apdu[5] & 0xff;
+				System.arraycopy(apdu, 6, memory, addr, apdu.length - 6);
+				return DataUnitBuilder.createAPDU(MemoryExtendedWriteResponse, (byte) 0, apdu[3], apdu[4], apdu[5]);
+			}
+			case PropertyRead: {
+				final int pid = apdu[3] & 0xff;
+				if (pid == PropertyAccess.PID.MAX_APDULENGTH)
+					return propertyResponse(apdu, 1, (byte) 0, (byte) maxApdu);
+				if (pid == PropertyAccess.PID.DEVICE_CONTROL && deviceControl)
+					return propertyResponse(apdu, 1, (byte) control);
+				return propertyResponse(apdu, 0);
+			}
+			case PropertyWrite: {
+				if ((apdu[3] & 0xff) != PropertyAccess.PID.DEVICE_CONTROL || !deviceControl)
+					return propertyResponse(apdu, 0);
+				if (rejectControlRestore && (apdu[6] & 0x04) == 0)
+					return propertyResponse(apdu, 0);
+				control = apdu[6] & 0xff;
+				return propertyResponse(apdu, 1, (byte) control);
+			}
+			default:
+				return null;
+			}
+		}
+
+		private byte[] memoryResponse(final int addr, final byte[] data)
+		{
+			final byte[] asdu = new byte[3 + data.length];
+			asdu[0] = (byte) data.length;
+			asdu[1] = (byte) (addr >> 8);
+			asdu[2] = (byte) addr;
+			System.arraycopy(data, 0, asdu, 3, data.length);
+			assertTrue(asdu.length + 1 <= maxApdu + 1, "APDU exceeds device maximum");
+			return DataUnitBuilder.createLengthOptimizedAPDU(MemoryResponse, asdu);
+		}
+
+		private static byte[] propertyResponse(final byte[] request, final int elements, final byte... data)
+		{
+			final byte[] asdu = new byte[4 + data.length];
+			asdu[0] = request[2];
+			asdu[1] = request[3];
+			asdu[2] = (byte) (elements << 4 | request[4] & 0xf);
+			asdu[3] = request[5];
+			System.arraycopy(data, 0, asdu, 4, data.length);
+			return DataUnitBuilder.createAPDU(PropertyResponse, asdu);
+		}
+	}
+
+	@BeforeEach
+	void init() throws Exception
+	{
+		new Random(7).nextBytes(data);
+		link = new SimulatedLink();
+		link.getKNXMedium().setMaxApduLength(254);
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		if (mp != null)
+			mp.detach();
+		if (mc != null)
+			mc.detach();
+		if (tl != null)
+			tl.detach();
+		link.close();
+	}
+
+	private Device device(final int maxApdu, final boolean extendedServices, final boolean deviceControl)
+		throws Exception
+	{
+		final Device device = new Device(maxApdu, extendedServices, deviceControl);
+		link.device(address, Duration.ofMillis(1), device::respond);
+		tl = new TransportLayerImpl(link);
+		mc = new ManagementClientImpl(link, tl);
+		mc.responseTimeout(Duration.ofMillis(300));
+		mp = new ManagementProceduresImpl(mc, tl);
+		return device;
+	}
+
+	@Test
+	void readWithExtendedMemoryServices() throws Exception
+	{
+		final Device device = device(254, true, false);
+		System.arraycopy(data, 0, device.memory, Start, Size);
+
+		final List<Integer> progress = new ArrayList<>();
+		final long start = System.nanoTime();
+		final byte[] read = mp.readMemory(address, Start, Size, (transferred, total, throughput) -> {
+			assertEquals(Size, total);
+			assertTrue(throughput > 0);
+			progress.add(transferred);
+		});
+		final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+		assertArrayEquals(data, read);
+
+		final int chunks = (Size + 247) / 248;
+		assertEquals(chunks, device.requests(MemoryExtendedRead));
+		assertEquals(0, device.requests(MemoryRead));
+		assertEquals(chunks, progress.size());
+		assertEquals(Size, progress.get(progress.size() - 1));
+		// 20 KB with 12 byte chunks would take more than 1700 round trips
+		System.out.println("read " + Size + " bytes in " + chunks + " requests, " + elapsed.toMillis() + " ms");
+	}
+
+	@Test
+	void fallbackToStandardMemoryServices() throws Exception
+	{
+		final Device device = device(254, false, false);
+		System.arraycopy(data, 0, device.memory, Start, 1024);
+
+		assertArrayEquals(Arrays.copyOf(data, 1024), mp.readMemory(address, Start, 1024));
+		// one probe, then standard services with 63 bytes
+		assertEquals(1, device.requests(MemoryExtendedRead));
+		assertEquals((1024 + 62) / 63, device.requests(MemoryRead));
+
+		// the result of the probe is remembered
+		mp.readMemory(address, Start, 100);
+		assertEquals(1, device.requests(MemoryExtendedRead));
+	}
+
+	@Test
+	void readWithStandardFrames() throws Exception
+	{
+		final Device device = device(15, true, false);
+		System.arraycopy(data, 0, device.memory, Start, 120);
+
+		assertArrayEquals(Arrays.copyOf(data, 120), mp.readMemory(address, Start, 120));
+		assertEquals(0, device.requests(MemoryExtendedRead));
+		assertEquals(10, device.requests(MemoryRead));
+	}
+
+	@Test
+	void writeVerifiedByServer() throws Exception
+	{
+		final Device device = device(254, false, true);
+		final byte[] write = Arrays.copyOf(data, 2000);
+		mp.writeMemory(address, Start, write, true, false);
+
+		// 14 bytes of header precede the data
+		assertArrayEquals(write, Arrays.copyOfRange(device.memory, Start + 14, Start + 14 + write.length));
+		// no read back, and device control restored
+		assertEquals(0, device.requests(MemoryRead));
+		assertEquals(0, device.control);
+	}
+
+	@Test
+	void writeWithReadBack() throws Exception
+	{
+		final Device device = device(254, true, false);
+		final byte[] write = Arrays.copyOf(data, 2000);
+		mp.writeMemory(address, Start, write, true, false);
+
+		assertArrayEquals(write, Arrays.copyOfRange(device.memory, Start + 14, Start + 14 + write.length));
+		final int chunks = (write.length + 14 + 247) / 248;
+		assertEquals(chunks, device.requests(MemoryExtendedWrite));
+		assertEquals(chunks, device.requests(MemoryExtendedRead));
+	}
+
+	@Test
+	void writeFallsBackToReadBackWithoutServerVerificationResponses() throws Exception
+	{
+		final Device device = device(254, false, true);
+		device.verifyResponses = false;
+		final byte[] write = Arrays.copyOf(data, 200);
+		mp.writeMemory(address, Start, write, true, false);
+
+		assertArrayEquals(write, Arrays.copyOfRange(device.memory, Start + 14, Start + 14 + write.length));
+		assertEquals((write.length + 14 + 62) / 63, device.requests(MemoryRead));
+		assertEquals(0, device.control);
+
+		// a timeout does not rule out server verification, the next write probes it again
+		final int controlWrites = device.requests(PropertyWrite);
+		device.verifyResponses = true;
+		mp.writeMemory(address, Start, write, true, false);
+		assertEquals(controlWrites + 2, device.requests(PropertyWrite));
+		assertEquals((write.length + 14 + 62) / 63, device.requests(MemoryRead));
+	}
+
+	@Test
+	void failedDeviceControlRestoreDoesNotReplaceWriteException() throws Exception
+	{
+		final Device device = device(254, false, true);
+		device.corruptVerifyResponses = true;
+		device.rejectControlRestore = true;
+
+		final var e = assertThrows(KNXRemoteException.class,
+				() -> mp.writeMemory(address, Start, Arrays.copyOf(data, 100), true, false));
+		assertTrue(e.getMessage().contains("verify failed"), e.getMessage());
+		assertEquals(1, e.getSuppressed().length);
+	}
+}
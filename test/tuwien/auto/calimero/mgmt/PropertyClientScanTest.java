@@ -0,0 +1,123 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.KNXRemoteException;
+import tuwien.auto.calimero.KNXTimeoutException;
+
+class PropertyClientScanTest
+{
+	private static final int Properties = 12;
+
+	private final AtomicInteger descriptionRequests = new AtomicInteger();
+	// property index of the next description request which times out, -1 for no timeout
+	private volatile int timeoutAt = -1;
+
+	// interface object 0 with a fixed number of properties, answering every request immediately
+	private final PropertyAdapter adapter = new PropertyAdapter() {
+		@Override
+		public void setProperty(final int objIndex, final int pid, final int start, final int elements,
+			final byte... data) {}
+
+		@Override
+		public byte[] getProperty(final int objIndex, final int pid, final int start, final int elements)
+		{
+			return new byte[] { 0, 1 };
+		}
+
+		@Override
+		public byte[] getDescription(final int objIndex, final int pid, final int propIndex)
+			throws KNXException
+		{
+			descriptionRequests.incrementAndGet();
+			if (propIndex == timeoutAt) {
+				timeoutAt = -1;
+				throw new KNXTimeoutException("no description response");
+			}
+			if (propIndex >= Properties)
+				throw new KNXRemoteException("no property at index " + propIndex);
+			return new byte[] { (byte) objIndex, (byte) (propIndex + 1), (byte) propIndex, 0x04, 0, 1, 0x33 };
+		}
+
+		@Override
+		public String getName()
+		{
+			return "stand-in adapter";
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return true;
+		}
+
+		@Override
+		public void close() {}
+	};
+
+	@Test
+	void scanCutShortByTimeoutIsNotCached() throws KNXException, InterruptedException, KNXFormatException
+	{
+		try (PropertyClient pc = new PropertyClient(adapter)) {
+			timeoutAt = 10;
+			final List<Description> truncated = new ArrayList<>();
+			pc.scanProperties(0, true, truncated::add);
+			assertEquals(10, truncated.size());
+
+			final List<Description> complete = new ArrayList<>();
+			pc.scanProperties(0, true, complete::add);
+			assertEquals(Properties, complete.size());
+
+			// a complete scan is cached
+			final int requests = descriptionRequests.get();
+			final List<Description> cached = new ArrayList<>();
+			pc.scanProperties(0, true, cached::add);
+			assertEquals(Properties, cached.size());
+			assertEquals(requests, descriptionRequests.get());
+		}
+	}
+}
@@ -42,6 +42,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
@@ -322,6 +324,27 @@ class PropertyClientTest
 		assertTrue(k.get());
 	}
 
+	@Test
+	void scanPropertiesConnectionless() throws KNXException, InterruptedException
+	{
+		final List<Description> connectionOriented = new ArrayList<>();
+		rem.scanProperties(0, true, connectionOriented::add);
+
+		final List<Description> pipelined = new ArrayList<>();
+		final List<Description> cached = new ArrayList<>();
+		try (PropertyClient connless = new PropertyClient(new RemotePropertyServiceAdapter(lnk, remote, null, false))) {
+			connless.scanProperties(0, true, pipelined::add);
+			connless.scanProperties(0, true, cached::add);
+		}
+		assertEquals(connectionOriented.size(), pipelined.size());
+		assertEquals(pipelined.size(), cached.size());
+		for (int i = 0; i < pipelined.size(); i++) {
+			assertEquals(connectionOriented.get(i).getPID(), pipelined.get(i).getPID());
+			assertEquals(pipelined.get(i).getPID(), cached.get(i).getPID());
+			assertEquals(pipelined.get(i).getCurrentElements(), cached.get(i).getCurrentElements());
+		}
+	}
+
 	/**
 	 * Test method for {@link PropertyClient#setProperty(int, int, int, int, byte[])}.
 	 *
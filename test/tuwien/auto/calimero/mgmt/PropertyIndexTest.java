@@ -0,0 +1,165 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.Util;
+import tuwien.auto.calimero.mgmt.PropertyClient.Property;
+import tuwien.auto.calimero.mgmt.PropertyClient.PropertyKey;
+
+class PropertyIndexTest
+{
+	private static final String PIDResource = Util.getPath() + "properties.xml";
+
+	private Collection<Property> definitions;
+
+	@BeforeEach
+	void init()
+	{
+		definitions = new PropertyClient.XmlPropertyDefinitions().load(PIDResource);
+	}
+
+	@Test
+	void lookup()
+	{
+		final PropertyIndex index = PropertyIndex.Empty.with(definitions);
+		for (final Property p : definitions)
+			if (p.getPID() >= 0)
+				assertSame(p, index.get(p.getObjectType(), p.getPID()));
+		assertNull(index.get(0, 0xfff));
+		assertNull(index.get(0x7fff, 1));
+		assertNull(index.get(0, -1));
+	}
+
+	@Test
+	void copyOnWrite()
+	{
+		final Property first = new Property(100, "PID_FIRST", "first", 1000, 4, null);
+		final PropertyIndex index = PropertyIndex.Empty.with(Arrays.asList(first));
+
+		final Property replaced = new Property(100, "PID_REPLACED", "replaced", 1000, 4, null);
+		final Property other = new Property(3, "PID_OTHER", "other", 999, 4, null);
+		final PropertyIndex updated = index.with(Arrays.asList(replaced, other));
+
+		assertSame(first, index.get(1000, 100));
+		assertEquals(1, index.size());
+		assertSame(replaced, updated.get(1000, 100));
+		assertSame(other, updated.get(999, 3));
+		assertEquals(2, updated.size());
+
+		final PropertyIndex removed = updated.without(1000, 100);
+		assertNull(removed.get(1000, 100));
+		assertSame(replaced, updated.get(1000, 100));
+		assertEquals(1, removed.size());
+	}
+
+	@Test
+	void definitionsView() throws Exception
+	{
+		try (PropertyClient pc = new PropertyClient(new PropertyAdapterStub())) {
+			pc.addDefinitions(definitions);
+			final Map<PropertyKey, Property> map = pc.getDefinitions();
+			final int size = map.size();
+			assertTrue(size > 0);
+
+			final Property p = new Property(7, "PID_TEST", "test", 0, 4, null);
+			final PropertyKey key = new PropertyKey(0, 7);
+			final Property old = map.put(key, p);
+			assertSame(p, map.get(key));
+			assertEquals(old == null ? size + 1 : size, map.size());
+
+			map.remove(key);
+			assertNull(map.get(key));
+
+			int global = 0;
+			for (final Iterator<PropertyKey> i = map.keySet().iterator(); i.hasNext();)
+				if (i.next().isGlobal()) {
+					i.remove();
+					global++;
+				}
+			assertTrue(global > 0);
+			assertEquals(size - global, map.size());
+			map.keySet().forEach(k -> assertTrue(!k.isGlobal()));
+		}
+	}
+
+	private static final class PropertyAdapterStub implements PropertyAdapter
+	{
+		@Override
+		public void setProperty(final int objIndex, final int pid, final int start, final int elements,
+			final byte... data) {}
+
+		@Override
+		public byte[] getProperty(final int objIndex, final int pid, final int start, final int elements)
+		{
+			return new byte[0];
+		}
+
+		@Override
+		public byte[] getDescription(final int objIndex, final int pid, final int propIndex)
+		{
+			return new byte[7];
+		}
+
+		@Override
+		public String getName()
+		{
+			return "stub";
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return true;
+		}
+
+		@Override
+		public void close() {}
+	}
+}
@@ -0,0 +1,320 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXAckTimeoutException;
+import tuwien.auto.calimero.KNXAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.cemi.CEMILDataEx;
+import tuwien.auto.calimero.internal.EventListeners;
+import tuwien.auto.calimero.link.KNXLinkClosedException;
+import tuwien.auto.calimero.link.KNXNetworkLink;
+import tuwien.auto.calimero.link.NetworkLinkListener;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.link.medium.TPSettings;
+
+/**
+ * Network link simulating remote KNX devices, which respond to transport layer and application layer requests after a
+ * configurable per-device latency. Indications are delivered by a single thread, like the receiver of a real link.
+ */
+final class SimulatedLink implements KNXNetworkLink
+{
+	private static final int Connect = 0x80;
+	private static final int Disconnect = 0x81;
+	private static final int DataConnected = 0x40;
+	private static final int Ack = 0xC2;
+	private static final int Nack = 0xC3;
+
+	private static final class Device
+	{
+		final IndividualAddress address;
+		final Duration latency;
+		final UnaryOperator<byte[]> responder;
+		int seqReceive;
+		int seqSend;
+
+		Device(final IndividualAddress address, final Duration latency, final UnaryOperator<byte[]> responder)
+		{
+			this.address = address;
+			this.latency = latency;
+			this.responder = responder;
+		}
+	}
+
+	private final Map<IndividualAddress, Device> devices = new ConcurrentHashMap<>();
+	private final EventListeners<NetworkLinkListener> listeners = new EventListeners<>();
+	private final ScheduledExecutorService receiver = Executors.newSingleThreadScheduledExecutor();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final List<KNXAddress> destinations = new CopyOnWriteArrayList<>();
+	private KNXMediumSettings medium = new TPSettings(new IndividualAddress(0, 0, 0xff));
+	private volatile Duration frameTime = Duration.ZERO;
+	private volatile boolean negativeConfirmations;
+	private volatile Duration idleDisconnect;
+	private volatile boolean closed;
+
+	/**
+	 * Adds a simulated device which acknowledges and answers requests after the supplied latency.
+	 *
+	 * @param address device address
+	 * @param latency delay of any response of the device
+	 * @param responder returns the response APDU for a request APDU, or <code>null</code> for no response
+	 * @return this link
+	 */
+	SimulatedLink device(final IndividualAddress address, final Duration latency,
+		final UnaryOperator<byte[]> responder)
+	{
+		devices.put(address, new Device(address, latency, responder));
+		return this;
+	}
+
+	/**
+	 * Sets the time a frame takes on the medium, sending a request blocks for that time before it is confirmed.
+	 *
+	 * @param time frame time
+	 * @return this link
+	 */
+	SimulatedLink frameTime(final Duration time)
+	{
+		frameTime = time;
+		return this;
+	}
+
+	/**
+	 * Sending a request to an address without simulated device fails with a negative confirmation, like on a TP1 line
+	 * without a device acknowledging the frame.
+	 *
+	 * @return this link
+	 */
+	SimulatedLink negativeConfirmations()
+	{
+		negativeConfirmations = true;
+		return this;
+	}
+
+	/**
+	 * Simulated devices disconnect a transport layer connection after the supplied timeout.
+	 *
+	 * @param timeout connection timeout of devices
+	 * @return this link
+	 */
+	SimulatedLink idleDisconnect(final Duration timeout)
+	{
+		idleDisconnect = timeout;
+		return this;
+	}
+
+	/**
+	 * @return number of requests sent over this link
+	 */
+	int requests()
+	{
+		return requests.get();
+	}
+
+	/**
+	 * @return destinations of the requests sent over this link, in order of sending
+	 */
+	List<KNXAddress> destinations()
+	{
+		return destinations;
+	}
+
+	@Override
+	public void setKNXMedium(final KNXMediumSettings settings)
+	{
+		medium = settings;
+	}
+
+	@Override
+	public KNXMediumSettings getKNXMedium()
+	{
+		return medium;
+	}
+
+	@Override
+	public void addLinkListener(final NetworkLinkListener l)
+	{
+		listeners.add(l);
+	}
+
+	@Override
+	public void removeLinkListener(final NetworkLinkListener l)
+	{
+		listeners.remove(l);
+	}
+
+	@Override
+	public void setHopCount(final int count) {}
+
+	@Override
+	public int getHopCount()
+	{
+		return 6;
+	}
+
+	@Override
+	public void sendRequest(final KNXAddress dst, final Priority p, final byte[] nsdu)
+		throws KNXAckTimeoutException, KNXLinkClosedException
+	{
+		sendRequestWait(dst, p, nsdu);
+	}
+
+	@Override
+	public void sendRequestWait(final KNXAddress dst, final Priority p, final byte[] nsdu)
+		throws KNXAckTimeoutException, KNXLinkClosedException
+	{
+		if (closed)
+			throw new KNXLinkClosedException("simulated link closed");
+		requests.incrementAndGet();
+		destinations.add(dst);
+		if (!frameTime.isZero()) {
+			try {
+				Thread.sleep(frameTime.toMillis());
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		final Device device = devices.get(dst);
+		if (device != null)
+			receive(device, nsdu.clone());
+		else if (negativeConfirmations && dst instanceof IndividualAddress)
+			throw new KNXAckTimeoutException("no acknowledgment from " + dst);
+	}
+
+	@Override
+	public void send(final CEMILData msg, final boolean waitForCon)
+		throws KNXAckTimeoutException, KNXLinkClosedException
+	{
+		sendRequestWait(msg.getDestination(), msg.getPriority(), msg.getPayload());
+	}
+
+	@Override
+	public String getName()
+	{
+		return "simulated link";
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return !closed;
+	}
+
+	@Override
+	public void close()
+	{
+		closed = true;
+		receiver.shutdownNow();
+	}
+
+	private void receive(final Device device, final byte[] tpdu)
+	{
+		final int ctrl = tpdu[0] & 0xff;
+		final int seq = (ctrl >> 2) & 0xf;
+		final Duration timeout = idleDisconnect;
+		if (ctrl == Connect && timeout != null)
+			reply(device, new byte[] { (byte) Disconnect }, timeout);
+		// a new connection starts with sequence number 0
+		if (ctrl == Connect) {
+			synchronized (device) {
+				device.seqReceive = 0;
+				device.seqSend = 0;
+			}
+		}
+		if (ctrl == Connect || (ctrl & 0xC3) == Ack || (ctrl & 0xC3) == Nack)
+			return;
+		if ((ctrl & 0xC0) == DataConnected) {
+			synchronized (device) {
+				if (seq == device.seqReceive || seq == (device.seqReceive - 1 & 0xf)) {
+					final boolean repeated = seq != device.seqReceive;
+					device.seqReceive = seq + 1 & 0xf;
+					reply(device, new byte[] { (byte) (Ack | seq << 2) });
+					if (repeated)
+						return;
+				}
+				else {
+					reply(device, new byte[] { (byte) (Nack | seq << 2) });
+					return;
+				}
+			}
+		}
+		else if ((ctrl & 0xfc) != 0)
+			return;
+
+		final byte[] apdu = tpdu.clone();
+		apdu[0] &= 0x03;
+		final byte[] response = device.responder.apply(apdu);
+		if (response == null)
+			return;
+		if ((ctrl & 0xC0) == DataConnected) {
+			synchronized (device) {
+				response[0] = (byte) (response[0] & 0x03 | DataConnected | device.seqSend << 2);
+				device.seqSend = device.seqSend + 1 & 0xf;
+			}
+		}
+		reply(device, response);
+	}
+
+	private void reply(final Device device, final byte[] tpdu)
+	{
+		reply(device, tpdu, device.latency);
+	}
+
+	private void reply(final Device device, final byte[] tpdu, final Duration delay)
+	{
+		final CEMILData ind = tpdu.length > 16
+				? new CEMILDataEx(CEMILData.MC_LDATA_IND, device.address, medium.getDeviceAddress(), tpdu, Priority.LOW)
+				: new CEMILData(CEMILData.MC_LDATA_IND, device.address, medium.getDeviceAddress(), tpdu, Priority.LOW);
+		receiver.schedule(() -> listeners.fire(l -> l.indication(new FrameEvent(this, ind))),
+				delay.toNanos(), TimeUnit.NANOSECONDS);
+	}
+}
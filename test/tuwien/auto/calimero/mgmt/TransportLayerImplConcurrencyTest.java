@@ -0,0 +1,144 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.Priority;
+
+/**
+ * Connection-oriented sending to several destinations over one link, using a simulated link with per-device ACK
+ * latency.
+ */
+class TransportLayerImplConcurrencyTest
+{
+	private static final int Devices = 8;
+	private static final Duration Latency = Duration.ofMillis(300);
+
+	private SimulatedLink link;
+	private TransportLayerImpl tl;
+	private final List<Destination> destinations = new ArrayList<>();
+	private ExecutorService executor;
+
+	@BeforeEach
+	void init() throws Exception
+	{
+		link = new SimulatedLink();
+		for (int i = 0; i < Devices; i++)
+			link.device(new IndividualAddress(1, 1, 10 + i), Latency, apdu -> null);
+		// a fast device
+		link.device(new IndividualAddress(1, 1, 100), Duration.ofMillis(20), apdu -> null);
+		tl = new TransportLayerImpl(link);
+		for (int i = 0; i < Devices; i++)
+			destinations.add(tl.createDestination(new IndividualAddress(1, 1, 10 + i), true));
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		executor.shutdownNow();
+		tl.detach();
+		link.close();
+	}
+
+	@Test
+	void concurrentSessionsToDifferentDevices() throws Exception
+	{
+		final List<Callable<Void>> sends = new ArrayList<>();
+		for (final Destination d : destinations)
+			sends.add(() -> send(d));
+
+		final long start = System.nanoTime();
+		for (final Future<Void> f : executor.invokeAll(sends))
+			f.get();
+		final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+		// sequential sending would take at least Devices * Latency
+		assertTrue(elapsed.compareTo(Latency.multipliedBy(Devices / 2)) < 0, "sending took " + elapsed);
+	}
+
+	@Test
+	void slowDeviceDoesNotBlockFastDevice() throws Exception
+	{
+		final Destination slow = destinations.get(0);
+		final Destination fast = tl.createDestination(new IndividualAddress(1, 1, 100), true);
+		final Future<Void> pending = executor.submit(() -> send(slow));
+		// wait until the frame to the slow device awaits acknowledgment
+		while (slow.getState() != Destination.State.OpenWait && !pending.isDone())
+			Thread.sleep(1);
+
+		final long start = System.nanoTime();
+		send(fast);
+		final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+		assertTrue(elapsed.compareTo(Latency) < 0, "sending to fast device took " + elapsed);
+		pending.get();
+	}
+
+	@Test
+	void sequentialFramesToSameDevice() throws Exception
+	{
+		final Destination d = destinations.get(0);
+		final List<Callable<Void>> sends = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			sends.add(() -> send(d));
+		for (final Future<Void> f : executor.invokeAll(sends))
+			f.get();
+		// one connect and four data frames, without repetitions
+		assertEquals(5, link.requests());
+		assertEquals(Destination.State.OpenIdle, d.getState());
+	}
+
+	private Void send(final Destination d) throws Exception
+	{
+		tl.sendData(d, Priority.LOW, new byte[] { 0x03, (byte) 0xd5, 0, 1, 0x10, 1 });
+		return null;
+	}
+}
@@ -0,0 +1,248 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2006, 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.serial;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ * FT1.2 frame assembly from chunks of received bytes, and a loopback over an in-memory channel, which measures frame
+ * rate and latency without serial hardware.
+ */
+class FT12FrameAssemblerTest
+{
+	private static final int Ctrl = FT12Connection.DIR_FROM_BAU | FT12Connection.INITIATOR | 0x10 | 0x03;
+
+	private final List<byte[]> frames = new ArrayList<>();
+	private final List<Integer> shortFrames = new ArrayList<>();
+	private int acks;
+	private FT12FrameAssembler assembler;
+
+	@BeforeEach
+	void init()
+	{
+		assembler = new FT12FrameAssembler(new FT12FrameAssembler.Handler() {
+			@Override
+			public void ack()
+			{
+				acks++;
+			}
+
+			@Override
+			public void shortFrame(final int ctrl)
+			{
+				shortFrames.add(ctrl);
+			}
+
+			@Override
+			public void frame(final int ctrl, final ByteBuffer data, final byte checksum)
+			{
+				assertEquals(Ctrl, ctrl);
+				final byte[] bytes = new byte[data.remaining()];
+				data.get(bytes);
+				frames.add(bytes);
+			}
+		}, LoggerFactory.getLogger("calimero.serial.ft12.test"));
+	}
+
+	private static byte[] frame(final byte... data)
+	{
+		final byte[] frame = new byte[data.length + 7];
+		frame[0] = FT12Connection.START;
+		frame[1] = (byte) (data.length + 1);
+		frame[2] = (byte) (data.length + 1);
+		frame[3] = FT12Connection.START;
+		frame[4] = (byte) Ctrl;
+		System.arraycopy(data, 0, frame, 5, data.length);
+		byte chk = 0;
+		for (int i = 4; i < frame.length - 2; i++)
+			chk += frame[i];
+		frame[frame.length - 2] = chk;
+		frame[frame.length - 1] = 0x16;
+		return frame;
+	}
+
+	private void consume(final byte[]... chunks) throws IOException, InterruptedException
+	{
+		for (final byte[] chunk : chunks)
+			assembler.consume(ByteBuffer.wrap(chunk));
+	}
+
+	@Test
+	void completeFrame() throws Exception
+	{
+		consume(frame((byte) 0x29, (byte) 0, (byte) 0xbc));
+		assertEquals(1, frames.size());
+		assertArrayEquals(new byte[] { 0x29, 0, (byte) 0xbc }, frames.get(0));
+	}
+
+	@Test
+	void frameSplitIntoSingleBytes() throws Exception
+	{
+		for (final byte b : frame((byte) 1, (byte) 2, (byte) 3, (byte) 4)) {
+			assertEquals(0, frames.size());
+			consume(new byte[] { b });
+		}
+		assertEquals(1, frames.size());
+	}
+
+	@Test
+	void multipleFramesInOneChunk() throws Exception
+	{
+		final byte[] f1 = frame((byte) 1);
+		final byte[] f2 = frame((byte) 2, (byte) 2);
+		final byte[] chunk = new byte[1 + f1.length + 4 + f2.length];
+		chunk[0] = (byte) FT12Connection.ACK;
+		System.arraycopy(f1, 0, chunk, 1, f1.length);
+		System.arraycopy(new byte[] { 0x10, 0x40, 0x40, 0x16 }, 0, chunk, 1 + f1.length, 4);
+		System.arraycopy(f2, 0, chunk, 5 + f1.length, f2.length);
+		consume(chunk);
+
+		assertEquals(1, acks);
+		assertEquals(List.of(0x40), shortFrames);
+		assertEquals(2, frames.size());
+		assertArrayEquals(new byte[] { 2, 2 }, frames.get(1));
+	}
+
+	@Test
+	void invalidChecksumIsDiscarded() throws Exception
+	{
+		final byte[] invalid = frame((byte) 1, (byte) 2);
+		invalid[invalid.length - 2]++;
+		consume(invalid, frame((byte) 3));
+		assertEquals(1, frames.size());
+		assertArrayEquals(new byte[] { 3 }, frames.get(0));
+	}
+
+	@Test
+	void resynchronizeAfterGarbage() throws Exception
+	{
+		consume(new byte[] { 0x00, 0x68, 0x05, 0x07, 0x16, (byte) 0xff }, frame((byte) 7));
+		assertEquals(1, frames.size());
+		assertArrayEquals(new byte[] { 7 }, frames.get(0));
+	}
+
+	@Test
+	void expireIncompleteFrame() throws Exception
+	{
+		final byte[] frame = frame((byte) 1, (byte) 2);
+		assembler.consume(ByteBuffer.wrap(frame, 0, 6));
+		Thread.sleep(5);
+		assertTrue(assembler.expire(Duration.ofMillis(1)));
+		consume(frame);
+		assertEquals(1, frames.size());
+	}
+
+	@Test
+	void loopback() throws Exception
+	{
+		final int count = 20_000;
+		final Pipe pipe = Pipe.open();
+		final Random random = new Random(7);
+
+		// each frame carries its send time stamp
+		final var writer = CompletableFuture.runAsync(() -> {
+			try (var sink = pipe.sink()) {
+				final ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+				for (int i = 0; i < count; i++) {
+					final byte[] data = new byte[8 + random.nextInt(20)];
+					ByteBuffer.wrap(data).putLong(System.nanoTime());
+					pending.put(frame(data));
+					// write in chunks of varying size, like a serial driver delivers them
+					if (random.nextInt(4) == 0 || i == count - 1) {
+						pending.flip();
+						while (pending.hasRemaining()) {
+							final ByteBuffer chunk = pending.slice();
+							chunk.limit(Math.min(pending.remaining(), 1 + random.nextInt(64)));
+							pending.position(pending.position() + sink.write(chunk));
+						}
+						pending.clear();
+					}
+				}
+			}
+			catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		final long[] latency = new long[count];
+		final FT12FrameAssembler loopback = new FT12FrameAssembler(new FT12FrameAssembler.Handler() {
+			private int received;
+
+			@Override
+			public void ack() {}
+
+			@Override
+			public void shortFrame(final int ctrl) {}
+
+			@Override
+			public void frame(final int ctrl, final ByteBuffer data, final byte checksum)
+			{
+				latency[received++] = System.nanoTime() - data.getLong(0);
+			}
+		}, LoggerFactory.getLogger("calimero.serial.ft12.test"));
+
+		final long start = System.nanoTime();
+		try (var source = pipe.source()) {
+			while (loopback.read(source) != -1);
+		}
+		final long elapsed = System.nanoTime() - start;
+		writer.join();
+
+		final long[] sorted = latency.clone();
+		Arrays.sort(sorted);
+		assertTrue(sorted[0] > 0, "not all frames received");
+		System.out.printf("FT1.2 loopback: %d frames in %d ms (%.0f frames/s), latency median %d us, 99%% %d us%n",
+				count, elapsed / 1_000_000, count * 1e9 / elapsed, sorted[count / 2] / 1000,
+				sorted[count * 99 / 100] / 1000);
+	}
+}
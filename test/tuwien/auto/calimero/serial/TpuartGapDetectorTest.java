@@ -0,0 +1,222 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2006, 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.serial;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import tuwien.auto.calimero.serial.TpuartGapDetector.State;
+
+/**
+ * Replays recorded TP-UART receive streams with character timing to the gap detector, and verifies the detected frame
+ * boundaries.
+ */
+class TpuartGapDetectorTest
+{
+	// one character at 19200 Bd with start, parity, and stop bit
+	private static final long CharTime = TimeUnit.MICROSECONDS.toNanos(573);
+	private static final long Inactivity = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final List<byte[]> frames = new ArrayList<>();
+	private final List<byte[]> headers = new ArrayList<>();
+	private final List<Integer> others = new ArrayList<>();
+	private TpuartGapDetector detector;
+	private long time;
+
+	@BeforeEach
+	void init()
+	{
+		detector = new TpuartGapDetector(new TpuartGapDetector.Handler() {
+			@Override
+			public void header(final byte[] frame, final boolean extended)
+			{
+				headers.add(frame.clone());
+			}
+
+			@Override
+			public void frame(final byte[] frame)
+			{
+				frames.add(frame);
+			}
+
+			@Override
+			public void character(final int c)
+			{
+				others.add(c);
+			}
+		}, CharTime, Inactivity, LoggerFactory.getLogger("calimero.serial.tpuart.test"));
+		time = System.nanoTime();
+	}
+
+	// standard frame with TPCI and APDU of the supplied length
+	private static byte[] stdFrame(final int seed, final int apdu)
+	{
+		final byte[] frame = new byte[7 + apdu + 1];
+		frame[0] = (byte) 0xbc;
+		frame[1] = 0x11;
+		frame[2] = (byte) seed;
+		frame[3] = 0x09;
+		frame[4] = (byte) seed;
+		frame[5] = (byte) (0xe0 | apdu);
+		for (int i = 6; i < frame.length; i++)
+			frame[i] = (byte) (seed + i);
+		return frame;
+	}
+
+	// replays the recorded characters, gap is the time since the previous character
+	private void replay(final long gap, final byte... recorded) throws IOException
+	{
+		for (final byte b : recorded) {
+			time += gap;
+			detector.accept(b & 0xff, time);
+		}
+	}
+
+	@Test
+	void backToBackFrames() throws Exception
+	{
+		final byte[] first = stdFrame(1, 1);
+		final byte[] second = stdFrame(2, 5);
+		replay(CharTime, first);
+		// L_Data.con, followed by the next frame after the bus idle time of 50 bit times
+		replay(CharTime, (byte) 0x8b);
+		time += TimeUnit.MICROSECONDS.toNanos(5200);
+		replay(CharTime, second);
+
+		assertEquals(2, frames.size());
+		assertArrayEquals(first, frames.get(0));
+		assertArrayEquals(second, frames.get(1));
+		assertEquals(2, headers.size());
+		assertEquals(List.of(0x8b), others);
+	}
+
+	@Test
+	void gapDiscardsPartialFrame() throws Exception
+	{
+		final byte[] frame = stdFrame(1, 3);
+		replay(CharTime, Arrays.copyOf(frame, 4));
+		time += TimeUnit.MILLISECONDS.toNanos(30);
+		replay(CharTime, frame);
+
+		assertEquals(1, frames.size());
+		assertArrayEquals(frame, frames.get(0));
+	}
+
+	@Test
+	void delayAfterHeaderIsTolerated() throws Exception
+	{
+		final byte[] frame = stdFrame(1, 10);
+		replay(CharTime, Arrays.copyOf(frame, 8));
+		// a host under load reads the remaining characters late
+		time += TimeUnit.MILLISECONDS.toNanos(12);
+		replay(CharTime, Arrays.copyOfRange(frame, 8, frame.length));
+
+		assertEquals(1, frames.size());
+		assertArrayEquals(frame, frames.get(0));
+	}
+
+	@Test
+	void replayUnderLoad() throws Exception
+	{
+		final Random random = new Random(7);
+		final List<byte[]> sent = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			final byte[] frame = stdFrame(i, random.nextInt(15));
+			sent.add(frame);
+			// the receiver reads characters in bursts of varying size and with varying read delay
+			int offset = 0;
+			while (offset < frame.length) {
+				final int burst = Math.min(1 + random.nextInt(8), frame.length - offset);
+				time += burst * CharTime + random.nextInt(2_000_000);
+				detector.accept(Arrays.copyOfRange(frame, offset, offset + burst), burst, time);
+				offset += burst;
+			}
+			// positive L_Data.con and bus idle between frames
+			replay(CharTime, (byte) 0x8b);
+			time += TimeUnit.MICROSECONDS.toNanos(5200);
+		}
+
+		assertEquals(sent.size(), frames.size());
+		for (int i = 0; i < sent.size(); i++)
+			assertArrayEquals(sent.get(i), frames.get(i), "frame " + i);
+		assertEquals(sent.size(), headers.size());
+		assertEquals(sent.size(), others.size());
+	}
+
+	@Test
+	void idleAfterInactivity() throws Exception
+	{
+		final long now = System.nanoTime();
+		time = now;
+		replay(0, (byte) 0x8b);
+		assertEquals(State.Active, detector.state(now));
+		assertEquals(State.Idle, detector.state(now + Inactivity));
+
+		replay(0, (byte) 0xbc);
+		assertEquals(State.Frame, detector.state(now));
+	}
+
+	@Test
+	void awaitIdle() throws Exception
+	{
+		final long start = System.nanoTime();
+		detector.accept(0x8b, start);
+		detector.awaitIdle();
+		final long waited = System.nanoTime() - start;
+		assertTrue(waited >= Inactivity, "waited " + waited + " ns");
+		assertTrue(waited < Inactivity + TimeUnit.MILLISECONDS.toNanos(50), "waited " + waited + " ns");
+
+		detector.pause(System.nanoTime() + Inactivity);
+		final long paused = System.nanoTime();
+		detector.awaitIdle();
+		assertTrue(System.nanoTime() - paused >= Inactivity - TimeUnit.MILLISECONDS.toNanos(1));
+		assertFalse(Thread.currentThread().isInterrupted());
+	}
+}
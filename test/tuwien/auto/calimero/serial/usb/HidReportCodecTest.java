@@ -0,0 +1,203 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.serial.usb;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.serial.usb.HidReport.BusAccessServerFeature;
+import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.BusAccessServerService;
+import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.KnxTunnelEmi;
+
+class HidReportCodecTest
+{
+	// typical frame sizes: EMI1 group write, cEMI group write, cEMI property response, two to five reports
+	private static final int[] FrameSizes = { 9, 17, 52, 53, 60, 113, 150, 296 };
+
+	private final List<KnxTunnelEmi> emis = new ArrayList<>();
+	private final List<byte[]> frames = new ArrayList<>();
+	private final List<byte[]> features = new ArrayList<>();
+
+	private final HidReportReader reader = new HidReportReader(new HidReportReader.Handler() {
+		@Override
+		public void frame(final KnxTunnelEmi emi, final byte[] buffer, final int offset, final int length)
+		{
+			emis.add(emi);
+			frames.add(Arrays.copyOfRange(buffer, offset, offset + length));
+		}
+
+		@Override
+		public void featureService(final byte[] report) { features.add(report.clone()); }
+	});
+
+	private static byte[] frame(final int length)
+	{
+		final byte[] frame = new byte[length];
+		for (int i = 0; i < length; i++)
+			frame[i] = (byte) (i + 1);
+		return frame;
+	}
+
+	@Test
+	void writeEqualsHidReport()
+	{
+		for (final int size : FrameSizes) {
+			final byte[] frame = frame(size);
+			final List<HidReport> expected = HidReport.create(KnxTunnelEmi.CEmi, frame);
+			final byte[] reports = new byte[HidReportWriter.reports(size) * HidReportWriter.ReportSize];
+			assertEquals(expected.size(), HidReportWriter.write(KnxTunnelEmi.CEmi, frame, reports, 0));
+			for (int i = 0; i < expected.size(); i++)
+				assertArrayEquals(expected.get(i).toByteArray(), Arrays.copyOfRange(reports, i * 64, i * 64 + 64),
+						"frame size " + size + ", report " + i);
+		}
+	}
+
+	@Test
+	void writeFeatureServiceEqualsHidReport()
+	{
+		final byte[] data = { 3 };
+		final byte[] report = new byte[64];
+		Arrays.fill(report, (byte) 0x55);
+		HidReportWriter.writeFeatureService(BusAccessServerService.Set, BusAccessServerFeature.ActiveEmiType, data,
+				report, 0);
+		final HidReport expected = HidReport.createFeatureService(BusAccessServerService.Set,
+				BusAccessServerFeature.ActiveEmiType, data);
+		assertArrayEquals(expected.toByteArray(), report);
+	}
+
+	@Test
+	void frameTooLarge()
+	{
+		final byte[] frame = frame(HidReportWriter.MaxFrameLength + 1);
+		assertThrows(KNXIllegalArgumentException.class,
+				() -> HidReportWriter.write(KnxTunnelEmi.CEmi, frame, new byte[384], 0));
+	}
+
+	@Test
+	void readAssemblesFrames() throws KNXFormatException
+	{
+		final byte[] report = new byte[64];
+		for (final int size : FrameSizes) {
+			final byte[] frame = frame(size);
+			final byte[] reports = new byte[HidReportWriter.reports(size) * 64];
+			final int count = HidReportWriter.write(KnxTunnelEmi.Emi2, frame, reports, 0);
+			// reuse one report buffer, like the receiving side does
+			for (int i = 0; i < count; i++) {
+				System.arraycopy(reports, i * 64, report, 0, 64);
+				reader.read(report, 64);
+			}
+		}
+		assertEquals(FrameSizes.length, frames.size());
+		for (int i = 0; i < FrameSizes.length; i++) {
+			assertEquals(KnxTunnelEmi.Emi2, emis.get(i));
+			assertArrayEquals(frame(FrameSizes[i]), frames.get(i));
+		}
+	}
+
+	@Test
+	void readHidReports() throws KNXFormatException
+	{
+		for (final HidReport r : HidReport.create(KnxTunnelEmi.CEmi, frame(150)))
+			reader.read(r.toByteArray(), 64);
+		assertArrayEquals(frame(150), frames.get(0));
+	}
+
+	@Test
+	void readFeatureService() throws KNXFormatException
+	{
+		final byte[] report = HidReport.createFeatureService(BusAccessServerService.Response,
+				BusAccessServerFeature.SupportedEmiTypes, new byte[] { 0, 7 }).toByteArray();
+		reader.read(report, 64);
+		assertArrayEquals(report, features.get(0));
+		assertTrue(frames.isEmpty());
+	}
+
+	@Test
+	void outOfOrderReportDiscardsFrame() throws KNXFormatException
+	{
+		final byte[] reports = new byte[3 * 64];
+		HidReportWriter.write(KnxTunnelEmi.CEmi, frame(150), reports, 0);
+		reader.read(Arrays.copyOfRange(reports, 0, 64), 64);
+		assertThrows(KNXFormatException.class, () -> reader.read(Arrays.copyOfRange(reports, 128, 192), 64));
+		// frame continues without a preceding start packet
+		assertThrows(KNXFormatException.class, () -> reader.read(Arrays.copyOfRange(reports, 64, 128), 64));
+		assertTrue(frames.isEmpty());
+
+		// next frame is assembled again
+		for (int i = 0; i < 3; i++)
+			reader.read(Arrays.copyOfRange(reports, i * 64, i * 64 + 64), 64);
+		assertArrayEquals(frame(150), frames.get(0));
+	}
+
+	@Test
+	void startPacketDiscardsIncompleteFrame() throws KNXFormatException
+	{
+		final byte[] reports = new byte[3 * 64];
+		HidReportWriter.write(KnxTunnelEmi.CEmi, frame(150), reports, 0);
+		reader.read(Arrays.copyOfRange(reports, 0, 64), 64);
+		final byte[] single = new byte[64];
+		HidReportWriter.write(KnxTunnelEmi.CEmi, frame(17), single, 0);
+		reader.read(single, 64);
+		assertEquals(1, frames.size());
+		assertArrayEquals(frame(17), frames.get(0));
+	}
+
+	@Test
+	void invalidReport()
+	{
+		final byte[] report = new byte[64];
+		HidReportWriter.write(KnxTunnelEmi.CEmi, frame(17), report, 0);
+		report[0] = 2;
+		assertThrows(KNXFormatException.class, () -> reader.read(report, 64));
+		report[0] = 1;
+		report[2] = 62;
+		assertThrows(KNXFormatException.class, () -> reader.read(report, 64));
+		report[2] = 8 + 17;
+		report[6] = 16;
+		assertThrows(KNXFormatException.class, () -> reader.read(report, 64));
+	}
+}
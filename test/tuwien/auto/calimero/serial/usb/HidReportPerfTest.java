@@ -0,0 +1,163 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.serial.usb;
+
+import java.io.ByteArrayOutputStream;
+
+import performance.base.PerfTestCase;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.serial.usb.TransferProtocolHeader.KnxTunnelEmi;
+
+/**
+ * Encoding and decoding of HID reports over typical EMI/cEMI frame sizes, comparing report objects with the writer
+ * and reader operating on reusable report buffers.
+ */
+public class HidReportPerfTest extends PerfTestCase
+{
+	// EMI1 group write, cEMI group write, cEMI property response (one report), extended frame (2 reports),
+	// maximum frame (5 reports)
+	private static final int[] FrameSizes = { 9, 17, 45, 113, 296 };
+	private static final int Iterations = 20_000;
+
+	private final byte[][] frames = new byte[FrameSizes.length][];
+	private final byte[][] encoded = new byte[FrameSizes.length][];
+	private final byte[] buffer = new byte[5 * HidReportWriter.ReportSize];
+	private final byte[] report = new byte[HidReportWriter.ReportSize];
+	// result sink, so the measured work is not optimized away
+	private long bytes;
+
+	private final HidReportReader reader = new HidReportReader(new HidReportReader.Handler() {
+		@Override
+		public void frame(final KnxTunnelEmi emi, final byte[] buffer, final int offset, final int length)
+		{
+			bytes += length;
+		}
+
+		@Override
+		public void featureService(final byte[] report) {}
+	});
+
+	/**
+	 * @param name name of test case
+	 */
+	public HidReportPerfTest(final String name)
+	{
+		super(name);
+		warmups = 5;
+		measure = 10;
+		setNormalize(Iterations * FrameSizes.length);
+	}
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		for (int i = 0; i < FrameSizes.length; i++) {
+			frames[i] = new byte[FrameSizes[i]];
+			for (int k = 0; k < FrameSizes[i]; k++)
+				frames[i][k] = (byte) k;
+			encoded[i] = new byte[HidReportWriter.reports(FrameSizes[i]) * HidReportWriter.ReportSize];
+			HidReportWriter.write(KnxTunnelEmi.CEmi, frames[i], encoded[i], 0);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		printResults();
+		super.tearDown();
+	}
+
+	/**
+	 * Encodes frames using {@link HidReport#create(KnxTunnelEmi, byte[])} and {@link HidReport#toByteArray()}.
+	 */
+	public void testEncodeHidReport()
+	{
+		for (int n = 0; n < Iterations; n++)
+			for (final byte[] frame : frames)
+				for (final HidReport r : HidReport.create(KnxTunnelEmi.CEmi, frame))
+					bytes += r.toByteArray().length;
+	}
+
+	/**
+	 * Encodes frames using the report writer into a reused buffer.
+	 */
+	public void testEncodeWriter()
+	{
+		for (int n = 0; n < Iterations; n++)
+			for (final byte[] frame : frames)
+				bytes += HidReportWriter.write(KnxTunnelEmi.CEmi, frame, buffer, 0);
+	}
+
+	/**
+	 * Decodes and assembles frames using {@link HidReport#HidReport(byte[])}.
+	 *
+	 * @throws KNXFormatException on error
+	 */
+	public void testDecodeHidReport() throws KNXFormatException
+	{
+		for (int n = 0; n < Iterations; n++) {
+			for (final byte[] reports : encoded) {
+				final ByteArrayOutputStream os = new ByteArrayOutputStream();
+				for (int i = 0; i < reports.length; i += HidReportWriter.ReportSize) {
+					System.arraycopy(reports, i, report, 0, report.length);
+					final HidReport r = new HidReport(report.clone());
+					final byte[] data = r.getData();
+					os.write(data, 0, data.length);
+				}
+				bytes += os.toByteArray().length;
+			}
+		}
+	}
+
+	/**
+	 * Decodes and assembles frames using the report reader with a reused report buffer.
+	 *
+	 * @throws KNXFormatException on error
+	 */
+	public void testDecodeReader() throws KNXFormatException
+	{
+		for (int n = 0; n < Iterations; n++) {
+			for (final byte[] reports : encoded) {
+				for (int i = 0; i < reports.length; i += HidReportWriter.ReportSize) {
+					System.arraycopy(reports, i, report, 0, report.length);
+					reader.read(report, report.length);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.serial.usb;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.usb.UsbControlIrp;
+import javax.usb.UsbEndpoint;
+import javax.usb.UsbException;
+import javax.usb.UsbIrp;
+import javax.usb.event.UsbPipeDataEvent;
+import javax.usb.event.UsbPipeErrorEvent;
+import javax.usb.event.UsbPipeListener;
+import javax.usb.util.DefaultUsbControlIrp;
+import javax.usb.util.DefaultUsbIrp;
+
+/**
+ * Simulated interrupt pipe of a KNX USB device, for running USB tests without a device attached. Like usb4java, the
+ * submitted IRPs of a pipe are processed in order by a single device thread, which completes an IRP and then notifies
+ * the pipe listeners.
+ */
+final class MockUsbPipe implements javax.usb.UsbPipe
+{
+	private final boolean input;
+	private final long transferTime;
+
+	private final BlockingQueue<UsbIrp> submitted = new LinkedBlockingQueue<>();
+	// input: reports the device will send, output: reports the device received
+	private final BlockingQueue<Object> reports = new LinkedBlockingQueue<>();
+	private final List<UsbPipeListener> listeners = new CopyOnWriteArrayList<>();
+	private final Thread device;
+
+	private volatile boolean open = true;
+	private volatile UsbException outputError;
+
+	/**
+	 * @param input <code>true</code> for a device-to-host pipe, <code>false</code> for host-to-device
+	 * @param transferTime simulated transfer time of one report in nanoseconds
+	 */
+	MockUsbPipe(final boolean input, final long transferTime)
+	{
+		this.input = input;
+		this.transferTime = transferTime;
+		device = new Thread(this::process, "mock USB device " + (input ? "in" : "out"));
+		device.setDaemon(true);
+		device.start();
+	}
+
+	/** Device sends a report over this input pipe, once an IRP is available. */
+	void deliver(final byte[] report) { reports.add(report); }
+
+	/** Device fails the next input IRP. */
+	void fail(final UsbException e) { reports.add(e); }
+
+	/** Device fails the next output IRP. */
+	void failOutput(final UsbException e) { outputError = e; }
+
+	/** @return report received by the device, waits until available */
+	byte[] received() throws InterruptedException { return (byte[]) reports.take(); }
+
+	int outstanding() { return submitted.size(); }
+
+	private void process()
+	{
+		try {
+			while (open) {
+				if (input) {
+					final Object report = reports.take();
+					final UsbIrp irp = submitted.take();
+					pause();
+					if (report instanceof UsbException) {
+						irp.setUsbException((UsbException) report);
+						irp.complete();
+						listeners.forEach(l -> l.errorEventOccurred(new UsbPipeErrorEvent(this, irp)));
+						continue;
+					}
+					final byte[] data = (byte[]) report;
+					System.arraycopy(data, 0, irp.getData(), irp.getOffset(), data.length);
+					irp.setActualLength(data.length);
+					irp.complete();
+					listeners.forEach(l -> l.dataEventOccurred(new UsbPipeDataEvent(this, irp)));
+				}
+				else {
+					final UsbIrp irp = submitted.take();
+					pause();
+					final UsbException error = outputError;
+					if (error != null) {
+						outputError = null;
+						irp.setUsbException(error);
+						irp.complete();
+						listeners.forEach(l -> l.errorEventOccurred(new UsbPipeErrorEvent(this, irp)));
+						continue;
+					}
+					reports.add(Arrays.copyOfRange(irp.getData(), irp.getOffset(), irp.getOffset() + irp.getLength()));
+					irp.setActualLength(irp.getLength());
+					irp.complete();
+					listeners.forEach(l -> l.dataEventOccurred(new UsbPipeDataEvent(this, irp)));
+				}
+			}
+		}
+		catch (final InterruptedException e) {}
+	}
+
+	private void pause()
+	{
+		if (transferTime > 0)
+			LockSupport.parkNanos(transferTime);
+	}
+
+	@Override
+	public void open() { open = true; }
+
+	@Override
+	public void close()
+	{
+		open = false;
+		device.interrupt();
+	}
+
+	@Override
+	public boolean isActive() { return true; }
+
+	@Override
+	public boolean isOpen() { return open; }
+
+	@Override
+	public UsbEndpoint getUsbEndpoint() { return null; }
+
+	@Override
+	public int syncSubmit(final byte[] data) throws UsbException
+	{
+		final UsbIrp irp = asyncSubmit(data);
+		irp.waitUntilComplete();
+		if (irp.isUsbException())
+			throw irp.getUsbException();
+		return irp.getActualLength();
+	}
+
+	@Override
+	public UsbIrp asyncSubmit(final byte[] data)
+	{
+		final UsbIrp irp = new DefaultUsbIrp(data);
+		asyncSubmit(irp);
+		return irp;
+	}
+
+	@Override
+	public void syncSubmit(final UsbIrp irp) throws UsbException
+	{
+		asyncSubmit(irp);
+		irp.waitUntilComplete();
+		if (irp.isUsbException())
+			throw irp.getUsbException();
+	}
+
+	@Override
+	public void asyncSubmit(final UsbIrp irp)
+	{
+		if (!open)
+			throw new IllegalStateException("pipe closed");
+		submitted.add(irp);
+	}
+
+	@Override
+	public void syncSubmit(@SuppressWarnings("rawtypes") final List list) throws UsbException
+	{
+		for (final Object irp : list)
+			syncSubmit((UsbIrp) irp);
+	}
+
+	@Override
+	public void asyncSubmit(@SuppressWarnings("rawtypes") final List list)
+	{
+		for (final Object irp : list)
+			asyncSubmit((UsbIrp) irp);
+	}
+
+	@Override
+	public void abortAllSubmissions() { submitted.clear(); }
+
+	@Override
+	public UsbIrp createUsbIrp() { return new DefaultUsbIrp(); }
+
+	@Override
+	public UsbControlIrp createUsbControlIrp(final byte bmRequestType, final byte bRequest, final short wValue,
+		final short wIndex)
+	{
+		return new DefaultUsbControlIrp(bmRequestType, bRequest, wValue, wIndex);
+	}
+
+	@Override
+	public void addUsbPipeListener(final UsbPipeListener listener) { listeners.add(listener); }
+
+	@Override
+	public void removeUsbPipeListener(final UsbPipeListener listener) { listeners.remove(listener); }
+}
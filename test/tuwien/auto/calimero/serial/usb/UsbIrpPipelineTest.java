@@ -0,0 +1,243 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.serial.usb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.usb.UsbException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous IRP pipeline over simulated USB pipes, which also measures the report rate without a USB device.
+ */
+class UsbIrpPipelineTest
+{
+	private static final int Irps = 4;
+
+	private MockUsbPipe in;
+	private MockUsbPipe out;
+	private UsbIrpPipeline pipeline;
+
+	private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+	private final Set<byte[]> buffers = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final CompletableFuture<String> failed = new CompletableFuture<>();
+	private volatile long dispatchTime;
+
+	private final UsbIrpPipeline.Receiver receiver = new UsbIrpPipeline.Receiver() {
+		@Override
+		public void received(final byte[] report, final int length)
+		{
+			buffers.add(report);
+			received.add(Arrays.copyOf(report, length));
+			if (dispatchTime > 0)
+				LockSupport.parkNanos(dispatchTime);
+		}
+
+		@Override
+		public void failed(final String reason) { failed.complete(reason); }
+	};
+
+	@AfterEach
+	void close()
+	{
+		if (pipeline != null)
+			pipeline.close();
+		if (in != null)
+			in.close();
+		if (out != null)
+			out.close();
+	}
+
+	private void start(final int irps, final long transferTime) throws UsbException
+	{
+		in = new MockUsbPipe(true, transferTime);
+		out = new MockUsbPipe(false, transferTime);
+		pipeline = new UsbIrpPipeline(in, out, irps, receiver, LoggerFactory.getLogger("calimero.usb.test"));
+		pipeline.start();
+	}
+
+	private static byte[] report(final int seq)
+	{
+		final byte[] report = new byte[UsbIrpPipeline.ReportSize];
+		report[0] = 1;
+		report[1] = (byte) (seq >> 8);
+		report[2] = (byte) seq;
+		return report;
+	}
+
+	private static int seq(final byte[] report) { return (report[1] & 0xff) << 8 | report[2] & 0xff; }
+
+	@Test
+	void inputIrpsAreOutstanding() throws UsbException
+	{
+		start(Irps, 0);
+		assertEquals(Irps, in.outstanding());
+	}
+
+	@Test
+	void receiveReportsInOrderWithReusedBuffers() throws UsbException, InterruptedException
+	{
+		start(Irps, 0);
+		final int reports = 1000;
+		for (int i = 0; i < reports; i++)
+			in.deliver(report(i));
+		for (int i = 0; i < reports; i++) {
+			final byte[] r = received.poll(5, TimeUnit.SECONDS);
+			assertEquals(i, seq(r));
+		}
+		assertEquals(Irps, buffers.size());
+	}
+
+	@Test
+	void resubmittedBufferIsCleared() throws UsbException, InterruptedException
+	{
+		start(1, 0);
+		in.deliver(report(0x102));
+		in.deliver(new byte[] { 1 });
+		received.poll(5, TimeUnit.SECONDS);
+		final byte[] r = received.poll(5, TimeUnit.SECONDS);
+		assertEquals(1, r.length);
+		assertEquals(0, seq(buffers.iterator().next()));
+	}
+
+	@Test
+	void blockingSendWaitsForLastReport() throws UsbException, InterruptedException
+	{
+		start(Irps, 1_000_000);
+		pipeline.send(List.of(report(1), report(2), report(3)), true);
+		for (int i = 1; i <= 3; i++)
+			assertEquals(i, seq(out.received()));
+	}
+
+	@Test
+	void reportsOfConcurrentFramesDoNotInterleave() throws Exception
+	{
+		start(Irps, 10_000);
+		final int frames = 200;
+		final int senders = 4;
+		final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+		for (int s = 0; s < senders; s++) {
+			final int sender = s;
+			tasks.add(CompletableFuture.runAsync(() -> {
+				try {
+					final int tag = sender << 8;
+					for (int f = 0; f < frames; f++)
+						pipeline.send(List.of(report(tag), report(tag | 1), report(tag | 2)), false);
+				}
+				catch (final UsbException e) {
+					throw new RuntimeException(e);
+				}
+			}));
+		}
+		CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+		for (int f = 0; f < frames * senders; f++) {
+			final int first = seq(out.received());
+			assertEquals(0, first & 0xff);
+			assertEquals(first + 1, seq(out.received()));
+			assertEquals(first + 2, seq(out.received()));
+		}
+	}
+
+	@Test
+	void inputErrorFailsPipeline() throws Exception
+	{
+		start(Irps, 0);
+		in.fail(new UsbException("device gone"));
+		assertEquals("device gone", failed.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void outputErrorOfNonBlockingSendIsThrownByNextBlockingSend() throws Exception
+	{
+		start(Irps, 0);
+		out.failOutput(new UsbException("stall"));
+		pipeline.send(List.of(report(1)), false);
+
+		final var e = assertThrows(UsbException.class, () -> pipeline.send(List.of(report(2)), true));
+		assertEquals("stall", e.getMessage());
+		// the error is thrown once
+		pipeline.send(List.of(report(3)), true);
+		// report 2 is not submitted if the failed report completed before
+		int seq = seq(out.received());
+		if (seq == 2)
+			seq = seq(out.received());
+		assertEquals(3, seq);
+	}
+
+	@Test
+	void reportRate() throws Exception
+	{
+		// device and dispatch take about the same time per report, multiple outstanding IRPs let both overlap
+		final long transferTime = 50_000;
+		dispatchTime = 50_000;
+		final double single = reportRate(1, transferTime);
+		close();
+		received.clear();
+		final double pipelined = reportRate(Irps, transferTime);
+		System.out.format("USB input reports/s: 1 IRP %.0f, %d IRPs %.0f%n", single, Irps, pipelined);
+		assertTrue(pipelined > 0);
+	}
+
+	private double reportRate(final int irps, final long transferTime) throws UsbException, InterruptedException
+	{
+		start(irps, transferTime);
+		final int reports = 2000;
+		final long start = System.nanoTime();
+		for (int i = 0; i < reports; i++)
+			in.deliver(report(i));
+		for (int i = 0; i < reports; i++)
+			received.poll(10, TimeUnit.SECONDS);
+		return reports * 1e9 / (System.nanoTime() - start);
+	}
+}
@@ -0,0 +1,184 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.xml;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import tag.Slow;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.Util;
+import tuwien.auto.calimero.datapoint.StateDP;
+
+/**
+ * Parse throughput of the default XML reader compared to the StAX reader, using the KNX property definitions and a
+ * generated datapoint model of about 50 MB. Tagged slow, the datapoint model is generated once and parsed 8 times per
+ * reader.
+ */
+@Slow
+class DefaultXmlReaderPerfTest
+{
+	private static final String propertiesFile = "resources/properties.xml";
+	private static final String dpFile = Util.getTargetPath() + "xmlReaderDatapoints.xml";
+	private static final long DatapointsFileSize = 50_000_000;
+
+	private static final int Warmups = 3;
+	private static final int Measure = 5;
+
+	private static final class CountingOutputStream extends FilterOutputStream
+	{
+		long count;
+
+		CountingOutputStream(final OutputStream out)
+		{
+			super(out);
+		}
+
+		@Override
+		public void write(final int b) throws IOException
+		{
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException
+		{
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+
+	@BeforeAll
+	static void createDatapoints() throws Exception
+	{
+		final Path path = Path.of(dpFile);
+		if (Files.exists(path) && Files.size(path) >= DatapointsFileSize)
+			return;
+		// stream datapoints into the file until it reaches its size, without keeping the model in memory
+		try (var os = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+				XmlWriter w = XmlOutputFactory.newInstance().createXMLStreamWriter(os)) {
+			w.writeStartElement("datapoints");
+			for (int i = 1; os.count < DatapointsFileSize; i++) {
+				// main addresses stay below the updating and invalidating addresses
+				final int main = 1 + i % 0xff00;
+				final StateDP dp = new StateDP(new GroupAddress(main), "state datapoint " + i + " & more", 9, "9.001");
+				dp.addUpdatingAddress(new GroupAddress(0xffff - i % 100));
+				dp.addInvalidatingAddress(new GroupAddress(0xffff - 100 - i % 100));
+				dp.save(w);
+			}
+			w.writeEndElement();
+		}
+	}
+
+	@Test
+	void defaultReaderProperties() throws Exception
+	{
+		measure("default reader, properties", () -> parse(defaultReader(propertiesFile)));
+	}
+
+	@Test
+	void staxReaderProperties() throws Exception
+	{
+		measure("StAX reader, properties", () -> parse(XmlInputFactory.newInstance().createXMLReader(propertiesFile)));
+	}
+
+	@Test
+	void defaultReaderDatapoints() throws Exception
+	{
+		measure("default reader, datapoints", () -> parse(defaultReader(dpFile)));
+	}
+
+	@Test
+	void staxReaderDatapoints() throws Exception
+	{
+		measure("StAX reader, datapoints", () -> parse(XmlInputFactory.newInstance().createXMLReader(dpFile)));
+	}
+
+	// parses the file in warm-up and measured laps, and prints the lap times of the measured laps
+	private static void measure(final String name, final Callable<Integer> parse) throws Exception
+	{
+		for (int i = 0; i < Warmups; i++)
+			assertTrue(parse.call() > 0);
+		final List<Long> laps = new ArrayList<>();
+		for (int i = 0; i < Measure; i++) {
+			final long start = System.nanoTime();
+			assertTrue(parse.call() > 0);
+			laps.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		}
+		final double avg = laps.stream().mapToLong(Long::longValue).average().orElse(0);
+		Util.out("Timing results for " + name);
+		Util.out("Laps: " + Warmups + " warmups, " + Measure + " measured, avg lap: " + avg + " ms");
+		Util.out("Lap times: " + laps);
+	}
+
+	private static XmlReader defaultReader(final String file) throws IOException
+	{
+		return new DefaultXmlReader(new InputStreamReader(new FileInputStream(file), UTF_8), true);
+	}
+
+	// reads all events, accessing the attributes of each start element
+	private static int parse(final XmlReader r)
+	{
+		int elements = 0;
+		try (XmlReader reader = r) {
+			while (reader.next() != XmlReader.END_DOCUMENT)
+				if (reader.getEventType() == XmlReader.START_ELEMENT) {
+					elements++;
+					for (int i = 0; i < reader.getAttributeCount(); i++)
+						reader.getAttributeValue(i);
+				}
+		}
+		return elements;
+	}
+}
@@ -0,0 +1,156 @@
+/*
+    Calimero 2 - A library for KNX network access
+    Copyright (c) 2020 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class DefaultXmlReaderTest
+{
+	@ParameterizedTest
+	@ValueSource(strings = { "resources/properties.xml", "test/resources/properties.xml",
+		"test/resources/KeyringTest.knxkeys", "test/resources/stateDP.xml", "test/resources/commandDP.xml" })
+	void sameElementsAsStax(final String file) throws IOException
+	{
+		final List<String> expected;
+		try (XmlReader r = XmlInputFactory.newInstance().createXMLReader(file)) {
+			expected = elements(r);
+		}
+		try (XmlReader r = new DefaultXmlReader(new InputStreamReader(new FileInputStream(file),
+				StandardCharsets.UTF_8), true)) {
+			assertEquals(expected, elements(r));
+		}
+	}
+
+	@Test
+	void elementText()
+	{
+		final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- comment -->\n"
+				+ "<root a='1' b=\"x &amp; y\">\r\n<text>line1\r\nline2 &lt;&gt;</text>\n"
+				+ "<cdata><![CDATA[<not> a tag]]></cdata><empty/><empty2 c=\"2\" /></root>";
+		try (XmlReader r = new DefaultXmlReader(new StringReader(xml), true)) {
+			assertEquals(XmlReader.START_ELEMENT, r.nextTag());
+			assertEquals("root", r.getLocalName());
+			assertEquals(2, r.getAttributeCount());
+			assertEquals("1", r.getAttributeValue(null, "a"));
+			assertEquals("x & y", r.getAttributeValue(null, "b"));
+			assertEquals("b", r.getAttributeLocalName(1));
+			assertNull(r.getAttributeValue(null, "c"));
+
+			assertEquals(XmlReader.START_ELEMENT, r.nextTag());
+			assertEquals("text", r.getLocalName());
+			assertEquals(4, r.getLocation().getLineNumber());
+			assertEquals("line1\nline2 <>", r.getElementText());
+			assertEquals(XmlReader.END_ELEMENT, r.getEventType());
+			assertEquals(5, r.getLocation().getLineNumber());
+
+			assertEquals(XmlReader.START_ELEMENT, r.nextTag());
+			assertEquals("<not> a tag", r.getElementText());
+
+			assertEquals(XmlReader.START_ELEMENT, r.nextTag());
+			assertEquals("empty", r.getLocalName());
+			assertEquals(XmlReader.START_ELEMENT, r.nextTag());
+			assertEquals("empty2", r.getLocalName());
+			assertEquals("2", r.getAttributeValue(null, "c"));
+			assertEquals(XmlReader.END_ELEMENT, r.nextTag());
+			assertEquals("root", r.getLocalName());
+			assertEquals(XmlReader.END_DOCUMENT, r.next());
+			assertEquals("1.0", r.getVersion());
+			assertEquals("UTF-8", r.getCharacterEncodingScheme());
+		}
+	}
+
+	@Test
+	void mismatchingEndTag()
+	{
+		try (XmlReader r = new DefaultXmlReader(new StringReader("<a><b></a></b>"), true)) {
+			r.nextTag();
+			r.nextTag();
+			assertThrows(KNXMLException.class, r::nextTag);
+		}
+	}
+
+	@Test
+	void elementsLeftOpen()
+	{
+		try (XmlReader r = new DefaultXmlReader(new StringReader("<a><b></b>"), true)) {
+			r.nextTag();
+			r.nextTag();
+			r.nextTag();
+			assertThrows(KNXMLException.class, r::nextTag);
+		}
+	}
+
+	// start and end elements with attributes; end elements directly following their start element are omitted to
+	// match empty element tags, for which DefaultXmlReader does not report an end element
+	private static List<String> elements(final XmlReader r)
+	{
+		final List<String> l = new ArrayList<>();
+		String start = null;
+		while (r.hasNext()) {
+			final int event = r.next();
+			if (event == XmlReader.START_ELEMENT) {
+				final TreeMap<String, String> attributes = new TreeMap<>();
+				for (int i = 0; i < r.getAttributeCount(); i++)
+					if (!"xmlns".equals(r.getAttributeLocalName(i)))
+						attributes.put(r.getAttributeLocalName(i), r.getAttributeValue(i));
+				l.add("<" + r.getLocalName() + " " + attributes);
+				start = r.getLocalName();
+			}
+			else if (event == XmlReader.END_ELEMENT) {
+				if (!r.getLocalName().equals(start))
+					l.add("</" + r.getLocalName());
+				start = null;
+			}
+		}
+		return l;
+	}
+}